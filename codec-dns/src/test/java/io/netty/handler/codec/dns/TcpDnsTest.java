@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpDnsTest {
+
+    private static final byte[] RESPONSE = {
+            0, 1, -127, -128, 0, 1, 0, 1, 0, 0, 0, 0, 3, 119, 119, 119, 7, 101, 120, 97, 109, 112, 108, 101, 3,
+            99, 111, 109, 0, 0, 1, 0, 1, -64, 12, 0, 1, 0, 1, 0, 0, 16, -113, 0, 4, -64, 0, 43, 10
+    };
+
+    @Test
+    public void testEncodeQuery() {
+        InetSocketAddress recipient = new InetSocketAddress(0);
+        EmbeddedChannel datagram = new EmbeddedChannel(new DatagramDnsQueryEncoder());
+        EmbeddedChannel tcp = new EmbeddedChannel(new TcpDnsQueryEncoder());
+        assertTrue(datagram.writeOutbound(newQuery(recipient)));
+        assertTrue(tcp.writeOutbound(newQuery(recipient)));
+
+        DatagramPacket packet = datagram.readOutbound();
+        ByteBuf buf = tcp.readOutbound();
+        // The TCP message is the datagram payload prefixed with its length.
+        assertEquals(packet.content().readableBytes(), buf.readUnsignedShort());
+        assertEquals(packet.content(), buf);
+        packet.release();
+        buf.release();
+        assertFalse(datagram.finish());
+        assertFalse(tcp.finish());
+    }
+
+    @Test
+    public void testDecodeFragmentedResponses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpDnsResponseDecoder());
+        ByteBuf messages = Unpooled.buffer();
+        for (int i = 0; i < 2; i++) {
+            messages.writeShort(RESPONSE.length);
+            messages.writeBytes(RESPONSE);
+        }
+
+        // Split the messages in the middle of the first one.
+        assertFalse(channel.writeInbound(messages.readRetainedSlice(RESPONSE.length / 2)));
+        assertNull(channel.readInbound());
+        assertTrue(channel.writeInbound(messages));
+
+        for (int i = 0; i < 2; i++) {
+            DnsResponse response = channel.readInbound();
+            assertEquals(1, response.id());
+            assertEquals(DnsResponseCode.NOERROR, response.code());
+            assertEquals(1, response.count(DnsSection.QUESTION));
+            assertEquals(1, response.count(DnsSection.ANSWER));
+            DnsRawRecord record = response.recordAt(DnsSection.ANSWER);
+            assertEquals(DnsRecordType.A, record.type());
+            assertEquals(Unpooled.wrappedBuffer(new byte[] { -64, 0, 43, 10 }), record.content());
+            response.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    private static DatagramDnsQuery newQuery(InetSocketAddress recipient) {
+        DatagramDnsQuery query = new DatagramDnsQuery(null, recipient, 1);
+        query.setRecursionDesired(true);
+        query.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("www.example.com.", DnsRecordType.A));
+        return query;
+    }
+}
@@ -64,7 +64,9 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  *   <li>{@link #headerSensitivityDetector(SensitivityDetector)}</li>
  *   <li>{@link #encoderEnforceMaxConcurrentStreams(boolean)}</li>
  *   <li>{@link #encoderIgnoreMaxHeaderListSize(boolean)}</li>
+ *   <li>{@link #encoderCoalesceFrames(boolean)}</li>
  *   <li>{@link #initialHuffmanDecodeCapacity(int)}</li>
+ *   <li>{@link #flowControlWindowAutoTuning(int)}</li>
  * </ul>
  *
  * <h3>Exposing necessary methods in a subclass</h3>
@@ -105,7 +107,9 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
     private SensitivityDetector headerSensitivityDetector;
     private Boolean encoderEnforceMaxConcurrentStreams;
     private Boolean encoderIgnoreMaxHeaderListSize;
+    private boolean encoderCoalesceFrames;
     private int initialHuffmanDecodeCapacity = DEFAULT_INITIAL_HUFFMAN_DECODE_CAPACITY;
+    private int maxAutoTunedWindowSize;
 
     /**
      * Sets the {@link Http2Settings} to use for the initial connection settings exchange.
@@ -353,6 +357,26 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         return self();
     }
 
+    /**
+     * Returns if the frames written between two flushes should be coalesced into a single buffer.
+     */
+    protected boolean encoderCoalesceFrames() {
+        return encoderCoalesceFrames;
+    }
+
+    /**
+     * Sets if the frames written between two flushes should be coalesced into a single buffer. Frame headers, control
+     * frames and small payloads are then copied into one shared pooled buffer and larger payloads are appended as
+     * slices, which reduces the number of outbound buffer entries and {@code iovec}s per flush.
+     * @param coalesceFrames {@code true} to coalesce the frames.
+     * @return this.
+     */
+    protected B encoderCoalesceFrames(boolean coalesceFrames) {
+        enforceNonCodecConstraints("encoderCoalesceFrames");
+        this.encoderCoalesceFrames = coalesceFrames;
+        return self();
+    }
+
     /**
      * Sets the initial size of an intermediate buffer used during HPACK huffman decoding.
      * @param initialHuffmanDecodeCapacity initial size of an intermediate buffer used during HPACK huffman decoding.
@@ -364,6 +388,26 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         return self();
     }
 
+    /**
+     * Returns the upper bound of the automatically tuned flow control windows or {@code 0} if disabled.
+     */
+    protected int flowControlWindowAutoTuning() {
+        return maxAutoTunedWindowSize;
+    }
+
+    /**
+     * Enables the automatic tuning of the local connection and stream flow control windows based on the
+     * estimated bandwidth-delay product of the connection.
+     * See {@link DefaultHttp2LocalFlowController#windowAutoTuning(int)}.
+     * @param maxWindowSize the upper bound of the tuned windows, or {@code 0} to disable the tuning.
+     * @return this.
+     */
+    protected B flowControlWindowAutoTuning(int maxWindowSize) {
+        enforceNonCodecConstraints("flowControlWindowAutoTuning");
+        this.maxAutoTunedWindowSize = checkPositiveOrZero(maxWindowSize, "maxWindowSize");
+        return self();
+    }
+
     /**
      * Create a new {@link Http2ConnectionHandler}.
      */
@@ -386,16 +430,26 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         Http2FrameReader reader = new DefaultHttp2FrameReader(new DefaultHttp2HeadersDecoder(isValidateHeaders(),
                 maxHeaderListSize == null ? DEFAULT_HEADER_LIST_SIZE : maxHeaderListSize,
                 initialHuffmanDecodeCapacity));
-        Http2FrameWriter writer = encoderIgnoreMaxHeaderListSize == null ?
-                new DefaultHttp2FrameWriter(headerSensitivityDetector()) :
-                new DefaultHttp2FrameWriter(headerSensitivityDetector(), encoderIgnoreMaxHeaderListSize);
+        Http2FrameArena frameArena = null;
+        Http2FrameWriter writer;
+        if (encoderCoalesceFrames) {
+            frameArena = new Http2FrameArena();
+            writer = new DefaultHttp2FrameWriter(new DefaultHttp2HeadersEncoder(headerSensitivityDetector(),
+                    encoderIgnoreMaxHeaderListSize != null && encoderIgnoreMaxHeaderListSize), frameArena);
+        } else {
+            writer = encoderIgnoreMaxHeaderListSize == null ?
+                    new DefaultHttp2FrameWriter(headerSensitivityDetector()) :
+                    new DefaultHttp2FrameWriter(headerSensitivityDetector(), encoderIgnoreMaxHeaderListSize);
+        }
 
         if (frameLogger != null) {
             reader = new Http2InboundFrameLogger(reader, frameLogger);
             writer = new Http2OutboundFrameLogger(writer, frameLogger);
         }
 
-        Http2ConnectionEncoder encoder = new DefaultHttp2ConnectionEncoder(connection, writer);
+        DefaultHttp2ConnectionEncoder defaultEncoder = new DefaultHttp2ConnectionEncoder(connection, writer);
+        defaultEncoder.frameArena(frameArena);
+        Http2ConnectionEncoder encoder = defaultEncoder;
         boolean encoderEnforceMaxConcurrentStreams = encoderEnforceMaxConcurrentStreams();
 
         if (encoderEnforceMaxConcurrentStreams) {
@@ -410,7 +464,15 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         }
 
         Http2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(connection, encoder, reader);
-        return buildFromCodec(decoder, encoder);
+        if (maxAutoTunedWindowSize > 0) {
+            Http2LocalFlowController flowController = decoder.flowController();
+            if (flowController instanceof DefaultHttp2LocalFlowController) {
+                ((DefaultHttp2LocalFlowController) flowController).windowAutoTuning(maxAutoTunedWindowSize);
+            }
+        }
+        T handler = buildFromCodec(decoder, encoder);
+        handler.frameArena(frameArena);
+        return handler;
     }
 
     private T buildFromCodec(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder) {
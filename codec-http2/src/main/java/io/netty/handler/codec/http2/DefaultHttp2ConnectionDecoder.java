@@ -434,6 +434,12 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
 
         @Override
         public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {
+            Http2LocalFlowController flowController = flowController();
+            if (flowController instanceof DefaultHttp2LocalFlowController &&
+                    ((DefaultHttp2LocalFlowController) flowController).onPingAckRead(data)) {
+                // The PING was sent by the flow controller to estimate the bandwidth-delay product.
+                return;
+            }
             listener.onPingAckRead(ctx, data);
         }
 
@@ -41,6 +41,7 @@ public class DefaultHttp2ConnectionEncoder implements Http2ConnectionEncoder {
     private final Http2FrameWriter frameWriter;
     private final Http2Connection connection;
     private Http2LifecycleManager lifecycleManager;
+    private Http2FrameArena frameArena;
     // We prefer ArrayDeque to LinkedList because later will produce more GC.
     // This initial capacity is plenty for SETTINGS traffic.
     private final ArrayDeque<Http2Settings> outstandingLocalSettingsQueue = new ArrayDeque<Http2Settings>(4);
@@ -58,6 +59,14 @@ public class DefaultHttp2ConnectionEncoder implements Http2ConnectionEncoder {
         this.lifecycleManager = checkNotNull(lifecycleManager, "lifecycleManager");
     }
 
+    /**
+     * Sets the {@link Http2FrameArena} used by the {@link Http2FrameWriter} of this encoder, so writes which bypass
+     * the {@link Http2FrameWriter} are kept in order with the coalesced frames.
+     */
+    void frameArena(Http2FrameArena frameArena) {
+        this.frameArena = frameArena;
+    }
+
     @Override
     public Http2FrameWriter frameWriter() {
         return frameWriter;
@@ -403,7 +412,13 @@ public class DefaultHttp2ConnectionEncoder implements Http2ConnectionEncoder {
                     // and it is not end of stream yet. Just complete their promises by getting the buffer corresponding
                     // to 0 bytes and writing it to the channel (to preserve notification order).
                     ChannelPromise writePromise = ctx.newPromise().addListener(this);
-                    ctx.write(queue.remove(0, writePromise), writePromise);
+                    ByteBuf empty = queue.remove(0, writePromise);
+                    if (frameArena != null) {
+                        // 必须排在已合并的帧之后，否则 promise 会先于前面的帧完成。
+                        frameArena.write(ctx, empty, writePromise);
+                    } else {
+                        ctx.write(empty, writePromise);
+                    }
                     return;
                 }
 
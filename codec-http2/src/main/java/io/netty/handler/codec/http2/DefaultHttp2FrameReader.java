@@ -16,6 +16,7 @@ package io.netty.handler.codec.http2;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http2.Http2FrameReader.Configuration;
 import io.netty.util.internal.PlatformDependent;
@@ -47,6 +48,7 @@ import static io.netty.handler.codec.http2.Http2FrameTypes.PUSH_PROMISE;
 import static io.netty.handler.codec.http2.Http2FrameTypes.RST_STREAM;
 import static io.netty.handler.codec.http2.Http2FrameTypes.SETTINGS;
 import static io.netty.handler.codec.http2.Http2FrameTypes.WINDOW_UPDATE;
+import static java.lang.Math.min;
 
 /**
  * A {@link Http2FrameReader} that supports all frame types defined by the HTTP/2 specification.
@@ -54,6 +56,7 @@ import static io.netty.handler.codec.http2.Http2FrameTypes.WINDOW_UPDATE;
 @UnstableApi
 public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSizePolicy, Configuration {
     private final Http2HeadersDecoder headersDecoder;
+    private final boolean composeDataPayload;
 
     /**
      * {@code true} = reading headers, {@code false} = reading payload.
@@ -70,6 +73,11 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
     private int payloadLength;
     private HeadersContinuation headersContinuation;
     private int maxFrameSize;
+    /**
+     * The partially received payload of a {@code DATA} frame which spans multiple reads, only used if
+     * {@link #composeDataPayload} is {@code true}.
+     */
+    private CompositeByteBuf dataPayload;
 
     /**
      * Create a new instance.
@@ -90,7 +98,20 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
     }
 
     public DefaultHttp2FrameReader(Http2HeadersDecoder headersDecoder) {
+        this(headersDecoder, false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param headersDecoder the {@link Http2HeadersDecoder} to use.
+     * @param composeDataPayload {@code true} to assemble the payload of {@code DATA} frames which span multiple reads
+     * from retained slices of the input buffers in a {@link CompositeByteBuf}. This avoids that the partial frame is
+     * cumulated (and so copied) by the caller, which is beneficial for large frames. {@code false} to wait until the
+     * caller provides the whole payload in one buffer.
+     */
+    public DefaultHttp2FrameReader(Http2HeadersDecoder headersDecoder, boolean composeDataPayload) {
         this.headersDecoder = headersDecoder;
+        this.composeDataPayload = composeDataPayload;
         maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
     }
 
@@ -126,6 +147,14 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
     @Override
     public void close() {
         closeHeadersContinuation();
+        releaseDataPayload();
+    }
+
+    private void releaseDataPayload() {
+        if (dataPayload != null) {
+            dataPayload.release();
+            dataPayload = null;
+        }
     }
 
     private void closeHeadersContinuation() {
@@ -165,12 +194,15 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
             } while (input.isReadable());
         } catch (Http2Exception e) {
             readError = !Http2Exception.isStreamError(e);
+            releaseDataPayload();
             throw e;
         } catch (RuntimeException e) {
             readError = true;
+            releaseDataPayload();
             throw e;
         } catch (Throwable cause) {
             readError = true;
+            releaseDataPayload();
             PlatformDependent.throwException(cause);
         }
     }
@@ -234,6 +266,10 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
 
     private void processPayloadState(ChannelHandlerContext ctx, ByteBuf in, Http2FrameListener listener)
                     throws Http2Exception {
+        if (dataPayload != null || composeDataPayload && frameType == DATA && in.readableBytes() < payloadLength) {
+            processComposedDataPayloadState(ctx, in, listener);
+            return;
+        }
         if (in.readableBytes() < payloadLength) {
             // Wait until the entire payload has been read.
             return;
@@ -283,6 +319,34 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
         }
     }
 
+    private void processComposedDataPayloadState(ChannelHandlerContext ctx, ByteBuf in, Http2FrameListener listener)
+            throws Http2Exception {
+        if (dataPayload == null) {
+            dataPayload = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        }
+        int length = min(in.readableBytes(), payloadLength - dataPayload.readableBytes());
+        if (length > 0) {
+            // Retain the slice so the caller is free to release the input once it was fully read.
+            dataPayload.addComponent(true, in.readRetainedSlice(length));
+        }
+        if (dataPayload.readableBytes() < payloadLength) {
+            // Wait until the entire payload has been read.
+            return;
+        }
+
+        ByteBuf payload = dataPayload;
+        dataPayload = null;
+
+        // We have consumed the data, next time we read we will be expecting to read a frame header.
+        readingHeaders = true;
+        try {
+            readDataFrame(ctx, payload, listener);
+        } finally {
+            // The listener must retain the data if it needs it beyond the callback.
+            payload.release();
+        }
+    }
+
     private void verifyDataFrame() throws Http2Exception {
         verifyAssociatedWithAStream();
         verifyNotProcessingHeaders();
@@ -25,6 +25,8 @@ import io.netty.handler.codec.http2.Http2HeadersEncoder.SensitivityDetector;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.UnstableApi;
 
+import java.nio.channels.ClosedChannelException;
+
 import static io.netty.buffer.Unpooled.directBuffer;
 import static io.netty.buffer.Unpooled.unreleasableBuffer;
 import static io.netty.handler.codec.http2.Http2CodecUtil.CONTINUATION_FRAME_HEADER_LENGTH;
@@ -80,6 +82,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             unreleasableBuffer(directBuffer(MAX_UNSIGNED_BYTE).writeZero(MAX_UNSIGNED_BYTE)).asReadOnly();
 
     private final Http2HeadersEncoder headersEncoder;
+    private final Http2FrameArena frameArena;
     private int maxFrameSize;
 
     public DefaultHttp2FrameWriter() {
@@ -95,7 +98,16 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
     }
 
     public DefaultHttp2FrameWriter(Http2HeadersEncoder headersEncoder) {
+        this(headersEncoder, null);
+    }
+
+    /**
+     * Create a new instance which coalesces the written frames in {@code frameArena} if not {@code null}. The owner
+     * of the {@link Http2FrameArena} is responsible to write the pending frames before the channel is flushed.
+     */
+    DefaultHttp2FrameWriter(Http2HeadersEncoder headersEncoder, Http2FrameArena frameArena) {
         this.headersEncoder = headersEncoder;
+        this.frameArena = frameArena;
         maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
     }
 
@@ -128,7 +140,11 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
     }
 
     @Override
-    public void close() { }
+    public void close() {
+        if (frameArena != null) {
+            frameArena.close(new ClosedChannelException());
+        }
+    }
 
     @Override
     public ChannelFuture writeData(ChannelHandlerContext ctx, int streamId, ByteBuf data,
@@ -146,14 +162,14 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             flags.paddingPresent(false);
             // Fast path to write frames of payload size maxFrameSize first.
             if (remainingData > maxFrameSize) {
-                frameHeader = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
+                frameHeader = frameBuffer(ctx, FRAME_HEADER_LENGTH);
                 writeFrameHeaderInternal(frameHeader, maxFrameSize, DATA, flags, streamId);
                 do {
                     // Write the header.
-                    ctx.write(frameHeader.retainedSlice(), promiseAggregator.newPromise());
+                    write(ctx, frameHeader.retainedSlice(), promiseAggregator.newPromise());
 
                     // Write the payload.
-                    ctx.write(data.readRetainedSlice(maxFrameSize), promiseAggregator.newPromise());
+                    write(ctx, data.readRetainedSlice(maxFrameSize), promiseAggregator.newPromise());
 
                     remainingData -= maxFrameSize;
                     // Stop iterating if remainingData == maxFrameSize so we can take care of reference counts below.
@@ -166,15 +182,15 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                     frameHeader.release();
                     frameHeader = null;
                 }
-                ByteBuf frameHeader2 = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
+                ByteBuf frameHeader2 = frameBuffer(ctx, FRAME_HEADER_LENGTH);
                 flags.endOfStream(endStream);
                 writeFrameHeaderInternal(frameHeader2, remainingData, DATA, flags, streamId);
-                ctx.write(frameHeader2, promiseAggregator.newPromise());
+                write(ctx, frameHeader2, promiseAggregator.newPromise());
 
                 // Write the payload.
                 ByteBuf lastFrame = data.readSlice(remainingData);
                 data = null;
-                ctx.write(lastFrame, promiseAggregator.newPromise());
+                write(ctx, lastFrame, promiseAggregator.newPromise());
             } else {
                 if (remainingData != maxFrameSize) {
                     if (frameHeader != null) {
@@ -186,18 +202,18 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                     // Write the header.
                     ByteBuf lastFrame;
                     if (frameHeader == null) {
-                        lastFrame = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
+                        lastFrame = frameBuffer(ctx, FRAME_HEADER_LENGTH);
                         writeFrameHeaderInternal(lastFrame, maxFrameSize, DATA, flags, streamId);
                     } else {
                         lastFrame = frameHeader.slice();
                         frameHeader = null;
                     }
-                    ctx.write(lastFrame, promiseAggregator.newPromise());
+                    write(ctx, lastFrame, promiseAggregator.newPromise());
 
                     // Write the payload.
                     lastFrame = data.readSlice(maxFrameSize);
                     data = null;
-                    ctx.write(lastFrame, promiseAggregator.newPromise());
+                    write(ctx, lastFrame, promiseAggregator.newPromise());
                 }
 
                 do {
@@ -209,26 +225,26 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                     remainingData -= frameDataBytes;
 
                     // Write the header.
-                    ByteBuf frameHeader2 = ctx.alloc().buffer(DATA_FRAME_HEADER_LENGTH);
+                    ByteBuf frameHeader2 = frameBuffer(ctx, DATA_FRAME_HEADER_LENGTH);
                     flags.endOfStream(endStream && remainingData == 0 && padding == 0);
                     flags.paddingPresent(framePaddingBytes > 0);
                     writeFrameHeaderInternal(frameHeader2, framePaddingBytes + frameDataBytes, DATA, flags, streamId);
                     writePaddingLength(frameHeader2, framePaddingBytes);
-                    ctx.write(frameHeader2, promiseAggregator.newPromise());
+                    write(ctx, frameHeader2, promiseAggregator.newPromise());
 
                     // Write the payload.
                     if (frameDataBytes != 0) {
                         if (remainingData == 0) {
                             ByteBuf lastFrame = data.readSlice(frameDataBytes);
                             data = null;
-                            ctx.write(lastFrame, promiseAggregator.newPromise());
+                            write(ctx, lastFrame, promiseAggregator.newPromise());
                         } else {
-                            ctx.write(data.readRetainedSlice(frameDataBytes), promiseAggregator.newPromise());
+                            write(ctx, data.readRetainedSlice(frameDataBytes), promiseAggregator.newPromise());
                         }
                     }
                     // Write the frame padding.
                     if (paddingBytes(framePaddingBytes) > 0) {
-                        ctx.write(ZERO_BUFFER.slice(0, paddingBytes(framePaddingBytes)),
+                        write(ctx, ZERO_BUFFER.slice(0, paddingBytes(framePaddingBytes)),
                                   promiseAggregator.newPromise());
                     }
                 } while (remainingData != 0 || padding != 0);
@@ -275,12 +291,12 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             verifyStreamId(streamDependency, STREAM_DEPENDENCY);
             verifyWeight(weight);
 
-            ByteBuf buf = ctx.alloc().buffer(PRIORITY_FRAME_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, PRIORITY_FRAME_LENGTH);
             writeFrameHeaderInternal(buf, PRIORITY_ENTRY_LENGTH, PRIORITY, new Http2Flags(), streamId);
             buf.writeInt(exclusive ? (int) (0x80000000L | streamDependency) : streamDependency);
             // Adjust the weight so that it fits into a single byte on the wire.
             buf.writeByte(weight - 1);
-            return ctx.write(buf, promise);
+            return write(ctx, buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
         }
@@ -293,10 +309,10 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             verifyStreamId(streamId, STREAM_ID);
             verifyErrorCode(errorCode);
 
-            ByteBuf buf = ctx.alloc().buffer(RST_STREAM_FRAME_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, RST_STREAM_FRAME_LENGTH);
             writeFrameHeaderInternal(buf, INT_FIELD_LENGTH, RST_STREAM, new Http2Flags(), streamId);
             buf.writeInt((int) errorCode);
-            return ctx.write(buf, promise);
+            return write(ctx, buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
         }
@@ -308,13 +324,13 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         try {
             checkNotNull(settings, "settings");
             int payloadLength = SETTING_ENTRY_LENGTH * settings.size();
-            ByteBuf buf = ctx.alloc().buffer(FRAME_HEADER_LENGTH + settings.size() * SETTING_ENTRY_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, FRAME_HEADER_LENGTH + settings.size() * SETTING_ENTRY_LENGTH);
             writeFrameHeaderInternal(buf, payloadLength, SETTINGS, new Http2Flags(), 0);
             for (Http2Settings.PrimitiveEntry<Long> entry : settings.entries()) {
                 buf.writeChar(entry.key());
                 buf.writeInt(entry.value().intValue());
             }
-            return ctx.write(buf, promise);
+            return write(ctx, buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
         }
@@ -323,9 +339,9 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
     @Override
     public ChannelFuture writeSettingsAck(ChannelHandlerContext ctx, ChannelPromise promise) {
         try {
-            ByteBuf buf = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, FRAME_HEADER_LENGTH);
             writeFrameHeaderInternal(buf, 0, SETTINGS, new Http2Flags().ack(true), 0);
-            return ctx.write(buf, promise);
+            return write(ctx, buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
         }
@@ -334,12 +350,12 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
     @Override
     public ChannelFuture writePing(ChannelHandlerContext ctx, boolean ack, long data, ChannelPromise promise) {
         Http2Flags flags = ack ? new Http2Flags().ack(true) : new Http2Flags();
-        ByteBuf buf = ctx.alloc().buffer(FRAME_HEADER_LENGTH + PING_FRAME_PAYLOAD_LENGTH);
+        ByteBuf buf = frameBuffer(ctx, FRAME_HEADER_LENGTH + PING_FRAME_PAYLOAD_LENGTH);
         // Assume nothing below will throw until buf is written. That way we don't have to take care of ownership
         // in the catch block.
         writeFrameHeaderInternal(buf, PING_FRAME_PAYLOAD_LENGTH, PING, flags, 0);
         buf.writeLong(data);
-        return ctx.write(buf, promise);
+        return write(ctx, buf, promise);
     }
 
     @Override
@@ -367,20 +383,20 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             flags.endOfHeaders(!headerBlock.isReadable());
 
             int payloadLength = fragment.readableBytes() + nonFragmentLength;
-            ByteBuf buf = ctx.alloc().buffer(PUSH_PROMISE_FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, PUSH_PROMISE_FRAME_HEADER_LENGTH);
             writeFrameHeaderInternal(buf, payloadLength, PUSH_PROMISE, flags, streamId);
             writePaddingLength(buf, padding);
 
             // Write out the promised stream ID.
             buf.writeInt(promisedStreamId);
-            ctx.write(buf, promiseAggregator.newPromise());
+            write(ctx, buf, promiseAggregator.newPromise());
 
             // Write the first fragment.
-            ctx.write(fragment, promiseAggregator.newPromise());
+            write(ctx, fragment, promiseAggregator.newPromise());
 
             // Write out the padding, if any.
             if (paddingBytes(padding) > 0) {
-                ctx.write(ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
+                write(ctx, ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
             }
 
             if (!flags.endOfHeaders()) {
@@ -410,13 +426,13 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             verifyErrorCode(errorCode);
 
             int payloadLength = 8 + debugData.readableBytes();
-            ByteBuf buf = ctx.alloc().buffer(GO_AWAY_FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, GO_AWAY_FRAME_HEADER_LENGTH);
             // Assume nothing below will throw until buf is written. That way we don't have to take care of ownership
             // in the catch block.
             writeFrameHeaderInternal(buf, payloadLength, GO_AWAY, new Http2Flags(), 0);
             buf.writeInt(lastStreamId);
             buf.writeInt((int) errorCode);
-            ctx.write(buf, promiseAggregator.newPromise());
+            write(ctx, buf, promiseAggregator.newPromise());
         } catch (Throwable t) {
             try {
                 debugData.release();
@@ -428,7 +444,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         }
 
         try {
-            ctx.write(debugData, promiseAggregator.newPromise());
+            write(ctx, debugData, promiseAggregator.newPromise());
         } catch (Throwable t) {
             promiseAggregator.setFailure(t);
         }
@@ -442,10 +458,10 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             verifyStreamOrConnectionId(streamId, STREAM_ID);
             verifyWindowSizeIncrement(windowSizeIncrement);
 
-            ByteBuf buf = ctx.alloc().buffer(WINDOW_UPDATE_FRAME_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, WINDOW_UPDATE_FRAME_LENGTH);
             writeFrameHeaderInternal(buf, INT_FIELD_LENGTH, WINDOW_UPDATE, new Http2Flags(), streamId);
             buf.writeInt(windowSizeIncrement);
-            return ctx.write(buf, promise);
+            return write(ctx, buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
         }
@@ -458,11 +474,11 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 new SimpleChannelPromiseAggregator(promise, ctx.channel(), ctx.executor());
         try {
             verifyStreamOrConnectionId(streamId, STREAM_ID);
-            ByteBuf buf = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, FRAME_HEADER_LENGTH);
             // Assume nothing below will throw until buf is written. That way we don't have to take care of ownership
             // in the catch block.
             writeFrameHeaderInternal(buf, payload.readableBytes(), frameType, flags, streamId);
-            ctx.write(buf, promiseAggregator.newPromise());
+            write(ctx, buf, promiseAggregator.newPromise());
         } catch (Throwable t) {
             try {
                 payload.release();
@@ -473,7 +489,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             return promiseAggregator;
         }
         try {
-            ctx.write(payload, promiseAggregator.newPromise());
+            write(ctx, payload, promiseAggregator.newPromise());
         } catch (Throwable t) {
             promiseAggregator.setFailure(t);
         }
@@ -510,7 +526,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             flags.endOfHeaders(!headerBlock.isReadable());
 
             int payloadLength = fragment.readableBytes() + nonFragmentBytes;
-            ByteBuf buf = ctx.alloc().buffer(HEADERS_FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, HEADERS_FRAME_HEADER_LENGTH);
             writeFrameHeaderInternal(buf, payloadLength, HEADERS, flags, streamId);
             writePaddingLength(buf, padding);
 
@@ -520,14 +536,14 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 // Adjust the weight so that it fits into a single byte on the wire.
                 buf.writeByte(weight - 1);
             }
-            ctx.write(buf, promiseAggregator.newPromise());
+            write(ctx, buf, promiseAggregator.newPromise());
 
             // Write the first fragment.
-            ctx.write(fragment, promiseAggregator.newPromise());
+            write(ctx, fragment, promiseAggregator.newPromise());
 
             // Write out the padding, if any.
             if (paddingBytes(padding) > 0) {
-                ctx.write(ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
+                write(ctx, ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
             }
 
             if (!flags.endOfHeaders()) {
@@ -564,7 +580,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             // The frame header (and padding) only changes on the last frame, so allocate it once and re-use
             int fragmentReadableBytes = min(headerBlock.readableBytes(), maxFragmentLength);
             int payloadLength = fragmentReadableBytes + padding;
-            ByteBuf buf = ctx.alloc().buffer(CONTINUATION_FRAME_HEADER_LENGTH);
+            ByteBuf buf = frameBuffer(ctx, CONTINUATION_FRAME_HEADER_LENGTH);
             writeFrameHeaderInternal(buf, payloadLength, CONTINUATION, flags, streamId);
             writePaddingLength(buf, padding);
 
@@ -574,28 +590,39 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
 
                 payloadLength = fragmentReadableBytes + padding;
                 if (headerBlock.isReadable()) {
-                    ctx.write(buf.retain(), promiseAggregator.newPromise());
+                    write(ctx, buf.retain(), promiseAggregator.newPromise());
                 } else {
                     // The frame header is different for the last frame, so re-allocate and release the old buffer
                     flags = flags.endOfHeaders(true);
                     buf.release();
-                    buf = ctx.alloc().buffer(CONTINUATION_FRAME_HEADER_LENGTH);
+                    buf = frameBuffer(ctx, CONTINUATION_FRAME_HEADER_LENGTH);
                     writeFrameHeaderInternal(buf, payloadLength, CONTINUATION, flags, streamId);
                     writePaddingLength(buf, padding);
-                    ctx.write(buf, promiseAggregator.newPromise());
+                    write(ctx, buf, promiseAggregator.newPromise());
                 }
 
-                ctx.write(fragment, promiseAggregator.newPromise());
+                write(ctx, fragment, promiseAggregator.newPromise());
 
                 // Write out the padding, if any.
                 if (paddingBytes(padding) > 0) {
-                    ctx.write(ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
+                    write(ctx, ZERO_BUFFER.slice(0, paddingBytes(padding)), promiseAggregator.newPromise());
                 }
             } while(headerBlock.isReadable());
         }
         return promiseAggregator;
     }
 
+    /**
+     * Allocates the buffer for a frame header or small control frame of at most {@code capacity} bytes.
+     */
+    private ByteBuf frameBuffer(ChannelHandlerContext ctx, int capacity) {
+        return frameArena == null ? ctx.alloc().buffer(capacity) : frameArena.frameBuffer(ctx, capacity);
+    }
+
+    private ChannelFuture write(ChannelHandlerContext ctx, ByteBuf buf, ChannelPromise promise) {
+        return frameArena == null ? ctx.write(buf, promise) : frameArena.write(ctx, buf, promise);
+    }
+
     /**
      * Returns the number of padding bytes that should be appended to the end of a frame.
      */
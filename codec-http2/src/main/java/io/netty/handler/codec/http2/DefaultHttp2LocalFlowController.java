@@ -27,7 +27,10 @@ import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http2.Http2Exception.CompositeStreamException;
 import io.netty.handler.codec.http2.Http2Exception.StreamException;
 import io.netty.util.internal.PlatformDependent;
@@ -47,12 +50,19 @@ public class DefaultHttp2LocalFlowController implements Http2LocalFlowController
      */
     public static final float DEFAULT_WINDOW_UPDATE_RATIO = 0.5f;
 
+    /**
+     * The opaque data carried by the {@code PING} frames used to estimate the bandwidth-delay product when
+     * {@link #windowAutoTuning(int)} is enabled.
+     */
+    static final long BDP_PING_DATA = 0x4E45545459424450L;
+
     private final Http2Connection connection;
     private final Http2Connection.PropertyKey stateKey;
     private Http2FrameWriter frameWriter;
     private ChannelHandlerContext ctx;
     private float windowUpdateRatio;
     private int initialWindowSize = DEFAULT_WINDOW_SIZE;
+    private BdpEstimator bdpEstimator;
 
     public DefaultHttp2LocalFlowController(Http2Connection connection) {
         this(connection, DEFAULT_WINDOW_UPDATE_RATIO, false);
@@ -97,7 +107,13 @@ public class DefaultHttp2LocalFlowController implements Http2LocalFlowController
             public void onStreamActive(Http2Stream stream) {
                 // Need to be sure the stream's initial window is adjusted for SETTINGS
                 // frames which may have been exchanged while it was in IDLE
-                stream.setProperty(stateKey, new DefaultState(stream, initialWindowSize));
+                DefaultState state = new DefaultState(stream, initialWindowSize);
+                if (bdpEstimator != null && bdpEstimator.windowSize > initialWindowSize) {
+                    // The window will be expanded with the next WINDOW_UPDATE, the peer only knows about the
+                    // SETTINGS_INITIAL_WINDOW_SIZE until then.
+                    state.incrementInitialStreamWindow(bdpEstimator.windowSize - initialWindowSize);
+                }
+                stream.setProperty(stateKey, state);
             }
 
             @Override
@@ -258,6 +274,45 @@ public class DefaultHttp2LocalFlowController implements Http2LocalFlowController
         return state(stream).windowUpdateRatio();
     }
 
+    /**
+     * Enables the automatic tuning of the connection and stream flow control windows. The bandwidth-delay product
+     * of the connection is estimated by sending a {@code PING} when {@code DATA} arrives and counting the bytes
+     * received until it is acknowledged. If the sample is close to the current window, and the bandwidth did not
+     * decrease, the windows are expanded to twice the sample (at most {@code maxWindowSize}) via
+     * {@code WINDOW_UPDATE} frames. The windows are never shrunk.
+     * <p>
+     * The acknowledgement of the {@code PING} must be passed to {@link #onPingAckRead(long)}, which
+     * {@link DefaultHttp2ConnectionDecoder} does automatically.
+     * @param maxWindowSize the upper bound of the tuned windows, or {@code 0} to disable the tuning.
+     * @return this.
+     */
+    public DefaultHttp2LocalFlowController windowAutoTuning(int maxWindowSize) {
+        assert ctx == null || ctx.executor().inEventLoop();
+        if (maxWindowSize < 0 || maxWindowSize > MAX_INITIAL_WINDOW_SIZE) {
+            throw new IllegalArgumentException("maxWindowSize: " + maxWindowSize +
+                    " (expected: 0-" + MAX_INITIAL_WINDOW_SIZE + ')');
+        }
+        bdpEstimator = maxWindowSize == 0 ? null : new BdpEstimator(maxWindowSize);
+        return this;
+    }
+
+    /**
+     * Returns the upper bound of the automatically tuned windows or {@code 0} if the tuning is disabled.
+     */
+    public int windowAutoTuning() {
+        return bdpEstimator == null ? 0 : bdpEstimator.maxWindowSize;
+    }
+
+    /**
+     * Must be called when a {@code PING} acknowledgement was received.
+     * @param data the opaque data of the {@code PING} frame.
+     * @return {@code true} if the {@code PING} was sent by this controller and so must not be propagated.
+     * @throws Http2Exception If a protocol-error occurs while generating {@code WINDOW_UPDATE} frames
+     */
+    public boolean onPingAckRead(long data) throws Http2Exception {
+        return bdpEstimator != null && bdpEstimator.onPingAckRead(data);
+    }
+
     @Override
     public void receiveFlowControlledFrame(Http2Stream stream, ByteBuf data, int padding,
             boolean endOfStream) throws Http2Exception {
@@ -267,6 +322,9 @@ public class DefaultHttp2LocalFlowController implements Http2LocalFlowController
         // Apply the connection-level flow control
         FlowState connectionState = connectionState();
         connectionState.receiveFlowControlledFrame(dataLength);
+        if (bdpEstimator != null) {
+            bdpEstimator.onDataRead(dataLength);
+        }
 
         if (stream != null && !isClosed(stream)) {
             // Apply the stream-level flow control
@@ -291,6 +349,97 @@ public class DefaultHttp2LocalFlowController implements Http2LocalFlowController
         return stream.state() == Http2Stream.State.CLOSED;
     }
 
+    /**
+     * Estimates the bandwidth-delay product of the connection by measuring how many bytes are received during
+     * one round-trip of a {@code PING} frame.
+     */
+    private final class BdpEstimator implements ChannelFutureListener {
+        private static final double GROWTH_THRESHOLD = 2.0 / 3.0;
+
+        private final int maxWindowSize;
+        private int windowSize;
+        private boolean pingOutstanding;
+        private long pingSentNanos;
+        private int sample;
+        private double maxBandwidth;
+
+        BdpEstimator(int maxWindowSize) {
+            this.maxWindowSize = maxWindowSize;
+            windowSize = initialWindowSize;
+        }
+
+        void onDataRead(int dataLength) {
+            if (windowSize >= maxWindowSize) {
+                return;
+            }
+            if (!pingOutstanding) {
+                pingOutstanding = true;
+                sample = 0;
+                pingSentNanos = System.nanoTime();
+                ChannelPromise promise = ctx.newPromise();
+                promise.addListener(this);
+                frameWriter.writePing(ctx, false, BDP_PING_DATA, promise);
+            }
+            sample = (int) min(Integer.MAX_VALUE, (long) sample + dataLength);
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (!future.isSuccess()) {
+                // 写失败的 PING 永远不会被 ACK，清掉标记以便下次读到数据时重新采样。
+                pingOutstanding = false;
+            }
+        }
+
+        boolean onPingAckRead(long data) throws Http2Exception {
+            if (data != BDP_PING_DATA || !pingOutstanding) {
+                return false;
+            }
+            pingOutstanding = false;
+
+            long rttNanos = max(1, System.nanoTime() - pingSentNanos);
+            double bandwidth = (double) sample / rttNanos;
+            if (bandwidth < maxBandwidth) {
+                // The link got slower, the sample does not tell anything about the capacity.
+                return true;
+            }
+            maxBandwidth = bandwidth;
+
+            int currentWindowSize = max(windowSize, initialWindowSize);
+            if (sample >= currentWindowSize * GROWTH_THRESHOLD) {
+                int newWindowSize = (int) min(maxWindowSize, 2L * sample);
+                if (newWindowSize > currentWindowSize) {
+                    windowSize = newWindowSize;
+                    expandWindows(newWindowSize);
+                }
+            }
+            return true;
+        }
+
+        private void expandWindows(int newWindowSize) throws Http2Exception {
+            FlowState connectionState = connectionState();
+            int connectionDelta = newWindowSize - connectionState.initialWindowSize();
+            if (connectionDelta > 0) {
+                connectionState.incrementInitialStreamWindow(connectionDelta);
+                connectionState.writeWindowUpdateIfNeeded();
+            }
+
+            final int streamWindowSize = newWindowSize;
+            connection.forEachActiveStream(new Http2StreamVisitor() {
+                @Override
+                public boolean visit(Http2Stream stream) throws Http2Exception {
+                    FlowState state = state(stream);
+                    int delta = streamWindowSize - state.initialWindowSize();
+                    if (delta > 0) {
+                        state.incrementInitialStreamWindow(delta);
+                        state.writeWindowUpdateIfNeeded();
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
     /**
      * Flow control state that does autorefill of the flow control window when the data is
      * received.
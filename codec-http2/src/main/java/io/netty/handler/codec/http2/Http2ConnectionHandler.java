@@ -79,6 +79,7 @@ public class Http2ConnectionHandler extends ByteToMessageDecoder implements Http
     private ChannelFutureListener closeListener;
     private BaseDecoder byteDecoder;
     private long gracefulShutdownTimeoutMillis;
+    private Http2FrameArena frameArena;
 
     protected Http2ConnectionHandler(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
                                      Http2Settings initialSettings) {
@@ -193,11 +194,29 @@ public class Http2ConnectionHandler extends ByteToMessageDecoder implements Http
         connection().remote().createStream(HTTP_UPGRADE_STREAM_ID, true);
     }
 
+    /**
+     * Sets the {@link Http2FrameArena} used by the {@link Http2FrameWriter} of this handler. Its pending frames will be
+     * written before the channel is flushed or other messages are written.
+     */
+    void frameArena(Http2FrameArena frameArena) {
+        this.frameArena = frameArena;
+    }
+
+    /**
+     * Writes the frames which were coalesced by the {@link Http2FrameWriter}, if any.
+     */
+    final void writePendingFrames(ChannelHandlerContext ctx) {
+        if (frameArena != null) {
+            frameArena.writePendingFrames(ctx);
+        }
+    }
+
     @Override
     public void flush(ChannelHandlerContext ctx) {
         try {
             // Trigger pending writes in the remote flow controller.
             encoder.flowController().writePendingBytes();
+            writePendingFrames(ctx);
             ctx.flush();
         } catch (Http2Exception e) {
             onError(ctx, true, e);
@@ -480,7 +499,14 @@ public class Http2ConnectionHandler extends ByteToMessageDecoder implements Http
         // a GO_AWAY has been sent we send a empty buffer just so we can wait to close until all other data has been
         // flushed to the OS.
         // https://github.com/netty/netty/issues/5307
-        final ChannelFuture future = connection().goAwaySent() ? ctx.write(EMPTY_BUFFER) : goAway(ctx, null);
+        final ChannelFuture future;
+        if (connection().goAwaySent()) {
+            writePendingFrames(ctx);
+            future = ctx.write(EMPTY_BUFFER);
+        } else {
+            future = goAway(ctx, null);
+            writePendingFrames(ctx);
+        }
         ctx.flush();
         doGracefulShutdown(ctx, future, promise);
     }
@@ -512,6 +538,7 @@ public class Http2ConnectionHandler extends ByteToMessageDecoder implements Http
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        writePendingFrames(ctx);
         ctx.write(msg, promise);
     }
 
@@ -616,6 +643,7 @@ public class Http2ConnectionHandler extends ByteToMessageDecoder implements Http
         } else {
             onConnectionError(ctx, outbound, cause, embedded);
         }
+        writePendingFrames(ctx);
         ctx.flush();
     }
 
@@ -87,11 +87,21 @@ public final class Http2ConnectionHandlerBuilder
         return super.headerSensitivityDetector(headerSensitivityDetector);
     }
 
+    @Override
+    public Http2ConnectionHandlerBuilder encoderCoalesceFrames(boolean coalesceFrames) {
+        return super.encoderCoalesceFrames(coalesceFrames);
+    }
+
     @Override
     public Http2ConnectionHandlerBuilder initialHuffmanDecodeCapacity(int initialHuffmanDecodeCapacity) {
         return super.initialHuffmanDecodeCapacity(initialHuffmanDecodeCapacity);
     }
 
+    @Override
+    public Http2ConnectionHandlerBuilder flowControlWindowAutoTuning(int maxWindowSize) {
+        return super.flowControlWindowAutoTuning(maxWindowSize);
+    }
+
     @Override
     public Http2ConnectionHandler build() {
         return super.build();
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces the frames written by a {@link DefaultHttp2FrameWriter} into a single {@link ByteBuf} which is written
+ * to the channel by {@link #writePendingFrames(ChannelHandlerContext)}, typically once per flush.
+ * <p>
+ * Small buffers (frame headers, control frames, padding and small payloads) are copied into a pooled chunk which
+ * is shared by all frames of one flush, and larger payloads are appended as components. So the frames of one flush
+ * only occupy a single entry in the {@link io.netty.channel.ChannelOutboundBuffer} and consecutive small frames
+ * share one {@code iovec}.
+ * <p>
+ * This class is <strong>NOT</strong> thread safe and must only be used from the event loop of the channel.
+ */
+final class Http2FrameArena {
+    /**
+     * Buffers up to this size are copied into the chunk instead of being appended as a component.
+     */
+    private static final int MAX_COPY_BYTES = 1024;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int SCRATCH_SIZE = 64;
+
+    private final ByteBuf scratch = Unpooled.unreleasableBuffer(Unpooled.buffer(SCRATCH_SIZE, SCRATCH_SIZE));
+    private final List<ChannelPromise> promises = new ArrayList<ChannelPromise>(4);
+    private CompositeByteBuf pending;
+    private ByteBuf chunk;
+    private int segmentStart;
+
+    /**
+     * Returns a buffer to encode a small frame (or frame header) into, which must be passed to
+     * {@link #write(ChannelHandlerContext, ByteBuf, ChannelPromise)} before this method is called again. The returned
+     * buffer may be shared, so releasing it has no effect.
+     */
+    ByteBuf frameBuffer(ChannelHandlerContext ctx, int capacity) {
+        return capacity <= SCRATCH_SIZE ? scratch.clear() : ctx.alloc().buffer(capacity);
+    }
+
+    /**
+     * Adds {@code buf} to the pending frames, taking ownership of it. The {@code promise} is notified once the pending
+     * frames are written.
+     */
+    ChannelFuture write(ChannelHandlerContext ctx, ByteBuf buf, ChannelPromise promise) {
+        try {
+            if (pending == null) {
+                pending = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            }
+            int length = buf.readableBytes();
+            if (length == 0) {
+                // Nothing to copy, the promise is still notified in order with the other frames.
+                buf.release();
+            } else if (length <= MAX_COPY_BYTES) {
+                ensureChunkWritable(ctx, length);
+                chunk.writeBytes(buf, buf.readerIndex(), length);
+                buf.release();
+            } else {
+                sealSegment();
+                pending.addComponent(true, buf);
+            }
+        } catch (Throwable cause) {
+            ReferenceCountUtil.safeRelease(buf);
+            return promise.setFailure(cause);
+        }
+        promises.add(promise);
+        return promise;
+    }
+
+    /**
+     * Writes all pending frames as a single buffer to {@code ctx}. This does not flush the channel.
+     */
+    void writePendingFrames(ChannelHandlerContext ctx) {
+        if (pending == null) {
+            return;
+        }
+        sealSegment();
+        ByteBuf frames = pending;
+        pending = null;
+        releaseChunk();
+
+        if (promises.isEmpty()) {
+            frames.release();
+            return;
+        }
+        ChannelPromise promise;
+        if (promises.size() == 1) {
+            promise = promises.get(0);
+        } else {
+            ChannelPromise[] aggregated = new ChannelPromise[promises.size()];
+            for (int i = 0; i < aggregated.length; i++) {
+                aggregated[i] = promises.get(i).unvoid();
+            }
+            promise = ctx.newPromise();
+            promise.addListener(new PromiseNotifier<Void, ChannelFuture>(false, aggregated));
+        }
+        promises.clear();
+        ctx.write(frames, promise);
+    }
+
+    /**
+     * Releases all resources and fails the promises of the pending frames with {@code cause}.
+     */
+    void close(Throwable cause) {
+        if (pending != null) {
+            pending.release();
+            pending = null;
+        }
+        releaseChunk();
+        for (int i = 0; i < promises.size(); i++) {
+            promises.get(i).tryFailure(cause);
+        }
+        promises.clear();
+    }
+
+    private void ensureChunkWritable(ChannelHandlerContext ctx, int length) {
+        if (chunk != null && chunk.writableBytes() >= length) {
+            return;
+        }
+        sealSegment();
+        releaseChunk();
+        chunk = ctx.alloc().buffer(CHUNK_SIZE, CHUNK_SIZE);
+    }
+
+    private void releaseChunk() {
+        if (chunk != null) {
+            // The pending frames still hold a reference to the part of the chunk they use.
+            chunk.release();
+            chunk = null;
+            segmentStart = 0;
+        }
+    }
+
+    /**
+     * Appends the bytes copied into the chunk since the last call to the pending frames.
+     */
+    private void sealSegment() {
+        if (chunk != null && chunk.writerIndex() > segmentStart) {
+            pending.addComponent(true, chunk.retainedSlice(segmentStart, chunk.writerIndex() - segmentStart));
+            segmentStart = chunk.writerIndex();
+        }
+    }
+}
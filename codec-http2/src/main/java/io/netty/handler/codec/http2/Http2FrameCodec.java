@@ -301,6 +301,7 @@ public class Http2FrameCodec extends Http2ConnectionHandler {
             encoder().writeFrame(ctx, unknownFrame.frameType(), unknownFrame.stream().id(),
                     unknownFrame.flags(), unknownFrame.content(), promise);
         } else if (!(msg instanceof Http2Frame)) {
+            writePendingFrames(ctx);
             ctx.write(msg, promise);
         } else {
             ReferenceCountUtil.release(msg);
@@ -134,11 +134,21 @@ public class Http2FrameCodecBuilder extends
         return super.encoderIgnoreMaxHeaderListSize(ignoreMaxHeaderListSize);
     }
 
+    @Override
+    public Http2FrameCodecBuilder encoderCoalesceFrames(boolean coalesceFrames) {
+        return super.encoderCoalesceFrames(coalesceFrames);
+    }
+
     @Override
     public Http2FrameCodecBuilder initialHuffmanDecodeCapacity(int initialHuffmanDecodeCapacity) {
         return super.initialHuffmanDecodeCapacity(initialHuffmanDecodeCapacity);
     }
 
+    @Override
+    public Http2FrameCodecBuilder flowControlWindowAutoTuning(int maxWindowSize) {
+        return super.flowControlWindowAutoTuning(maxWindowSize);
+    }
+
     /**
      * Build a {@link Http2FrameCodec} object.
      */
@@ -153,11 +153,21 @@ public class Http2MultiplexCodecBuilder
         return super.encoderIgnoreMaxHeaderListSize(ignoreMaxHeaderListSize);
     }
 
+    @Override
+    public Http2MultiplexCodecBuilder encoderCoalesceFrames(boolean coalesceFrames) {
+        return super.encoderCoalesceFrames(coalesceFrames);
+    }
+
     @Override
     public Http2MultiplexCodecBuilder initialHuffmanDecodeCapacity(int initialHuffmanDecodeCapacity) {
         return super.initialHuffmanDecodeCapacity(initialHuffmanDecodeCapacity);
     }
 
+    @Override
+    public Http2MultiplexCodecBuilder flowControlWindowAutoTuning(int maxWindowSize) {
+        return super.flowControlWindowAutoTuning(maxWindowSize);
+    }
+
     @Override
     public Http2MultiplexCodec build() {
         return super.build();
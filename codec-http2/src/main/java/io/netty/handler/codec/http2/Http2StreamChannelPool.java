@@ -0,0 +1,559 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * {@link ChannelPool} which hands out {@link Http2StreamChannel}s that are multiplexed on shared HTTP/2 parent
+ * connections, instead of handing out a whole connection per acquire.
+ * <p>
+ * The handler of the given {@link Bootstrap} must add a client {@link Http2MultiplexCodec} to the pipeline of every
+ * parent connection. A parent connection is used once its peer sent the initial {@code SETTINGS} frame and as long
+ * as the number of streams acquired from it is below the {@code SETTINGS_MAX_CONCURRENT_STREAMS} of the peer. A new
+ * parent connection is only opened if all existing ones are at their stream limit and the maximum number of parent
+ * connections was not reached yet, otherwise the acquire waits until a stream is released. Parent connections which
+ * received a {@code GOAWAY} frame are not used for new streams anymore and are closed once all of their streams
+ * were released.
+ * <p>
+ * An acquire fails if it could not be served within the acquire timeout, and a parent connection is closed if its
+ * peer did not send the initial {@code SETTINGS} frame within it. An acquire also fails if a newly opened parent
+ * connection does not allow any concurrent streams, as opening further connections would not help.
+ * <p>
+ * As HTTP/2 streams can not be reused, {@link #release(Channel)} closes the {@link Http2StreamChannel}.
+ */
+@UnstableApi
+public class Http2StreamChannelPool implements ChannelPool {
+    private static final IllegalStateException POOL_CLOSED_ON_ACQUIRE_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("Http2StreamChannelPool was closed"),
+            Http2StreamChannelPool.class, "acquire0(...)");
+    private static final IllegalStateException PARENT_CLOSED_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("Parent connection was closed before it became usable"),
+            Http2StreamChannelPool.class, "parentClosed(...)");
+    private static final IllegalStateException NO_STREAMS_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("Parent connection does not allow any concurrent streams"),
+            Http2StreamChannelPool.class, "parentReady(...)");
+    private static final TimeoutException TIMEOUT_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new TimeoutException("Acquire operation took longer then configured maximum time"),
+            Http2StreamChannelPool.class, "acquire0(...)");
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30000;
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler streamHandler;
+    private final EventExecutor executor;
+    private final int maxParentConnections;
+    private final long acquireTimeoutNanos;
+
+    // 以下状态只在 executor 中访问，无需同步
+    private final List<ParentConnection> parents = new ArrayList<ParentConnection>();
+    private final Queue<PendingAcquire> pendingAcquires = new ArrayDeque<PendingAcquire>();
+    private ParentConnection connectingParent;
+    private boolean connecting;
+    private boolean closed;
+
+    /**
+     * Creates a new instance which does not limit the number of parent connections and uses an acquire timeout of
+     * 30 seconds.
+     *
+     * @param bootstrap     the {@link Bootstrap} which is used to connect the parent connections. Its handler must
+     *                      add a client {@link Http2MultiplexCodec} to the pipeline.
+     * @param streamHandler the {@link ChannelHandler} which is added to the pipeline of every acquired
+     *                      {@link Http2StreamChannel}, or {@code null}. It must be {@link ChannelHandler.Sharable}.
+     */
+    public Http2StreamChannelPool(Bootstrap bootstrap, ChannelHandler streamHandler) {
+        this(bootstrap, streamHandler, Integer.MAX_VALUE, DEFAULT_ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} which is used to connect the parent connections. Its handler
+     *                              must add a client {@link Http2MultiplexCodec} to the pipeline.
+     * @param streamHandler         the {@link ChannelHandler} which is added to the pipeline of every acquired
+     *                              {@link Http2StreamChannel}, or {@code null}. It must be
+     *                              {@link ChannelHandler.Sharable}.
+     * @param maxParentConnections  the maximum number of parent connections which are open or being opened.
+     * @param acquireTimeout        the time after which a pending acquire fails with a {@link TimeoutException} and
+     *                              after which a parent connection is closed if its peer did not send the initial
+     *                              {@code SETTINGS} frame, or {@code 0} to disable.
+     * @param unit                  the {@link TimeUnit} of {@code acquireTimeout}.
+     */
+    public Http2StreamChannelPool(Bootstrap bootstrap, ChannelHandler streamHandler, int maxParentConnections,
+                                  long acquireTimeout, TimeUnit unit) {
+        checkNotNull(bootstrap, "bootstrap");
+        checkNotNull(unit, "unit");
+        this.maxParentConnections = checkPositive(maxParentConnections, "maxParentConnections");
+        acquireTimeoutNanos = unit.toNanos(checkPositiveOrZero(acquireTimeout, "acquireTimeout"));
+        final ChannelHandler handler = checkNotNull(bootstrap.config().handler(), "bootstrap.handler");
+        this.bootstrap = bootstrap.clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ParentConnection parent = new ParentConnection(ch);
+                // 分开添加，保证用户的 ChannelInitializer 添加的 Http2MultiplexCodec 位于 parent 之前
+                ch.pipeline().addLast(handler);
+                ch.pipeline().addLast(parent);
+                parentCreated(parent);
+            }
+        });
+        this.streamHandler = streamHandler;
+        executor = bootstrap.config().group().next();
+    }
+
+    /**
+     * Returns the number of parent connections which are open or being opened.
+     */
+    public Future<Integer> parentConnections() {
+        final Promise<Integer> promise = executor.newPromise();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.setSuccess(parents.size() + (connecting ? 1 : 0));
+            }
+        });
+        return promise;
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        return acquire(executor.<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(final Promise<Channel> promise) {
+        checkNotNull(promise, "promise");
+        if (executor.inEventLoop()) {
+            acquire0(promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    acquire0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void acquire0(Promise<Channel> promise) {
+        assert executor.inEventLoop();
+        if (closed) {
+            promise.setFailure(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
+            return;
+        }
+        ParentConnection parent = nextParent();
+        if (parent != null) {
+            parent.openStream(promise);
+            return;
+        }
+        PendingAcquire pendingAcquire = new PendingAcquire(promise);
+        if (acquireTimeoutNanos > 0) {
+            pendingAcquire.timeoutFuture = executor.schedule(pendingAcquire, acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        pendingAcquires.add(pendingAcquire);
+        if (canConnect()) {
+            connect();
+        }
+    }
+
+    /**
+     * Returns {@code true} if a new parent connection may be opened.
+     */
+    private boolean canConnect() {
+        return !connecting && !closed && parents.size() < maxParentConnections;
+    }
+
+    /**
+     * Returns the first parent connection which can take another stream, so streams are packed onto as few
+     * connections as possible.
+     */
+    private ParentConnection nextParent() {
+        for (int i = 0; i < parents.size(); i++) {
+            ParentConnection parent = parents.get(i);
+            if (parent.hasCapacity()) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    private void connect() {
+        assert executor.inEventLoop();
+        connecting = true;
+        bootstrap.connect().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) {
+                if (future.isSuccess()) {
+                    return;
+                }
+                executeInPool(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (connectingParent == null || connectingParent.channel == future.channel()) {
+                            connectingParent = null;
+                            connecting = false;
+                        }
+                        failPendingAcquires(future.cause());
+                    }
+                });
+            }
+        });
+    }
+
+    private void parentCreated(final ParentConnection parent) {
+        // 在 Channel 注册时调用，此时还没有开始读取，因此不会错过对端的 SETTINGS
+        executeInPool(new Runnable() {
+            @Override
+            public void run() {
+                connectingParent = parent;
+                if (closed) {
+                    parent.channel.close();
+                } else if (acquireTimeoutNanos > 0) {
+                    parent.readyTimeoutFuture = executor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            // 对端没有及时发送 SETTINGS ，关闭连接，等待中的 acquire 会失败
+                            if (!parent.ready) {
+                                parent.channel.close();
+                            }
+                        }
+                    }, acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+        parent.channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                executeInPool(new Runnable() {
+                    @Override
+                    public void run() {
+                        parentClosed(parent);
+                    }
+                });
+            }
+        });
+    }
+
+    private void parentReady(ParentConnection parent) {
+        assert executor.inEventLoop();
+        boolean fresh = parent == connectingParent;
+        if (fresh) {
+            connectingParent = null;
+            connecting = false;
+        }
+        if (!parent.ready) {
+            parent.ready = true;
+            if (parent.readyTimeoutFuture != null) {
+                parent.readyTimeoutFuture.cancel(false);
+                parent.readyTimeoutFuture = null;
+            }
+        }
+        if (!parents.contains(parent)) {
+            if (closed || parent.draining) {
+                return;
+            }
+            parents.add(parent);
+        }
+        if (fresh && parent.maxStreams == 0) {
+            // 新建立的连接不允许任何流，再建立新的连接也无济于事，其他连接无法服务的 acquire 直接失败
+            parents.remove(parent);
+            parent.channel.close();
+            servePendingAcquires(false);
+            failPendingAcquires(NO_STREAMS_EXCEPTION);
+            return;
+        }
+        servePendingAcquires(true);
+    }
+
+    private void parentClosed(ParentConnection parent) {
+        assert executor.inEventLoop();
+        parents.remove(parent);
+        if (parent == connectingParent) {
+            connectingParent = null;
+            connecting = false;
+            failPendingAcquires(PARENT_CLOSED_EXCEPTION);
+        }
+    }
+
+    private void servePendingAcquires(boolean mayConnect) {
+        assert executor.inEventLoop();
+        while (!pendingAcquires.isEmpty()) {
+            ParentConnection parent = nextParent();
+            if (parent == null) {
+                if (mayConnect && canConnect()) {
+                    // 所有连接都达到了流数量上限
+                    connect();
+                }
+                // 否则等待流被释放，或者超时
+                return;
+            }
+            parent.openStream(pendingAcquires.poll().take());
+        }
+    }
+
+    private void failPendingAcquires(Throwable cause) {
+        for (;;) {
+            PendingAcquire pendingAcquire = pendingAcquires.poll();
+            if (pendingAcquire == null) {
+                break;
+            }
+            pendingAcquire.take().tryFailure(cause);
+        }
+    }
+
+    /**
+     * Releases the given {@link Http2StreamChannel} by closing it.
+     */
+    @Override
+    public final Future<Void> release(Channel channel) {
+        return release(channel, executor.<Void>newPromise());
+    }
+
+    /**
+     * Releases the given {@link Http2StreamChannel} by closing it.
+     */
+    @Override
+    public Future<Void> release(Channel channel, final Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        checkNotNull(promise, "promise");
+        if (!(channel instanceof Http2StreamChannel)) {
+            promise.setFailure(new IllegalArgumentException(
+                    "Channel " + channel + " was not acquired from this Http2StreamChannelPool"));
+            return promise;
+        }
+        channel.close().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    promise.trySuccess(null);
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Closes all parent connections and fails all pending acquire operations. This method does not block.
+     */
+    @Override
+    public void close() {
+        executeInPool(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                failPendingAcquires(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
+                for (ParentConnection parent : parents.toArray(new ParentConnection[0])) {
+                    parent.channel.close();
+                }
+                parents.clear();
+                if (connectingParent != null) {
+                    connectingParent.channel.close();
+                }
+            }
+        });
+    }
+
+    private void executeInPool(Runnable task) {
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * An acquire which waits for a parent connection with capacity. It is run once the acquire timeout expired.
+     */
+    private final class PendingAcquire implements Runnable {
+        final Promise<Channel> promise;
+        ScheduledFuture<?> timeoutFuture;
+
+        PendingAcquire(Promise<Channel> promise) {
+            this.promise = promise;
+        }
+
+        /**
+         * Returns the {@link Promise} of this acquire after it was removed from the pending acquires.
+         */
+        Promise<Channel> take() {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            return promise;
+        }
+
+        @Override
+        public void run() {
+            if (pendingAcquires.remove(this)) {
+                promise.tryFailure(TIMEOUT_EXCEPTION);
+            }
+        }
+    }
+
+    /**
+     * Tracks the state of one parent connection. It is added as the last handler of the parent pipeline to observe
+     * {@code SETTINGS} and {@code GOAWAY} frames, all other state is only accessed from the executor of the pool.
+     */
+    private final class ParentConnection extends ChannelInboundHandlerAdapter {
+        /**
+         * 对端还没有通告 MAX_CONCURRENT_STREAMS，与显式通告的 0 区分开
+         */
+        private static final int MAX_STREAMS_NOT_ADVERTISED = -1;
+
+        final Channel channel;
+        private final Http2StreamChannelBootstrap streamBootstrap;
+        private int maxStreams = MAX_STREAMS_NOT_ADVERTISED;
+        private int activeStreams;
+        boolean draining;
+        boolean ready;
+        ScheduledFuture<?> readyTimeoutFuture;
+
+        ParentConnection(Channel channel) {
+            this.channel = channel;
+            streamBootstrap = new Http2StreamChannelBootstrap(channel);
+            if (streamHandler != null) {
+                streamBootstrap.handler(streamHandler);
+            }
+        }
+
+        boolean hasCapacity() {
+            return !draining && activeStreams < maxStreams && channel.isActive();
+        }
+
+        void openStream(final Promise<Channel> promise) {
+            assert executor.inEventLoop();
+            // 在流真正打开之前就占用名额，避免并发的 acquire 超过对端的限制
+            activeStreams++;
+            streamBootstrap.open().addListener(new FutureListener<Http2StreamChannel>() {
+                @Override
+                public void operationComplete(Future<Http2StreamChannel> future) {
+                    if (!future.isSuccess()) {
+                        streamClosed();
+                        promise.tryFailure(future.cause());
+                        return;
+                    }
+                    Http2StreamChannel stream = future.getNow();
+                    stream.closeFuture().addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) {
+                            streamClosed();
+                        }
+                    });
+                    if (!promise.trySuccess(stream)) {
+                        // 调用者已经取消
+                        stream.close();
+                    }
+                }
+            });
+        }
+
+        private void streamClosed() {
+            executeInPool(new Runnable() {
+                @Override
+                public void run() {
+                    activeStreams--;
+                    if (draining) {
+                        if (activeStreams == 0) {
+                            channel.close();
+                        }
+                    } else {
+                        servePendingAcquires(true);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            super.channelActive(ctx);
+            // Http2ConnectionHandler 只写入了连接前言而没有 flush，对端需要先收到它才会发送 SETTINGS
+            ctx.flush();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Http2SettingsFrame) {
+                Long maxConcurrentStreams = ((Http2SettingsFrame) msg).settings().maxConcurrentStreams();
+                if (maxConcurrentStreams != null) {
+                    final int max = (int) Math.min(maxConcurrentStreams, Integer.MAX_VALUE);
+                    executeInPool(new Runnable() {
+                        @Override
+                        public void run() {
+                            maxStreams = max;
+                            parentReady(ParentConnection.this);
+                        }
+                    });
+                } else {
+                    executeInPool(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (maxStreams == MAX_STREAMS_NOT_ADVERTISED) {
+                                // 初始 SETTINGS 中没有限制，之后的 SETTINGS 没有携带时保持已通告的值
+                                maxStreams = Integer.MAX_VALUE;
+                            }
+                            parentReady(ParentConnection.this);
+                        }
+                    });
+                }
+            } else if (msg instanceof Http2GoAwayFrame) {
+                executeInPool(new Runnable() {
+                    @Override
+                    public void run() {
+                        draining = true;
+                        parents.remove(ParentConnection.this);
+                        if (activeStreams == 0) {
+                            channel.close();
+                        }
+                        // 将等待中的 acquire 转移到其他连接上
+                        servePendingAcquires(true);
+                    }
+                });
+            }
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
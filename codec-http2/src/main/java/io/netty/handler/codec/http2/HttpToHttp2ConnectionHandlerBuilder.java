@@ -79,11 +79,21 @@ public final class HttpToHttp2ConnectionHandlerBuilder extends
         return super.headerSensitivityDetector(headerSensitivityDetector);
     }
 
+    @Override
+    public HttpToHttp2ConnectionHandlerBuilder encoderCoalesceFrames(boolean coalesceFrames) {
+        return super.encoderCoalesceFrames(coalesceFrames);
+    }
+
     @Override
     public HttpToHttp2ConnectionHandlerBuilder initialHuffmanDecodeCapacity(int initialHuffmanDecodeCapacity) {
         return super.initialHuffmanDecodeCapacity(initialHuffmanDecodeCapacity);
     }
 
+    @Override
+    public HttpToHttp2ConnectionHandlerBuilder flowControlWindowAutoTuning(int maxWindowSize) {
+        return super.flowControlWindowAutoTuning(maxWindowSize);
+    }
+
     @Override
     public HttpToHttp2ConnectionHandler build() {
         return super.build();
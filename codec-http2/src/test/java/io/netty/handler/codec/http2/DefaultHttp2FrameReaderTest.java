@@ -26,6 +26,9 @@ import org.mockito.MockitoAnnotations;
 
 import static io.netty.handler.codec.http2.Http2CodecUtil.*;
 import static io.netty.handler.codec.http2.Http2FrameTypes.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 
@@ -332,6 +335,76 @@ public class DefaultHttp2FrameReaderTest {
         }
     }
 
+    @Test
+    public void readComposedDataFrame() throws Http2Exception {
+        frameReader.close();
+        frameReader = new DefaultHttp2FrameReader(new DefaultHttp2HeadersDecoder(true), true);
+
+        ByteBuf frame = Unpooled.buffer();
+        writeFrameHeader(frame, 1 + 6 + 3, DATA, new Http2Flags().paddingPresent(true).endOfStream(true), 1);
+        frame.writeByte(3);
+        frame.writeBytes(new byte[] { 1, 2, 3, 4, 5, 6 });
+        frame.writeZero(3);
+
+        final ByteBuf received = Unpooled.buffer();
+        Http2FrameAdapter dataListener = new Http2FrameAdapter() {
+            @Override
+            public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                                  boolean endOfStream) {
+                assertEquals(1, streamId);
+                assertEquals(4, padding);
+                assertTrue(endOfStream);
+                received.writeBytes(data);
+                return data.readableBytes() + padding;
+            }
+        };
+        // Split the frame in independent buffers as if it was received by three reads.
+        ByteBuf first = Unpooled.copiedBuffer(frame.readSlice(FRAME_HEADER_LENGTH + 3));
+        ByteBuf second = Unpooled.copiedBuffer(frame.readSlice(4));
+        ByteBuf third = Unpooled.copiedBuffer(frame);
+        frame.release();
+        try {
+            frameReader.readFrame(ctx, first, dataListener);
+            assertFalse(first.isReadable());
+            first.release();
+            // The composed payload still holds a reference to the input.
+            assertEquals(1, first.refCnt());
+
+            frameReader.readFrame(ctx, second, dataListener);
+            assertFalse(received.isReadable());
+
+            frameReader.readFrame(ctx, third, dataListener);
+            assertEquals(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3, 4, 5, 6 }), received);
+            // The composed payload is released once the listener was notified.
+            assertEquals(0, first.refCnt());
+        } finally {
+            second.release();
+            third.release();
+            received.release();
+        }
+    }
+
+    @Test
+    public void readComposedDataFrameReleasedOnClose() throws Http2Exception {
+        frameReader.close();
+        frameReader = new DefaultHttp2FrameReader(new DefaultHttp2HeadersDecoder(true), true);
+
+        ByteBuf input = Unpooled.buffer();
+        try {
+            writeFrameHeader(input, 10, DATA, new Http2Flags(), 1);
+            input.writeZero(5);
+            frameReader.readFrame(ctx, input, listener);
+            assertEquals(2, input.refCnt());
+
+            frameReader.close();
+            assertEquals(1, input.refCnt());
+            verify(listener, never()).onDataRead(any(ChannelHandlerContext.class), anyInt(), any(ByteBuf.class),
+                    anyInt(), anyBoolean());
+        } finally {
+            input.release();
+        }
+    }
+
     private void writeHeaderFrame(
             ByteBuf output, int streamId, Http2Headers headers,
             Http2Flags flags) throws Http2Exception {
@@ -27,6 +27,7 @@ import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
@@ -237,6 +238,61 @@ public class DefaultHttp2FrameWriterTest {
         assertEquals(expectedOutbound, outbound);
     }
 
+    @Test
+    public void writeCoalescedFrames() throws Exception {
+        Http2FrameArena frameArena = new Http2FrameArena();
+        DefaultHttp2FrameWriter coalescingWriter = new DefaultHttp2FrameWriter(http2HeadersEncoder, frameArena);
+        when(ctx.newPromise()).thenReturn(new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE));
+        try {
+            ChannelPromise pingPromise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+            ChannelPromise windowUpdatePromise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+            ChannelPromise dataPromise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+            byte[] payload = new byte[2048];
+            Arrays.fill(payload, (byte) 0x01);
+
+            coalescingWriter.writePing(ctx, false, 8, pingPromise);
+            coalescingWriter.writeWindowUpdate(ctx, 3, 10, windowUpdatePromise);
+            coalescingWriter.writeData(ctx, 3, Unpooled.wrappedBuffer(payload), 0, true, dataPromise);
+            verify(ctx, never()).write(any(), any(ChannelPromise.class));
+
+            frameArena.writePendingFrames(ctx);
+            ArgumentCaptor<ChannelPromise> captor = ArgumentCaptor.forClass(ChannelPromise.class);
+            verify(ctx, times(1)).write(any(), captor.capture());
+
+            frameWriter.writePing(ctx, false, 8, promise);
+            frameWriter.writeWindowUpdate(ctx, 3, 10, promise);
+            frameWriter.writeData(ctx, 3, Unpooled.wrappedBuffer(payload), 0, true, promise);
+            ByteBuf coalesced = outbound.readRetainedSlice(outbound.readableBytes() / 2);
+            try {
+                assertEquals(outbound, coalesced);
+            } finally {
+                coalesced.release();
+            }
+
+            assertFalse(pingPromise.isDone());
+            captor.getValue().setSuccess();
+            assertTrue(pingPromise.isSuccess());
+            assertTrue(windowUpdatePromise.isSuccess());
+            assertTrue(dataPromise.isSuccess());
+        } finally {
+            coalescingWriter.close();
+        }
+    }
+
+    @Test
+    public void closeFailsPendingFrames() throws Exception {
+        Http2FrameArena frameArena = new Http2FrameArena();
+        DefaultHttp2FrameWriter coalescingWriter = new DefaultHttp2FrameWriter(http2HeadersEncoder, frameArena);
+
+        coalescingWriter.writePing(ctx, false, 8, promise);
+        coalescingWriter.close();
+
+        assertFalse(promise.isSuccess());
+        assertNotNull(promise.cause());
+        frameArena.writePendingFrames(ctx);
+        verify(ctx, never()).write(any(), any(ChannelPromise.class));
+    }
+
     private byte[] headerPayload(int streamId, Http2Headers headers, byte padding) throws Http2Exception, IOException {
         if (padding == 0) {
             return headerPayload(streamId, headers);
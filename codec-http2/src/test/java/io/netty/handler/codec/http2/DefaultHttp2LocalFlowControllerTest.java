@@ -15,6 +15,7 @@
 
 package io.netty.handler.codec.http2;
 
+import static io.netty.handler.codec.http2.DefaultHttp2LocalFlowController.BDP_PING_DATA;
 import static io.netty.handler.codec.http2.DefaultHttp2LocalFlowController.DEFAULT_WINDOW_UPDATE_RATIO;
 import static io.netty.handler.codec.http2.Http2CodecUtil.CONNECTION_STREAM_ID;
 import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
@@ -23,21 +24,27 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.concurrent.EventExecutor;
 import junit.framework.AssertionFailedError;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -289,6 +296,81 @@ public class DefaultHttp2LocalFlowControllerTest {
         assertFalse(controller.consumeBytes(connection.stream(STREAM_ID), -1));
     }
 
+    @Test
+    public void windowAutoTuningShouldExpandWindows() throws Http2Exception {
+        controller.windowAutoTuning(1024 * 1024);
+        int dataSize = 50000;
+        receiveFlowControlledFrame(STREAM_ID, dataSize, 0, false);
+        verify(frameWriter).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+
+        // The sample is larger than 2/3 of the window, so the windows are doubled.
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(2 * dataSize, controller.initialWindowSize(stream(STREAM_ID)));
+        assertEquals(2 * dataSize, controller.initialWindowSize(connection.connectionStream()));
+        verifyWindowUpdateNotSent();
+
+        assertTrue(consumeBytes(STREAM_ID, dataSize));
+        verifyWindowUpdateSent(STREAM_ID, 2 * dataSize - (DEFAULT_WINDOW_SIZE - dataSize));
+        verifyWindowUpdateSent(CONNECTION_STREAM_ID, 2 * dataSize - (DEFAULT_WINDOW_SIZE - dataSize));
+
+        // New streams should use the expanded window as well.
+        Http2Stream newStream = connection.local().createStream(STREAM_ID + 2, false);
+        assertEquals(2 * dataSize, controller.initialWindowSize(newStream));
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.windowSize(newStream));
+    }
+
+    @Test
+    public void windowAutoTuningShouldNotExpandForSmallSamples() throws Http2Exception {
+        controller.windowAutoTuning(1024 * 1024);
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        // Only one PING may be outstanding at any time.
+        verify(frameWriter, times(1)).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.initialWindowSize(stream(STREAM_ID)));
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.initialWindowSize(connection.connectionStream()));
+    }
+
+    @Test
+    public void windowAutoTuningShouldRespectMaxWindowSize() throws Http2Exception {
+        controller.windowAutoTuning(DEFAULT_WINDOW_SIZE + 1);
+        receiveFlowControlledFrame(STREAM_ID, DEFAULT_WINDOW_SIZE, 0, false);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(DEFAULT_WINDOW_SIZE + 1, controller.initialWindowSize(stream(STREAM_ID)));
+
+        // The maximum is reached, so no more PING frames are sent.
+        assertTrue(consumeBytes(STREAM_ID, DEFAULT_WINDOW_SIZE));
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        verify(frameWriter, times(1)).writePing(eq(ctx), eq(false), anyLong(), eq(promise));
+    }
+
+    @Test
+    public void windowAutoTuningShouldResendPingAfterFailedWrite() throws Exception {
+        controller.windowAutoTuning(1024 * 1024);
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        ArgumentCaptor<ChannelFutureListener> captor = ArgumentCaptor.forClass(ChannelFutureListener.class);
+        verify(promise).addListener(captor.capture());
+
+        ChannelFuture future = mock(ChannelFuture.class);
+        when(future.isSuccess()).thenReturn(false);
+        captor.getValue().operationComplete(future);
+
+        // The failed PING will never be acknowledged, so the next DATA frame starts a new sample.
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        verify(frameWriter, times(2)).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+    }
+
+    @Test
+    public void pingAckShouldNotBeConsumedIfNotSentByController() throws Http2Exception {
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+        controller.windowAutoTuning(1024 * 1024);
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+        receiveFlowControlledFrame(STREAM_ID, 10, 0, false);
+        assertFalse(controller.onPingAckRead(1234));
+    }
+
     private void testRatio(float ratio, int newDefaultWindowSize, int newStreamId, boolean setStreamRatio)
             throws Http2Exception {
         int delta = newDefaultWindowSize - DEFAULT_WINDOW_SIZE;
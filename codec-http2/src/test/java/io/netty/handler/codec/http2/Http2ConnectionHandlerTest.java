@@ -25,6 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.Http2CodecUtil.SimpleChannelPromiseAggregator;
 import io.netty.util.ReferenceCountUtil;
@@ -42,6 +43,8 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -734,6 +737,37 @@ public class Http2ConnectionHandlerTest {
         verify(pipeline).fireExceptionCaught(cause);
     }
 
+    @Test
+    public void coalescedFramesKeepOrderWithEmptyData() throws Exception {
+        Http2ConnectionHandler coalescingHandler = new Http2ConnectionHandlerBuilder()
+                .frameListener(new Http2FrameAdapter()).server(false).encoderCoalesceFrames(true).build();
+        EmbeddedChannel ch = new EmbeddedChannel(coalescingHandler);
+        try {
+            ChannelHandlerContext handlerCtx = ch.pipeline().firstContext();
+            Http2ConnectionEncoder http2Encoder = coalescingHandler.encoder();
+            final List<String> completed = new ArrayList<String>();
+            http2Encoder.writeHeaders(handlerCtx, 3, new DefaultHttp2Headers(), 0, false, ch.newPromise())
+                    .addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) {
+                            completed.add("headers");
+                        }
+                    });
+            // The empty DATA frame is not written by the frame writer, but must still follow the HEADERS frame.
+            http2Encoder.writeData(handlerCtx, 3, Unpooled.EMPTY_BUFFER, 0, false, ch.newPromise())
+                    .addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) {
+                            completed.add("data");
+                        }
+                    });
+            ch.flush();
+            assertEquals(Arrays.asList("headers", "data"), completed);
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
     private static ByteBuf dummyData() {
         return Unpooled.buffer().writeBytes("abcdefgh".getBytes(UTF_8));
     }
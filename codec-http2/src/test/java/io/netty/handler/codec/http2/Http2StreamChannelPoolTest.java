@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Http2StreamChannelPoolTest {
+    private static final int MAX_CONCURRENT_STREAMS = 2;
+
+    @ChannelHandler.Sharable
+    private static final class NoopHandler extends ChannelInboundHandlerAdapter { }
+
+    private final BlockingQueue<Channel> serverConnections = new LinkedBlockingQueue<Channel>();
+    private volatile long serverMaxConcurrentStreams = MAX_CONCURRENT_STREAMS;
+    private volatile boolean serverSendsSettings = true;
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Bootstrap cb;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress addr = new LocalAddress("Http2StreamChannelPoolTest");
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        serverConnections.add(ch);
+                        if (serverSendsSettings) {
+                            Http2Settings settings =
+                                    new Http2Settings().maxConcurrentStreams(serverMaxConcurrentStreams);
+                            ch.pipeline().addLast(Http2MultiplexCodecBuilder.forServer(new NoopHandler())
+                                    .initialSettings(settings).build());
+                        }
+                    }
+                })
+                .bind(addr).sync().channel();
+        cb = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .remoteAddress(addr)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(Http2MultiplexCodecBuilder.forClient(new NoopHandler()).build());
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testStreamsShareParentUntilLimit() throws Exception {
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, new NoopHandler());
+        Channel stream1 = pool.acquire().sync().getNow();
+        Channel stream2 = pool.acquire().sync().getNow();
+        assertTrue(stream1 instanceof Http2StreamChannel);
+        assertSame(stream1.parent(), stream2.parent());
+        assertEquals(1, (int) pool.parentConnections().sync().getNow());
+
+        // The first connection is at its limit, so a new one is opened.
+        Channel stream3 = pool.acquire().sync().getNow();
+        assertNotSame(stream1.parent(), stream3.parent());
+        assertEquals(2, (int) pool.parentConnections().sync().getNow());
+
+        // Released streams free up a slot on the first connection again.
+        pool.release(stream1).sync();
+        assertFalse(stream1.isOpen());
+        Channel stream4 = pool.acquire().sync().getNow();
+        assertSame(stream2.parent(), stream4.parent());
+        assertEquals(2, (int) pool.parentConnections().sync().getNow());
+
+        pool.release(stream2).sync();
+        pool.release(stream3).sync();
+        pool.release(stream4).sync();
+        pool.close();
+        stream2.parent().closeFuture().sync();
+        stream3.parent().closeFuture().sync();
+    }
+
+    @Test
+    public void testGoAwayDrainsParent() throws Exception {
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, null);
+        Channel stream1 = pool.acquire().sync().getNow();
+        Channel serverConnection = serverConnections.take();
+        serverConnection.writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR)).sync();
+        waitUntilParentConnections(pool, 0);
+
+        // The draining connection is not used for new streams.
+        Channel stream2 = pool.acquire().sync().getNow();
+        assertNotSame(stream1.parent(), stream2.parent());
+        assertEquals(1, (int) pool.parentConnections().sync().getNow());
+
+        // The draining connection is closed once its last stream was released.
+        pool.release(stream1).sync();
+        stream1.parent().closeFuture().sync();
+        assertTrue(stream2.parent().isActive());
+
+        pool.release(stream2).sync();
+        pool.close();
+        stream2.parent().closeFuture().sync();
+    }
+
+    @Test
+    public void testMaxParentConnections() throws Exception {
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, null, 1, 0, TimeUnit.MILLISECONDS);
+        Channel stream1 = pool.acquire().sync().getNow();
+        Channel stream2 = pool.acquire().sync().getNow();
+
+        // The only connection is at its limit, so the acquire waits for a stream to be released.
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, (int) pool.parentConnections().sync().getNow());
+
+        pool.release(stream1).sync();
+        Channel stream3 = future.sync().getNow();
+        assertSame(stream2.parent(), stream3.parent());
+        assertEquals(1, serverConnections.size());
+
+        pool.release(stream2).sync();
+        pool.release(stream3).sync();
+        pool.close();
+        stream3.parent().closeFuture().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testNoConcurrentStreamsFailsAcquire() throws Exception {
+        serverMaxConcurrentStreams = 0;
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, null);
+        Future<Channel> future = pool.acquire().await();
+        assertTrue(future.cause() instanceof IllegalStateException);
+
+        // No further connections are opened for the failed acquire.
+        waitUntilParentConnections(pool, 0);
+        assertEquals(1, serverConnections.size());
+        pool.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testAdvertisedZeroMaxConcurrentStreamsIsKept() throws Exception {
+        final BlockingQueue<Http2Settings> settingsRead = new LinkedBlockingQueue<Http2Settings>();
+        Bootstrap bootstrap = cb.clone().handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(Http2MultiplexCodecBuilder.forClient(new NoopHandler()).build());
+                ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.fireChannelRead(msg);
+                        // Only signal once the pool has seen the frame.
+                        if (msg instanceof Http2SettingsFrame) {
+                            settingsRead.add(((Http2SettingsFrame) msg).settings());
+                        }
+                    }
+                });
+            }
+        });
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(bootstrap, null);
+        Channel stream1 = pool.acquire().sync().getNow();
+        settingsRead.take();
+
+        // A later SETTINGS frame without MAX_CONCURRENT_STREAMS keeps the advertised limit of 0.
+        Channel serverConnection = serverConnections.take();
+        serverConnection.writeAndFlush(new DefaultHttp2SettingsFrame(new Http2Settings().maxConcurrentStreams(0)));
+        serverConnection.writeAndFlush(new DefaultHttp2SettingsFrame(new Http2Settings()));
+        settingsRead.take();
+        settingsRead.take();
+
+        Channel stream2 = pool.acquire().sync().getNow();
+        assertNotSame(stream1.parent(), stream2.parent());
+        assertEquals(2, (int) pool.parentConnections().sync().getNow());
+
+        pool.release(stream1).sync();
+        pool.release(stream2).sync();
+        pool.close();
+        stream1.parent().closeFuture().sync();
+        stream2.parent().closeFuture().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireTimeoutIfSettingsNeverArrive() throws Exception {
+        serverSendsSettings = false;
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, null, 1, 100, TimeUnit.MILLISECONDS);
+        Future<Channel> future = pool.acquire().await();
+        assertTrue(future.cause() instanceof TimeoutException);
+
+        // The connection which never became usable is closed, so the next acquire can open a new one.
+        Channel serverConnection = serverConnections.take();
+        serverConnection.closeFuture().sync();
+        waitUntilParentConnections(pool, 0);
+        serverSendsSettings = true;
+        Channel stream = pool.acquire().sync().getNow();
+        pool.release(stream).sync();
+        pool.close();
+        stream.parent().closeFuture().sync();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAcquireAfterClose() throws Throwable {
+        Http2StreamChannelPool pool = new Http2StreamChannelPool(cb, null);
+        pool.close();
+        throw pool.acquire().await().cause();
+    }
+
+    private static void waitUntilParentConnections(Http2StreamChannelPool pool, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.parentConnections().sync().getNow() != expected) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("parent connections: " + pool.parentConnections().sync().getNow());
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -151,6 +151,97 @@ public abstract class ByteToMessageDecoder extends ChannelInboundHandlerAdapter
 
     };
 
+    /**
+     * A {@link Cumulator} which adapts to the size of the frames decoded on the channel: frames smaller than the
+     * compose threshold are merged into a single {@link ByteBuf} which is sized for the whole frame up front, so it
+     * is not expanded (and copied) again for every read, while larger frames are cumulated into a
+     * {@link CompositeByteBuf} so no memory copy is needed at all.
+     * <p>
+     * The frame length is learned from {@link ByteToMessageDecoder#frameLengthHint(int)}, which decoders that know the
+     * length of the frame they are waiting for (like {@link LengthFieldBasedFrameDecoder}) call. Without hints it
+     * behaves like {@link #MERGE_CUMULATOR} for the frames below the compose threshold.
+     * <p>
+     * As it keeps per-channel state an instance must not be shared between decoders.
+     */
+    public static final class AdaptiveCumulator implements Cumulator {
+        private static final int DEFAULT_COMPOSE_THRESHOLD = 64 * 1024;
+
+        private final int composeThreshold;
+        private int frameLength;
+        private int averageFrameLength;
+
+        /**
+         * Creates a new instance which composes frames of {@code 64KiB} and larger.
+         */
+        public AdaptiveCumulator() {
+            this(DEFAULT_COMPOSE_THRESHOLD);
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @param composeThreshold frames of this length and larger are cumulated into a {@link CompositeByteBuf}.
+         */
+        public AdaptiveCumulator(int composeThreshold) {
+            if (composeThreshold <= 0) {
+                throw new IllegalArgumentException("composeThreshold: " + composeThreshold + " (expected: > 0)");
+            }
+            this.composeThreshold = composeThreshold;
+        }
+
+        /**
+         * Notifies this cumulator that the frame which is currently cumulated is {@code frameLength} bytes long,
+         * counted from the reader index of the cumulation. Must be called at most once per frame, as every call is
+         * counted in the average frame length.
+         */
+        public void frameLengthHint(int frameLength) {
+            if (frameLength <= 0) {
+                return;
+            }
+            this.frameLength = frameLength;
+            // Exponentially weighted moving average with alpha = 1/8, used when no hint is available.
+            averageFrameLength = averageFrameLength == 0 ?
+                    frameLength : averageFrameLength - (averageFrameLength >> 3) + (frameLength >> 3);
+        }
+
+        int averageFrameLength() {
+            return averageFrameLength;
+        }
+
+        @Override
+        public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in) {
+            final int required = cumulation.readableBytes() + in.readableBytes();
+            final int expected = frameLength != 0 ? frameLength : averageFrameLength;
+            if (required >= frameLength) {
+                // The hinted frame is complete after this read.
+                frameLength = 0;
+            }
+
+            if (cumulation.refCnt() > 1 || cumulation.isReadOnly()) {
+                // See MERGE_CUMULATOR.
+                return mergeInto(alloc.buffer(Math.max(required, expected)), cumulation, in);
+            }
+            if (expected >= composeThreshold || cumulation instanceof CompositeByteBuf && required > composeThreshold) {
+                return COMPOSITE_CUMULATOR.cumulate(alloc, cumulation, in);
+            }
+            if (cumulation.writableBytes() < in.readableBytes() || cumulation instanceof CompositeByteBuf) {
+                // Replace the cumulation by a buffer that can hold the whole frame, this is the same copy the
+                // buffer would do internally when expanding but avoids copying again on the following reads.
+                return mergeInto(alloc.buffer(Math.max(required, expected)), cumulation, in);
+            }
+            cumulation.writeBytes(in);
+            in.release();
+            return cumulation;
+        }
+
+        private static ByteBuf mergeInto(ByteBuf buffer, ByteBuf cumulation, ByteBuf in) {
+            buffer.writeBytes(cumulation).writeBytes(in);
+            cumulation.release();
+            in.release();
+            return buffer;
+        }
+    }
+
     private static final byte STATE_INIT = 0;
     private static final byte STATE_CALLING_CHILD_DECODE = 1;
     private static final byte STATE_HANDLER_REMOVED_PENDING = 2;
@@ -244,6 +335,19 @@ public abstract class ByteToMessageDecoder extends ChannelInboundHandlerAdapter
         this.cumulator = cumulator;
     }
 
+    /**
+     * Notifies the {@link Cumulator} that the frame which is currently decoded from the reader index of the
+     * cumulation is {@code frameLength} bytes long, so it can prepare for the bytes which are still missing.
+     * Sub-classes should call this once per frame, when {@link #decode(ChannelHandlerContext, ByteBuf, List)} returns
+     * for the first time because a frame of known length is incomplete. This has no effect unless an
+     * {@link AdaptiveCumulator} is used.
+     */
+    protected final void frameLengthHint(int frameLength) {
+        if (cumulator instanceof AdaptiveCumulator) {
+            ((AdaptiveCumulator) cumulator).frameLengthHint(frameLength);
+        }
+    }
+
     /**
      * Set the number of reads after which {@link ByteBuf#discardSomeReadBytes()} are called and so free up memory.
      * The default is {@code 16}.
@@ -194,6 +194,8 @@ public class LengthFieldBasedFrameDecoder extends ByteToMessageDecoder {
     private boolean discardingTooLongFrame;
     private long tooLongFrameLength;
     private long bytesToDiscard;
+    // 每个帧只调用一次 frameLengthHint
+    private boolean frameLengthHinted;
 
     /**
      * Creates a new instance.
@@ -432,8 +434,13 @@ public class LengthFieldBasedFrameDecoder extends ByteToMessageDecoder {
         // never overflows because it's less than maxFrameLength
         int frameLengthInt = (int) frameLength;
         if (in.readableBytes() < frameLengthInt) {
+            if (!frameLengthHinted) {
+                frameLengthHinted = true;
+                frameLengthHint(frameLengthInt);
+            }
             return null;
         }
+        frameLengthHinted = false;
 
         if (initialBytesToStrip > frameLengthInt) {
             failOnFrameLengthLessThanInitialBytesToStrip(in, frameLength, initialBytesToStrip);
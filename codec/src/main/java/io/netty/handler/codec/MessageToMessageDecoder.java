@@ -82,11 +82,12 @@ public abstract class MessageToMessageDecoder<I> extends ChannelInboundHandlerAd
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        // 创建 CodecOutputList 对象
-        CodecOutputList out = CodecOutputList.newInstance();
+        CodecOutputList out = null;
         try {
             // 判断是否为匹配的消息
             if (acceptInboundMessage(msg)) {
+                // 创建 CodecOutputList 对象
+                out = CodecOutputList.newInstance();
                 // 转化消息类型
                 @SuppressWarnings("unchecked")
                 I cast = (I) msg;
@@ -98,21 +99,23 @@ public abstract class MessageToMessageDecoder<I> extends ChannelInboundHandlerAd
                     ReferenceCountUtil.release(cast);
                 }
             } else {
-                // 不匹配，添加到 out
-                out.add(msg);
+                // 不匹配，直接传递给下一个节点，无需 CodecOutputList 对象
+                ctx.fireChannelRead(msg);
             }
         } catch (DecoderException e) {
             throw e;
         } catch (Exception e) {
             throw new DecoderException(e);
         } finally {
-            // 遍历 out ，触发 Channel Read 事件到 pipeline 中
-            int size = out.size();
-            for (int i = 0; i < size; i ++) {
-                ctx.fireChannelRead(out.getUnsafe(i));
+            if (out != null) {
+                // 遍历 out ，触发 Channel Read 事件到 pipeline 中
+                int size = out.size();
+                for (int i = 0; i < size; i ++) {
+                    ctx.fireChannelRead(out.getUnsafe(i));
+                }
+                // 回收 CodecOutputList 对象
+                out.recycle();
             }
-            // 回收 CodecOutputList 对象
-            out.recycle();
         }
     }
 
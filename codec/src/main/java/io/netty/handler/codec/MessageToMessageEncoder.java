@@ -22,6 +22,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.PromiseCombiner;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.TypeParameterMatcher;
 
@@ -116,36 +117,49 @@ public abstract class MessageToMessageEncoder<I> extends ChannelOutboundHandlerA
             throw new EncoderException(t);
         } finally {
             if (out != null) {
-                final int sizeMinusOne = out.size() - 1;
-                // 只编码出一条消息
-                if (sizeMinusOne == 0) {
-                    // 直接写入新消息到下一个节点
-                    ctx.write(out.get(0), promise);
-                // 编码出多条消息
-                } else if (sizeMinusOne > 0) {
-                    // 第 [0, n-1) 条消息，写入下一个节点，使用 voidPromise ，即不需要回调
-                    // Check if we can use a voidPromise for our extra writes to reduce GC-Pressure
-                    // See https://github.com/netty/netty/issues/2525
-                    ChannelPromise voidPromise = ctx.voidPromise();
-                    boolean isVoidPromise = promise == voidPromise;
-                    for (int i = 0; i < sizeMinusOne; i ++) {
-                        ChannelPromise p;
-                        if (isVoidPromise) {
-                            p = voidPromise;
+                try {
+                    final int sizeMinusOne = out.size() - 1;
+                    // 只编码出一条消息
+                    if (sizeMinusOne == 0) {
+                        // 直接写入新消息到下一个节点，不需要额外的 ChannelPromise
+                        ctx.write(out.getUnsafe(0), promise);
+                    // 编码出多条消息
+                    } else if (sizeMinusOne > 0) {
+                        // Check if we can use a voidPromise for our extra writes to reduce GC-Pressure
+                        // See https://github.com/netty/netty/issues/2525
+                        if (promise == ctx.voidPromise()) {
+                            writeVoidPromise(ctx, out);
                         } else {
-                            p = ctx.newPromise();
+                            writePromiseCombiner(ctx, out, promise);
                         }
-                        ctx.write(out.getUnsafe(i), p);
                     }
-                    // 第 n-1 条消息，写入下一个节点，使用 promise ，即需要回调
-                    ctx.write(out.getUnsafe(sizeMinusOne), promise);
+                } finally {
+                    // 回收 CodecOutputList 对象
+                    out.recycle();
                 }
-                // 回收 CodecOutputList 对象
-                out.recycle();
             }
         }
     }
 
+    private static void writeVoidPromise(ChannelHandlerContext ctx, CodecOutputList out) {
+        final ChannelPromise voidPromise = ctx.voidPromise();
+        for (int i = 0; i < out.size(); i++) {
+            ctx.write(out.getUnsafe(i), voidPromise);
+        }
+    }
+
+    /**
+     * Writes all messages and notifies {@code promise} once all of them were written, so a failure of any of the
+     * writes is reported and not only the failure of the last one.
+     */
+    private static void writePromiseCombiner(ChannelHandlerContext ctx, CodecOutputList out, ChannelPromise promise) {
+        final PromiseCombiner combiner = new PromiseCombiner();
+        for (int i = 0; i < out.size(); i++) {
+            combiner.add(ctx.write(out.getUnsafe(i)));
+        }
+        combiner.finish(promise);
+    }
+
     /**
      * Encode from one message to an other. This method will be called for each written message that can be handled
      * by this encoder.
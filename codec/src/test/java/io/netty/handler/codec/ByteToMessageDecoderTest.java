@@ -16,7 +16,9 @@
 package io.netty.handler.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
@@ -30,6 +32,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ByteToMessageDecoderTest {
@@ -305,4 +308,86 @@ public class ByteToMessageDecoderTest {
         assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { (byte) 2 })));
         assertFalse(channel.finish());
     }
+
+    @Test
+    public void testAdaptiveCumulatorPreSizesSmallFrames() {
+        ByteToMessageDecoder.AdaptiveCumulator cumulator = new ByteToMessageDecoder.AdaptiveCumulator(1024);
+        cumulator.frameLengthHint(512);
+
+        ByteBuf cumulation = cumulator.cumulate(UnpooledByteBufAllocator.DEFAULT,
+                Unpooled.buffer(8, 8).writeLong(1), Unpooled.buffer(8).writeLong(2));
+        assertFalse(cumulation instanceof CompositeByteBuf);
+        assertEquals(16, cumulation.readableBytes());
+        assertTrue(cumulation.capacity() >= 512);
+
+        ByteBuf next = cumulator.cumulate(UnpooledByteBufAllocator.DEFAULT, cumulation,
+                Unpooled.buffer(8).writeLong(3));
+        // Enough room was reserved for the whole frame so the buffer is not replaced again.
+        assertSame(cumulation, next);
+        assertEquals(24, next.readableBytes());
+        next.release();
+    }
+
+    @Test
+    public void testAdaptiveCumulatorComposesLargeFrames() {
+        ByteToMessageDecoder.AdaptiveCumulator cumulator = new ByteToMessageDecoder.AdaptiveCumulator(1024);
+        cumulator.frameLengthHint(4096);
+
+        ByteBuf in = Unpooled.buffer(8).writeLong(2);
+        ByteBuf cumulation = cumulator.cumulate(UnpooledByteBufAllocator.DEFAULT, Unpooled.buffer(8).writeLong(1), in);
+        assertTrue(cumulation instanceof CompositeByteBuf);
+        assertEquals(16, cumulation.readableBytes());
+        assertEquals(1, in.refCnt());
+        cumulation.release();
+        assertEquals(0, in.refCnt());
+    }
+
+    @Test
+    public void testLengthFieldBasedFrameDecoderWithAdaptiveCumulator() {
+        LengthFieldBasedFrameDecoder decoder = new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 4);
+        decoder.setCumulator(new ByteToMessageDecoder.AdaptiveCumulator(256));
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        byte[] bytes = new byte[1024];
+        PlatformDependent.threadLocalRandom().nextBytes(bytes);
+        ByteBuf frames = Unpooled.buffer()
+                .writeInt(bytes.length).writeBytes(bytes)
+                .writeInt(16).writeBytes(bytes, 0, 16);
+        while (frames.isReadable()) {
+            channel.writeInbound(frames.readRetainedSlice(Math.min(100, frames.readableBytes())));
+        }
+        frames.release();
+
+        assertBuffer(Unpooled.wrappedBuffer(bytes), (ByteBuf) channel.readInbound());
+        assertBuffer(Unpooled.wrappedBuffer(bytes, 0, 16), (ByteBuf) channel.readInbound());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testLengthFieldBasedFrameDecoderHintsOncePerFrame() {
+        LengthFieldBasedFrameDecoder decoder = new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 4);
+        ByteToMessageDecoder.AdaptiveCumulator cumulator = new ByteToMessageDecoder.AdaptiveCumulator(65536);
+        decoder.setCumulator(cumulator);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        byte[] bytes = new byte[4096];
+        ByteBuf frames = Unpooled.buffer()
+                .writeInt(64).writeBytes(bytes, 0, 64)
+                .writeInt(bytes.length).writeBytes(bytes);
+        // The small frame arrives in two reads, the large frame in many reads.
+        channel.writeInbound(frames.readRetainedSlice(40));
+        channel.writeInbound(frames.readRetainedSlice(40));
+        while (frames.isReadable()) {
+            channel.writeInbound(frames.readRetainedSlice(Math.min(512, frames.readableBytes())));
+        }
+        frames.release();
+
+        // Each frame must be counted once, the lengths include the length field: 68 - 68 / 8 + 4100 / 8
+        assertEquals(572, cumulator.averageFrameLength());
+        assertBuffer(Unpooled.wrappedBuffer(bytes, 0, 64), (ByteBuf) channel.readInbound());
+        assertBuffer(Unpooled.wrappedBuffer(bytes), (ByteBuf) channel.readInbound());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
 }
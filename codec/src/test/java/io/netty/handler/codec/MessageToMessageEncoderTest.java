@@ -15,12 +15,19 @@
  */
 package io.netty.handler.codec;
 
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Test;
 
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
 
 public class MessageToMessageEncoderTest {
 
@@ -37,4 +44,30 @@ public class MessageToMessageEncoderTest {
         });
         channel.writeOutbound(new Object());
     }
+
+    @Test
+    public void testIntermediateWriteFailurePropagates() {
+        final Exception firstWriteException = new Exception();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                if ("first".equals(msg)) {
+                    promise.setFailure(firstWriteException);
+                } else {
+                    ctx.write(msg, promise);
+                }
+            }
+        }, new MessageToMessageEncoder<Object>() {
+            @Override
+            protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
+                out.add("first");
+                out.add("second");
+            }
+        });
+
+        ChannelFuture future = channel.writeAndFlush(new Object());
+        assertSame(firstWriteException, future.cause());
+        assertEquals("second", channel.readOutbound());
+        assertFalse(channel.finish());
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Utilization and latency metrics of a {@link SingleThreadEventExecutor}.
+ * <p>
+ * All values except {@link #wakeups()} are only written by the thread of the {@link SingleThreadEventExecutor}
+ * and published without any locking, so they can be read from any thread but may be slightly stale. The task queue
+ * depth and the task wait latency are sampled periodically instead of being recorded for every task.
+ */
+@UnstableApi
+public class EventExecutorMetrics {
+
+    private static final AtomicLongFieldUpdater<EventExecutorMetrics> TASKS_EXECUTED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventExecutorMetrics.class, "tasksExecuted");
+    private static final AtomicLongFieldUpdater<EventExecutorMetrics> TASK_NANOS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventExecutorMetrics.class, "taskNanos");
+
+    private volatile long tasksExecuted;
+    private volatile long taskNanos;
+    private final LongCounter wakeups = PlatformDependent.newLongCounter();
+    private final Histogram taskQueueDepth = new Histogram();
+    private final Histogram taskWaitNanos = new Histogram();
+
+    protected EventExecutorMetrics() { }
+
+    /**
+     * Returns the number of tasks which were executed.
+     */
+    public long tasksExecuted() {
+        return tasksExecuted;
+    }
+
+    /**
+     * Returns the total time in nanoseconds which was spent executing tasks.
+     */
+    public long taskNanos() {
+        return taskNanos;
+    }
+
+    /**
+     * Returns the number of times the executor thread was woken up because a task was added.
+     */
+    public long wakeups() {
+        return wakeups.value();
+    }
+
+    /**
+     * Returns the sampled number of tasks which were waiting in the task queue.
+     */
+    public Histogram taskQueueDepth() {
+        return taskQueueDepth;
+    }
+
+    /**
+     * Returns the sampled time in nanoseconds a task spent in the task queue before it was executed.
+     */
+    public Histogram taskWaitNanos() {
+        return taskWaitNanos;
+    }
+
+    /**
+     * Records that {@code tasks} tasks were executed in {@code nanos} nanoseconds. Must only be called by the
+     * executor thread.
+     */
+    final void recordTasks(long tasks, long nanos) {
+        TASKS_EXECUTED_UPDATER.lazySet(this, tasksExecuted + tasks);
+        TASK_NANOS_UPDATER.lazySet(this, taskNanos + nanos);
+    }
+
+    /**
+     * Records that the executor thread was woken up. May be called by any thread.
+     */
+    final void recordWakeup() {
+        wakeups.increment();
+    }
+
+    /**
+     * A histogram with power of two buckets which can be read and written without locking. Bucket {@code 0} counts
+     * the values {@code <= 0}, bucket {@code i} counts the values in {@code [2^(i-1), 2^i)}.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        public Histogram() { }
+
+        /**
+         * Records a value. Must only be called by a single thread.
+         */
+        public void record(long value) {
+            int index = index(value);
+            buckets.lazySet(index, buckets.get(index) + 1);
+        }
+
+        /**
+         * Records a value. May be called by multiple threads concurrently, but is more expensive than
+         * {@link #record(long)}.
+         */
+        public void recordConcurrently(long value) {
+            buckets.getAndIncrement(index(value));
+        }
+
+        private static int index(long value) {
+            return value <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+        }
+
+        /**
+         * Returns the number of buckets.
+         */
+        public int buckets() {
+            return BUCKETS;
+        }
+
+        /**
+         * Returns the number of recorded values in the given bucket.
+         */
+        public long count(int bucket) {
+            return buckets.get(bucket);
+        }
+
+        /**
+         * Returns the largest value which is counted in the given bucket.
+         */
+        public long upperBound(int bucket) {
+            if (bucket < 0 || bucket >= BUCKETS) {
+                throw new IndexOutOfBoundsException("bucket: " + bucket + " (expected: 0-" + (BUCKETS - 1) + ')');
+            }
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        /**
+         * Returns the total number of recorded values.
+         */
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket which contains the given quantile, or {@code 0} if nothing was
+         * recorded yet.
+         *
+         * @param quantile the quantile between {@code 0.0} and {@code 1.0}, e.g. {@code 0.99}.
+         */
+        public long valueAtQuantile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("quantile: " + quantile + " (expected: 0.0-1.0)");
+            }
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(BUCKETS - 1);
+        }
+    }
+}
@@ -56,6 +56,11 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     static final int DEFAULT_MAX_PENDING_EXECUTOR_TASKS = Math.max(16, SystemPropertyUtil.getInt("io.netty.eventexecutor.maxPendingTasks", Integer.MAX_VALUE));
 
+    private static final boolean METRICS_ENABLED =
+            SystemPropertyUtil.getBoolean("io.netty.eventexecutor.metrics", false);
+    private static final long METRICS_SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(1, SystemPropertyUtil.getInt("io.netty.eventexecutor.metricsSampleIntervalMillis", 10)));
+
     private static final int ST_NOT_STARTED = 1; // 未开始
     private static final int ST_STARTED = 2; // 已开始
     private static final int ST_SHUTTING_DOWN = 3; // 正在关闭中
@@ -82,6 +87,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     /**
      * {@link #thread} 字段的原子更新器
      */
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> LATENCY_SAMPLE_DUE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "latencySampleDue");
     private static final AtomicReferenceFieldUpdater<SingleThreadEventExecutor, ThreadProperties> PROPERTIES_UPDATER = AtomicReferenceFieldUpdater.newUpdater(SingleThreadEventExecutor.class, ThreadProperties.class, "threadProperties");
 
     /**
@@ -163,6 +170,20 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
 
+    /**
+     * 指标，未开启时为 null
+     */
+    private final EventExecutorMetrics metrics;
+    /**
+     * 下一次采样的时间
+     */
+    private long nextMetricsSampleTime;
+    /**
+     * 为 1 时，下一个添加的任务会被采样等待时间。由执行器线程在采样时设置，由添加任务的线程 CAS 清除
+     */
+    @SuppressWarnings("unused")
+    private volatile int latencySampleDue;
+
     /**
      * Create a new instance
      *
@@ -223,6 +244,44 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         this.executor = ObjectUtil.checkNotNull(executor, "executor");
         taskQueue = newTaskQueue(this.maxPendingTasks);
         rejectedExecutionHandler = ObjectUtil.checkNotNull(rejectedHandler, "rejectedHandler");
+        metrics = newMetrics();
+    }
+
+    /**
+     * Create the {@link EventExecutorMetrics} of this executor or return {@code null} to not collect any metrics.
+     * The default implementation only returns an instance if metrics are enabled via the
+     * {@code io.netty.eventexecutor.metrics} system property.
+     */
+    @UnstableApi
+    protected EventExecutorMetrics newMetrics() {
+        return METRICS_ENABLED ? new EventExecutorMetrics() : null;
+    }
+
+    /**
+     * Returns {@code true} if metrics are enabled via the {@code io.netty.eventexecutor.metrics} system property.
+     */
+    @UnstableApi
+    protected static boolean isMetricsEnabled() {
+        return METRICS_ENABLED;
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetrics} of this executor or {@code null} if no metrics are collected.
+     */
+    @UnstableApi
+    public EventExecutorMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Records that the executor thread was woken up because a task was added, if metrics are enabled. Must be called
+     * by implementations of {@link #wakeup(boolean)} which actually wake up the thread.
+     */
+    @UnstableApi
+    protected final void recordWakeup() {
+        if (metrics != null) {
+            metrics.recordWakeup();
+        }
     }
 
     /**
@@ -429,20 +488,23 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         assert inEventLoop();
         boolean fetchedAll;
         boolean ranAtLeastOne = false; // 是否执行过任务
+        final long metricsStartTime = metrics != null ? sampleMetrics() : 0;
+        long ranTasks = 0; // 执行任务计数
 
         do {
             // 从定时任务获得到时间的任务
             fetchedAll = fetchFromScheduledTaskQueue();
             // 执行任务队列中的所有任务
-            if (runAllTasksFrom(taskQueue)) {
-                // 若有任务执行，则标记为 true
-                ranAtLeastOne = true;
-            }
+            ranTasks += runTasksFrom(taskQueue);
         } while (!fetchedAll); // keep on processing until we fetched all scheduled tasks.
 
         // 如果执行过任务，则设置最后执行时间
-        if (ranAtLeastOne) {
+        if (ranTasks > 0) {
+            ranAtLeastOne = true;
             lastExecutionTime = ScheduledFutureTask.nanoTime();
+            if (metrics != null) {
+                metrics.recordTasks(ranTasks, lastExecutionTime - metricsStartTime);
+            }
         }
 
         // 执行所有任务完成的后续方法
@@ -458,20 +520,31 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * @return {@code true} if at least one task was executed.
      */
     protected final boolean runAllTasksFrom(Queue<Runnable> taskQueue) {
+        return runTasksFrom(taskQueue) > 0;
+    }
+
+    /**
+     * 执行队列中的所有任务
+     *
+     * @return 执行的任务数量
+     */
+    private static long runTasksFrom(Queue<Runnable> taskQueue) {
         // 获得队头的任务
         Runnable task = pollTaskFrom(taskQueue);
-        // 获取不到，结束执行，返回 false
+        // 获取不到，结束执行，返回 0
         if (task == null) {
-            return false;
+            return 0;
         }
+        long runTasks = 0;
         for (;;) {
             // 执行任务
             safeExecute(task);
+            runTasks ++;
             // 获得队头的任务
             task = pollTaskFrom(taskQueue);
-            // 获取不到，结束执行，返回 true
+            // 获取不到，结束执行，返回执行的任务数量
             if (task == null) {
-                return true;
+                return runTasks;
             }
         }
     }
@@ -483,6 +556,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * @return 是否有执行到任务
      */
     protected boolean runAllTasks(long timeoutNanos) {
+        final long metricsStartTime = metrics != null ? sampleMetrics() : 0;
         // 从定时任务获得到时间的任务
         fetchFromScheduledTaskQueue();
         // 获得队头的任务
@@ -534,9 +608,43 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
         // 设置最后执行时间
         this.lastExecutionTime = lastExecutionTime;
+        if (metrics != null) {
+            metrics.recordTasks(runTasks, lastExecutionTime - metricsStartTime);
+        }
         return true;
     }
 
+    /**
+     * Runs a task which was taken via {@link #takeTask()} or {@link #pollTask()} and updates the last execution
+     * time and the metrics of this executor. Use this instead of {@link Runnable#run()} if {@link #run()} does not
+     * execute its tasks via {@link #runAllTasks()}.
+     */
+    @UnstableApi
+    protected final void runTask(Runnable task) {
+        final long metricsStartTime = metrics != null ? sampleMetrics() : 0;
+        task.run();
+        updateLastExecutionTime();
+        if (metrics != null) {
+            metrics.recordTasks(1, lastExecutionTime - metricsStartTime);
+        }
+    }
+
+    /**
+     * 若到达采样时间，则采样任务队列的长度
+     *
+     * @return 当前时间
+     */
+    private long sampleMetrics() {
+        final long now = ScheduledFutureTask.nanoTime();
+        if (now - nextMetricsSampleTime >= 0) {
+            nextMetricsSampleTime = now + METRICS_SAMPLE_INTERVAL_NANOS;
+            metrics.taskQueueDepth().record(taskQueue.size());
+            // 让下一个添加的任务记录等待时间，执行器空闲时不会产生任何额外的任务或唤醒
+            latencySampleDue = 1;
+        }
+        return now;
+    }
+
     /**
      * Invoked before returning from {@link #runAllTasks()} and {@link #runAllTasks(long)}.
      */
@@ -877,12 +985,20 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         // 获得当前是否在 EventLoop 的线程中
         boolean inEventLoop = inEventLoop();
         // 添加到任务队列
-        addTask(task);
+        Runnable queued = task;
+        if (metrics != null && latencySampleDue == 1 && LATENCY_SAMPLE_DUE_UPDATER.compareAndSet(this, 1, 0)) {
+            queued = new LatencySampledTask(task, ScheduledFutureTask.nanoTime());
+            if (!offerTask(queued)) {
+                reject(task);
+            }
+        } else {
+            addTask(task);
+        }
         if (!inEventLoop) {
             // 创建线程
             startThread();
             // 若已经关闭，移除任务，并进行拒绝
-            if (isShutdown() && removeTask(task)) {
+            if (isShutdown() && removeTask(queued)) {
                 reject();
             }
         }
@@ -1064,6 +1180,26 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         });
     }
 
+    /**
+     * Wraps a task which was sampled to measure how long it waits in the task queue, including the time the executor
+     * spends outside of {@link #runAllTasks()}, e.g. processing I/O.
+     */
+    private final class LatencySampledTask implements Runnable {
+        private final Runnable task;
+        private final long queuedTime;
+
+        LatencySampledTask(Runnable task, long queuedTime) {
+            this.task = task;
+            this.queuedTime = queuedTime;
+        }
+
+        @Override
+        public void run() {
+            metrics.taskWaitNanos().record(ScheduledFutureTask.nanoTime() - queuedTime);
+            task.run();
+        }
+    }
+
     private static final class DefaultThreadProperties implements ThreadProperties {
 
         private final Thread t;
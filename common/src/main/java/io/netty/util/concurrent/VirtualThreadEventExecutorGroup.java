@@ -0,0 +1,361 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} which executes the tasks of each {@link EventExecutor} returned by {@link #next()} in
+ * order on a virtual thread, which makes it a good fit for {@link io.netty.channel.ChannelHandler}s which call
+ * blocking APIs.
+ * <p>
+ * When used with
+ * {@link io.netty.channel.ChannelPipeline#addLast(EventExecutorGroup, io.netty.channel.ChannelHandler...)} every
+ * {@link io.netty.channel.Channel} gets its own {@link OrderedEventExecutor}. Whenever it has pending tasks a new
+ * virtual thread is started via a {@link ThreadPerTaskExecutor} which runs the tasks and terminates once there are
+ * none left, so idle {@link io.netty.channel.Channel}s do not hold on to a thread. {@link FastThreadLocal}s can be
+ * used by the tasks, they are removed when the virtual thread terminates.
+ * <p>
+ * Virtual threads are detected via reflection, use {@link #isAvailable()} to check if the current JVM supports them.
+ * Like the executors of {@link NonStickyEventExecutorGroup}, the {@link EventExecutor}s of this group do not support
+ * scheduling tasks.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Throwable cause = null;
+        try {
+            // Thread.ofVirtual().name(prefix, start).factory() is available since Java 21.
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            // Make sure we are allowed to create the factory.
+            factory.invoke(ofVirtual.invoke(null));
+        } catch (Throwable t) {
+            cause = t;
+            ofVirtual = null;
+            name = null;
+            factory = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        UNAVAILABILITY_CAUSE = cause;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Virtual threads: {}", cause == null ? "available" : "unavailable");
+        }
+    }
+
+    /**
+     * Returns {@code true} if the current JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Returns the cause of the unavailability of virtual threads or {@code null} if they are available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    /**
+     * Returns a new {@link ThreadFactory} which creates virtual threads named {@code <prefix>-<n>}. The created
+     * threads remove all {@link FastThreadLocal}s once they terminate.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available.
+     */
+    public static ThreadFactory newVirtualThreadFactory(String prefix) {
+        ObjectUtil.checkNotNull(prefix, "prefix");
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (UnsupportedOperationException) new UnsupportedOperationException(
+                    "Virtual threads are not available").initCause(UNAVAILABILITY_CAUSE);
+        }
+        final ThreadFactory factory;
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + '-', 0L);
+            factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (Exception e) {
+            throw (UnsupportedOperationException) new UnsupportedOperationException(
+                    "Unable to create a virtual thread factory").initCause(e);
+        }
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return factory.newThread(FastThreadLocalRunnable.wrap(r));
+            }
+        };
+    }
+
+    private final Executor executor;
+    /**
+     * The {@link EventExecutor}s returned by {@link #next()}. Weakly referenced, as an {@link EventExecutor} is not
+     * notified once it is not used anymore.
+     */
+    private final Set<EventExecutor> children =
+            Collections.newSetFromMap(new WeakHashMap<EventExecutor, Boolean>());
+    /**
+     * The number of running threads plus the number of {@link OrderedExecutor#execute(Runnable)} calls in progress.
+     */
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    private volatile boolean shuttingDown;
+
+    /**
+     * Creates a new instance whose virtual threads are named after this class.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available.
+     */
+    public VirtualThreadEventExecutorGroup() {
+        this(DefaultThreadFactory.toPoolName(VirtualThreadEventExecutorGroup.class));
+    }
+
+    /**
+     * Creates a new instance whose virtual threads are named {@code <threadNamePrefix>-<n>}.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available.
+     */
+    public VirtualThreadEventExecutorGroup(String threadNamePrefix) {
+        this(newVirtualThreadFactory(threadNamePrefix));
+    }
+
+    /**
+     * Only visible for testing, allows to run the tasks on platform threads.
+     */
+    VirtualThreadEventExecutorGroup(ThreadFactory threadFactory) {
+        executor = new ThreadPerTaskExecutor(threadFactory);
+    }
+
+    /**
+     * Returns a new {@link OrderedEventExecutor} with its own task queue.
+     */
+    @Override
+    public EventExecutor next() {
+        EventExecutor executor = new OrderedExecutor();
+        synchronized (children) {
+            children.add(executor);
+        }
+        return executor;
+    }
+
+    /**
+     * Returns a snapshot of the {@link EventExecutor}s returned by {@link #next()} which are still in use.
+     */
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        List<EventExecutor> executors;
+        synchronized (children) {
+            executors = new ArrayList<EventExecutor>(children);
+        }
+        return Collections.unmodifiableList(executors).iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Shuts down this group once all pending tasks were executed. As no new tasks are accepted after this method
+     * was called, the quiet period is ignored.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        shuttingDown = true;
+        if (activeThreads.get() == 0) {
+            terminationFuture.trySuccess(null);
+        }
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Deprecated
+    @Override
+    public void shutdown() {
+        shutdownGracefully();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shuttingDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture.isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    private void threadTerminated() {
+        if (activeThreads.decrementAndGet() == 0 && shuttingDown) {
+            terminationFuture.trySuccess(null);
+        }
+    }
+
+    private final class OrderedExecutor extends AbstractEventExecutor implements OrderedEventExecutor, Runnable {
+        private static final int NONE = 0;
+        private static final int SUBMITTED = 1;
+        private static final int RUNNING = 2;
+
+        /**
+         * Supports {@link Queue#remove(Object)}, which is needed to roll back a task if no thread could be started.
+         */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile Thread runner;
+
+        OrderedExecutor() {
+            super(VirtualThreadEventExecutorGroup.this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!state.compareAndSet(SUBMITTED, RUNNING)) {
+                    return;
+                }
+                runner = Thread.currentThread();
+                for (;;) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        runner = null;
+                        state.set(NONE);
+                        // A task may have been added after the queue was found empty but before the state was reset.
+                        if (tasks.isEmpty() || !state.compareAndSet(NONE, RUNNING)) {
+                            return;
+                        }
+                        runner = Thread.currentThread();
+                        continue;
+                    }
+                    safeExecute(task);
+                }
+            } finally {
+                threadTerminated();
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return runner == thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return VirtualThreadEventExecutorGroup.this.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return VirtualThreadEventExecutorGroup.this.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return VirtualThreadEventExecutorGroup.this.terminationFuture();
+        }
+
+        @Deprecated
+        @Override
+        public void shutdown() {
+            VirtualThreadEventExecutorGroup.this.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return VirtualThreadEventExecutorGroup.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return VirtualThreadEventExecutorGroup.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return VirtualThreadEventExecutorGroup.this.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            // Count this call before checking shuttingDown, so the group can not terminate before the task was
+            // handed over to a thread. If a thread is started, the count is handed over to it.
+            activeThreads.incrementAndGet();
+            boolean started = false;
+            try {
+                if (shuttingDown) {
+                    throw new RejectedExecutionException();
+                }
+                tasks.offer(command);
+                if (state.compareAndSet(NONE, SUBMITTED)) {
+                    try {
+                        executor.execute(this);
+                        started = true;
+                    } catch (Throwable t) {
+                        state.set(NONE);
+                        tasks.remove(command);
+                        PlatformDependent.throwException(t);
+                    }
+                }
+            } finally {
+                if (!started) {
+                    threadTerminated();
+                }
+            }
+        }
+    }
+}
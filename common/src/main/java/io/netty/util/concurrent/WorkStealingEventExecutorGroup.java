@@ -0,0 +1,380 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link EventExecutorGroup} which preserves the execution order of the {@link Runnable}s submitted to each of the
+ * {@link EventExecutor}s returned by {@link #next()}, but lets idle threads steal the pending work of busy ones.
+ * <p>
+ * Every {@link EventExecutor} returned by {@link #next()} has its own task queue, so when used with
+ * {@link io.netty.channel.ChannelPipeline#addLast(EventExecutorGroup, io.netty.channel.ChannelHandler...)} each
+ * {@link io.netty.channel.Channel} gets its own queue. A queue with pending tasks is scheduled on the thread which
+ * last executed it. If that thread is busy, for example because a task of another {@link io.netty.channel.Channel}
+ * takes a long time, an idle thread steals the whole queue and executes it. Unlike {@link DefaultEventExecutorGroup},
+ * one slow task therefore only delays the tasks of its own {@link io.netty.channel.Channel}.
+ * <p>
+ * Like the executors of {@link NonStickyEventExecutorGroup}, the {@link EventExecutor}s of this group do not support
+ * scheduling tasks.
+ */
+@UnstableApi
+public final class WorkStealingEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(WorkStealingEventExecutorGroup.class);
+
+    /**
+     * Upper bound of the time an idle worker sleeps before it looks for work to steal again, in case it missed a
+     * wakeup.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Worker[] workers;
+    private final List<EventExecutor> executors;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final AtomicInteger activeWorkers;
+    /**
+     * The number of {@link OrderedExecutor#execute(Runnable)} calls which passed the {@link #shuttingDown} check but
+     * may not have scheduled their {@link OrderedExecutor} yet. Workers do not exit while this is not {@code 0}.
+     */
+    private final AtomicInteger pendingExecutes = new AtomicInteger();
+    private final int maxTaskExecutePerRun;
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    private volatile boolean shuttingDown;
+
+    /**
+     * @see #WorkStealingEventExecutorGroup(int, ThreadFactory)
+     */
+    public WorkStealingEventExecutorGroup(int nThreads) {
+        this(nThreads, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param nThreads          the number of threads that will be used by this instance.
+     * @param threadFactory     the ThreadFactory to use, or {@code null} if the default should be used.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, threadFactory, 1024);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param nThreads              the number of threads that will be used by this instance.
+     * @param threadFactory         the ThreadFactory to use, or {@code null} if the default should be used.
+     * @param maxTaskExecutePerRun  the maximum number of tasks of one {@link EventExecutor} which are executed before
+     *                              the tasks of the other {@link EventExecutor}s get a chance to run.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory, int maxTaskExecutePerRun) {
+        ObjectUtil.checkPositive(nThreads, "nThreads");
+        this.maxTaskExecutePerRun = ObjectUtil.checkPositive(maxTaskExecutePerRun, "maxTaskExecutePerRun");
+        if (threadFactory == null) {
+            threadFactory = new DefaultThreadFactory(WorkStealingEventExecutorGroup.class);
+        }
+        Executor executor = new ThreadPerTaskExecutor(threadFactory);
+
+        workers = new Worker[nThreads];
+        List<EventExecutor> executors = new ArrayList<EventExecutor>(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+            workers[i] = new Worker(i);
+            executors.add(new OrderedExecutor(workers[i]));
+        }
+        this.executors = Collections.unmodifiableList(executors);
+        activeWorkers = new AtomicInteger(nThreads);
+        for (Worker worker : workers) {
+            executor.execute(worker);
+        }
+    }
+
+    /**
+     * Returns a new {@link OrderedEventExecutor} with its own task queue.
+     */
+    @Override
+    public EventExecutor next() {
+        return new OrderedExecutor(workers[Math.abs(nextWorker.getAndIncrement() % workers.length)]);
+    }
+
+    /**
+     * Returns one {@link EventExecutor} per thread of this group.
+     */
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return executors.iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Shuts down this group once all pending tasks were executed. As no new tasks are accepted after this method
+     * was called, the quiet period is ignored.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        shuttingDown = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Deprecated
+    @Override
+    public void shutdown() {
+        shutdownGracefully();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shuttingDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture.isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    /**
+     * Adds the {@link OrderedExecutor} to the run queue of the given {@link Worker} and makes sure a thread will pick
+     * it up soon.
+     */
+    private void enqueue(OrderedExecutor executor, Worker worker) {
+        worker.queue.offer(executor);
+        if (worker.idle) {
+            LockSupport.unpark(worker.thread);
+            return;
+        }
+        // The worker is busy, wake up an idle one so it can steal the work.
+        for (int i = 1; i < workers.length; i++) {
+            Worker other = workers[(worker.index + i) % workers.length];
+            if (other.idle) {
+                LockSupport.unpark(other.thread);
+                return;
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final Queue<OrderedExecutor> queue = new ConcurrentLinkedQueue<OrderedExecutor>();
+        final int index;
+        volatile Thread thread;
+        volatile boolean idle;
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                for (;;) {
+                    OrderedExecutor executor = poll();
+                    if (executor == null) {
+                        idle = true;
+                        // Check again as a task may have been scheduled before we were marked as idle.
+                        executor = poll();
+                        if (executor == null) {
+                            if (shuttingDown && pendingExecutes.get() == 0) {
+                                // No new tasks are accepted anymore and all accepted ones were scheduled, so drain
+                                // the queues a last time. Tasks of an executor which is still running are
+                                // rescheduled to the worker that runs it.
+                                executor = poll();
+                                if (executor == null) {
+                                    break;
+                                }
+                            } else {
+                                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                            }
+                        }
+                        idle = false;
+                        if (executor == null) {
+                            continue;
+                        }
+                    }
+                    executor.run(this);
+                }
+            } catch (Throwable t) {
+                logger.warn("Unexpected exception from a worker of {}", WorkStealingEventExecutorGroup.this, t);
+            } finally {
+                idle = false;
+                if (activeWorkers.decrementAndGet() == 0) {
+                    terminationFuture.trySuccess(null);
+                }
+            }
+        }
+
+        /**
+         * Polls the own run queue first and then tries to steal from the other workers.
+         */
+        private OrderedExecutor poll() {
+            OrderedExecutor executor = queue.poll();
+            if (executor != null) {
+                return executor;
+            }
+            for (int i = 1; i < workers.length; i++) {
+                executor = workers[(index + i) % workers.length].queue.poll();
+                if (executor != null) {
+                    return executor;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final class OrderedExecutor extends AbstractEventExecutor implements OrderedEventExecutor {
+        private static final int NONE = 0;
+        private static final int SUBMITTED = 1;
+        private static final int RUNNING = 2;
+
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        private final AtomicInteger state = new AtomicInteger();
+        /**
+         * The {@link Worker} which executed the tasks last, accessed while {@link #state} is {@link #RUNNING} or by
+         * the thread which changed it from {@link #NONE} to {@link #SUBMITTED}.
+         */
+        private Worker worker;
+        private volatile Thread runner;
+
+        OrderedExecutor(Worker worker) {
+            super(WorkStealingEventExecutorGroup.this);
+            this.worker = worker;
+        }
+
+        void run(Worker worker) {
+            if (!state.compareAndSet(SUBMITTED, RUNNING)) {
+                return;
+            }
+            // Stick to the worker which stole us, it is likely to be less busy.
+            this.worker = worker;
+            runner = Thread.currentThread();
+            int i = 0;
+            try {
+                for (; i < maxTaskExecutePerRun; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    safeExecute(task);
+                }
+            } finally {
+                runner = null;
+                if (i == maxTaskExecutePerRun) {
+                    // Give the other executors a chance to run.
+                    state.set(SUBMITTED);
+                    enqueue(this, worker);
+                } else {
+                    state.set(NONE);
+                    // A task may have been added after the queue was found empty but before the state was reset.
+                    if (!tasks.isEmpty() && state.compareAndSet(NONE, SUBMITTED)) {
+                        enqueue(this, worker);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return runner == thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return WorkStealingEventExecutorGroup.this.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return WorkStealingEventExecutorGroup.this.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return WorkStealingEventExecutorGroup.this.terminationFuture();
+        }
+
+        @Deprecated
+        @Override
+        public void shutdown() {
+            WorkStealingEventExecutorGroup.this.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return WorkStealingEventExecutorGroup.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return WorkStealingEventExecutorGroup.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return WorkStealingEventExecutorGroup.this.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            // Announce the task before checking shuttingDown, so either the workers wait until it was scheduled or
+            // this call sees shuttingDown and rejects it.
+            pendingExecutes.incrementAndGet();
+            try {
+                if (shuttingDown || !tasks.offer(command)) {
+                    throw new RejectedExecutionException();
+                }
+                if (state.compareAndSet(NONE, SUBMITTED)) {
+                    enqueue(this, worker);
+                }
+            } finally {
+                pendingExecutes.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.concurrent.EventExecutorMetrics.Histogram;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventExecutorMetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        Histogram histogram = new Histogram();
+        histogram.record(-1);
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(1024);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(7, histogram.count());
+        assertEquals(2, histogram.count(0));
+        assertEquals(1, histogram.count(1));
+        assertEquals(2, histogram.count(2));
+        assertEquals(1, histogram.count(11));
+        assertEquals(1, histogram.count(63));
+        assertEquals(0, histogram.upperBound(0));
+        assertEquals(1, histogram.upperBound(1));
+        assertEquals(3, histogram.upperBound(2));
+        assertEquals(2047, histogram.upperBound(11));
+        assertEquals(Long.MAX_VALUE, histogram.upperBound(63));
+    }
+
+    @Test
+    public void testHistogramQuantile() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.valueAtQuantile(0.5));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+        histogram.record(100000);
+        assertEquals(15, histogram.valueAtQuantile(0.5));
+        assertEquals(15, histogram.valueAtQuantile(0.99));
+        assertEquals(131071, histogram.valueAtQuantile(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile() {
+        new Histogram().valueAtQuantile(1.5);
+    }
+}
@@ -72,6 +72,169 @@ public class SingleThreadEventExecutorTest {
         }
     }
 
+    @Test(timeout = 5000)
+    public void testMetrics() throws Exception {
+        SingleThreadEventExecutor executor = new SingleThreadEventExecutor(
+                null, new DefaultThreadFactory("test"), false) {
+            @Override
+            protected EventExecutorMetrics newMetrics() {
+                return new EventExecutorMetrics();
+            }
+
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    runAllTasks();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ignore) {
+                        // Ignore
+                    }
+                }
+            }
+        };
+        EventExecutorMetrics metrics = executor.metrics();
+        Assert.assertNotNull(metrics);
+
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+                // Noop.
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            executor.execute(noop);
+        }
+        executor.submit(noop).sync();
+        Assert.assertTrue(metrics.tasksExecuted() >= 101);
+        Assert.assertTrue(metrics.taskNanos() > 0);
+
+        // The queue depth and the wait latency are sampled periodically.
+        while (metrics.taskWaitNanos().count() == 0) {
+            executor.execute(noop);
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(metrics.taskQueueDepth().count() > 0);
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test(timeout = 5000)
+    public void testMetricsDoNotAddTasksToIdleExecutor() throws Exception {
+        SingleThreadEventExecutor executor = new SingleThreadEventExecutor(
+                null, new DefaultThreadFactory("test"), false) {
+            @Override
+            protected EventExecutorMetrics newMetrics() {
+                return new EventExecutorMetrics();
+            }
+
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    runAllTasks();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ignore) {
+                        // Ignore
+                    }
+                }
+            }
+        };
+        EventExecutorMetrics metrics = executor.metrics();
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Noop.
+            }
+        }).sync();
+        long tasksExecuted = metrics.tasksExecuted();
+
+        // Many sample intervals pass, but sampling must neither run tasks nor wake up the executor.
+        Thread.sleep(200);
+        Assert.assertEquals(tasksExecuted, metrics.tasksExecuted());
+        Assert.assertEquals(0, metrics.wakeups());
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test(timeout = 5000)
+    public void testMetricsOfTakeTaskLoop() throws Exception {
+        SingleThreadEventExecutor executor = new SingleThreadEventExecutor(
+                null, new DefaultThreadFactory("test"), false) {
+            @Override
+            protected EventExecutorMetrics newMetrics() {
+                return new EventExecutorMetrics();
+            }
+
+            @Override
+            protected void run() {
+                // Same as DefaultEventExecutor.
+                for (;;) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        runTask(task);
+                    }
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            }
+        };
+        EventExecutorMetrics metrics = executor.metrics();
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+                // Noop.
+            }
+        };
+        executor.submit(noop).sync();
+        Assert.assertTrue(metrics.tasksExecuted() >= 1);
+
+        while (metrics.taskWaitNanos().count() == 0) {
+            executor.submit(noop).sync();
+            Thread.sleep(10);
+        }
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test(timeout = 5000)
+    public void testMetricsTaskWaitOutsideRunAllTasks() throws Exception {
+        final long busyMillis = 50;
+        SingleThreadEventExecutor executor = new SingleThreadEventExecutor(
+                null, new DefaultThreadFactory("test"), false) {
+            @Override
+            protected EventExecutorMetrics newMetrics() {
+                return new EventExecutorMetrics();
+            }
+
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    runAllTasks();
+                    // Simulate processing I/O.
+                    try {
+                        Thread.sleep(busyMillis);
+                    } catch (InterruptedException ignore) {
+                        // Ignore
+                    }
+                }
+            }
+        };
+        EventExecutorMetrics metrics = executor.metrics();
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+                // Noop.
+            }
+        };
+
+        // Tasks submitted while the executor is busy wait until the next runAllTasks().
+        while (metrics.taskWaitNanos().count() < 5) {
+            executor.execute(noop);
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(metrics.taskWaitNanos().valueAtQuantile(1) >= TimeUnit.MILLISECONDS.toNanos(busyMillis / 4));
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
     @Test
     public void testThreadProperties() {
         final AtomicReference<Thread> threadRef = new AtomicReference<Thread>();
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PlatformDependent;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test
+    public void testAvailability() {
+        if (PlatformDependent.javaVersion() < 21) {
+            assertFalse(VirtualThreadEventExecutorGroup.isAvailable());
+            assertNotNull(VirtualThreadEventExecutorGroup.unavailabilityCause());
+            try {
+                new VirtualThreadEventExecutorGroup();
+                fail();
+            } catch (UnsupportedOperationException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOrderingWithFastThreadLocal() throws Throwable {
+        // Use platform threads so the ordering is also tested on JDKs without virtual threads.
+        testOrderingWithFastThreadLocal(new VirtualThreadEventExecutorGroup(
+                new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class)));
+    }
+
+    @Test(timeout = 10000)
+    public void testOrderingOnVirtualThreads() throws Throwable {
+        assumeTrue(VirtualThreadEventExecutorGroup.isAvailable());
+        testOrderingWithFastThreadLocal(new VirtualThreadEventExecutorGroup());
+    }
+
+    private static void testOrderingWithFastThreadLocal(VirtualThreadEventExecutorGroup group)
+            throws Throwable {
+        final FastThreadLocal<Integer> threadLocal = new FastThreadLocal<Integer>();
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        final int executorCount = 8;
+        final int tasks = 5000;
+        final CountDownLatch latch = new CountDownLatch(executorCount * tasks);
+        try {
+            EventExecutor[] executors = new EventExecutor[executorCount];
+            final int[][] counters = new int[executorCount][1];
+            for (int i = 0; i < executorCount; i++) {
+                executors[i] = group.next();
+            }
+            for (int t = 0; t < tasks; t++) {
+                for (int i = 0; i < executorCount; i++) {
+                    final int[] counter = counters[i];
+                    final int expected = t;
+                    final EventExecutor executor = executors[i];
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!executor.inEventLoop()) {
+                                cause.compareAndSet(null, new AssertionError("not in event loop"));
+                            }
+                            threadLocal.set(expected);
+                            int actual = counter[0]++;
+                            if (actual != expected) {
+                                cause.compareAndSet(null,
+                                        new AssertionError("expected " + expected + " but was " + actual));
+                            }
+                            latch.countDown();
+                        }
+                    });
+                }
+            }
+            latch.await();
+            assertNull(cause.get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockingTaskDoesNotBlockOtherExecutors() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(
+                new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class));
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            group.next().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertEquals(Boolean.TRUE, group.next().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Boolean.TRUE;
+                }
+            }).get(5, TimeUnit.SECONDS));
+            release.countDown();
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdown() throws Exception {
+        testShutdown(new VirtualThreadEventExecutorGroup(
+                new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class)));
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreadEventExecutorGroup.isAvailable());
+        testShutdown(new VirtualThreadEventExecutorGroup());
+    }
+
+    private static void testShutdown(VirtualThreadEventExecutorGroup group) throws Exception {
+        EventExecutor executor = group.next();
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Future<?> termination = group.shutdownGracefully();
+        assertTrue(group.isShuttingDown());
+        assertFalse(termination.await(100, TimeUnit.MILLISECONDS));
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        release.countDown();
+        termination.syncUninterruptibly();
+        assertTrue(group.isTerminated());
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectedIfThreadCanNotBeStarted() throws Exception {
+        final DefaultThreadFactory threadFactory = new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class);
+        final AtomicInteger newThreadCalls = new AtomicInteger();
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                if (newThreadCalls.getAndIncrement() == 0) {
+                    throw new RejectedExecutionException("no thread");
+                }
+                return threadFactory.newThread(r);
+            }
+        });
+        try {
+            EventExecutor executor = group.next();
+            final AtomicInteger executed = new AtomicInteger();
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    executed.incrementAndGet();
+                }
+            };
+            try {
+                executor.execute(task);
+                fail();
+            } catch (RejectedExecutionException expected) {
+                assertEquals("no thread", expected.getMessage());
+            }
+
+            // The rejected task was removed again, so only the second one runs.
+            executor.submit(task).sync();
+            assertEquals(1, executed.get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+        assertTrue(group.isTerminated());
+    }
+
+    @Test
+    public void testIterator() {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(
+                new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class));
+        try {
+            EventExecutor first = group.next();
+            EventExecutor second = group.next();
+            Set<EventExecutor> executors = new HashSet<EventExecutor>();
+            for (EventExecutor executor : group) {
+                executors.add(executor);
+            }
+            assertEquals(2, executors.size());
+            assertTrue(executors.contains(first));
+            assertTrue(executors.contains(second));
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}
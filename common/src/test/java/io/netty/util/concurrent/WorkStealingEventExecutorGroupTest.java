@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WorkStealingEventExecutorGroupTest {
+
+    @Test(timeout = 10000)
+    public void testOrderingPerExecutor() throws Throwable {
+        final int executorCount = 16;
+        final int tasks = 10000;
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(4, null, 64);
+        try {
+            final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+            final CountDownLatch latch = new CountDownLatch(executorCount * tasks);
+            List<EventExecutor> executors = new ArrayList<EventExecutor>();
+            // Only accessed by the tasks of the executor with the same index.
+            int[][] counters = new int[executorCount][1];
+            for (int i = 0; i < executorCount; i++) {
+                executors.add(group.next());
+            }
+            for (int t = 0; t < tasks; t++) {
+                for (int i = 0; i < executorCount; i++) {
+                    executors.get(i).execute(new OrderCheckingTask(counters[i], t, cause, latch));
+                }
+            }
+            latch.await();
+            assertNull(cause.get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSlowTaskDoesNotBlockOtherExecutors() throws Exception {
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(2);
+        try {
+            // Both executors are scheduled on the same thread initially.
+            EventExecutor slow = group.next();
+            group.next();
+            EventExecutor fast = group.next();
+
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            slow.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            blocked.await();
+
+            // Must be stolen by the idle thread while the first one is still blocked.
+            assertTrue(fast.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).await(5, TimeUnit.SECONDS));
+            release.countDown();
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testInEventLoop() throws Exception {
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(2);
+        try {
+            final EventExecutor executor = group.next();
+            assertFalse(executor.inEventLoop());
+            assertTrue(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return executor.inEventLoop();
+                }
+            }).get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownRunsPendingTasksAndRejectsNewOnes() throws Exception {
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(2);
+        EventExecutor executor = group.next();
+        final CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        group.shutdownGracefully().syncUninterruptibly();
+        assertEquals(0, latch.getCount());
+        assertTrue(group.isTerminated());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testAcceptedTasksRunWhenExecuteRacesWithShutdown() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            final WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(2);
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger executed = new AtomicInteger();
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    executed.incrementAndGet();
+                }
+            };
+            final CountDownLatch started = new CountDownLatch(4);
+            List<Thread> submitters = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                Thread submitter = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        EventExecutor executor = group.next();
+                        started.countDown();
+                        try {
+                            for (;;) {
+                                executor.execute(task);
+                                accepted.incrementAndGet();
+                            }
+                        } catch (RejectedExecutionException expected) {
+                            // The group was shut down.
+                        }
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            started.await();
+            group.shutdownGracefully().syncUninterruptibly();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+            assertEquals(accepted.get(), executed.get());
+        }
+    }
+
+    private static final class OrderCheckingTask implements Runnable {
+        private final int[] counter;
+        private final int expected;
+        private final AtomicReference<Throwable> cause;
+        private final CountDownLatch latch;
+
+        OrderCheckingTask(int[] counter, int expected, AtomicReference<Throwable> cause, CountDownLatch latch) {
+            this.counter = counter;
+            this.expected = expected;
+            this.cause = cause;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            int actual = counter[0]++;
+            if (actual != expected) {
+                cause.compareAndSet(null, new AssertionError("expected " + expected + " but was " + actual));
+            }
+            latch.countDown();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import io.netty.util.internal.ObjectUtil;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSessionContext;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Adapter class which allows to wrap another {@link SslContext} and init {@link SSLEngine} instances.
@@ -86,6 +87,21 @@ public abstract class DelegatingSslContext extends SslContext {
         return handler;
     }
 
+    @Override
+    protected final SslHandler newHandler(ByteBufAllocator alloc, boolean startTls, Executor delegatedTaskExecutor) {
+        SslHandler handler = ctx.newHandler(alloc, startTls, delegatedTaskExecutor);
+        initHandler(handler);
+        return handler;
+    }
+
+    @Override
+    protected final SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls,
+                                          Executor delegatedTaskExecutor) {
+        SslHandler handler = ctx.newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor);
+        initHandler(handler);
+        return handler;
+    }
+
     @Override
     public final SSLSessionContext sessionContext() {
         return ctx.sessionContext();
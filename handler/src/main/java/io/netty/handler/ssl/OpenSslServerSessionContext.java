@@ -25,6 +25,9 @@ import java.util.concurrent.locks.Lock;
  * {@link OpenSslSessionContext} implementation which offers extra methods which are only useful for the server-side.
  */
 public final class OpenSslServerSessionContext extends OpenSslSessionContext {
+    private volatile OpenSslSessionTicketKeyRotator ticketKeyRotator;
+    private volatile OpenSslSessionTicketKey[] rotatedKeys;
+
     OpenSslServerSessionContext(ReferenceCountedOpenSslContext context, OpenSslKeyMaterialProvider provider) {
         super(context, provider);
     }
@@ -121,4 +124,43 @@ public final class OpenSslServerSessionContext extends OpenSslSessionContext {
             writerLock.unlock();
         }
     }
+
+    /**
+     * Sets the {@link OpenSslSessionTicketKeyRotator} which provides the session ticket keys of this context, or
+     * {@code null} to stop rotating the keys. The same rotator can be used by many contexts, so that sessions can be
+     * resumed on all of them.
+     */
+    public void setTicketKeyRotator(OpenSslSessionTicketKeyRotator rotator) {
+        synchronized (this) {
+            ticketKeyRotator = rotator;
+            rotatedKeys = null;
+        }
+        updateTicketKeys();
+    }
+
+    /**
+     * Returns the {@link OpenSslSessionTicketKeyRotator} of this context, or {@code null} if none is used.
+     */
+    public OpenSslSessionTicketKeyRotator getTicketKeyRotator() {
+        return ticketKeyRotator;
+    }
+
+    @Override
+    void updateTicketKeys() {
+        OpenSslSessionTicketKeyRotator rotator = ticketKeyRotator;
+        if (rotator == null || rotator.currentKeys() == rotatedKeys) {
+            return;
+        }
+        synchronized (this) {
+            rotator = ticketKeyRotator;
+            if (rotator != null) {
+                // 在锁中重新获取，避免用较旧的 key 覆盖较新的 key
+                OpenSslSessionTicketKey[] keys = rotator.currentKeys();
+                if (keys != rotatedKeys) {
+                    setTicketKeys(keys);
+                    rotatedKeys = keys;
+                }
+            }
+        }
+    }
 }
@@ -113,6 +113,13 @@ public abstract class OpenSslSessionContext implements SSLSessionContext {
         }
     }
 
+    /**
+     * Called before a new {@link javax.net.ssl.SSLEngine} is created for this context.
+     */
+    void updateTicketKeys() {
+        // NOOP
+    }
+
     /**
      * Enable or disable caching of SSL sessions.
      */
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Generates random {@link OpenSslSessionTicketKey}s and replaces the key which is used to encrypt new session tickets
+ * every rotation interval. The previous keys are kept so that tickets which were issued before the rotation can still
+ * be used to resume a session, and such tickets are renewed with the new key.
+ * <p>
+ * One instance can be shared by many {@link OpenSslServerSessionContext}s, which allows clients to resume sessions
+ * on all the server contexts which use it. See {@link OpenSslServerSessionContext#setTicketKeyRotator}.
+ * The keys are rotated lazily when a new {@link javax.net.ssl.SSLEngine} is created, so no thread is used.
+ */
+@UnstableApi
+public final class OpenSslSessionTicketKeyRotator {
+
+    private final SecureRandom random = new SecureRandom();
+    private final long rotationIntervalNanos;
+    private final int maxKeys;
+    private volatile OpenSslSessionTicketKey[] keys;
+    private volatile long nextRotationNanos;
+
+    /**
+     * Creates a new instance which keeps the current and the previous key.
+     *
+     * @param rotationInterval the interval after which a new key is used to encrypt session tickets
+     * @param unit the {@link TimeUnit} of {@code rotationInterval}
+     */
+    public OpenSslSessionTicketKeyRotator(long rotationInterval, TimeUnit unit) {
+        this(rotationInterval, unit, 2);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rotationInterval the interval after which a new key is used to encrypt session tickets
+     * @param unit the {@link TimeUnit} of {@code rotationInterval}
+     * @param maxKeys the number of keys to keep, including the current one. Session tickets can be used for
+     *                {@code rotationInterval * maxKeys} at most.
+     */
+    public OpenSslSessionTicketKeyRotator(long rotationInterval, TimeUnit unit, int maxKeys) {
+        rotationIntervalNanos = checkNotNull(unit, "unit").toNanos(checkPositive(rotationInterval, "rotationInterval"));
+        this.maxKeys = checkPositive(maxKeys, "maxKeys");
+        rotate();
+    }
+
+    /**
+     * Returns the current keys, starting with the key which is used to encrypt new session tickets.
+     */
+    public OpenSslSessionTicketKey[] keys() {
+        return currentKeys().clone();
+    }
+
+    /**
+     * Generates a new key which is used to encrypt new session tickets from now on, and discards the oldest key if
+     * there are more than {@code maxKeys}.
+     */
+    public synchronized void rotate() {
+        OpenSslSessionTicketKey[] oldKeys = keys;
+        int oldLength = oldKeys == null ? 0 : Math.min(oldKeys.length, maxKeys - 1);
+        OpenSslSessionTicketKey[] newKeys = new OpenSslSessionTicketKey[oldLength + 1];
+        newKeys[0] = newKey();
+        if (oldLength > 0) {
+            System.arraycopy(oldKeys, 0, newKeys, 1, oldLength);
+        }
+        nextRotationNanos = System.nanoTime() + rotationIntervalNanos;
+        keys = newKeys;
+    }
+
+    /**
+     * Returns the current keys and rotates them first if the rotation interval elapsed. A new array is returned
+     * after each rotation, so callers can compare the returned arrays by identity to detect a rotation.
+     */
+    OpenSslSessionTicketKey[] currentKeys() {
+        if (System.nanoTime() - nextRotationNanos >= 0) {
+            synchronized (this) {
+                // 其他线程可能已经轮换过了
+                if (System.nanoTime() - nextRotationNanos >= 0) {
+                    rotate();
+                }
+            }
+        }
+        return keys;
+    }
+
+    private OpenSslSessionTicketKey newKey() {
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+}
@@ -250,6 +250,8 @@ public class ReferenceCountedOpenSslEngine extends SSLEngine implements Referenc
         keyMaterialManager = context.keyMaterialManager();
         enableOcsp = context.enableOcsp;
         this.jdkCompatibilityMode = jdkCompatibilityMode;
+        // 在创建 SSL 之前按需轮换 session ticket key
+        context.sessionContext().updateTicketKeys();
         Lock readerLock = context.ctxLock.readLock();
         readerLock.lock();
         final long finalSsl;
@@ -61,6 +61,7 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A secure socket protocol implementation which acts as a factory for {@link SSLEngine} and {@link SslHandler}.
@@ -951,6 +952,44 @@ public abstract class SslContext {
         return new SslHandler(newEngine(alloc, peerHost, peerPort), startTls);
     }
 
+    /**
+     * Creates a new {@link SslHandler} which runs the delegated tasks of the {@link SSLEngine} on the given
+     * {@link Executor}, so that expensive handshake operations do not block the event loop.
+     * See {@link SslHandler#SslHandler(SSLEngine, boolean, Executor)}.
+     * @see #newHandler(ByteBufAllocator)
+     */
+    public final SslHandler newHandler(ByteBufAllocator alloc, Executor delegatedTaskExecutor) {
+        return newHandler(alloc, startTls, delegatedTaskExecutor);
+    }
+
+    /**
+     * Create a new SslHandler.
+     * @see #newHandler(ByteBufAllocator, Executor)
+     */
+    protected SslHandler newHandler(ByteBufAllocator alloc, boolean startTls, Executor delegatedTaskExecutor) {
+        return new SslHandler(newEngine(alloc), startTls, delegatedTaskExecutor);
+    }
+
+    /**
+     * Creates a new {@link SslHandler} with advisory peer information which runs the delegated tasks of the
+     * {@link SSLEngine} on the given {@link Executor}, so that expensive handshake operations do not block the event
+     * loop. See {@link SslHandler#SslHandler(SSLEngine, boolean, Executor)}.
+     * @see #newHandler(ByteBufAllocator, String, int)
+     */
+    public final SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort,
+                                       Executor delegatedTaskExecutor) {
+        return newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor);
+    }
+
+    /**
+     * Create a new SslHandler.
+     * @see #newHandler(ByteBufAllocator, String, int, Executor)
+     */
+    protected SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls,
+                                    Executor delegatedTaskExecutor) {
+        return new SslHandler(newEngine(alloc, peerHost, peerPort), startTls, delegatedTaskExecutor);
+    }
+
     /**
      * Generates a key specification for an (encrypted) private key.
      *
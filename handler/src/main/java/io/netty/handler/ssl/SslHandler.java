@@ -56,8 +56,8 @@ import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -71,6 +71,7 @@ import javax.net.ssl.SSLSession;
 
 import static io.netty.buffer.ByteBufUtil.ensureWritableSuccess;
 import static io.netty.handler.ssl.SslUtils.getEncryptedPacketLength;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 
 /**
  * Adds <a href="http://en.wikipedia.org/wiki/Transport_Layer_Security">SSL
@@ -317,6 +318,15 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 return handler.engine.getSession().getPacketBufferSize();
             }
 
+            @Override
+            int calculateBatchWrapBufferCapacity(SslHandler handler, int pendingBytes, int records) {
+                // JDK SSLEngine 每次 wrap 都要求剩余空间不小于 packet buffer size
+                SSLSession session = handler.engine.getSession();
+                int packetBufferSize = session.getPacketBufferSize();
+                long overhead = Math.max(0, packetBufferSize - session.getApplicationBufferSize());
+                return (int) Math.min(Integer.MAX_VALUE, pendingBytes + overhead * (records - 1) + packetBufferSize);
+            }
+
             @Override
             int calculatePendingData(SslHandler handler, int guess) {
                 return guess;
@@ -347,6 +357,13 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
         abstract int calculateWrapBufferCapacity(SslHandler handler, int pendingBytes, int numComponents);
 
+        /**
+         * Returns the capacity which is needed to wrap {@code pendingBytes} into {@code records} TLS records.
+         */
+        int calculateBatchWrapBufferCapacity(SslHandler handler, int pendingBytes, int records) {
+            return calculateWrapBufferCapacity(handler, pendingBytes, records);
+        }
+
         abstract int calculatePendingData(SslHandler handler, int guess);
 
         abstract boolean jdkCompatibilityMode(SSLEngine engine);
@@ -389,6 +406,8 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private boolean flushedBeforeHandshake;
     private boolean readDuringHandshake;
     private boolean handshakeStarted;
+    // 委托任务正在 delegatedTaskExecutor 中执行，期间不能调用 SSLEngine 的 wrap / unwrap
+    private boolean processTask;
     private SslHandlerCoalescingBufferQueue pendingUnencryptedWrites;
     private Promise<Channel> handshakePromise = new LazyChannelPromise();
     private final LazyChannelPromise sslClosePromise = new LazyChannelPromise();
@@ -414,6 +433,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private volatile long closeNotifyFlushTimeoutMillis = 3000;
     private volatile long closeNotifyReadTimeoutMillis;
     volatile int wrapDataSize = MAX_PLAINTEXT_LENGTH;
+    private volatile int maxRecordsPerWrite = 1;
 
     /**
      * Creates a new instance.
@@ -431,23 +451,36 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * @param startTls  {@code true} if the first write request shouldn't be
      *                  encrypted by the {@link SSLEngine}
      */
-    @SuppressWarnings("deprecation")
     public SslHandler(SSLEngine engine, boolean startTls) {
         this(engine, startTls, ImmediateExecutor.INSTANCE);
     }
 
     /**
-     * @deprecated Use {@link #SslHandler(SSLEngine)} instead.
+     * Creates a new instance.
+     *
+     * @param engine  the {@link SSLEngine} this handler will use
+     * @param delegatedTaskExecutor the {@link Executor} that will be used to execute tasks that are returned by
+     *                              {@link SSLEngine#getDelegatedTask()}.
+     * @see #SslHandler(SSLEngine, boolean, Executor)
      */
-    @Deprecated
     public SslHandler(SSLEngine engine, Executor delegatedTaskExecutor) {
         this(engine, false, delegatedTaskExecutor);
     }
 
     /**
-     * @deprecated Use {@link #SslHandler(SSLEngine, boolean)} instead.
+     * Creates a new instance.
+     * <p>
+     * The tasks returned by {@link SSLEngine#getDelegatedTask()}, which perform the expensive cryptographic operations
+     * of the handshake, are run by the {@code delegatedTaskExecutor}. Unless it is {@link ImmediateExecutor} or the
+     * {@link EventExecutor} of the {@link Channel}, the event loop does not wait for the tasks but continues to serve
+     * other {@link Channel}s, and the handshake is resumed on the event loop once the tasks are complete.
+     *
+     * @param engine  the {@link SSLEngine} this handler will use
+     * @param startTls  {@code true} if the first write request shouldn't be
+     *                  encrypted by the {@link SSLEngine}
+     * @param delegatedTaskExecutor the {@link Executor} that will be used to execute tasks that are returned by
+     *                              {@link SSLEngine#getDelegatedTask()}.
      */
-    @Deprecated
     public SslHandler(SSLEngine engine, boolean startTls, Executor delegatedTaskExecutor) {
         if (engine == null) {
             throw new NullPointerException("engine");
@@ -508,6 +541,32 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         this.wrapDataSize = wrapDataSize;
     }
 
+    /**
+     * Sets the maximum number of TLS records which will be wrapped into the same outbound {@link ByteBuf} and
+     * written with a single {@link ChannelHandlerContext#write(Object, ChannelPromise)} call during a flush.
+     * <p>
+     * By default each record is written on its own. If many small writes are flushed at once (e.g. HTTP/2 frames)
+     * a bigger value allows to allocate one buffer which is sized for all the pending data, and so reduces the number
+     * of allocations and writes. The promises of all the writes which are part of the same buffer are notified once
+     * the buffer was written. How much data is put into each record is controlled by {@link #setWrapDataSize(int)}.
+     *
+     * @param maxRecordsPerWrite the maximum number of records per outbound {@link ByteBuf}, must be positive.
+     */
+    @UnstableApi
+    public final void setMaxRecordsPerWrite(int maxRecordsPerWrite) {
+        this.maxRecordsPerWrite = checkPositive(maxRecordsPerWrite, "maxRecordsPerWrite");
+    }
+
+    /**
+     * Returns the maximum number of TLS records which will be wrapped into the same outbound {@link ByteBuf}.
+     *
+     * @see #setMaxRecordsPerWrite(int)
+     */
+    @UnstableApi
+    public final int getMaxRecordsPerWrite() {
+        return maxRecordsPerWrite;
+    }
+
     /**
      * @deprecated use {@link #getCloseNotifyFlushTimeoutMillis()}
      */
@@ -748,6 +807,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             return;
         }
 
+        if (processTask) {
+            // 委托任务完成后再 wrap
+            flushedBeforeHandshake = true;
+            return;
+        }
+
         try {
             wrapAndFlush(ctx);
         } catch (Throwable cause) {
@@ -778,26 +843,43 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     // This method will not call setHandshakeFailure(...) !
     private void wrap(ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (processTask) {
+            return;
+        }
         ByteBuf out = null;
         ChannelPromise promise = null;
+        ChannelPromise recordPromise = null;
         ByteBufAllocator alloc = ctx.alloc();
         boolean needUnwrap = false;
         ByteBuf buf = null;
         try {
             final int wrapDataSize = this.wrapDataSize;
+            final int maxRecordsPerWrite = this.maxRecordsPerWrite;
+            int records = 0;
             // Only continue to loop if the handler was not removed in the meantime.
             // See https://github.com/netty/netty/issues/5860
             while (!ctx.isRemoved()) {
-                promise = ctx.newPromise();
+                if (promise == null) {
+                    promise = ctx.newPromise();
+                }
+                // 同一个 out 中的所有记录共用一个 promise。之后的记录先使用自己的 promise，完整 wrap 之后才通过 out 的
+                // promise 完成，这样只 wrap 了一部分的数据不会带走前面记录的 promise
+                recordPromise = out == null ? promise : ctx.newPromise();
                 buf = wrapDataSize > 0 ?
-                        pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise) :
-                        pendingUnencryptedWrites.removeFirst(promise);
+                        pendingUnencryptedWrites.remove(alloc, wrapDataSize, recordPromise) :
+                        pendingUnencryptedWrites.removeFirst(recordPromise);
                 if (buf == null) {
+                    recordPromise = null;
                     break;
                 }
 
                 if (out == null) {
-                    out = allocateOutNetBuf(ctx, buf.readableBytes(), buf.nioBufferCount());
+                    out = maxRecordsPerWrite > 1 ? allocateBatchOutNetBuf(ctx, buf, maxRecordsPerWrite) :
+                            allocateOutNetBuf(ctx, buf.readableBytes(), buf.nioBufferCount());
+                    records = 0;
+                } else {
+                    out.ensureWritable(engineType.calculateWrapBufferCapacity(
+                            this, buf.readableBytes(), buf.nioBufferCount()));
                 }
 
                 SSLEngineResult result = wrap(alloc, engine, buf, out);
@@ -805,26 +887,41 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 if (result.getStatus() == Status.CLOSED) {
                     buf.release();
                     buf = null;
+                    recordPromise.tryFailure(SSLENGINE_CLOSED);
+                    recordPromise = null;
                     promise.tryFailure(SSLENGINE_CLOSED);
                     promise = null;
                     // SSLEngine has been closed already.
                     // Any further write attempts should be denied.
-                    pendingUnencryptedWrites.releaseAndFailAll(ctx, SSLENGINE_CLOSED);
+                    // 失败的 promise 可能已经关闭 channel 并移除了 handler，剩下的写入由 handlerRemoved0 处理
+                    if (pendingUnencryptedWrites != null) {
+                        pendingUnencryptedWrites.releaseAndFailAll(ctx, SSLENGINE_CLOSED);
+                    }
                     return;
                 } else {
-                    if (buf.isReadable()) {
-                        pendingUnencryptedWrites.addFirst(buf, promise);
+                    boolean partial = buf.isReadable();
+                    if (partial) {
+                        pendingUnencryptedWrites.addFirst(buf, recordPromise);
                         // When we add the buffer/promise pair back we need to be sure we don't complete the promise
                         // later in finishWrap. We only complete the promise if the buffer is completely consumed.
-                        promise = null;
+                        if (recordPromise == promise) {
+                            promise = null;
+                        }
                     } else {
                         buf.release();
+                        if (recordPromise != promise) {
+                            promise.addListener(new ChannelPromiseNotifier(false, recordPromise));
+                        }
                     }
                     buf = null;
+                    recordPromise = null;
 
                     switch (result.getHandshakeStatus()) {
                         case NEED_TASK:
-                            runDelegatedTasks();
+                            if (!runDelegatedTasks()) {
+                                // 委托任务完成后会继续 wrap
+                                return;
+                            }
                             break;
                         case FINISHED:
                             setHandshakeSuccess();
@@ -833,6 +930,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                             setHandshakeSuccessIfStillHandshaking();
                             // deliberate fall-through
                         case NEED_WRAP:
+                            if (!partial && promise != null && ++records < maxRecordsPerWrite &&
+                                    result.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING) {
+                                // 继续把下一条记录 wrap 到同一个 out 中
+                                break;
+                            }
+                            // 剩余的数据已经带着自己的 promise 放回队列，用 out 自己的 promise 结束这一批记录
                             finishWrap(ctx, out, promise, inUnwrap, false);
                             promise = null;
                             out = null;
@@ -851,6 +954,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             if (buf != null) {
                 buf.release();
             }
+            if (recordPromise != null && recordPromise != promise) {
+                promise.addListener(new ChannelPromiseNotifier(false, recordPromise));
+            }
             finishWrap(ctx, out, promise, inUnwrap, needUnwrap);
         }
     }
@@ -888,6 +994,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * @return {@code true} if this method ends on {@link SSLEngineResult.HandshakeStatus#NOT_HANDSHAKING}.
      */
     private boolean wrapNonAppData(ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (processTask) {
+            return false;
+        }
         ByteBuf out = null;
         ByteBufAllocator alloc = ctx.alloc();
         try {
@@ -915,7 +1024,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                         setHandshakeSuccess();
                         return false;
                     case NEED_TASK:
-                        runDelegatedTasks();
+                        if (!runDelegatedTasks()) {
+                            return false;
+                        }
                         break;
                     case NEED_UNWRAP:
                         if (inUnwrap) {
@@ -1217,6 +1328,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws SSLException {
+        if (processTask) {
+            return;
+        }
         if (jdkCompatibilityMode) {
             decodeJdkCompatible(ctx, in);
         } else {
@@ -1226,6 +1340,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        channelReadComplete0(ctx);
+    }
+
+    private void channelReadComplete0(ChannelHandlerContext ctx) {
         // Discard bytes of the cumulation buffer if needed.
         discardSomeReadBytes();
 
@@ -1340,7 +1458,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                         }
                         break;
                     case NEED_TASK:
-                        runDelegatedTasks();
+                        if (!runDelegatedTasks()) {
+                            // 剩余的数据在委托任务完成后再 unwrap
+                            break unwrapLoop;
+                        }
                         break;
                     case FINISHED:
                         setHandshakeSuccess();
@@ -1420,12 +1541,15 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     /**
      * Fetches all delegated tasks from the {@link SSLEngine} and runs them via the {@link #delegatedTaskExecutor}.
-     * If the {@link #delegatedTaskExecutor} is {@link ImmediateExecutor}, just call {@link Runnable#run()} directly
-     * instead of using {@link Executor#execute(Runnable)}.  Otherwise, run the tasks via
-     * the {@link #delegatedTaskExecutor} and wait until the tasks are finished.
+     * If the {@link #delegatedTaskExecutor} is {@link ImmediateExecutor} or the {@link EventExecutor} of this handler,
+     * just call {@link Runnable#run()} directly. Otherwise, submit the tasks to the {@link #delegatedTaskExecutor}
+     * and resume the processing on the {@link EventExecutor} once they are finished.
+     *
+     * @return {@code true} if the tasks were run and the processing can continue, {@code false} if the tasks were
+     *         submitted to the {@link #delegatedTaskExecutor}.
      */
-    private void runDelegatedTasks() {
-        if (delegatedTaskExecutor == ImmediateExecutor.INSTANCE) {
+    private boolean runDelegatedTasks() {
+        if (delegatedTaskExecutor == ImmediateExecutor.INSTANCE || inEventLoop(delegatedTaskExecutor)) {
             for (;;) {
                 Runnable task = engine.getDelegatedTask();
                 if (task == null) {
@@ -1434,53 +1558,127 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
                 task.run();
             }
-        } else {
-            final List<Runnable> tasks = new ArrayList<Runnable>(2);
-            for (;;) {
-                final Runnable task = engine.getDelegatedTask();
-                if (task == null) {
-                    break;
-                }
+            return true;
+        }
 
-                tasks.add(task);
+        final List<Runnable> tasks = new ArrayList<Runnable>(2);
+        for (;;) {
+            final Runnable task = engine.getDelegatedTask();
+            if (task == null) {
+                break;
             }
 
-            if (tasks.isEmpty()) {
-                return;
-            }
+            tasks.add(task);
+        }
 
-            final CountDownLatch latch = new CountDownLatch(1);
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        processTask = true;
+        try {
             delegatedTaskExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
+                    Throwable cause = null;
                     try {
                         for (Runnable task: tasks) {
                             task.run();
                         }
-                    } catch (Exception e) {
-                        ctx.fireExceptionCaught(e);
-                    } finally {
-                        latch.countDown();
+                    } catch (Throwable t) {
+                        cause = t;
                     }
+                    final Throwable error = cause;
+                    ctx.executor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            processTask = false;
+                            if (error != null) {
+                                delegatedTasksFailed(error);
+                            } else {
+                                resumeAfterDelegatedTasks();
+                            }
+                        }
+                    });
                 }
             });
+        } catch (RejectedExecutionException e) {
+            processTask = false;
+            throw e;
+        }
+        return false;
+    }
 
-            boolean interrupted = false;
-            while (latch.getCount() != 0) {
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    // Interrupt later.
-                    interrupted = true;
+    private static boolean inEventLoop(Executor executor) {
+        return executor instanceof EventExecutor && ((EventExecutor) executor).inEventLoop();
+    }
+
+    /**
+     * Continues the handshake on the {@link EventExecutor} after the delegated tasks are finished.
+     */
+    private void resumeAfterDelegatedTasks() {
+        final ChannelHandlerContext ctx = this.ctx;
+        if (ctx.isRemoved()) {
+            return;
+        }
+        try {
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    if (!runDelegatedTasks()) {
+                        return;
+                    }
+                    // 任务已经在当前线程执行，继续处理
+                    // deliberate fall-through
+                case NEED_WRAP:
+                    wrapNonAppData(ctx, false);
+                    break;
+                case NEED_UNWRAP:
+                    unwrapNonAppData(ctx);
+                    break;
+                case FINISHED:
+                case NOT_HANDSHAKING:
+                    setHandshakeSuccessIfStillHandshaking();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown handshake status: " + engine.getHandshakeStatus());
+            }
+            if (!processTask && !pendingUnencryptedWrites.isEmpty()) {
+                if (handshakePromise.isDone() || outboundClosed) {
+                    // 委托任务执行期间 flush 或者 close() 的数据，以及 wrap 因委托任务中断时剩下的数据，都要立即 wrap，
+                    // 否则 close_notify 要等到 closeNotifyFlushTimeoutMillis 超时
+                    flushedBeforeHandshake = false;
+                    wrap(ctx, false);
+                } else {
+                    // 握手完成时再 wrap
+                    flushedBeforeHandshake = true;
                 }
             }
+            forceFlush(ctx);
+        } catch (Throwable cause) {
+            delegatedTasksFailed(cause);
+            return;
+        }
+        if (ctx.isRemoved()) {
+            // close_notify 已经发送，channel 已经关闭
+            return;
+        }
 
-            if (interrupted) {
-                Thread.currentThread().interrupt();
-            }
+        // 继续处理在委托任务执行期间收到的数据
+        try {
+            channelRead(ctx, Unpooled.EMPTY_BUFFER);
+        } catch (Throwable cause) {
+            ctx.fireExceptionCaught(cause);
+        } finally {
+            channelReadComplete0(ctx);
         }
     }
 
+    private void delegatedTasksFailed(Throwable cause) {
+        setHandshakeFailure(ctx, cause);
+        forceFlush(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
     /**
      * Works around some Android {@link SSLEngine} implementations that skip {@link HandshakeStatus#FINISHED} and
      * go straight into {@link HandshakeStatus#NOT_HANDSHAKING} when handshake is finished.
@@ -1898,6 +2096,19 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         return allocate(ctx, engineType.calculateWrapBufferCapacity(this, pendingBytes, numComponents));
     }
 
+    /**
+     * Allocates an outbound network buffer which can hold the records for {@code first} and the data which is still
+     * pending, up to {@code maxRecords} records.
+     */
+    private ByteBuf allocateBatchOutNetBuf(ChannelHandlerContext ctx, ByteBuf first, int maxRecords) {
+        final int firstBytes = first.readableBytes();
+        final int recordBytes = wrapDataSize > 0 ? wrapDataSize : Math.max(firstBytes, 1);
+        long pendingBytes = firstBytes + (long) pendingUnencryptedWrites.readableBytes();
+        int records = (int) Math.max(1, Math.min(maxRecords, (pendingBytes + recordBytes - 1) / recordBytes));
+        pendingBytes = Math.min(pendingBytes, (long) recordBytes * records);
+        return allocate(ctx, engineType.calculateBatchWrapBufferCapacity(this, (int) pendingBytes, records));
+    }
+
     /**
      * Each call to SSL_write will introduce about ~100 bytes of overhead. This coalescing queue attempts to increase
      * goodput by aggregating the plaintext in chunks of {@link #wrapDataSize}. If many small chunks are written
@@ -1921,15 +2132,33 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 }
                 return composite;
             }
-            return attemptCopyToCumulation(cumulation, next, wrapDataSize) ? cumulation :
-                    copyAndCompose(alloc, cumulation, next);
+            if (attemptCopyToCumulation(cumulation, next, wrapDataSize)) {
+                return cumulation;
+            }
+            if (engineType.wantsDirectBuffer || cumulation.isDirect()) {
+                return copyAndCompose(alloc, cumulation, next);
+            }
+            // JDK SSLEngine 处理堆内存更快，避免把堆内存拷贝到直接内存中
+            ByteBuf newCumulation = alloc.heapBuffer(cumulation.readableBytes() + next.readableBytes());
+            try {
+                newCumulation.writeBytes(cumulation).writeBytes(next);
+            } catch (Throwable cause) {
+                newCumulation.release();
+                ReferenceCountUtil.safeRelease(next);
+                PlatformDependent.throwException(cause);
+            }
+            cumulation.release();
+            next.release();
+            return newCumulation;
         }
 
         @Override
         protected ByteBuf composeFirst(ByteBufAllocator allocator, ByteBuf first) {
             if (first instanceof CompositeByteBuf) {
                 CompositeByteBuf composite = (CompositeByteBuf) first;
-                first = allocator.directBuffer(composite.readableBytes());
+                // JDK SSLEngine 处理堆内存更快，避免把堆内存拷贝到直接内存中
+                first = engineType.wantsDirectBuffer ? allocator.directBuffer(composite.readableBytes()) :
+                        allocator.heapBuffer(composite.readableBytes());
                 try {
                     first.writeBytes(composite);
                 } catch (Throwable cause) {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import javax.net.ssl.SSLEngine;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+public class OpenSslSessionTicketKeyRotatorTest {
+
+    @Test
+    public void testRotateKeepsPreviousKeys() {
+        OpenSslSessionTicketKeyRotator rotator = new OpenSslSessionTicketKeyRotator(1, TimeUnit.HOURS, 2);
+        OpenSslSessionTicketKey[] keys = rotator.keys();
+        assertEquals(1, keys.length);
+
+        rotator.rotate();
+        OpenSslSessionTicketKey[] rotated = rotator.keys();
+        assertEquals(2, rotated.length);
+        assertSame(keys[0], rotated[1]);
+
+        rotator.rotate();
+        OpenSslSessionTicketKey[] rotatedAgain = rotator.keys();
+        assertEquals(2, rotatedAgain.length);
+        assertSame(rotated[0], rotatedAgain[1]);
+    }
+
+    @Test
+    public void testRotateAfterInterval() throws Exception {
+        OpenSslSessionTicketKeyRotator rotator = new OpenSslSessionTicketKeyRotator(10, TimeUnit.MILLISECONDS);
+        OpenSslSessionTicketKey[] keys = rotator.currentKeys();
+        assertSame(keys, rotator.currentKeys());
+        Thread.sleep(50);
+        OpenSslSessionTicketKey[] rotated = rotator.currentKeys();
+        assertNotSame(keys, rotated);
+        assertArrayEquals(keys[0].name(), rotated[1].name());
+    }
+
+    @Test
+    public void testSharedBetweenContexts() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        OpenSslSessionTicketKeyRotator rotator = new OpenSslSessionTicketKeyRotator(10, TimeUnit.MILLISECONDS);
+        ReferenceCountedOpenSslServerContext context1 = newServerContext(cert);
+        ReferenceCountedOpenSslServerContext context2 = newServerContext(cert);
+        try {
+            context1.sessionContext().setTicketKeyRotator(rotator);
+            context2.sessionContext().setTicketKeyRotator(rotator);
+            assertSame(rotator, context1.sessionContext().getTicketKeyRotator());
+
+            Thread.sleep(50);
+            // 创建新的 SSLEngine 时会轮换 key
+            SSLEngine engine = context1.newEngine(UnpooledByteBufAllocator.DEFAULT);
+            ReferenceCountUtil.release(engine);
+            engine = context2.newEngine(UnpooledByteBufAllocator.DEFAULT);
+            ReferenceCountUtil.release(engine);
+            assertEquals(2, rotator.keys().length);
+        } finally {
+            context1.release();
+            context2.release();
+            cert.delete();
+        }
+    }
+
+    private static ReferenceCountedOpenSslServerContext newServerContext(SelfSignedCertificate cert)
+            throws Exception {
+        return (ReferenceCountedOpenSslServerContext) SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.OPENSSL_REFCNT).build();
+    }
+}
@@ -19,12 +19,15 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -36,6 +39,7 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseCombiner;
 import io.netty.util.concurrent.PromiseNotifier;
 import io.netty.util.internal.EmptyArrays;
 import org.junit.Test;
@@ -56,7 +60,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -264,6 +270,263 @@ public class ParameterizedSslHandlerTest {
         }
     }
 
+    @Test(timeout = 30000)
+    public void testMaxRecordsPerWrite() throws Exception {
+        SelfSignedCertificate ssc = new SelfSignedCertificate();
+
+        final SslContext sslServerCtx = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey())
+                .sslProvider(serverProvider)
+                .build();
+
+        final SslContext sslClientCtx = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(clientProvider).build();
+
+        final int numWrites = 64;
+        final int writeSize = 100;
+        final byte[] expected = new byte[numWrites * writeSize];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (byte) i;
+        }
+
+        NioEventLoopGroup group = new NioEventLoopGroup();
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            final Promise<Void> writesPromise = group.next().newPromise();
+            final Promise<ByteBuf> readPromise = group.next().newPromise();
+            final AtomicInteger encryptedWrites = new AtomicInteger();
+            sc = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) throws Exception {
+                            final SslHandler handler = sslServerCtx.newHandler(ch.alloc());
+                            handler.setWrapDataSize(1024);
+                            handler.setMaxRecordsPerWrite(8);
+                            ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+                                @Override
+                                public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+                                        throws Exception {
+                                    // 只统计应用数据，握手消息都比 writeSize 小
+                                    if (handler.handshakeFuture().isDone() &&
+                                            ((ByteBuf) msg).readableBytes() > writeSize) {
+                                        encryptedWrites.incrementAndGet();
+                                    }
+                                    super.write(ctx, msg, promise);
+                                }
+                            });
+                            ch.pipeline().addLast(handler);
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                    if (evt instanceof SslHandshakeCompletionEvent) {
+                                        SslHandshakeCompletionEvent sslEvt = (SslHandshakeCompletionEvent) evt;
+                                        if (!sslEvt.isSuccess()) {
+                                            writesPromise.tryFailure(sslEvt.cause());
+                                            return;
+                                        }
+                                        PromiseCombiner combiner = new PromiseCombiner();
+                                        for (int i = 0; i < numWrites; ++i) {
+                                            // 混合使用堆内存和直接内存
+                                            ByteBuf buf = i % 2 == 0 ? ctx.alloc().heapBuffer(writeSize)
+                                                    : ctx.alloc().directBuffer(writeSize);
+                                            buf.writeBytes(expected, i * writeSize, writeSize);
+                                            combiner.add(ctx.write(buf));
+                                        }
+                                        combiner.finish(writesPromise);
+                                        ctx.flush();
+                                    }
+                                    ctx.fireUserEventTriggered(evt);
+                                }
+                            });
+                        }
+                    }).bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            cc = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) throws Exception {
+                            ch.pipeline().addLast(sslClientCtx.newHandler(ch.alloc()));
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                private final ByteBuf received = Unpooled.buffer(expected.length);
+
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                    received.writeBytes((ByteBuf) msg);
+                                    ReferenceCountUtil.release(msg);
+                                    if (received.readableBytes() == expected.length) {
+                                        readPromise.trySuccess(received);
+                                    }
+                                }
+
+                                @Override
+                                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                    readPromise.tryFailure(cause);
+                                }
+                            });
+                        }
+                    }).connect(sc.localAddress()).syncUninterruptibly().channel();
+
+            writesPromise.syncUninterruptibly();
+            ByteBuf received = readPromise.syncUninterruptibly().getNow();
+            assertEquals(Unpooled.wrappedBuffer(expected), received);
+            received.release();
+            // 7 条记录在同一次写操作中写出
+            assertEquals(1, encryptedWrites.get());
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+
+            ReferenceCountUtil.release(sslServerCtx);
+            ReferenceCountUtil.release(sslClientCtx);
+            ssc.delete();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testMaxRecordsPerWriteWithPartiallyWrappedWrite() throws Exception {
+        SelfSignedCertificate ssc = new SelfSignedCertificate();
+
+        final SslContext sslServerCtx = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey())
+                .sslProvider(serverProvider)
+                .build();
+
+        final SslContext sslClientCtx = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(clientProvider).build();
+
+        // 第二个写操作比一条记录大，只能 wrap 一部分
+        final int smallWriteSize = 100;
+        final byte[] expected = new byte[smallWriteSize + 20000];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (byte) i;
+        }
+
+        NioEventLoopGroup group = new NioEventLoopGroup();
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            final Promise<ChannelFuture> smallWritePromise = group.next().newPromise();
+            final Promise<ChannelFuture> largeWritePromise = group.next().newPromise();
+            final Promise<Runnable> heldWritePromise = group.next().newPromise();
+            final Promise<ByteBuf> readPromise = group.next().newPromise();
+            sc = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) throws Exception {
+                            final SslHandler handler = sslServerCtx.newHandler(ch.alloc());
+                            handler.setWrapDataSize(0);
+                            handler.setMaxRecordsPerWrite(8);
+                            ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+                                private int encryptedWrites;
+
+                                @Override
+                                public void write(final ChannelHandlerContext ctx, final Object msg,
+                                                  final ChannelPromise promise) throws Exception {
+                                    // 握手消息都比 smallWriteSize 小，第二个应用数据的写操作先不写出
+                                    if (handler.handshakeFuture().isDone() &&
+                                            ((ByteBuf) msg).readableBytes() > smallWriteSize &&
+                                            ++encryptedWrites == 2) {
+                                        heldWritePromise.setSuccess(new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                ctx.writeAndFlush(msg, promise);
+                                            }
+                                        });
+                                        return;
+                                    }
+                                    super.write(ctx, msg, promise);
+                                }
+                            });
+                            ch.pipeline().addLast(handler);
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                    if (evt instanceof SslHandshakeCompletionEvent) {
+                                        SslHandshakeCompletionEvent sslEvt = (SslHandshakeCompletionEvent) evt;
+                                        if (!sslEvt.isSuccess()) {
+                                            smallWritePromise.tryFailure(sslEvt.cause());
+                                            return;
+                                        }
+                                        smallWritePromise.setSuccess(ctx.write(
+                                                Unpooled.wrappedBuffer(expected, 0, smallWriteSize)));
+                                        largeWritePromise.setSuccess(ctx.write(Unpooled.wrappedBuffer(
+                                                expected, smallWriteSize, expected.length - smallWriteSize)));
+                                        ctx.flush();
+                                    }
+                                    ctx.fireUserEventTriggered(evt);
+                                }
+                            });
+                        }
+                    }).bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            cc = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) throws Exception {
+                            ch.pipeline().addLast(sslClientCtx.newHandler(ch.alloc()));
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                private final ByteBuf received = Unpooled.buffer(expected.length);
+
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                    received.writeBytes((ByteBuf) msg);
+                                    ReferenceCountUtil.release(msg);
+                                    if (received.readableBytes() == expected.length) {
+                                        readPromise.trySuccess(received);
+                                    }
+                                }
+
+                                @Override
+                                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                    readPromise.tryFailure(cause);
+                                }
+                            });
+                        }
+                    }).connect(sc.localAddress()).syncUninterruptibly().channel();
+
+            ChannelFuture smallWrite = smallWritePromise.syncUninterruptibly().getNow();
+            ChannelFuture largeWrite = largeWritePromise.syncUninterruptibly().getNow();
+            Runnable heldWrite = heldWritePromise.syncUninterruptibly().getNow();
+
+            // 第一次写出的记录包含了整个小的写操作，它不能等待大的写操作剩余的数据
+            assertTrue(smallWrite.await(5000));
+            assertTrue(smallWrite.isSuccess());
+            assertFalse(largeWrite.isDone());
+
+            heldWrite.run();
+            largeWrite.syncUninterruptibly();
+            ByteBuf received = readPromise.syncUninterruptibly().getNow();
+            assertEquals(Unpooled.wrappedBuffer(expected), received);
+            received.release();
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+
+            ReferenceCountUtil.release(sslServerCtx);
+            ReferenceCountUtil.release(sslClientCtx);
+            ssc.delete();
+        }
+    }
+
     @Test(timeout = 30000)
     public void testAlertProducedAndSend() throws Exception {
         SelfSignedCertificate ssc = new SelfSignedCertificate();
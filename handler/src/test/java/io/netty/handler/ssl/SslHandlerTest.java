@@ -48,6 +48,7 @@ import io.netty.handler.codec.UnsupportedMessageTypeException;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
 import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.CharsetUtil;
 import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
@@ -62,8 +63,13 @@ import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.SSLContext;
@@ -663,6 +669,145 @@ public class SslHandlerTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testHandshakeWithDelegatedTaskExecutor() throws Exception {
+        final SelfSignedCertificate ssc = new SelfSignedCertificate();
+        final SslContext sslServerCtx = SslContextBuilder.forServer(ssc.key(), ssc.cert())
+                .sslProvider(SslProvider.JDK).build();
+        final SslContext sslClientCtx = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).build();
+
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        final AtomicInteger tasks = new AtomicInteger();
+        final Executor delegatedTaskExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.incrementAndGet();
+                executorService.execute(command);
+            }
+        };
+        final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            ServerBootstrap sb = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(sslServerCtx.newHandler(ch.alloc(), delegatedTaskExecutor));
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                    // echo
+                                    ctx.writeAndFlush(msg);
+                                }
+                            });
+                        }
+                    });
+            sc = sb.bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            Bootstrap b = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(sslClientCtx.newHandler(ch.alloc(), delegatedTaskExecutor));
+                            ch.pipeline().addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                                    received.add(msg.toString(CharsetUtil.US_ASCII));
+                                }
+                            });
+                        }
+                    });
+            cc = b.connect(sc.localAddress()).syncUninterruptibly().channel();
+            // 握手完成之前写入的数据会在握手完成后发送
+            cc.writeAndFlush(Unpooled.copiedBuffer("netty", CharsetUtil.US_ASCII));
+
+            SslHandler handler = cc.pipeline().get(SslHandler.class);
+            assertTrue(handler.handshakeFuture().await().isSuccess());
+            assertEquals("netty", received.take());
+            assertTrue(tasks.get() > 0);
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+            executorService.shutdown();
+
+            ReferenceCountUtil.release(sslServerCtx);
+            ReferenceCountUtil.release(sslClientCtx);
+            ssc.delete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhileDelegatedTasksRun() throws Exception {
+        final SelfSignedCertificate ssc = new SelfSignedCertificate();
+        final SslContext sslServerCtx = SslContextBuilder.forServer(ssc.key(), ssc.cert())
+                .sslProvider(SslProvider.JDK).build();
+        final SslContext sslClientCtx = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).build();
+
+        final BlockingQueue<Runnable> delegatedTasks = new LinkedBlockingQueue<Runnable>();
+        final Executor delegatedTaskExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                delegatedTasks.add(command);
+            }
+        };
+        SslHandler clientHandler = sslClientCtx.newHandler(UnpooledByteBufAllocator.DEFAULT, delegatedTaskExecutor);
+        // 不能依赖超时关闭连接
+        clientHandler.setCloseNotifyFlushTimeoutMillis(TimeUnit.HOURS.toMillis(1));
+        EmbeddedChannel server = new EmbeddedChannel(sslServerCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+        try {
+            // 客户端收到服务端的证书之后，在委托任务中验证
+            while (delegatedTasks.isEmpty()) {
+                forwardOutbound(client, server);
+                forwardOutbound(server, client);
+            }
+
+            ChannelFuture closeFuture = client.close();
+            assertFalse(closeFuture.isDone());
+
+            Runnable task;
+            while ((task = delegatedTasks.poll()) != null) {
+                task.run();
+            }
+            client.runPendingTasks();
+
+            assertTrue(closeFuture.isDone());
+            assertFalse(client.isOpen());
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+
+            ReferenceCountUtil.release(sslServerCtx);
+            ReferenceCountUtil.release(sslClientCtx);
+            ssc.delete();
+        }
+    }
+
+    private static void forwardOutbound(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+
     @Test
     public void testOutboundClosedAfterChannelInactive() throws Exception {
         SslContext context = SslContextBuilder.forClient().build();
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the traversal of a {@link DefaultChannelPipeline} in which most handlers only handle some of the events
+ * and forward the others.
+ */
+@State(Scope.Benchmark)
+public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
+
+    private static final Object MESSAGE = new Object();
+
+    @Sharable
+    private static final class ActiveHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.fireChannelActive();
+        }
+    }
+
+    @Sharable
+    private static final class ReadCompleteHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.fireChannelReadComplete();
+        }
+    }
+
+    @Sharable
+    private static final class CloseHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            ctx.close(promise);
+        }
+    }
+
+    @Sharable
+    private static final class UserEventHandler extends ChannelDuplexHandler {
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+
+    @Sharable
+    private static final class ReadWriteHandler extends ChannelDuplexHandler {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @Sharable
+    private static final class ConsumingHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            // Consume the message.
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            // Consume the event.
+        }
+    }
+
+    @Sharable
+    private static final class DiscardingHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            promise.trySuccess();
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            // Discard the flush.
+        }
+    }
+
+    private static final ChannelHandler[] HANDLERS = {
+            new ActiveHandler(), new ReadCompleteHandler(), new CloseHandler(), new UserEventHandler()
+    };
+
+    @Param({ "4", "15" })
+    public int pipelineSize;
+
+    private EmbeddedChannel channel;
+    private ChannelPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        channel = new EmbeddedChannel();
+        pipeline = channel.pipeline();
+        pipeline.addLast(new DiscardingHandler());
+        for (int i = 0; i < pipelineSize; i++) {
+            // Every fifth handler handles reads and writes, all others only forward them.
+            pipeline.addLast(i % 5 == 4 ? new ReadWriteHandler() : HANDLERS[i % HANDLERS.length]);
+        }
+        pipeline.addLast(new ConsumingHandler());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void fireChannelReadAndReadComplete() {
+        pipeline.fireChannelRead(MESSAGE);
+        pipeline.fireChannelReadComplete();
+    }
+
+    @Benchmark
+    public void writeAndFlush() {
+        pipeline.writeAndFlush(MESSAGE, channel.voidPromise());
+    }
+}
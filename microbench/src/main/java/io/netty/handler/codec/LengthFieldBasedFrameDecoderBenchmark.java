@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Decodes length prefixed frames which arrive fragmented over several reads with the different
+ * {@link ByteToMessageDecoder.Cumulator}s.
+ */
+@State(Scope.Benchmark)
+public class LengthFieldBasedFrameDecoderBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "256", "4096", "131072" })
+    public int frameSize;
+
+    @Param({ "1460", "16384" })
+    public int readSize;
+
+    @Param({ "MERGE", "COMPOSITE", "ADAPTIVE" })
+    public String cumulator;
+
+    private ByteBuf frames;
+    private EmbeddedChannel channel;
+    private long framesRead;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Enough frames that most reads end in the middle of a frame.
+        int frameCount = Math.max(1, 4 * readSize / frameSize);
+        frames = PooledByteBufAllocator.DEFAULT.directBuffer(frameCount * (frameSize + 4));
+        for (int i = 0; i < frameCount; i++) {
+            frames.writeInt(frameSize).writeZero(frameSize);
+        }
+
+        LengthFieldBasedFrameDecoder decoder = new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4);
+        if ("COMPOSITE".equals(cumulator)) {
+            decoder.setCumulator(ByteToMessageDecoder.COMPOSITE_CUMULATOR);
+        } else if ("ADAPTIVE".equals(cumulator)) {
+            decoder.setCumulator(new ByteToMessageDecoder.AdaptiveCumulator());
+        }
+        channel = new EmbeddedChannel(decoder, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                framesRead++;
+                ReferenceCountUtil.release(msg);
+            }
+        });
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (channel != null) {
+            channel.finishAndReleaseAll();
+        }
+        if (frames != null) {
+            frames.release();
+        }
+    }
+
+    @Benchmark
+    public long decodeFragmented() {
+        int length = frames.readableBytes();
+        for (int i = 0; i < length; i += readSize) {
+            channel.writeInbound(frames.retainedSlice(i, Math.min(readSize, length - i)));
+        }
+        return framesRead;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+
+/**
+ * Measures the per-message overhead of {@link MessageToMessageCodec}. Run with {@code -prof gc} to see the
+ * allocations caused by the codec itself.
+ */
+@State(Scope.Benchmark)
+public class MessageToMessageCodecBenchmark extends AbstractMicrobenchmark {
+
+    private static final Object INBOUND = new Object();
+    private static final String OUTBOUND = "message";
+
+    @Param({ "1", "3" })
+    public int outputs;
+
+    @Param({ "true", "false" })
+    public boolean voidPromise;
+
+    private EmbeddedChannel channel;
+    private MessageToMessageCodec<String, String> codec;
+    private ChannelHandlerContext ctx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codec = new MessageToMessageCodec<String, String>() {
+            @Override
+            protected void encode(ChannelHandlerContext ctx, String msg, List<Object> out) {
+                for (int i = 0; i < outputs; i++) {
+                    out.add(msg);
+                }
+            }
+
+            @Override
+            protected void decode(ChannelHandlerContext ctx, String msg, List<Object> out) {
+                out.add(msg);
+            }
+        };
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                promise.trySuccess();
+            }
+        }, codec, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                // Consume the message.
+            }
+        });
+        ctx = channel.pipeline().context(codec);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (channel != null) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Benchmark
+    public void encode() throws Exception {
+        codec.write(ctx, OUTBOUND, voidPromise ? channel.voidPromise() : channel.newPromise());
+    }
+
+    @Benchmark
+    public void passThroughInbound() throws Exception {
+        codec.channelRead(ctx, INBOUND);
+    }
+}
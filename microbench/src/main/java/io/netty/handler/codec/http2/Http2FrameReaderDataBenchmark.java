@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.MAX_FRAME_SIZE_UPPER_BOUND;
+import static io.netty.handler.codec.http2.Http2CodecUtil.writeFrameHeader;
+import static io.netty.handler.codec.http2.Http2FrameTypes.DATA;
+import static java.lang.Math.min;
+
+/**
+ * Measures the throughput of reading large {@code DATA} frames which span multiple reads, with and without
+ * {@link DefaultHttp2FrameReader} composing the payload.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Http2FrameReaderDataBenchmark extends AbstractMicrobenchmark {
+    @Param({ "16384", "1048576", "4194304" })
+    public int payloadSize;
+
+    @Param({ "8192", "65536" })
+    public int readSize;
+
+    @Param({ "true", "false" })
+    public boolean composeDataPayload;
+
+    private ByteBuf frame;
+    private EmbeddedChannel channel;
+    private long bytesRead;
+
+    @Setup(Level.Trial)
+    public void setup() throws Http2Exception {
+        frame = PooledByteBufAllocator.DEFAULT.directBuffer(Http2CodecUtil.FRAME_HEADER_LENGTH + payloadSize);
+        writeFrameHeader(frame, payloadSize, DATA, new Http2Flags(), 3);
+        frame.writeZero(payloadSize);
+
+        final DefaultHttp2FrameReader reader = new DefaultHttp2FrameReader(
+                new DefaultHttp2HeadersDecoder(true), composeDataPayload);
+        reader.maxFrameSize(MAX_FRAME_SIZE_UPPER_BOUND);
+        final Http2FrameListener listener = new Http2FrameAdapter() {
+            @Override
+            public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                                  boolean endOfStream) {
+                int processed = data.readableBytes() + padding;
+                bytesRead += processed;
+                return processed;
+            }
+        };
+        channel = new EmbeddedChannel(new ByteToMessageDecoder() {
+            @Override
+            protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+                reader.readFrame(ctx, in, listener);
+            }
+
+            @Override
+            protected void handlerRemoved0(ChannelHandlerContext ctx) {
+                reader.close();
+            }
+        });
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (channel != null) {
+            channel.finishAndReleaseAll();
+        }
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public long readFrame() {
+        int length = frame.readableBytes();
+        for (int i = 0; i < length; i += readSize) {
+            channel.writeInbound(frame.retainedSlice(i, min(readSize, length - i)));
+        }
+        return bytesRead;
+    }
+}
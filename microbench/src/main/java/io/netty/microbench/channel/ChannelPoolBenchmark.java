@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.EventLoopAffineChannelPool;
+import io.netty.channel.pool.SimpleChannelPool;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures concurrent acquire/release round trips on a {@link ChannelPool} which are issued from all
+ * {@link EventLoop}s of the group at the same time, like a proxy which acquires upstream connections from the
+ * {@link EventLoop} of the downstream connection.
+ */
+@State(Scope.Benchmark)
+@Threads(ChannelPoolBenchmark.THREADS)
+public class ChannelPoolBenchmark extends AbstractMicrobenchmark {
+
+    static final int THREADS = 4;
+    private static final int CHANNELS_PER_LOOP = 4;
+    private static final int ROUND_TRIPS = 64;
+
+    @Param({ "SIMPLE", "AFFINE" })
+    public String pool;
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private ChannelPool channelPool;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new DefaultEventLoopGroup(THREADS);
+        LocalAddress address = new LocalAddress(ChannelPoolBenchmark.class.getSimpleName());
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                    }
+                })
+                .bind(address).sync().channel();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .remoteAddress(address);
+        AbstractChannelPoolHandler handler = new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) {
+                // NOOP
+            }
+        };
+        channelPool = "AFFINE".equals(pool) ? new EventLoopAffineChannelPool(bootstrap, handler)
+                : new SimpleChannelPool(bootstrap, handler);
+
+        // Warm up the pool so the benchmark does not measure the connects.
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(new RoundTrips(group.next(), CHANNELS_PER_LOOP, true).start());
+        }
+        for (Future<Void> future : futures) {
+            future.sync();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        channelPool.close();
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        EventLoop loop;
+
+        @Setup(Level.Trial)
+        public void setup(ChannelPoolBenchmark benchmark) {
+            // Pin every benchmark thread to its own event loop.
+            EventLoop[] loops = new EventLoop[THREADS];
+            int i = 0;
+            for (EventExecutor executor : benchmark.group) {
+                loops[i++] = (EventLoop) executor;
+            }
+            loop = loops[benchmark.nextLoop.getAndIncrement() % THREADS];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUND_TRIPS)
+    public Future<Void> acquireRelease(ThreadState state) throws Exception {
+        return new RoundTrips(state.loop, ROUND_TRIPS, false).start().sync();
+    }
+
+    /**
+     * Acquires and releases a {@link Channel} from the given {@link EventLoop} the given number of times, one after
+     * the other.
+     */
+    private final class RoundTrips implements Runnable, FutureListener<Channel> {
+        private final EventLoop loop;
+        private final Promise<Void> promise;
+        private final boolean hold;
+        private final List<Channel> held = new ArrayList<Channel>();
+        private int remaining;
+
+        RoundTrips(EventLoop loop, int count, boolean hold) {
+            this.loop = loop;
+            this.hold = hold;
+            promise = loop.newPromise();
+            remaining = count;
+        }
+
+        Future<Void> start() {
+            loop.execute(this);
+            return promise;
+        }
+
+        @Override
+        public void run() {
+            if (remaining-- == 0) {
+                for (Channel channel : held) {
+                    channelPool.release(channel);
+                }
+                promise.setSuccess(null);
+            } else {
+                channelPool.acquire(loop.<Channel>newPromise()).addListener(this);
+            }
+        }
+
+        @Override
+        public void operationComplete(Future<Channel> future) {
+            if (!future.isSuccess()) {
+                promise.setFailure(future.cause());
+                return;
+            }
+            Channel channel = future.getNow();
+            if (hold) {
+                // Keep the channel so the next acquire creates a new one.
+                held.add(channel);
+                loop.execute(this);
+                return;
+            }
+            channelPool.release(channel).addListener(new FutureListener<Void>() {
+                @Override
+                public void operationComplete(Future<Void> future) {
+                    // Always acquire from the event loop of this benchmark thread.
+                    if (loop.inEventLoop()) {
+                        run();
+                    } else {
+                        loop.execute(RoundTrips.this);
+                    }
+                }
+            });
+        }
+    }
+}
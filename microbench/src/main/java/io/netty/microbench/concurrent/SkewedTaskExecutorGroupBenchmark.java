@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.WorkStealingEventExecutorGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of short tasks submitted to the per-channel executors of an {@link EventExecutorGroup} while
+ * one channel keeps submitting slow tasks. With {@link DefaultEventExecutorGroup} all channels which share the thread
+ * of the slow channel have to wait, {@link WorkStealingEventExecutorGroup} lets the other threads steal their work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SkewedTaskExecutorGroupBenchmark extends AbstractMicrobenchmark {
+
+    private static final int THREADS = 4;
+    private static final int CHANNELS = 16;
+    private static final long SLOW_TASK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final Runnable SHORT_TASK = new Runnable() {
+        @Override
+        public void run() {
+            spin(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+    };
+
+    private static final Runnable SLOW_TASK = new Runnable() {
+        @Override
+        public void run() {
+            spin(SLOW_TASK_NANOS);
+        }
+    };
+
+    @Param({ "DEFAULT", "WORK_STEALING" })
+    public String group;
+
+    private EventExecutorGroup executorGroup;
+    private final EventExecutor[] channels = new EventExecutor[CHANNELS];
+    private Thread slowChannel;
+    private volatile boolean running;
+    private int nextChannel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executorGroup = "DEFAULT".equals(group) ? new DefaultEventExecutorGroup(THREADS)
+                : new WorkStealingEventExecutorGroup(THREADS);
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = executorGroup.next();
+        }
+
+        // Keeps the executor of channel 0 busy about half of the time.
+        running = true;
+        slowChannel = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    channels[0].execute(SLOW_TASK);
+                    try {
+                        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(SLOW_TASK_NANOS * 2));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        slowChannel.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        running = false;
+        slowChannel.join();
+        executorGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public Future<?> shortTaskLatency() {
+        // Skip channel 0 which only receives the slow tasks.
+        int channel = 1 + nextChannel++ % (CHANNELS - 1);
+        return channels[channel].submit(SHORT_TASK).syncUninterruptibly();
+    }
+
+    private static void spin(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() - deadline < 0) {
+            // Busy spin to simulate CPU bound work.
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the throughput of {@link io.netty.handler.ssl.SslHandler#flush} when many small writes are flushed at once,
+ * with and without wrapping multiple TLS records into the same outbound buffer.
+ */
+public class SslHandlerThroughputBenchmark extends AbstractSslHandlerThroughputBenchmark {
+    @Param({ "1", "10", "100" })
+    public int numWrites;
+
+    @Param({ "1", "16" })
+    public int maxRecordsPerWrite;
+
+    @Param({ "1024", "16384" })
+    public int wrapDataSize;
+
+    @Setup(Level.Iteration)
+    public void setupWrap() {
+        clientSslHandler.setWrapDataSize(wrapDataSize);
+        clientSslHandler.setMaxRecordsPerWrite(maxRecordsPerWrite);
+    }
+
+    @Benchmark
+    public ByteBuf wrap() throws Exception {
+        ByteBuf dst = doWrite(numWrites);
+        dst.release();
+        return dst;
+    }
+}
@@ -29,19 +29,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 /**
  * Default implementation of {@link DnsCache}, backed by a {@link ConcurrentMap}.
  * If any additional {@link DnsRecord} is used, no caching takes place.
+ * <p>
+ * The number of cached host names can be bounded, in which case the least recently used host names are evicted
+ * first. Optionally, expired entries are kept for a while to be served if the DNS servers can not be reached, and
+ * entries which are used shortly before they expire are refreshed in the background (see
+ * {@link RefreshingDnsCache}).
  */
 @UnstableApi
-public class DefaultDnsCache implements DnsCache {
+public class DefaultDnsCache implements RefreshingDnsCache {
 
     private final ConcurrentMap<String, Entries> resolveCache = PlatformDependent.newConcurrentHashMap();
+    private final ConcurrentMap<String, Entries> staleCache = PlatformDependent.newConcurrentHashMap();
+    private final Eviction resolveCacheEviction = new Eviction(resolveCache);
+    private final Eviction staleCacheEviction = new Eviction(staleCache);
 
     // Two years are supported by all our EventLoop implementations and so safe to use as maximum.
     // See also: https://github.com/netty/netty/commit/b47fb817991b42ec8808c7d26538f3f2464e1fa6
@@ -49,6 +59,9 @@ public class DefaultDnsCache implements DnsCache {
     private final int minTtl;
     private final int maxTtl;
     private final int negativeTtl;
+    private final int staleTtl;
+    private final int maxEntries;
+    private final boolean prefetchEnabled;
 
     /**
      * Create a cache that respects the TTL returned by the DNS server
@@ -65,6 +78,22 @@ public class DefaultDnsCache implements DnsCache {
      * @param negativeTtl the TTL for failed queries
      */
     public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl) {
+        this(minTtl, maxTtl, negativeTtl, 0, Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Create a cache.
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param staleTtl how long entries are kept after their TTL expired to be served if the DNS servers can not be
+     *                 reached (in seconds), or {@code 0} to remove them once they expire
+     * @param maxEntries the maximum number of cached host names
+     * @param prefetchEnabled {@code true} if entries which are used during the last 10% of their TTL should be
+     *                        refreshed in the background
+     */
+    public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl, int staleTtl, int maxEntries,
+                           boolean prefetchEnabled) {
         this.minTtl = Math.min(MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
         this.maxTtl = Math.min(MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
         if (minTtl > maxTtl) {
@@ -72,6 +101,9 @@ public class DefaultDnsCache implements DnsCache {
                     "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
         }
         this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
+        this.staleTtl = Math.min(MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(staleTtl, "staleTtl"));
+        this.maxEntries = checkPositive(maxEntries, "maxEntries");
+        this.prefetchEnabled = prefetchEnabled;
     }
 
     /**
@@ -100,10 +132,38 @@ public class DefaultDnsCache implements DnsCache {
         return negativeTtl;
     }
 
+    /**
+     * Returns how long entries are kept after their TTL expired (in seconds). The default value is {@code 0}, which
+     * disables serving stale entries.
+     */
+    public int staleTtl() {
+        return staleTtl;
+    }
+
+    /**
+     * Returns the maximum number of cached host names. Expired entries which are kept to be served stale are bounded
+     * separately by the same number.
+     */
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns {@code true} if entries which are used during the last 10% of their TTL are refreshed in the background.
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
     @Override
     public void clear() {
-        while (!resolveCache.isEmpty()) {
-            for (Iterator<Map.Entry<String, Entries>> i = resolveCache.entrySet().iterator(); i.hasNext();) {
+        clear(resolveCache);
+        clear(staleCache);
+    }
+
+    private static void clear(ConcurrentMap<String, Entries> cache) {
+        while (!cache.isEmpty()) {
+            for (Iterator<Map.Entry<String, Entries>> i = cache.entrySet().iterator(); i.hasNext();) {
                 Map.Entry<String, Entries> e = i.next();
                 i.remove();
 
@@ -115,8 +175,9 @@ public class DefaultDnsCache implements DnsCache {
     @Override
     public boolean clear(String hostname) {
         checkNotNull(hostname, "hostname");
+        removeStale(hostname);
         Entries entries = resolveCache.remove(hostname);
-        return entries != null && entries.clearAndCancel();
+        return entries != null && !entries.clearAndCancel().isEmpty();
     }
 
     private static boolean emptyAdditionals(DnsRecord[] additionals) {
@@ -131,7 +192,50 @@ public class DefaultDnsCache implements DnsCache {
         }
 
         Entries entries = resolveCache.get(hostname);
-        return entries == null ? null : entries.get();
+        if (entries == null) {
+            return null;
+        }
+        entries.markAccessed();
+        return entries.get();
+    }
+
+    @Override
+    public boolean startRefresh(String hostname, DnsRecord[] additionals) {
+        checkNotNull(hostname, "hostname");
+        if (!prefetchEnabled || !emptyAdditionals(additionals)) {
+            return false;
+        }
+
+        Entries entries = resolveCache.get(hostname);
+        return entries != null && entries.startRefresh(System.nanoTime());
+    }
+
+    @Override
+    public void finishRefresh(String hostname, DnsRecord[] additionals) {
+        checkNotNull(hostname, "hostname");
+        if (!prefetchEnabled || !emptyAdditionals(additionals)) {
+            return;
+        }
+
+        Entries entries = resolveCache.get(hostname);
+        if (entries != null) {
+            entries.finishRefresh();
+        }
+    }
+
+    @Override
+    public List<? extends DnsCacheEntry> getStale(String hostname, DnsRecord[] additionals) {
+        checkNotNull(hostname, "hostname");
+        if (staleTtl == 0 || !emptyAdditionals(additionals)) {
+            return null;
+        }
+
+        Entries entries = staleCache.get(hostname);
+        if (entries == null) {
+            return null;
+        }
+        entries.markAccessed();
+        return entries.get();
     }
 
     @Override
@@ -164,12 +268,18 @@ public class DefaultDnsCache implements DnsCache {
     }
 
     private void cache0(DefaultDnsCacheEntry e, int ttl, EventLoop loop) {
+        // 有了新的结果，过期的记录不再需要
+        removeStale(e.hostname());
+
+        e.refreshAfter(ttl);
         Entries entries = resolveCache.get(e.hostname());
         if (entries == null) {
             entries = new Entries(e);
             Entries oldEntries = resolveCache.putIfAbsent(e.hostname(), entries);
             if (oldEntries != null) {
                 entries = oldEntries;
+            } else {
+                resolveCacheEviction.evict(maxEntries);
             }
         }
         entries.add(e);
@@ -177,9 +287,40 @@ public class DefaultDnsCache implements DnsCache {
         scheduleCacheExpiration(e, ttl, loop);
     }
 
+    private void removeStale(String hostname) {
+        if (staleTtl != 0) {
+            Entries stale = staleCache.remove(hostname);
+            if (stale != null) {
+                stale.clearAndCancel();
+            }
+        }
+    }
+
+    private void cacheStale(final String hostname, List<DefaultDnsCacheEntry> expired, EventLoop loop) {
+        List<DefaultDnsCacheEntry> copy = new ArrayList<DefaultDnsCacheEntry>(expired.size());
+        for (DefaultDnsCacheEntry e: expired) {
+            copy.add(new DefaultDnsCacheEntry(hostname, e.address()));
+        }
+        final Entries stale = new Entries(copy);
+        // 所有过期的记录一起删除，所以只需要为第一条记录设置定时任务
+        copy.get(0).scheduleExpiration(loop, new Runnable() {
+            @Override
+            public void run() {
+                staleCache.remove(hostname, stale);
+            }
+        }, staleTtl, TimeUnit.SECONDS);
+
+        Entries oldStale = staleCache.put(hostname, stale);
+        if (oldStale != null) {
+            oldStale.clearAndCancel();
+        } else {
+            staleCacheEviction.evict(maxEntries);
+        }
+    }
+
     private void scheduleCacheExpiration(final DefaultDnsCacheEntry e,
                                          int ttl,
-                                         EventLoop loop) {
+                                         final EventLoop loop) {
         e.scheduleExpiration(loop, new Runnable() {
                     @Override
                     public void run() {
@@ -194,7 +335,10 @@ public class DefaultDnsCache implements DnsCache {
                         // See https://github.com/netty/netty/issues/7329
                         Entries entries = resolveCache.remove(e.hostname);
                         if (entries != null) {
-                            entries.clearAndCancel();
+                            List<DefaultDnsCacheEntry> expired = entries.clearAndCancel();
+                            if (staleTtl != 0 && !expired.isEmpty() && expired.get(0).cause() == null) {
+                                cacheStale(e.hostname, expired, loop);
+                            }
                         }
                     }
                 }, ttl, TimeUnit.SECONDS);
@@ -206,8 +350,11 @@ public class DefaultDnsCache implements DnsCache {
                 .append("DefaultDnsCache(minTtl=")
                 .append(minTtl).append(", maxTtl=")
                 .append(maxTtl).append(", negativeTtl=")
-                .append(negativeTtl).append(", cached resolved hostname=")
-                .append(resolveCache.size()).append(")")
+                .append(negativeTtl).append(", staleTtl=")
+                .append(staleTtl).append(", maxEntries=")
+                .append(maxEntries).append(", cached resolved hostname=")
+                .append(resolveCache.size()).append(", stale hostname=")
+                .append(staleCache.size()).append(")")
                 .toString();
     }
 
@@ -216,6 +363,8 @@ public class DefaultDnsCache implements DnsCache {
         private final InetAddress address;
         private final Throwable cause;
         private volatile ScheduledFuture<?> expirationFuture;
+        // 在加入 Entries 之前设置，之后只读
+        private long refreshAfterNanos;
 
         DefaultDnsCacheEntry(String hostname, InetAddress address) {
             this.hostname = checkNotNull(hostname, "hostname");
@@ -243,6 +392,15 @@ public class DefaultDnsCache implements DnsCache {
             return hostname;
         }
 
+        void refreshAfter(int ttl) {
+            long ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+            refreshAfterNanos = System.nanoTime() + ttlNanos - ttlNanos / 10;
+        }
+
+        boolean expiresSoon(long nanoTime) {
+            return nanoTime - refreshAfterNanos >= 0;
+        }
+
         void scheduleExpiration(EventLoop loop, Runnable task, long delay, TimeUnit unit) {
             assert expirationFuture == null : "expiration task scheduled already";
             expirationFuture = loop.schedule(task, delay, unit);
@@ -265,14 +423,115 @@ public class DefaultDnsCache implements DnsCache {
         }
     }
 
+    /**
+     * Evicts host names from a cache once it exceeds its maximum size. The host names which were not used for the
+     * longest time are approximated with the CLOCK algorithm: the eviction walks over the cache and evicts the first
+     * host name which was not used since the last time it was visited. This keeps {@link #get(String, DnsRecord[])}
+     * free of locking.
+     */
+    private static final class Eviction {
+        private final ConcurrentMap<String, Entries> cache;
+        private Iterator<Map.Entry<String, Entries>> hand;
+
+        Eviction(ConcurrentMap<String, Entries> cache) {
+            this.cache = cache;
+        }
+
+        void evict(int maxEntries) {
+            if (maxEntries == Integer.MAX_VALUE) {
+                return;
+            }
+            synchronized (this) {
+                while (cache.size() > maxEntries) {
+                    if (hand == null || !hand.hasNext()) {
+                        hand = cache.entrySet().iterator();
+                        if (!hand.hasNext()) {
+                            return;
+                        }
+                    }
+                    Map.Entry<String, Entries> e = hand.next();
+                    Entries entries = e.getValue();
+                    if (entries.clearAccessed()) {
+                        // 最近被使用过，下一轮再考虑
+                        continue;
+                    }
+                    if (cache.remove(e.getKey(), entries)) {
+                        entries.clearAndCancel();
+                    }
+                }
+            }
+        }
+    }
+
     // Directly extend AtomicReference for intrinsics and also to keep memory overhead low.
     private static final class Entries extends AtomicReference<List<DefaultDnsCacheEntry>> {
 
+        private static final AtomicIntegerFieldUpdater<Entries> REFRESHING_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Entries.class, "refreshing");
+
+        // 新加入的主机名视为刚被使用过，避免被立即淘汰
+        private volatile boolean accessed = true;
+        // 刷新是否正在进行，只由刷新自己的完成回调清除
+        private volatile int refreshing;
+        // 刷新开始后，第一个加入的结果替换所有旧的记录
+        private volatile boolean replaceOnAdd;
+
         Entries(DefaultDnsCacheEntry entry) {
             super(Collections.singletonList(entry));
         }
 
+        Entries(List<DefaultDnsCacheEntry> entries) {
+            super(entries);
+        }
+
+        void markAccessed() {
+            // 只在需要时写入，避免读多的主机名频繁写同一个缓存行
+            if (!accessed) {
+                accessed = true;
+            }
+        }
+
+        boolean clearAccessed() {
+            if (accessed) {
+                accessed = false;
+                return true;
+            }
+            return false;
+        }
+
+        boolean startRefresh(long nanoTime) {
+            if (refreshing != 0) {
+                return false;
+            }
+            List<DefaultDnsCacheEntry> entries = get();
+            if (entries.isEmpty() || entries.get(0).cause() != null) {
+                return false;
+            }
+            // 任意一条记录过期都会删除所有记录，因此只要有一条记录快要过期就需要刷新
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).expiresSoon(nanoTime)) {
+                    if (REFRESHING_UPDATER.compareAndSet(this, 0, 1)) {
+                        replaceOnAdd = true;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        void finishRefresh() {
+            replaceOnAdd = false;
+            refreshing = 0;
+        }
+
         void add(DefaultDnsCacheEntry e) {
+            if (replaceOnAdd) {
+                replaceOnAdd = false;
+                // 刷新后的第一个结果替换所有旧的记录，这样已经不存在的地址过期时不会把新的记录一起删除
+                cancelExpiration(getAndSet(Collections.singletonList(e)));
+                return;
+            }
             if (e.cause() == null) {
                 for (;;) {
                     List<DefaultDnsCacheEntry> entries = get();
@@ -321,14 +580,10 @@ public class DefaultDnsCache implements DnsCache {
             }
         }
 
-        boolean clearAndCancel() {
+        List<DefaultDnsCacheEntry> clearAndCancel() {
             List<DefaultDnsCacheEntry> entries = getAndSet(Collections.<DefaultDnsCacheEntry>emptyList());
-            if (entries.isEmpty()) {
-                return false;
-            }
-
             cancelExpiration(entries);
-            return true;
+            return entries;
         }
 
         private static void cancelExpiration(List<DefaultDnsCacheEntry> entryList) {
@@ -29,11 +29,20 @@ import io.netty.handler.codec.dns.DnsRecordType;
 final class DnsAddressResolveContext extends DnsResolveContext<InetAddress> {
 
     private final DnsCache resolveCache;
+    // 单独解析一种地址类型时，没有结果并不代表域名不存在，不能缓存失败
+    private final boolean cacheFailures;
 
     DnsAddressResolveContext(DnsNameResolver parent, String hostname, DnsRecord[] additionals,
                              DnsServerAddressStream nameServerAddrs, DnsCache resolveCache) {
-        super(parent, hostname, DnsRecord.CLASS_IN, parent.resolveRecordTypes(), additionals, nameServerAddrs);
+        this(parent, hostname, additionals, parent.resolveRecordTypes(), nameServerAddrs, resolveCache, true);
+    }
+
+    DnsAddressResolveContext(DnsNameResolver parent, String hostname, DnsRecord[] additionals,
+                             DnsRecordType[] expectedTypes, DnsServerAddressStream nameServerAddrs,
+                             DnsCache resolveCache, boolean cacheFailures) {
+        super(parent, hostname, DnsRecord.CLASS_IN, expectedTypes, additionals, nameServerAddrs);
         this.resolveCache = resolveCache;
+        this.cacheFailures = cacheFailures;
     }
 
     @Override
@@ -41,7 +50,8 @@ final class DnsAddressResolveContext extends DnsResolveContext<InetAddress> {
                                                       int dnsClass, DnsRecordType[] expectedTypes,
                                                       DnsRecord[] additionals,
                                                       DnsServerAddressStream nameServerAddrs) {
-        return new DnsAddressResolveContext(parent, hostname, additionals, nameServerAddrs, resolveCache);
+        return new DnsAddressResolveContext(parent, hostname, additionals, expectedTypes, nameServerAddrs,
+                                            resolveCache, cacheFailures);
     }
 
     @Override
@@ -82,6 +92,9 @@ final class DnsAddressResolveContext extends DnsResolveContext<InetAddress> {
 
     @Override
     void cache(String hostname, DnsRecord[] additionals, UnknownHostException cause) {
+        if (!cacheFailures) {
+            return;
+        }
         resolveCache.cache(hostname, additionals, cause, parent.ch.eventLoop());
     }
 }
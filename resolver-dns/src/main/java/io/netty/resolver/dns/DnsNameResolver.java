@@ -32,6 +32,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.dns.DatagramDnsQueryEncoder;
 import io.netty.handler.codec.dns.DatagramDnsResponse;
 import io.netty.handler.codec.dns.DatagramDnsResponseDecoder;
@@ -64,6 +65,7 @@ import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -84,7 +86,7 @@ public class DnsNameResolver extends InetNameResolver {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(DnsNameResolver.class);
     private static final String LOCALHOST = "localhost";
     private static final InetAddress LOCALHOST_ADDRESS;
-    private static final DnsRecord[] EMPTY_ADDITIONALS = new DnsRecord[0];
+    static final DnsRecord[] EMPTY_ADDITIONALS = new DnsRecord[0];
     private static final DnsRecordType[] IPV4_ONLY_RESOLVED_RECORD_TYPES =
             {DnsRecordType.A};
     private static final InternetProtocolFamily[] IPV4_ONLY_RESOLVED_PROTOCOL_FAMILIES =
@@ -157,11 +159,18 @@ public class DnsNameResolver extends InetNameResolver {
      * Manages the {@link DnsQueryContext}s in progress and their query IDs.
      */
     final DnsQueryContextManager queryContextManager = new DnsQueryContextManager();
+    final DnsTcpConnections tcpConnections;
 
     /**
      * Cache for {@link #doResolve(String, Promise)} and {@link #doResolveAll(String, Promise)}.
      */
     private final DnsCache resolveCache;
+    /**
+     * Cache for {@link #resolveAll(String, ResolvedAddressTypes)} when only one address family is requested. It is
+     * kept apart from {@link #resolveCache} so that a lookup for all families is never answered from an entry that
+     * only covers one of them.
+     */
+    private final DnsCache familyResolveCache;
     private final DnsCache authoritativeDnsServerCache;
 
     private final FastThreadLocal<DnsServerAddressStream> nameServerAddrStream =
@@ -188,6 +197,7 @@ public class DnsNameResolver extends InetNameResolver {
     private final InternetProtocolFamily preferredAddressType;
     private final DnsRecordType[] resolveRecordTypes;
     private final boolean decodeIdn;
+    private final boolean coalesceQueries;
     private final DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory;
 
     /**
@@ -233,6 +243,65 @@ public class DnsNameResolver extends InetNameResolver {
             String[] searchDomains,
             int ndots,
             boolean decodeIdn) {
+        this(eventLoop, channelFactory, null, false, resolveCache, authoritativeDnsServerCache,
+             dnsQueryLifecycleObserverFactory, queryTimeoutMillis, resolvedAddressTypes, recursionDesired,
+             maxQueriesPerResolve, traceEnabled, maxPayloadSize, optResourceEnabled, hostsFileEntriesResolver,
+             dnsServerAddressStreamProvider, searchDomains, ndots, decodeIdn, false);
+    }
+
+    /**
+     * Creates a new DNS-based name resolver that communicates with the specified list of DNS servers.
+     *
+     * @param eventLoop the {@link EventLoop} which will perform the communication with the DNS servers
+     * @param channelFactory the {@link ChannelFactory} that will create a {@link DatagramChannel}
+     * @param socketChannelFactory the {@link ChannelFactory} that will create the {@link SocketChannel}s which are used
+     *                             to retry queries whose response was truncated, or {@code null} to not use TCP
+     * @param queryOverTcp {@code true} if all queries are sent over one persistent TCP connection per DNS server,
+     *                     which pipelines the queries. Requires a {@code socketChannelFactory}.
+     * @param resolveCache the DNS resolved entries cache
+     * @param authoritativeDnsServerCache the cache used to find the authoritative DNS server for a domain
+     * @param dnsQueryLifecycleObserverFactory used to generate new instances of {@link DnsQueryLifecycleObserver} which
+     *                                         can be used to track metrics for DNS servers.
+     * @param queryTimeoutMillis timeout of each DNS query in millis
+     * @param resolvedAddressTypes the preferred address types
+     * @param recursionDesired if recursion desired flag must be set
+     * @param maxQueriesPerResolve the maximum allowed number of DNS queries for a given name resolution
+     * @param traceEnabled if trace is enabled
+     * @param maxPayloadSize the capacity of the datagram packet buffer
+     * @param optResourceEnabled if automatic inclusion of a optional records is enabled
+     * @param hostsFileEntriesResolver the {@link HostsFileEntriesResolver} used to check for local aliases
+     * @param dnsServerAddressStreamProvider The {@link DnsServerAddressStreamProvider} used to determine the name
+     *                                       servers for each hostname lookup.
+     * @param searchDomains the list of search domain
+     *                      (can be null, if so, will try to default to the underlying platform ones)
+     * @param ndots the ndots value
+     * @param decodeIdn {@code true} if domain / host names should be decoded to unicode when received.
+     *                        See <a href="https://tools.ietf.org/html/rfc3492">rfc3492</a>.
+     * @param coalesceQueries {@code true} if a query is not sent when an identical query to the same DNS server is
+     *                        already in progress in any {@link DnsNameResolver} which coalesces queries with the
+     *                        same query settings, and the response of the query in progress is used instead.
+     */
+    public DnsNameResolver(
+            EventLoop eventLoop,
+            ChannelFactory<? extends DatagramChannel> channelFactory,
+            ChannelFactory<? extends SocketChannel> socketChannelFactory,
+            boolean queryOverTcp,
+            final DnsCache resolveCache,
+            DnsCache authoritativeDnsServerCache,
+            DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory,
+            long queryTimeoutMillis,
+            ResolvedAddressTypes resolvedAddressTypes,
+            boolean recursionDesired,
+            int maxQueriesPerResolve,
+            boolean traceEnabled,
+            int maxPayloadSize,
+            boolean optResourceEnabled,
+            HostsFileEntriesResolver hostsFileEntriesResolver,
+            DnsServerAddressStreamProvider dnsServerAddressStreamProvider,
+            String[] searchDomains,
+            int ndots,
+            boolean decodeIdn,
+            boolean coalesceQueries) {
         super(eventLoop);
         this.queryTimeoutMillis = checkPositive(queryTimeoutMillis, "queryTimeoutMillis");
         this.resolvedAddressTypes = resolvedAddressTypes != null ? resolvedAddressTypes : DEFAULT_RESOLVE_ADDRESS_TYPES;
@@ -244,6 +313,7 @@ public class DnsNameResolver extends InetNameResolver {
         this.dnsServerAddressStreamProvider =
                 checkNotNull(dnsServerAddressStreamProvider, "dnsServerAddressStreamProvider");
         this.resolveCache = checkNotNull(resolveCache, "resolveCache");
+        familyResolveCache = newFamilyResolveCache(resolveCache);
         this.authoritativeDnsServerCache = checkNotNull(authoritativeDnsServerCache, "authoritativeDnsServerCache");
         this.dnsQueryLifecycleObserverFactory = traceEnabled ?
                     dnsQueryLifecycleObserverFactory instanceof NoopDnsQueryLifecycleObserverFactory ?
@@ -254,6 +324,14 @@ public class DnsNameResolver extends InetNameResolver {
         this.searchDomains = searchDomains != null ? searchDomains.clone() : DEFAULT_SEARCH_DOMAINS;
         this.ndots = ndots >= 0 ? ndots : DEFAULT_NDOTS;
         this.decodeIdn = decodeIdn;
+        this.coalesceQueries = coalesceQueries;
+        if (socketChannelFactory != null) {
+            tcpConnections = new DnsTcpConnections(this, eventLoop, socketChannelFactory, queryOverTcp);
+        } else if (queryOverTcp) {
+            throw new IllegalArgumentException("queryOverTcp requires a socketChannelFactory");
+        } else {
+            tcpConnections = null;
+        }
 
         switch (this.resolvedAddressTypes) {
             case IPV4_ONLY:
@@ -308,10 +386,20 @@ public class DnsNameResolver extends InetNameResolver {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
                 resolveCache.clear();
+                familyResolveCache.clear();
             }
         });
     }
 
+    private static DnsCache newFamilyResolveCache(DnsCache resolveCache) {
+        if (resolveCache instanceof DefaultDnsCache) {
+            DefaultDnsCache cache = (DefaultDnsCache) resolveCache;
+            return new DefaultDnsCache(cache.minTtl(), cache.maxTtl(), cache.negativeTtl());
+        }
+        // 无法得知自定义缓存的配置，单独的地址族解析就不缓存
+        return NoopDnsCache.INSTANCE;
+    }
+
     // Only here to override in unit tests.
     int dnsRedirectPort(@SuppressWarnings("unused") InetAddress server) {
         return DNS_PORT;
@@ -432,15 +520,18 @@ public class DnsNameResolver extends InetNameResolver {
     }
 
     /**
-     * Closes the internal datagram channel used for sending and receiving DNS messages, and clears all DNS resource
-     * records from the cache. Attempting to send a DNS query or to resolve a domain name will fail once this method
-     * has been called.
+     * Closes the internal datagram channel and TCP connections used for sending and receiving DNS messages, and
+     * clears all DNS resource records from the cache. Attempting to send a DNS query or to resolve a domain name
+     * will fail once this method has been called.
      */
     @Override
     public void close() {
         if (ch.isOpen()) {
             ch.close();
         }
+        if (tcpConnections != null) {
+            tcpConnections.close();
+        }
     }
 
     @Override
@@ -710,6 +801,7 @@ public class DnsNameResolver extends InetNameResolver {
                     final DnsCacheEntry e = cachedEntries.get(i);
                     if (f.addressType().isInstance(e.address())) {
                         trySuccess(promise, e.address());
+                        prefetch(hostname, additionals, resolveCache);
                         return true;
                     }
                 }
@@ -721,6 +813,26 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
+    /**
+     * Resolves the given hostname in the background if its cached entries expire soon, so that they are updated
+     * before they expire and the following resolutions do not need to wait for the DNS servers.
+     */
+    private void prefetch(final String hostname, final DnsRecord[] additionals, DnsCache resolveCache) {
+        if (resolveCache instanceof RefreshingDnsCache &&
+                ((RefreshingDnsCache) resolveCache).startRefresh(hostname, additionals)) {
+            final RefreshingDnsCache cache = (RefreshingDnsCache) resolveCache;
+            Promise<List<InetAddress>> promise = executor().newPromise();
+            // 结果由 DnsAddressResolveContext 写入缓存，这里只需要在成功或失败后结束刷新
+            promise.addListener(new FutureListener<List<InetAddress>>() {
+                @Override
+                public void operationComplete(Future<List<InetAddress>> future) {
+                    cache.finishRefresh(hostname, additionals);
+                }
+            });
+            resolve0(hostname, additionals, promise, resolveCache);
+        }
+    }
+
     static <T> void trySuccess(Promise<T> promise, T result) {
         if (!promise.trySuccess(result)) {
             logger.warn("Failed to notify success ({}) to a promise: {}", result, promise);
@@ -789,6 +901,135 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
+    /**
+     * Resolves the addresses of the specified host which have the specified {@link ResolvedAddressTypes}. With
+     * {@link ResolvedAddressTypes#IPV4_ONLY} or {@link ResolvedAddressTypes#IPV6_ONLY} only the {@code A} or the
+     * {@code AAAA} query is sent, so that the IPv4 and the IPv6 addresses of a host can be resolved separately. An
+     * address type which is not one of the {@link #resolvedAddressTypes()} of this resolver is never resolved.
+     * <p>
+     * The addresses are taken from the cache if it has an address of the requested type, and the resolved
+     * addresses are cached. Unlike {@link #resolveAll(String)}, a failed resolution is not cached, because it only
+     * means that the host has no address of the requested type.
+     */
+    @Override
+    public Future<List<InetAddress>> resolveAll(String inetHost, ResolvedAddressTypes addressTypes) {
+        final InternetProtocolFamily family;
+        final DnsRecordType[] recordTypes;
+        switch (checkNotNull(addressTypes, "addressTypes")) {
+            case IPV4_ONLY:
+                family = InternetProtocolFamily.IPv4;
+                recordTypes = IPV4_ONLY_RESOLVED_RECORD_TYPES;
+                break;
+            case IPV6_ONLY:
+                family = InternetProtocolFamily.IPv6;
+                recordTypes = IPV6_ONLY_RESOLVED_RECORD_TYPES;
+                break;
+            default:
+                return super.resolveAll(inetHost, addressTypes);
+        }
+
+        final Promise<List<InetAddress>> promise = executor().newPromise();
+        try {
+            doResolveAll(inetHost, family, recordTypes, promise);
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    private void doResolveAll(String inetHost, InternetProtocolFamily family, DnsRecordType[] recordTypes,
+                              Promise<List<InetAddress>> promise) throws Exception {
+        boolean resolved = false;
+        for (InternetProtocolFamily f : resolvedInternetProtocolFamilies) {
+            resolved |= f == family;
+        }
+        if (!resolved) {
+            promise.setFailure(new UnknownHostException(
+                    "failed to resolve '" + inetHost + "': " + family + " addresses are not resolved"));
+            return;
+        }
+
+        if (inetHost == null || inetHost.isEmpty()) {
+            setSuccess(inetHost, family, Collections.singletonList(family.localhost()), promise);
+            return;
+        }
+        final byte[] bytes = NetUtil.createByteArrayFromIpAddressString(inetHost);
+        if (bytes != null) {
+            setSuccess(inetHost, family, Collections.singletonList(InetAddress.getByAddress(bytes)), promise);
+            return;
+        }
+
+        final String hostname = hostname(inetHost);
+        if (hostsFileEntriesResolver != null) {
+            InetAddress hostsFileEntry = hostsFileEntriesResolver.address(hostname,
+                    family == InternetProtocolFamily.IPv4 ? ResolvedAddressTypes.IPV4_ONLY
+                                                          : ResolvedAddressTypes.IPV6_ONLY);
+            if (hostsFileEntry != null) {
+                promise.setSuccess(Collections.singletonList(hostsFileEntry));
+                return;
+            }
+        }
+
+        // 同时解析所有地址族的结果也能回答单个地址族的查询
+        if (doResolveFamilyCached(hostname, family, promise, resolveCache) ||
+                doResolveFamilyCached(hostname, family, promise, familyResolveCache)) {
+            return;
+        }
+
+        final DnsServerAddressStream nameServerAddrs =
+                dnsServerAddressStreamProvider.nameServerAddressStream(hostname);
+        new DnsAddressResolveContext(this, hostname, EMPTY_ADDITIONALS, recordTypes, nameServerAddrs,
+                                     familyResolveCache, false).resolve(promise);
+    }
+
+    private static boolean doResolveFamilyCached(String hostname, InternetProtocolFamily family,
+                                              Promise<List<InetAddress>> promise, DnsCache cache) {
+        final List<? extends DnsCacheEntry> cachedEntries = cache.get(hostname, EMPTY_ADDITIONALS);
+        if (cachedEntries == null || cachedEntries.isEmpty()) {
+            return false;
+        }
+        Throwable cause = cachedEntries.get(0).cause();
+        if (cause != null) {
+            tryFailure(promise, cause);
+            return true;
+        }
+        List<InetAddress> cached = filter(addresses(cachedEntries), family);
+        if (cached.isEmpty()) {
+            return false;
+        }
+        trySuccess(promise, cached);
+        return true;
+    }
+
+    private static void setSuccess(String inetHost, InternetProtocolFamily family, List<InetAddress> addresses,
+                                   Promise<List<InetAddress>> promise) {
+        List<InetAddress> filtered = filter(addresses, family);
+        if (filtered.isEmpty()) {
+            promise.setFailure(new UnknownHostException(
+                    "failed to resolve '" + inetHost + "': not an " + family + " address"));
+        } else {
+            promise.setSuccess(filtered);
+        }
+    }
+
+    private static List<InetAddress> addresses(List<? extends DnsCacheEntry> entries) {
+        List<InetAddress> addresses = new ArrayList<InetAddress>(entries.size());
+        for (DnsCacheEntry e : entries) {
+            addresses.add(e.address());
+        }
+        return addresses;
+    }
+
+    private static List<InetAddress> filter(List<InetAddress> addresses, InternetProtocolFamily family) {
+        List<InetAddress> filtered = new ArrayList<InetAddress>(addresses.size());
+        for (InetAddress address : addresses) {
+            if (family.addressType().isInstance(address)) {
+                filtered.add(address);
+            }
+        }
+        return filtered;
+    }
+
     private boolean doResolveAllCached(String hostname,
                                        DnsRecord[] additionals,
                                        Promise<List<InetAddress>> promise,
@@ -800,21 +1041,10 @@ public class DnsNameResolver extends InetNameResolver {
 
         Throwable cause = cachedEntries.get(0).cause();
         if (cause == null) {
-            List<InetAddress> result = null;
-            final int numEntries = cachedEntries.size();
-            for (InternetProtocolFamily f : resolvedInternetProtocolFamilies) {
-                for (int i = 0; i < numEntries; i++) {
-                    final DnsCacheEntry e = cachedEntries.get(i);
-                    if (f.addressType().isInstance(e.address())) {
-                        if (result == null) {
-                            result = new ArrayList<InetAddress>(numEntries);
-                        }
-                        result.add(e.address());
-                    }
-                }
-            }
+            List<InetAddress> result = cachedAddresses(cachedEntries);
             if (result != null) {
                 trySuccess(promise, result);
+                prefetch(hostname, additionals, resolveCache);
                 return true;
             }
             return false;
@@ -824,15 +1054,87 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
-    private void doResolveAllUncached(String hostname,
-                                      DnsRecord[] additionals,
-                                      Promise<List<InetAddress>> promise,
-                                      DnsCache resolveCache) {
+    /**
+     * Returns the addresses of the given entries which have one of the resolved address types, ordered by the
+     * preferred address type, or {@code null} if there are none.
+     */
+    private List<InetAddress> cachedAddresses(List<? extends DnsCacheEntry> cachedEntries) {
+        List<InetAddress> result = null;
+        final int numEntries = cachedEntries.size();
+        for (InternetProtocolFamily f : resolvedInternetProtocolFamilies) {
+            for (int i = 0; i < numEntries; i++) {
+                final DnsCacheEntry e = cachedEntries.get(i);
+                if (f.addressType().isInstance(e.address())) {
+                    if (result == null) {
+                        result = new ArrayList<InetAddress>(numEntries);
+                    }
+                    result.add(e.address());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void doResolveAllUncached(final String hostname,
+                                      final DnsRecord[] additionals,
+                                      final Promise<List<InetAddress>> promise,
+                                      final DnsCache resolveCache) {
+        if (!(resolveCache instanceof RefreshingDnsCache)) {
+            resolve0(hostname, additionals, promise, resolveCache);
+            return;
+        }
+
+        final Promise<List<InetAddress>> resolvePromise = executor().newPromise();
+        resolve0(hostname, additionals, resolvePromise, resolveCache);
+        resolvePromise.addListener(new FutureListener<List<InetAddress>>() {
+            @Override
+            public void operationComplete(Future<List<InetAddress>> future) {
+                if (future.isSuccess()) {
+                    trySuccess(promise, future.getNow());
+                    return;
+                }
+                Throwable cause = future.cause();
+                List<InetAddress> stale = null;
+                if (isCausedByTransportOrTimeoutError(cause)) {
+                    // 无法连接 DNS 服务器时，使用已经过期的记录（RFC 8767）
+                    List<? extends DnsCacheEntry> staleEntries =
+                            ((RefreshingDnsCache) resolveCache).getStale(hostname, additionals);
+                    if (staleEntries != null && !staleEntries.isEmpty()) {
+                        stale = cachedAddresses(staleEntries);
+                    }
+                }
+                if (stale != null) {
+                    trySuccess(promise, stale);
+                } else {
+                    tryFailure(promise, cause);
+                }
+            }
+        });
+    }
+
+    private void resolve0(String hostname,
+                          DnsRecord[] additionals,
+                          Promise<List<InetAddress>> promise,
+                          DnsCache resolveCache) {
         final DnsServerAddressStream nameServerAddrs =
                 dnsServerAddressStreamProvider.nameServerAddressStream(hostname);
         new DnsAddressResolveContext(this, hostname, additionals, nameServerAddrs, resolveCache).resolve(promise);
     }
 
+    /**
+     * Returns {@code true} if the {@link Throwable} or one of its causes is a timeout or transport error. Unlike
+     * {@link #isTransportOrTimeoutError(Throwable)}, this also finds errors which were wrapped when resolving with
+     * search domains.
+     */
+    private static boolean isCausedByTransportOrTimeoutError(Throwable cause) {
+        for (; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DnsNameResolverException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String hostname(String inetHost) {
         String hostname = IDN.toASCII(inetHost);
         // Check for http://bugs.java.com/bugdatabase/view_bug.do?bug_id=6894622
@@ -944,11 +1246,22 @@ public class DnsNameResolver extends InetNameResolver {
 
         final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> castPromise = cast(
                 checkNotNull(promise, "promise"));
+        if (coalesceQueries && additionals.length == 0) {
+            // 带有 additionals 的查询（例如 EDNS 选项）不能共享响应
+            DnsQueryCoalescer.query(this, nameServerAddr, question, writePromise, castPromise);
+        } else {
+            doQuery(nameServerAddr, question, additionals, writePromise, castPromise);
+        }
+        return castPromise;
+    }
+
+    final void doQuery(InetSocketAddress nameServerAddr, DnsQuestion question, DnsRecord[] additionals,
+                       ChannelPromise writePromise,
+                       Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
         try {
-            new DnsQueryContext(this, nameServerAddr, question, additionals, castPromise).query(writePromise);
-            return castPromise;
+            new DnsQueryContext(this, nameServerAddr, question, additionals, promise).query(writePromise);
         } catch (Exception e) {
-            return castPromise.setFailure(e);
+            promise.setFailure(e);
         }
     }
 
@@ -981,7 +1294,7 @@ public class DnsNameResolver extends InetNameResolver {
                     return;
                 }
 
-                qCtx.finish(res);
+                qCtx.finish(res, false);
             } finally {
                 ReferenceCountUtil.safeRelease(msg);
             }
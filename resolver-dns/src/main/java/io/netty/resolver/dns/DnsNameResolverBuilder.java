@@ -20,6 +20,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.ReflectiveChannelFactory;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.internal.UnstableApi;
@@ -39,11 +40,16 @@ import static io.netty.util.internal.ObjectUtil.intValue;
 public final class DnsNameResolverBuilder {
     private EventLoop eventLoop;
     private ChannelFactory<? extends DatagramChannel> channelFactory;
+    private ChannelFactory<? extends SocketChannel> socketChannelFactory;
+    private boolean queryOverTcp;
     private DnsCache resolveCache;
     private DnsCache authoritativeDnsServerCache;
     private Integer minTtl;
     private Integer maxTtl;
     private Integer negativeTtl;
+    private Integer staleTtl;
+    private Integer maxCacheEntries;
+    private boolean prefetchEnabled;
     private long queryTimeoutMillis = 5000;
     private ResolvedAddressTypes resolvedAddressTypes = DnsNameResolver.DEFAULT_RESOLVE_ADDRESS_TYPES;
     private boolean recursionDesired = true;
@@ -58,6 +64,7 @@ public final class DnsNameResolverBuilder {
     private String[] searchDomains;
     private int ndots = -1;
     private boolean decodeIdn = true;
+    private boolean coalesceQueries;
 
     /**
      * Creates a new builder.
@@ -112,6 +119,43 @@ public final class DnsNameResolverBuilder {
         return channelFactory(new ReflectiveChannelFactory<DatagramChannel>(channelType));
     }
 
+    /**
+     * Sets the {@link ChannelFactory} that will create the {@link SocketChannel}s which are used to retry a query
+     * over TCP if its response was truncated. If not set, truncated responses are used as they are.
+     *
+     * @param socketChannelFactory the {@link ChannelFactory}
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelFactory(ChannelFactory<? extends SocketChannel> socketChannelFactory) {
+        this.socketChannelFactory = socketChannelFactory;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ChannelFactory} that will create the {@link SocketChannel}s as a {@link ReflectiveChannelFactory}
+     * of this type. Use as an alternative to {@link #socketChannelFactory(ChannelFactory)}.
+     *
+     * @param channelType the type
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelType(Class<? extends SocketChannel> channelType) {
+        return socketChannelFactory(new ReflectiveChannelFactory<SocketChannel>(channelType));
+    }
+
+    /**
+     * Sets if all queries should be sent over one persistent TCP connection per DNS server instead of UDP. The
+     * queries are pipelined over the connection and matched to their responses by their ID. Queries which are in
+     * flight when the connection is closed fail, and the next query opens a new connection. Requires a
+     * {@link #socketChannelFactory(ChannelFactory)}.
+     *
+     * @param queryOverTcp {@code true} to send all queries over TCP
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder queryOverTcp(boolean queryOverTcp) {
+        this.queryOverTcp = queryOverTcp;
+        return this;
+    }
+
     /**
      * Sets the cache for resolution results.
      *
@@ -174,6 +218,44 @@ public final class DnsNameResolverBuilder {
         return this;
     }
 
+    /**
+     * Sets how long cached DNS resource records are kept after their TTL expired (in seconds). Such stale records
+     * are only used if the DNS servers can not be reached, as described in
+     * <a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>.
+     * The default value is {@code 0}, which removes the records once they expire.
+     *
+     * @param staleTtl how long expired records are kept
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder staleTtl(int staleTtl) {
+        this.staleTtl = staleTtl;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of host names whose resolution results are cached. If the cache is full, the host
+     * names which were not used for the longest time are evicted. The default value is {@link Integer#MAX_VALUE}.
+     *
+     * @param maxCacheEntries the maximum number of cached host names
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder maxCacheEntries(int maxCacheEntries) {
+        this.maxCacheEntries = maxCacheEntries;
+        return this;
+    }
+
+    /**
+     * Sets if cached host names which are resolved during the last 10% of their TTL should be resolved again in the
+     * background, so that they do not expire while they are in use.
+     *
+     * @param prefetchEnabled {@code true} to refresh cached host names before they expire
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder prefetchEnabled(boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+        return this;
+    }
+
     /**
      * Sets the timeout of each DNS query performed by this resolver (in milliseconds).
      *
@@ -352,7 +434,12 @@ public final class DnsNameResolverBuilder {
     }
 
     private DnsCache newCache() {
-        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0));
+        return newCache(0, false);
+    }
+
+    private DnsCache newCache(int staleTtl, boolean prefetchEnabled) {
+        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0),
+                                   staleTtl, intValue(maxCacheEntries, Integer.MAX_VALUE), prefetchEnabled);
     }
 
     /**
@@ -367,6 +454,20 @@ public final class DnsNameResolverBuilder {
         return this;
     }
 
+    /**
+     * Set if a query should not be sent when an identical query (same question and DNS server) is already in
+     * progress, in this or any other {@link DnsNameResolver} which coalesces queries and sends queries the same way
+     * (recursion desired flag, EDNS settings, transport and query timeout). The response of the query in progress
+     * is used instead. Queries with additional records are never coalesced.
+     *
+     * @param coalesceQueries {@code true} to coalesce identical queries
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder coalesceQueries(boolean coalesceQueries) {
+        this.coalesceQueries = coalesceQueries;
+        return this;
+    }
+
     /**
      * Returns a new {@link DnsNameResolver} instance.
      *
@@ -381,16 +482,24 @@ public final class DnsNameResolverBuilder {
             throw new IllegalStateException("resolveCache and TTLs are mutually exclusive");
         }
 
+        if (resolveCache != null && (staleTtl != null || maxCacheEntries != null || prefetchEnabled)) {
+            throw new IllegalStateException(
+                    "resolveCache and staleTtl, maxCacheEntries or prefetchEnabled are mutually exclusive");
+        }
+
         if (authoritativeDnsServerCache != null && (minTtl != null || maxTtl != null || negativeTtl != null)) {
             throw new IllegalStateException("authoritativeDnsServerCache and TTLs are mutually exclusive");
         }
 
-        DnsCache resolveCache = this.resolveCache != null ? this.resolveCache : newCache();
+        DnsCache resolveCache = this.resolveCache != null ? this.resolveCache :
+                newCache(intValue(staleTtl, 0), prefetchEnabled);
         DnsCache authoritativeDnsServerCache = this.authoritativeDnsServerCache != null ?
                 this.authoritativeDnsServerCache : newCache();
         return new DnsNameResolver(
                 eventLoop,
                 channelFactory,
+                socketChannelFactory,
+                queryOverTcp,
                 resolveCache,
                 authoritativeDnsServerCache,
                 dnsQueryLifecycleObserverFactory,
@@ -405,7 +514,8 @@ public final class DnsNameResolverBuilder {
                 dnsServerAddressStreamProvider,
                 searchDomains,
                 ndots,
-                decodeIdn);
+                decodeIdn,
+                coalesceQueries);
     }
 
     /**
@@ -424,6 +534,11 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.channelFactory(channelFactory);
         }
 
+        if (socketChannelFactory != null) {
+            copiedBuilder.socketChannelFactory(socketChannelFactory);
+        }
+        copiedBuilder.queryOverTcp(queryOverTcp);
+
         if (resolveCache != null) {
             copiedBuilder.resolveCache(resolveCache);
         }
@@ -436,6 +551,15 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.negativeTtl(negativeTtl);
         }
 
+        if (staleTtl != null) {
+            copiedBuilder.staleTtl(staleTtl);
+        }
+
+        if (maxCacheEntries != null) {
+            copiedBuilder.maxCacheEntries(maxCacheEntries);
+        }
+        copiedBuilder.prefetchEnabled(prefetchEnabled);
+
         if (authoritativeDnsServerCache != null) {
             copiedBuilder.authoritativeDnsServerCache(authoritativeDnsServerCache);
         }
@@ -463,6 +587,7 @@ public final class DnsNameResolverBuilder {
 
         copiedBuilder.ndots(ndots);
         copiedBuilder.decodeIdn(decodeIdn);
+        copiedBuilder.coalesceQueries(coalesceQueries);
 
         return copiedBuilder;
     }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces identical DNS queries which are in progress at the same time, across all {@link DnsNameResolver}s of the
+ * JVM which have query coalescing enabled. Only the first query is sent, and its response is shared by all queries
+ * with the same question and name server from resolvers which send queries the same way: the recursion desired flag,
+ * the EDNS settings, the transport and the query timeout must all match. The query is cancelled once all of them
+ * were cancelled.
+ */
+final class DnsQueryCoalescer {
+
+    private static final ConcurrentMap<Key, InflightQuery> QUERIES = PlatformDependent.newConcurrentHashMap();
+
+    private DnsQueryCoalescer() { }
+
+    static void query(DnsNameResolver resolver, InetSocketAddress nameServerAddr, DnsQuestion question,
+                      ChannelPromise writePromise, Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+        final Key key = new Key(resolver, nameServerAddr, question);
+        final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> queryPromise =
+                resolver.executor().newPromise();
+        final InflightQuery newQuery = new InflightQuery(queryPromise, promise);
+        for (;;) {
+            final InflightQuery query = QUERIES.putIfAbsent(key, newQuery);
+            if (query == null) {
+                break;
+            }
+            if (query.add(promise)) {
+                // 查询已经由其他的解析器发送
+                writePromise.setSuccess();
+                return;
+            }
+            // 查询刚刚完成，移除后重试
+            QUERIES.remove(key, query);
+        }
+
+        queryPromise.addListener(new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
+            @Override
+            public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+                QUERIES.remove(key, newQuery);
+                newQuery.complete(future);
+            }
+        });
+        resolver.doQuery(nameServerAddr, question, DnsNameResolver.EMPTY_ADDITIONALS, writePromise, queryPromise);
+    }
+
+    /**
+     * Returns a copy of the response whose records share the content of the original ones, so that every waiter
+     * gets its own reader indexes and reference count.
+     */
+    @SuppressWarnings("unchecked")
+    private static AddressedEnvelope<DnsResponse, InetSocketAddress> retainedDuplicate(
+            AddressedEnvelope<DnsResponse, InetSocketAddress> envelope) {
+        final DnsResponse response = envelope.content();
+        final DatagramDnsResponse duplicate = new DatagramDnsResponse(
+                envelope.sender(), envelope.recipient(), response.id(), response.opCode(), response.code());
+        duplicate.setAuthoritativeAnswer(response.isAuthoritativeAnswer());
+        duplicate.setTruncated(response.isTruncated());
+        duplicate.setRecursionAvailable(response.isRecursionAvailable());
+        duplicate.setRecursionDesired(response.isRecursionDesired());
+        duplicate.setZ(response.z());
+        for (DnsSection section : DnsSection.values()) {
+            final int count = response.count(section);
+            for (int i = 0; i < count; i++) {
+                DnsRecord record = response.recordAt(section, i);
+                if (record instanceof DnsRawRecord) {
+                    record = ((DnsRawRecord) record).retainedDuplicate();
+                }
+                duplicate.addRecord(section, record);
+            }
+        }
+        return (AddressedEnvelope<DnsResponse, InetSocketAddress>) (AddressedEnvelope<?, InetSocketAddress>) duplicate;
+    }
+
+    private static final class InflightQuery
+            implements FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>> {
+        private final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> queryPromise;
+        private final List<Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>>> promises =
+                new ArrayList<Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>>>(2);
+        private int cancelled;
+        private boolean done;
+
+        InflightQuery(Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> queryPromise,
+                      Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+            this.queryPromise = queryPromise;
+            promises.add(promise);
+            promise.addListener(this);
+        }
+
+        boolean add(Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                promises.add(promise);
+            }
+            promise.addListener(this);
+            return true;
+        }
+
+        @Override
+        public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+            if (!future.isCancelled()) {
+                return;
+            }
+            synchronized (this) {
+                if (done || ++cancelled < promises.size()) {
+                    return;
+                }
+                // 所有等待的查询都已经取消，不再需要这个查询
+                done = true;
+            }
+            queryPromise.cancel(false);
+        }
+
+        void complete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+            synchronized (this) {
+                done = true;
+            }
+            // done 之后不会再修改 promises
+            if (future.isSuccess()) {
+                final AddressedEnvelope<DnsResponse, InetSocketAddress> envelope = future.getNow();
+                try {
+                    for (Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise : promises) {
+                        // 每个查询各自持有并释放一份响应
+                        final AddressedEnvelope<DnsResponse, InetSocketAddress> duplicate =
+                                retainedDuplicate(envelope);
+                        if (!promise.trySuccess(duplicate)) {
+                            duplicate.release();
+                        }
+                    }
+                } finally {
+                    envelope.release();
+                }
+            } else {
+                final Throwable cause = future.cause();
+                for (Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise : promises) {
+                    promise.tryFailure(cause);
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private static final int TRANSPORT_UDP = 0;
+        private static final int TRANSPORT_UDP_TCP_FALLBACK = 1;
+        private static final int TRANSPORT_TCP = 2;
+
+        private final InetSocketAddress nameServerAddr;
+        private final DnsQuestion question;
+        private final boolean recursionDesired;
+        // 以下设置决定了发送的查询和收到的响应，不同的解析器只有在这些设置相同时才能共享查询
+        private final boolean optResourceEnabled;
+        private final int maxPayloadSize;
+        private final int transport;
+        private final long queryTimeoutMillis;
+
+        Key(DnsNameResolver resolver, InetSocketAddress nameServerAddr, DnsQuestion question) {
+            this.nameServerAddr = nameServerAddr;
+            this.question = question;
+            recursionDesired = resolver.isRecursionDesired();
+            optResourceEnabled = resolver.isOptResourceEnabled();
+            maxPayloadSize = resolver.maxPayloadSize();
+            final DnsTcpConnections tcpConnections = resolver.tcpConnections;
+            transport = tcpConnections == null ? TRANSPORT_UDP :
+                    tcpConnections.persistent() ? TRANSPORT_TCP : TRANSPORT_UDP_TCP_FALLBACK;
+            queryTimeoutMillis = resolver.queryTimeoutMillis();
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = nameServerAddr.hashCode() * 31 + question.hashCode();
+            hash = hash * 31 + (recursionDesired ? 1 : 0);
+            hash = hash * 31 + (optResourceEnabled ? 1 : 0);
+            hash = hash * 31 + maxPayloadSize;
+            hash = hash * 31 + transport;
+            return hash * 31 + (int) (queryTimeoutMillis ^ queryTimeoutMillis >>> 32);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return recursionDesired == that.recursionDesired && optResourceEnabled == that.optResourceEnabled &&
+                   maxPayloadSize == that.maxPayloadSize && transport == that.transport &&
+                   queryTimeoutMillis == that.queryTimeoutMillis && nameServerAddr.equals(that.nameServerAddr) &&
+                   question.equals(that.question);
+        }
+    }
+}
@@ -20,8 +20,9 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelPromise;
-import io.netty.handler.codec.dns.DatagramDnsQuery;
 import io.netty.handler.codec.dns.AbstractDnsOptPseudoRrRecord;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DefaultDnsQuery;
 import io.netty.handler.codec.dns.DnsQuery;
 import io.netty.handler.codec.dns.DnsQuestion;
 import io.netty.handler.codec.dns.DnsRecord;
@@ -36,6 +37,7 @@ import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.TimeUnit;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
@@ -55,6 +57,12 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     private final boolean recursionDesired;
     private volatile ScheduledFuture<?> timeoutFuture;
 
+    // 只在 EventLoop 中访问
+    private boolean overTcp;
+    private AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse;
+    // 发送查询的 TCP 连接，连接关闭时查询立即结束
+    private Channel tcpChannel;
+
     DnsQueryContext(DnsNameResolver parent,
                     InetSocketAddress nameServerAddr,
                     DnsQuestion question,
@@ -67,6 +75,7 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         this.additionals = checkNotNull(additionals, "additionals");
         this.promise = checkNotNull(promise, "promise");
         recursionDesired = parent.isRecursionDesired();
+        overTcp = parent.tcpConnections != null && parent.tcpConnections.persistent();
         id = parent.queryContextManager.add(this);
 
         // Ensure we remove the id from the QueryContextManager once the query completes.
@@ -92,11 +101,24 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     void query(ChannelPromise writePromise) {
         final DnsQuestion question = question();
         final InetSocketAddress nameServerAddr = nameServerAddr();
-        final DatagramDnsQuery query = new DatagramDnsQuery(null, nameServerAddr, id);
+        final DnsQuery query = newQuery(overTcp ? new DefaultDnsQuery(id)
+                                                : new DatagramDnsQuery(null, nameServerAddr, id));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} WRITE: [{}: {}], {}", parent.ch, id, nameServerAddr, question);
+        }
 
+        if (overTcp) {
+            sendQueryOverTcp(query, parent.tcpConnections.connection(nameServerAddr), writePromise);
+        } else {
+            sendQuery(query, writePromise);
+        }
+    }
+
+    private DnsQuery newQuery(DnsQuery query) {
         query.setRecursionDesired(recursionDesired);
 
-        query.addRecord(DnsSection.QUESTION, question);
+        query.addRecord(DnsSection.QUESTION, question());
 
         for (DnsRecord record: additionals) {
             query.addRecord(DnsSection.ADDITIONAL, record);
@@ -105,12 +127,7 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         if (optResource != null) {
             query.addRecord(DnsSection.ADDITIONAL, optResource);
         }
-
-        if (logger.isDebugEnabled()) {
-            logger.debug("{} WRITE: [{}: {}], {}", parent.ch, id, nameServerAddr, question);
-        }
-
-        sendQuery(query, writePromise);
+        return query;
     }
 
     private void sendQuery(final DnsQuery query, final ChannelPromise writePromise) {
@@ -146,6 +163,66 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         }
     }
 
+    private void sendQueryOverTcp(final DnsQuery query, final ChannelFuture connectFuture,
+                                  final ChannelPromise writePromise) {
+        if (connectFuture.isDone()) {
+            writeQueryOverTcp(query, connectFuture, writePromise);
+        } else {
+            connectFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    writeQueryOverTcp(query, connectFuture, writePromise);
+                }
+            });
+        }
+    }
+
+    private void writeQueryOverTcp(DnsQuery query, ChannelFuture connectFuture, final ChannelPromise writePromise) {
+        if (!connectFuture.isSuccess()) {
+            query.release();
+            if (writePromise != null) {
+                writePromise.setFailure(connectFuture.cause());
+            }
+            onTcpFailure(connectFuture.cause());
+            return;
+        }
+        tcpChannel = connectFuture.channel();
+        parent.tcpConnections.addInFlight(tcpChannel, this);
+        tcpChannel.writeAndFlush(query).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    if (writePromise != null) {
+                        writePromise.setSuccess();
+                    }
+                    onQueryWriteCompletion(future);
+                } else {
+                    if (writePromise != null) {
+                        writePromise.setFailure(future.cause());
+                    }
+                    onTcpFailure(future.cause());
+                }
+            }
+        });
+    }
+
+    /**
+     * Called when the TCP connection this query was sent over was closed before a response was received.
+     */
+    void tcpConnectionClosed() {
+        onTcpFailure(new ClosedChannelException());
+    }
+
+    private void onTcpFailure(Throwable cause) {
+        AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse = this.truncatedResponse;
+        if (truncatedResponse != null) {
+            // 无法通过 TCP 查询时，仍然使用被截断的 UDP 响应
+            setSuccess(truncatedResponse);
+        } else {
+            setFailure("failed to send a query over TCP", cause);
+        }
+    }
+
     private void onQueryWriteCompletion(ChannelFuture writeFuture) {
         if (!writeFuture.isSuccess()) {
             setFailure("failed to send a query", writeFuture.cause());
@@ -154,7 +231,7 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
 
         // Schedule a query timeout task if necessary.
         final long queryTimeoutMillis = parent.queryTimeoutMillis();
-        if (queryTimeoutMillis > 0) {
+        if (queryTimeoutMillis > 0 && timeoutFuture == null) {
             timeoutFuture = parent.ch.eventLoop().schedule(new Runnable() {
                 @Override
                 public void run() {
@@ -162,6 +239,11 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
                         // Received a response before the query times out.
                         return;
                     }
+                    if (truncatedResponse != null) {
+                        // TCP 重试超时，使用被截断的 UDP 响应
+                        setSuccess(truncatedResponse);
+                        return;
+                    }
 
                     setFailure("query timed out after " + queryTimeoutMillis + " milliseconds", null);
                 }
@@ -169,7 +251,19 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         }
     }
 
-    void finish(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+    /**
+     * Completes this query with the given response, which was received over TCP if {@code fromTcp} is {@code true}
+     * or over UDP otherwise.
+     */
+    void finish(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope, boolean fromTcp) {
+        if (overTcp && !fromTcp) {
+            // 已经通过 TCP 重试，忽略迟到的重复 UDP 响应
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} Ignoring a UDP response of a query which is retried over TCP: {}",
+                        parent.ch, envelope);
+            }
+            return;
+        }
         final DnsResponse res = envelope.content();
         if (res.count(DnsSection.QUESTION) != 1) {
             logger.warn("Received a DNS response with invalid number of questions: {}", envelope);
@@ -181,9 +275,38 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
             return;
         }
 
+        if (res.isTruncated() && !overTcp && parent.tcpConnections != null) {
+            retryOverTcp(envelope);
+            return;
+        }
+
         setSuccess(envelope);
     }
 
+    /**
+     * Retries this query over a new TCP connection because the response was truncated. The query keeps its id, and
+     * the timeout of the original query also applies to the retry.
+     */
+    @SuppressWarnings("unchecked")
+    private void retryOverTcp(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+        overTcp = true;
+        truncatedResponse = (AddressedEnvelope<DnsResponse, InetSocketAddress>) envelope.retain();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Received a truncated response, retrying over TCP: [{}: {}], {}",
+                    parent.ch, id, nameServerAddr, question);
+        }
+
+        final ChannelFuture connectFuture = parent.tcpConnections.connect(nameServerAddr);
+        promise.addListener(new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
+            @Override
+            public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+                connectFuture.channel().close();
+            }
+        });
+        sendQueryOverTcp(newQuery(new DefaultDnsQuery(id)), connectFuture, null);
+    }
+
     private void setSuccess(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
         Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise = this.promise;
         @SuppressWarnings("unchecked")
@@ -228,5 +351,17 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         // Remove the id from the manager as soon as the query completes. This may be because of success, failure or
         // cancellation
         parent.queryContextManager.remove(nameServerAddr, id);
+
+        final Channel tcpChannel = this.tcpChannel;
+        if (tcpChannel != null) {
+            this.tcpChannel = null;
+            parent.tcpConnections.removeInFlight(tcpChannel, this);
+        }
+
+        final AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse = this.truncatedResponse;
+        if (truncatedResponse != null) {
+            this.truncatedResponse = null;
+            truncatedResponse.release();
+        }
     }
 }
@@ -17,8 +17,6 @@
 package io.netty.resolver.dns;
 
 import io.netty.util.NetUtil;
-import io.netty.util.collection.IntObjectHashMap;
-import io.netty.util.collection.IntObjectMap;
 import io.netty.util.internal.PlatformDependent;
 
 import java.net.Inet4Address;
@@ -26,104 +24,99 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Allocates the IDs of the {@link DnsQueryContext}s in progress. All operations are lock-free, so that many threads
+ * can send queries at the same time.
+ */
 final class DnsQueryContextManager {
 
+    private static final int MAX_TRIES = 65535 << 1;
+
     /**
      * A map whose key is the DNS server address and value is the map of the DNS query ID and its corresponding
      * {@link DnsQueryContext}.
      */
-    final Map<InetSocketAddress, IntObjectMap<DnsQueryContext>> map =
-            new HashMap<InetSocketAddress, IntObjectMap<DnsQueryContext>>();
+    final ConcurrentMap<InetSocketAddress, ConcurrentMap<Integer, DnsQueryContext>> map =
+            PlatformDependent.newConcurrentHashMap();
 
     int add(DnsQueryContext qCtx) {
-        final IntObjectMap<DnsQueryContext> contexts = getOrCreateContextMap(qCtx.nameServerAddr());
-
-        int id = PlatformDependent.threadLocalRandom().nextInt(65536 - 1) + 1;
-        final int maxTries = 65535 << 1;
-        int tries = 0;
-
-        synchronized (contexts) {
-            for (;;) {
-                if (!contexts.containsKey(id)) {
-                    contexts.put(id, qCtx);
-                    return id;
-                }
-
-                id = id + 1 & 0xFFFF;
-
-                if (++tries >= maxTries) {
-                    throw new IllegalStateException("query ID space exhausted: " + qCtx.question());
-                }
+        final ConcurrentMap<Integer, DnsQueryContext> contexts = getOrCreateContextMap(qCtx.nameServerAddr());
+        final Random random = PlatformDependent.threadLocalRandom();
+
+        // 冲突时重新随机选择 ID，而不是线性探测，这样 ID 始终不可预测
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            final int id = random.nextInt(65536 - 1) + 1;
+            if (contexts.putIfAbsent(id, qCtx) == null) {
+                return id;
             }
         }
+        throw new IllegalStateException("query ID space exhausted: " + qCtx.question());
     }
 
     DnsQueryContext get(InetSocketAddress nameServerAddr, int id) {
-        final IntObjectMap<DnsQueryContext> contexts = getContextMap(nameServerAddr);
-        final DnsQueryContext qCtx;
-        if (contexts != null) {
-            synchronized (contexts) {
-                qCtx = contexts.get(id);
-            }
-        } else {
-            qCtx = null;
-        }
-
-        return qCtx;
+        final ConcurrentMap<Integer, DnsQueryContext> contexts = map.get(nameServerAddr);
+        return contexts != null ? contexts.get(id) : null;
     }
 
     DnsQueryContext remove(InetSocketAddress nameServerAddr, int id) {
-        final IntObjectMap<DnsQueryContext> contexts = getContextMap(nameServerAddr);
-        if (contexts == null) {
-            return null;
+        final ConcurrentMap<Integer, DnsQueryContext> contexts = map.get(nameServerAddr);
+        return contexts != null ? contexts.remove(id) : null;
+    }
+
+    private ConcurrentMap<Integer, DnsQueryContext> getOrCreateContextMap(InetSocketAddress nameServerAddr) {
+        final ConcurrentMap<Integer, DnsQueryContext> contexts = map.get(nameServerAddr);
+        if (contexts != null) {
+            return contexts;
         }
 
-        synchronized (contexts) {
-            return  contexts.remove(id);
+        // IPv4 地址和与其兼容的 IPv6 地址共用一个 map。总是先在 IPv4 地址上创建，两个地址都使用在那里胜出的 map
+        final InetSocketAddress alias = alias(nameServerAddr);
+        final InetSocketAddress first;
+        final InetSocketAddress second;
+        if (alias != null && alias.getAddress() instanceof Inet4Address) {
+            first = alias;
+            second = nameServerAddr;
+        } else {
+            first = nameServerAddr;
+            second = alias;
         }
-    }
 
-    private IntObjectMap<DnsQueryContext> getContextMap(InetSocketAddress nameServerAddr) {
-        synchronized (map) {
-            return map.get(nameServerAddr);
+        final ConcurrentMap<Integer, DnsQueryContext> newContexts = PlatformDependent.newConcurrentHashMap();
+        final ConcurrentMap<Integer, DnsQueryContext> oldContexts = map.putIfAbsent(first, newContexts);
+        final ConcurrentMap<Integer, DnsQueryContext> winner = oldContexts != null ? oldContexts : newContexts;
+        if (second != null) {
+            map.putIfAbsent(second, winner);
         }
+        return winner;
     }
 
-    private IntObjectMap<DnsQueryContext> getOrCreateContextMap(InetSocketAddress nameServerAddr) {
-        synchronized (map) {
-            final IntObjectMap<DnsQueryContext> contexts = map.get(nameServerAddr);
-            if (contexts != null) {
-                return contexts;
+    /**
+     * Returns the IPv4-compatible IPv6 address of an IPv4 address or the IPv4 address of an IPv4-compatible IPv6
+     * address, or {@code null} if there is none.
+     */
+    private static InetSocketAddress alias(InetSocketAddress nameServerAddr) {
+        final InetAddress a = nameServerAddr.getAddress();
+        final int port = nameServerAddr.getPort();
+        if (a instanceof Inet4Address) {
+            final Inet4Address a4 = (Inet4Address) a;
+            if (a4.isLoopbackAddress()) {
+                return new InetSocketAddress(NetUtil.LOCALHOST6, port);
             }
-
-            final IntObjectMap<DnsQueryContext> newContexts = new IntObjectHashMap<DnsQueryContext>();
-            final InetAddress a = nameServerAddr.getAddress();
-            final int port = nameServerAddr.getPort();
-            map.put(nameServerAddr, newContexts);
-
-            if (a instanceof Inet4Address) {
-                // Also add the mapping for the IPv4-compatible IPv6 address.
-                final Inet4Address a4 = (Inet4Address) a;
-                if (a4.isLoopbackAddress()) {
-                    map.put(new InetSocketAddress(NetUtil.LOCALHOST6, port), newContexts);
-                } else {
-                    map.put(new InetSocketAddress(toCompactAddress(a4), port), newContexts);
-                }
-            } else if (a instanceof Inet6Address) {
-                // Also add the mapping for the IPv4 address if this IPv6 address is compatible.
-                final Inet6Address a6 = (Inet6Address) a;
-                if (a6.isLoopbackAddress()) {
-                    map.put(new InetSocketAddress(NetUtil.LOCALHOST4, port), newContexts);
-                } else if (a6.isIPv4CompatibleAddress()) {
-                    map.put(new InetSocketAddress(toIPv4Address(a6), port), newContexts);
-                }
+            return new InetSocketAddress(toCompactAddress(a4), port);
+        }
+        if (a instanceof Inet6Address) {
+            final Inet6Address a6 = (Inet6Address) a;
+            if (a6.isLoopbackAddress()) {
+                return new InetSocketAddress(NetUtil.LOCALHOST4, port);
+            }
+            if (a6.isIPv4CompatibleAddress()) {
+                return new InetSocketAddress(toIPv4Address(a6), port);
             }
-
-            return newContexts;
         }
+        return null;
     }
 
     private static Inet6Address toCompactAddress(Inet4Address a4) {
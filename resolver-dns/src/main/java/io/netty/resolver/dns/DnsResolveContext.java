@@ -727,14 +727,12 @@ abstract class DnsResolveContext<T> {
     }
 
     static String decodeDomainName(ByteBuf in) {
-        in.markReaderIndex();
         try {
-            return DefaultDnsRecordDecoder.decodeName(in);
+            // 使用 duplicate 而不修改索引，因为合并的查询的响应会被多个线程同时读取
+            return DefaultDnsRecordDecoder.decodeName(in.duplicate());
         } catch (CorruptedFrameException e) {
             // In this case we just return null.
             return null;
-        } finally {
-            in.resetReaderIndex();
         }
     }
 
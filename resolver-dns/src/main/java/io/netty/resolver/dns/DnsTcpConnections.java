@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.TcpDnsQueryEncoder;
+import io.netty.handler.codec.dns.TcpDnsResponseDecoder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates the TCP connections of a {@link DnsNameResolver}. They are used to retry queries whose response was
+ * truncated, or, in persistent mode, to pipeline all queries to a DNS server over one connection. Responses are
+ * matched to their {@link DnsQueryContext} by the id which was allocated by the {@link DnsQueryContextManager}.
+ */
+final class DnsTcpConnections {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DnsTcpConnections.class);
+    private static final TcpDnsQueryEncoder ENCODER = new TcpDnsQueryEncoder();
+
+    private final DnsNameResolver parent;
+    private final Bootstrap bootstrap;
+    private final boolean persistent;
+
+    /**
+     * The persistent connection of each DNS server, only used in persistent mode.
+     */
+    private final Map<InetSocketAddress, ChannelFuture> connections = new HashMap<InetSocketAddress, ChannelFuture>();
+
+    DnsTcpConnections(DnsNameResolver parent, EventLoop eventLoop,
+                      ChannelFactory<? extends SocketChannel> socketChannelFactory, boolean persistent) {
+        this.parent = parent;
+        this.persistent = persistent;
+        bootstrap = new Bootstrap();
+        bootstrap.group(eventLoop);
+        bootstrap.channelFactory(socketChannelFactory);
+        bootstrap.handler(new ChannelInboundHandlerAdapter());
+    }
+
+    /**
+     * Returns {@code true} if all queries are sent over persistent connections.
+     */
+    boolean persistent() {
+        return persistent;
+    }
+
+    /**
+     * Returns the persistent connection to the given DNS server, connecting it if necessary.
+     */
+    ChannelFuture connection(final InetSocketAddress nameServerAddr) {
+        assert persistent;
+        synchronized (connections) {
+            ChannelFuture future = connections.get(nameServerAddr);
+            if (future == null) {
+                final ChannelFuture newFuture = connect(nameServerAddr);
+                connections.put(nameServerAddr, newFuture);
+                newFuture.channel().closeFuture().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        // 连接关闭后（包括连接失败），下一次查询会重新建立连接
+                        synchronized (connections) {
+                            if (connections.get(nameServerAddr) == newFuture) {
+                                connections.remove(nameServerAddr);
+                            }
+                        }
+                    }
+                });
+                future = newFuture;
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Opens a new connection to the given DNS server.
+     */
+    ChannelFuture connect(final InetSocketAddress nameServerAddr) {
+        Bootstrap b = bootstrap.clone();
+        b.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(ENCODER, new TcpDnsResponseDecoder(), new TcpDnsResponseHandler(nameServerAddr));
+            }
+        });
+        return b.connect(nameServerAddr);
+    }
+
+    /**
+     * Registers a query which is sent over the given connection, so it is finished once the connection is closed.
+     * Must be called from the {@link EventLoop} of the connection.
+     */
+    void addInFlight(Channel ch, DnsQueryContext qCtx) {
+        TcpDnsResponseHandler handler = ch.pipeline().get(TcpDnsResponseHandler.class);
+        // 连接已经关闭时 handler 已经被移除，此时写入会失败，查询随之结束
+        if (handler != null) {
+            handler.inFlight.add(qCtx);
+        }
+    }
+
+    /**
+     * Removes a query which was registered with {@link #addInFlight(Channel, DnsQueryContext)} once it is done.
+     */
+    void removeInFlight(Channel ch, DnsQueryContext qCtx) {
+        TcpDnsResponseHandler handler = ch.pipeline().get(TcpDnsResponseHandler.class);
+        if (handler != null) {
+            handler.inFlight.remove(qCtx);
+        }
+    }
+
+    /**
+     * Closes all persistent connections.
+     */
+    void close() {
+        List<ChannelFuture> futures;
+        synchronized (connections) {
+            futures = new ArrayList<ChannelFuture>(connections.values());
+            connections.clear();
+        }
+        for (ChannelFuture future : futures) {
+            future.channel().close();
+        }
+    }
+
+    private final class TcpDnsResponseHandler extends ChannelInboundHandlerAdapter {
+
+        private final InetSocketAddress nameServerAddr;
+        // 通过该连接发送、还没有结束的查询，只在 EventLoop 中访问
+        final Set<DnsQueryContext> inFlight = new HashSet<DnsQueryContext>();
+
+        TcpDnsResponseHandler(InetSocketAddress nameServerAddr) {
+            this.nameServerAddr = nameServerAddr;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            final DnsResponse res = (DnsResponse) msg;
+            final AddressedEnvelope<DnsResponse, InetSocketAddress> envelope =
+                    new DefaultAddressedEnvelope<DnsResponse, InetSocketAddress>(
+                            res, (InetSocketAddress) ctx.channel().localAddress(), nameServerAddr);
+            try {
+                final int queryId = res.id();
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} RECEIVED: [{}: {}], {}", ctx.channel(), queryId, nameServerAddr, res);
+                }
+
+                final DnsQueryContext qCtx = parent.queryContextManager.get(nameServerAddr, queryId);
+                if (qCtx == null) {
+                    logger.warn("{} Received a DNS response with an unknown ID: {}", ctx.channel(), queryId);
+                    return;
+                }
+
+                qCtx.finish(envelope, true);
+            } finally {
+                ReferenceCountUtil.safeRelease(envelope);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // 连接关闭后不会再收到响应，立即结束未完成的查询，而不是等待它们超时
+            DnsQueryContext[] contexts = inFlight.toArray(new DnsQueryContext[0]);
+            inFlight.clear();
+            for (DnsQueryContext qCtx : contexts) {
+                qCtx.tcpConnectionClosed();
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.warn("{} Unexpected exception: ", ctx.channel(), cause);
+            // 无法继续解析后续的响应，关闭连接，未完成的查询随之结束
+            ctx.close();
+        }
+    }
+}
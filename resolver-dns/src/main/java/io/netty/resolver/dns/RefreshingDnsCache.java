@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.List;
+
+/**
+ * A {@link DnsCache} which refreshes entries in the background before their TTL expires and keeps expired entries
+ * so they can be served if the DNS servers can not be reached, as described in
+ * <a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>.
+ * {@link DnsNameResolver} uses these features if its cache implements this interface.
+ */
+@UnstableApi
+public interface RefreshingDnsCache extends DnsCache {
+
+    /**
+     * Returns {@code true} if the cached entries for the given hostname expire soon and the caller should resolve
+     * the hostname again, which will update the entries. Only one caller gets {@code true} until
+     * {@link #finishRefresh(String, DnsRecord[])} is called.
+     *
+     * @param hostname the hostname
+     * @param additionals the additional records
+     */
+    boolean startRefresh(String hostname, DnsRecord[] additionals);
+
+    /**
+     * Must be called once the resolution started after {@link #startRefresh(String, DnsRecord[])} returned
+     * {@code true} completed, no matter if it succeeded or failed.
+     *
+     * @param hostname the hostname
+     * @param additionals the additional records
+     */
+    void finishRefresh(String hostname, DnsRecord[] additionals);
+
+    /**
+     * Return the cached entries for the given hostname whose TTL expired already, or {@code null} if there are none.
+     *
+     * @param hostname the hostname
+     * @param additionals the additional records
+     * @return the stale entries
+     */
+    List<? extends DnsCacheEntry> getStale(String hostname, DnsRecord[] additionals);
+}
@@ -30,9 +30,11 @@ import java.util.concurrent.TimeUnit;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DefaultDnsCacheTest {
 
@@ -172,4 +174,120 @@ public class DefaultDnsCacheTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test
+    public void testServeStale() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 60, Integer.MAX_VALUE, false);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            assertNull(cache.getStale("netty.io", null));
+
+            // Wait until the entry expired.
+            while (cache.get("netty.io", null) != null) {
+                Thread.sleep(10);
+            }
+            List<? extends DnsCacheEntry> entries = cache.getStale("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr1);
+
+            // A new result replaces the stale entries.
+            cache.cache("netty.io", null, addr2, 100, loop);
+            assertNull(cache.getStale("netty.io", null));
+            assertEntry(cache.get("netty.io", null).get(0), addr2);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final int maxEntries = 10;
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 0, maxEntries, false);
+            cache.cache("hot.netty.io", null, addr, 100, loop);
+            for (int i = 0; i < 100; i++) {
+                cache.cache("host" + i + ".netty.io", null, addr, 100, loop);
+                assertNotNull(cache.get("hot.netty.io", null));
+            }
+
+            int cached = 0;
+            for (int i = 0; i < 100; i++) {
+                if (cache.get("host" + i + ".netty.io", null) != null) {
+                    cached++;
+                }
+            }
+            assertEquals(maxEntries - 1, cached);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testStartRefresh() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 0, Integer.MAX_VALUE, true);
+            cache.cache("netty.io", null, addr1, 2, loop);
+            assertFalse(cache.startRefresh("netty.io", null));
+
+            // The refresh starts during the last 10% of the TTL.
+            while (!cache.startRefresh("netty.io", null)) {
+                assertNotNull(cache.get("netty.io", null));
+                Thread.sleep(10);
+            }
+            assertFalse(cache.startRefresh("netty.io", null));
+
+            // The result of the refresh replaces all entries.
+            cache.cache("netty.io", null, addr2, 100, loop);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr2);
+            assertFalse(cache.startRefresh("netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testRefreshInProgressUntilFinished() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 0, Integer.MAX_VALUE, true);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            while (!cache.startRefresh("netty.io", null)) {
+                Thread.sleep(10);
+            }
+
+            // A failed refresh does not cache anything, but once it finished a new one may start.
+            assertFalse(cache.startRefresh("netty.io", null));
+            cache.finishRefresh("netty.io", null);
+            assertTrue(cache.startRefresh("netty.io", null));
+
+            // Results which are cached while the refresh is still in progress do not finish it.
+            cache.cache("netty.io", null, addr2, 1, loop);
+            while (cache.get("netty.io", null) != null) {
+                assertFalse(cache.startRefresh("netty.io", null));
+                Thread.sleep(10);
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }
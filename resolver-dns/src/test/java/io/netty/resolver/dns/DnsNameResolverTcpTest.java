@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DnsNameResolverTcpTest {
+
+    private static final byte[] ADDRESS = { 10, 0, 0, 1 };
+
+    private final AtomicInteger udpQueries = new AtomicInteger();
+    private final AtomicInteger tcpQueries = new AtomicInteger();
+    private final AtomicInteger tcpConnections = new AtomicInteger();
+    private volatile long udpDuplicateDelayMillis = -1;
+    private volatile long tcpDelayMillis;
+    private volatile boolean tcpCloseWithoutResponse;
+    private EventLoopGroup group;
+    private Channel udpServer;
+    private Channel tcpServer;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        // UDP 服务器只返回被截断的空响应，完整的响应只能通过 TCP 获得
+        udpServer = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(),
+                                              new DnsServerHandler(true, udpQueries));
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        tcpServer = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        tcpConnections.incrementAndGet();
+                        // 复用 UDP 的编解码器，只在外层加上长度前缀
+                        ch.pipeline().addLast(new LengthFieldPrepender(2), new DatagramPacketUnwrapper(),
+                                              new DatagramDnsResponseEncoder(),
+                                              new LengthFieldBasedFrameDecoder(65535, 0, 2, 0, 2),
+                                              new DatagramPacketWrapper(), new DatagramDnsQueryDecoder(),
+                                              new DnsServerHandler(false, tcpQueries));
+                    }
+                })
+                .bind(udpServer.localAddress()).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        udpServer.close().sync();
+        tcpServer.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testRetryTruncatedResponseOverTcp() throws Exception {
+        DnsNameResolver resolver = newResolver().build();
+        try {
+            InetAddress address = resolver.resolve("netty.io").sync().getNow();
+            assertEquals(InetAddress.getByAddress("netty.io", ADDRESS), address);
+            assertEquals(1, udpQueries.get());
+            assertEquals(1, tcpQueries.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testPersistentTcpConnection() throws Exception {
+        DnsNameResolver resolver = newResolver().queryOverTcp(true).build();
+        try {
+            List<Future<InetAddress>> futures = new ArrayList<Future<InetAddress>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(resolver.resolve("host" + i + ".netty.io"));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                InetAddress address = futures.get(i).sync().getNow();
+                assertEquals(InetAddress.getByAddress("host" + i + ".netty.io", ADDRESS), address);
+            }
+            // 所有查询都通过同一个连接发送
+            assertEquals(0, udpQueries.get());
+            assertEquals(10, tcpQueries.get());
+            assertEquals(1, tcpConnections.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testLateUdpResponseIgnoredAfterTcpRetry() throws Exception {
+        // 重复的截断 UDP 响应在 TCP 响应之前到达
+        udpDuplicateDelayMillis = 50;
+        tcpDelayMillis = 500;
+        DnsNameResolver resolver = newResolver().build();
+        try {
+            InetAddress address = resolver.resolve("netty.io").sync().getNow();
+            assertEquals(InetAddress.getByAddress("netty.io", ADDRESS), address);
+            assertEquals(1, tcpQueries.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testPersistentTcpConnectionClosedFailsQueries() throws Exception {
+        tcpCloseWithoutResponse = true;
+        DnsNameResolver resolver = newResolver().queryOverTcp(true).queryTimeoutMillis(30000).build();
+        try {
+            // 查询不会等待 30 秒超时
+            assertFalse(resolver.resolve("netty.io").await().isSuccess());
+
+            // 下一次查询使用新的连接
+            tcpCloseWithoutResponse = false;
+            InetAddress address = resolver.resolve("netty.io").sync().getNow();
+            assertEquals(InetAddress.getByAddress("netty.io", ADDRESS), address);
+            assertEquals(2, tcpConnections.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private DnsNameResolverBuilder newResolver() {
+        return new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(
+                        (InetSocketAddress) udpServer.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .optResourceEnabled(false)
+                .maxQueriesPerResolve(1)
+                .ndots(1);
+    }
+
+    @ChannelHandler.Sharable
+    private final class DnsServerHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        private final boolean truncate;
+        private final AtomicInteger queries;
+
+        DnsServerHandler(boolean truncate, AtomicInteger queries) {
+            this.truncate = truncate;
+            this.queries = queries;
+        }
+
+        @Override
+        protected void channelRead0(final ChannelHandlerContext ctx, final DatagramDnsQuery query) {
+            queries.incrementAndGet();
+            if (!truncate && tcpCloseWithoutResponse) {
+                ctx.close();
+                return;
+            }
+            final InetSocketAddress recipient = query.recipient();
+            final InetSocketAddress sender = query.sender();
+            final int id = query.id();
+            final DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            long delayMillis = truncate ? 0 : tcpDelayMillis;
+            if (delayMillis > 0) {
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.writeAndFlush(newResponse(recipient, sender, id, question));
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                ctx.writeAndFlush(newResponse(recipient, sender, id, question));
+            }
+            if (truncate && udpDuplicateDelayMillis >= 0) {
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.writeAndFlush(newResponse(recipient, sender, id, question));
+                    }
+                }, udpDuplicateDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private DatagramDnsResponse newResponse(InetSocketAddress recipient, InetSocketAddress sender, int id,
+                                                DnsQuestion question) {
+            DatagramDnsResponse response = new DatagramDnsResponse(recipient, sender, id);
+            response.addRecord(DnsSection.QUESTION, question);
+            if (truncate) {
+                response.setTruncated(true);
+            } else {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(
+                        question.name(), DnsRecordType.A, 60, Unpooled.wrappedBuffer(ADDRESS)));
+            }
+            return response;
+        }
+    }
+
+    private static final class DatagramPacketWrapper extends MessageToMessageDecoder<ByteBuf> {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+            out.add(new DatagramPacket(msg.retain(), (InetSocketAddress) ctx.channel().localAddress(),
+                                       (InetSocketAddress) ctx.channel().remoteAddress()));
+        }
+    }
+
+    private static final class DatagramPacketUnwrapper extends MessageToMessageEncoder<DatagramPacket> {
+        @Override
+        protected void encode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) {
+            out.add(msg.content().retain());
+        }
+    }
+}
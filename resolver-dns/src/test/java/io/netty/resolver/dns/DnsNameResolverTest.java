@@ -82,6 +82,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.handler.codec.dns.DnsRecordType.A;
 import static io.netty.handler.codec.dns.DnsRecordType.AAAA;
@@ -95,6 +96,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -1115,6 +1117,327 @@ public class DnsNameResolverTest {
         }
     }
 
+    @Test(timeout = DEFAULT_TEST_TIMEOUT_MS)
+    public void testServeStaleIfDnsServerUnreachable() throws Exception {
+        final String knownHostName = "netty.io";
+        final TestDnsServer dnsServer2 = new TestDnsServer(Collections.singleton(knownHostName));
+        dnsServer2.start();
+        DnsNameResolver resolver = null;
+        try {
+            resolver = new DnsNameResolverBuilder(group.next())
+                    .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                    .channelType(NioDatagramChannel.class)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()))
+                    .queryTimeoutMillis(500)
+                    .maxQueriesPerResolve(1)
+                    .optResourceEnabled(false)
+                    .ndots(1)
+                    .ttl(1, 1)
+                    .staleTtl(60)
+                    .build();
+            InetAddress address = resolver.resolve(knownHostName).syncUninterruptibly().getNow();
+            dnsServer2.stop();
+
+            // Wait until the cached entry expired, the query times out then and the stale entry is used.
+            Thread.sleep(1500);
+            assertEquals(address, resolver.resolve(knownHostName).syncUninterruptibly().getNow());
+        } finally {
+            if (resolver != null) {
+                resolver.close();
+            }
+            dnsServer2.stop();
+        }
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT_MS)
+    public void testCoalesceQueries() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        TestDnsServer dnsServer2 = new TestDnsServer(new RecordStore() {
+            @Override
+            public Set<ResourceRecord> getRecords(QuestionRecord question) {
+                queries.incrementAndGet();
+                try {
+                    // 延迟响应，保证第二个查询发出时第一个查询还没有完成
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Map<String, Object> map = new HashMap<String, Object>();
+                map.put(DnsAttribute.IP_ADDRESS.toLowerCase(), "10.0.0.1");
+                return Collections.<ResourceRecord>singleton(
+                        new TestDnsServer.TestResourceRecord(question.getDomainName(), RecordType.A, map));
+            }
+        });
+        dnsServer2.start();
+        DnsNameResolver resolver1 = null;
+        DnsNameResolver resolver2 = null;
+        try {
+            DnsNameResolverBuilder builder = newResolver()
+                    .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                    .coalesceQueries(true)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()));
+            resolver1 = builder.build();
+            resolver2 = builder.build();
+
+            Future<InetAddress> future1 = resolver1.resolve("coalesce.netty.io");
+            Future<InetAddress> future2 = resolver2.resolve("coalesce.netty.io");
+            InetAddress expected = InetAddress.getByAddress("coalesce.netty.io", new byte[] { 10, 0, 0, 1 });
+            assertEquals(expected, future1.syncUninterruptibly().getNow());
+            assertEquals(expected, future2.syncUninterruptibly().getNow());
+            assertEquals(1, queries.get());
+        } finally {
+            dnsServer2.stop();
+            if (resolver1 != null) {
+                resolver1.close();
+            }
+            if (resolver2 != null) {
+                resolver2.close();
+            }
+        }
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT_MS)
+    public void testQueriesWithDifferentSettingsAreNotCoalesced() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        TestDnsServer dnsServer2 = new TestDnsServer(new RecordStore() {
+            @Override
+            public Set<ResourceRecord> getRecords(QuestionRecord question) {
+                queries.incrementAndGet();
+                try {
+                    // 延迟响应，保证第二个查询发出时第一个查询还没有完成
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Map<String, Object> map = new HashMap<String, Object>();
+                map.put(DnsAttribute.IP_ADDRESS.toLowerCase(), "10.0.0.1");
+                return Collections.<ResourceRecord>singleton(
+                        new TestDnsServer.TestResourceRecord(question.getDomainName(), RecordType.A, map));
+            }
+        });
+        dnsServer2.start();
+        DnsNameResolver resolver1 = null;
+        DnsNameResolver resolver2 = null;
+        try {
+            DnsNameResolverBuilder builder = newResolver()
+                    .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                    .coalesceQueries(true)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()));
+            resolver1 = builder.build();
+            // 查询超时不同，不能共享查询
+            resolver2 = builder.copy().queryTimeoutMillis(4000).build();
+
+            Future<InetAddress> future1 = resolver1.resolve("coalesce.netty.io");
+            Future<InetAddress> future2 = resolver2.resolve("coalesce.netty.io");
+            InetAddress expected = InetAddress.getByAddress("coalesce.netty.io", new byte[] { 10, 0, 0, 1 });
+            assertEquals(expected, future1.syncUninterruptibly().getNow());
+            assertEquals(expected, future2.syncUninterruptibly().getNow());
+            assertEquals(2, queries.get());
+        } finally {
+            dnsServer2.stop();
+            if (resolver1 != null) {
+                resolver1.close();
+            }
+            if (resolver2 != null) {
+                resolver2.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescedQueriesGetOwnResponse() throws Exception {
+        TestDnsServer dnsServer2 = new TestDnsServer(new RecordStore() {
+            @Override
+            public Set<ResourceRecord> getRecords(QuestionRecord question) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Map<String, Object> map = new HashMap<String, Object>();
+                map.put(DnsAttribute.IP_ADDRESS.toLowerCase(), "10.0.0.1");
+                return Collections.<ResourceRecord>singleton(
+                        new TestDnsServer.TestResourceRecord(question.getDomainName(), RecordType.A, map));
+            }
+        });
+        dnsServer2.start();
+        DnsNameResolver resolver1 = null;
+        DnsNameResolver resolver2 = null;
+        AddressedEnvelope<DnsResponse, InetSocketAddress> envelope1 = null;
+        AddressedEnvelope<DnsResponse, InetSocketAddress> envelope2 = null;
+        try {
+            DnsNameResolverBuilder builder = newResolver()
+                    .coalesceQueries(true)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()));
+            resolver1 = builder.build();
+            resolver2 = builder.build();
+
+            DnsQuestion question = new DefaultDnsQuestion("own.netty.io", A);
+            Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future1 = resolver1.query(question);
+            Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future2 = resolver2.query(question);
+            envelope1 = future1.syncUninterruptibly().getNow();
+            envelope2 = future2.syncUninterruptibly().getNow();
+            assertNotSame(envelope1, envelope2);
+
+            ByteBuf content1 = envelope1.content().<DnsRawRecord>recordAt(DnsSection.ANSWER).content();
+            ByteBuf content2 = envelope2.content().<DnsRawRecord>recordAt(DnsSection.ANSWER).content();
+            content1.skipBytes(content1.readableBytes());
+            assertEquals(4, content2.readableBytes());
+        } finally {
+            if (envelope1 != null) {
+                envelope1.release();
+            }
+            if (envelope2 != null) {
+                envelope2.release();
+            }
+            dnsServer2.stop();
+            if (resolver1 != null) {
+                resolver1.close();
+            }
+            if (resolver2 != null) {
+                resolver2.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescedQueryCancelledWithAllWaiters() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        TestDnsServer dnsServer2 = new TestDnsServer(new RecordStore() {
+            @Override
+            public Set<ResourceRecord> getRecords(QuestionRecord question) {
+                queries.incrementAndGet();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Map<String, Object> map = new HashMap<String, Object>();
+                map.put(DnsAttribute.IP_ADDRESS.toLowerCase(), "10.0.0.1");
+                return Collections.<ResourceRecord>singleton(
+                        new TestDnsServer.TestResourceRecord(question.getDomainName(), RecordType.A, map));
+            }
+        });
+        dnsServer2.start();
+        DnsNameResolver resolver1 = null;
+        DnsNameResolver resolver2 = null;
+        try {
+            DnsNameResolverBuilder builder = newResolver()
+                    .coalesceQueries(true)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()));
+            resolver1 = builder.build();
+            resolver2 = builder.build();
+
+            DnsQuestion question = new DefaultDnsQuestion("cancel.netty.io", A);
+            Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future1 = resolver1.query(question);
+            Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future2 = resolver2.query(question);
+            assertTrue(future1.cancel(false));
+            assertTrue(future2.cancel(false));
+            // 等待 EventLoop 处理取消的通知
+            group.submit(new Runnable() {
+                @Override
+                public void run() { }
+            }).syncUninterruptibly();
+
+            // 原来的查询已经取消，新的查询不会再共享它的结果
+            resolver1.query(question).syncUninterruptibly().getNow().release();
+            assertEquals(2, queries.get());
+        } finally {
+            dnsServer2.stop();
+            if (resolver1 != null) {
+                resolver1.close();
+            }
+            if (resolver2 != null) {
+                resolver2.close();
+            }
+        }
+    }
+
+    @Test
+    public void testResolveAllAddressTypesSeparately() throws Exception {
+        final List<RecordType> queries = Collections.synchronizedList(new ArrayList<RecordType>());
+        TestDnsServer dnsServer2 = newAddressTypesDnsServer(queries);
+        dnsServer2.start();
+        DnsNameResolver resolver = null;
+        try {
+            resolver = newResolver(ResolvedAddressTypes.IPV6_PREFERRED)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()))
+                    .build();
+            InetAddress ipv4 = InetAddress.getByAddress("netty.io", new byte[] { 10, 0, 0, 1 });
+            InetAddress ipv6 = InetAddress.getByAddress("netty.io", new byte[] {
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1 });
+
+            assertEquals(Collections.singletonList(ipv4),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV4_ONLY).sync().getNow());
+            assertEquals(Collections.singletonList(RecordType.A), queries);
+
+            // 缓存中只有 IPv4 地址，需要查询 AAAA
+            assertEquals(Collections.singletonList(ipv6),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV6_ONLY).sync().getNow());
+            assertEquals(Arrays.asList(RecordType.A, RecordType.AAAA), queries);
+
+            // 两种地址都已经缓存
+            assertEquals(Collections.singletonList(ipv4),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV4_ONLY).sync().getNow());
+            assertEquals(Collections.singletonList(ipv6),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV6_ONLY).sync().getNow());
+            assertEquals(2, queries.size());
+        } finally {
+            dnsServer2.stop();
+            if (resolver != null) {
+                resolver.close();
+            }
+        }
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT_MS)
+    public void testResolveAllAfterSingleAddressTypeReturnsAllAddressTypes() throws Exception {
+        final List<RecordType> queries = Collections.synchronizedList(new ArrayList<RecordType>());
+        TestDnsServer dnsServer2 = newAddressTypesDnsServer(queries);
+        dnsServer2.start();
+        DnsNameResolver resolver = null;
+        try {
+            resolver = newResolver(ResolvedAddressTypes.IPV6_PREFERRED)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer2.localAddress()))
+                    .build();
+            InetAddress ipv4 = InetAddress.getByAddress("netty.io", new byte[] { 10, 0, 0, 1 });
+            InetAddress ipv6 = InetAddress.getByAddress("netty.io", new byte[] {
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1 });
+
+            assertEquals(Collections.singletonList(ipv4),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV4_ONLY).sync().getNow());
+            assertEquals(Collections.singletonList(RecordType.A), queries);
+
+            // 只解析了 IPv4 的结果不能用来回答所有地址族的查询，否则会返回 IPv4 地址而不是首选的 IPv6 地址
+            assertEquals(Collections.singletonList(ipv6), resolver.resolveAll("netty.io").sync().getNow());
+            assertEquals(1, Collections.frequency(queries, RecordType.AAAA));
+
+            // 所有地址族的结果也能回答单个地址族的查询
+            assertEquals(Collections.singletonList(ipv6),
+                         resolver.resolveAll("netty.io", ResolvedAddressTypes.IPV6_ONLY).sync().getNow());
+            assertEquals(1, Collections.frequency(queries, RecordType.AAAA));
+        } finally {
+            dnsServer2.stop();
+            if (resolver != null) {
+                resolver.close();
+            }
+        }
+    }
+
+    private static TestDnsServer newAddressTypesDnsServer(final List<RecordType> queries) {
+        return new TestDnsServer(new RecordStore() {
+            @Override
+            public Set<ResourceRecord> getRecords(QuestionRecord question) {
+                queries.add(question.getRecordType());
+                Map<String, Object> map = new HashMap<String, Object>();
+                map.put(DnsAttribute.IP_ADDRESS.toLowerCase(),
+                        question.getRecordType() == RecordType.A ? "10.0.0.1" : "0:0:0:0:0:0:1:1");
+                return Collections.<ResourceRecord>singleton(new TestDnsServer.TestResourceRecord(
+                        question.getDomainName(), question.getRecordType(), map));
+            }
+        });
+    }
+
     @Test(timeout = DEFAULT_TEST_TIMEOUT_MS)
     public void aAndAAAAQueryShouldTryFirstDnsServerBeforeSecond() throws IOException {
         final String knownHostName = "netty.io";
@@ -17,10 +17,18 @@ package io.netty.resolver;
 
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.UnstableApi;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
 /**
  * A skeletal {@link NameResolver} implementation that resolves {@link InetAddress}.
@@ -53,4 +61,75 @@ public abstract class InetNameResolver extends SimpleNameResolver<InetAddress> {
         }
         return result;
     }
+
+    /**
+     * Resolves the addresses of the specified host which have the specified {@link ResolvedAddressTypes}, ordered by
+     * the preferred type. With {@link ResolvedAddressTypes#IPV4_ONLY} and {@link ResolvedAddressTypes#IPV6_ONLY} the
+     * IPv4 and the IPv6 addresses of a host can be resolved separately, so that the caller can use the addresses of
+     * one type before the other type is resolved.
+     * <p>
+     * The default implementation resolves all addresses with {@link #resolveAll(String)} and filters them.
+     *
+     * @return the addresses of the specified type, or a failed {@link Future} with an {@link UnknownHostException}
+     *         if the host has no address of the specified type
+     */
+    public Future<List<InetAddress>> resolveAll(String inetHost, ResolvedAddressTypes addressTypes) {
+        checkNotNull(addressTypes, "addressTypes");
+        return resolveAllFiltered(this, inetHost, addressTypes, executor().<List<InetAddress>>newPromise());
+    }
+
+    /**
+     * Resolves all addresses with the specified {@link NameResolver} and filters them by the specified
+     * {@link ResolvedAddressTypes}.
+     */
+    static Future<List<InetAddress>> resolveAllFiltered(NameResolver<InetAddress> resolver, final String inetHost,
+                                                        final ResolvedAddressTypes addressTypes,
+                                                        final Promise<List<InetAddress>> promise) {
+        resolver.resolveAll(inetHost).addListener(new FutureListener<List<InetAddress>>() {
+            @Override
+            public void operationComplete(Future<List<InetAddress>> future) {
+                if (!future.isSuccess()) {
+                    promise.tryFailure(future.cause());
+                    return;
+                }
+                List<InetAddress> filtered = filter(future.getNow(), addressTypes);
+                if (filtered.isEmpty()) {
+                    promise.tryFailure(new UnknownHostException(
+                            "no address of type " + addressTypes + " for " + inetHost));
+                } else {
+                    promise.trySuccess(filtered);
+                }
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Returns the addresses which have the specified {@link ResolvedAddressTypes}, ordered by the preferred type.
+     */
+    static List<InetAddress> filter(List<InetAddress> addresses, ResolvedAddressTypes addressTypes) {
+        List<InetAddress> ipv4 = new ArrayList<InetAddress>(addresses.size());
+        List<InetAddress> ipv6 = new ArrayList<InetAddress>(addresses.size());
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet4Address) {
+                ipv4.add(address);
+            } else {
+                ipv6.add(address);
+            }
+        }
+        switch (addressTypes) {
+            case IPV4_ONLY:
+                return ipv4;
+            case IPV6_ONLY:
+                return ipv6;
+            case IPV4_PREFERRED:
+                ipv4.addAll(ipv6);
+                return ipv4;
+            case IPV6_PREFERRED:
+                ipv6.addAll(ipv4);
+                return ipv6;
+            default:
+                throw new IllegalArgumentException("Unknown ResolvedAddressTypes " + addressTypes);
+        }
+    }
 }
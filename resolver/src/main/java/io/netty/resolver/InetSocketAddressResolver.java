@@ -23,9 +23,15 @@ import io.netty.util.internal.UnstableApi;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.UnsupportedAddressTypeException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
 /**
  * A {@link AbstractAddressResolver} that resolves {@link InetSocketAddress}.
  */
@@ -73,26 +79,72 @@ public class InetSocketAddressResolver extends AbstractAddressResolver<InetSocke
         // Note that InetSocketAddress.getHostName() will never incur a reverse lookup here,
         // because an unresolved address always has a host name.
         nameResolver.resolveAll(unresolvedAddress.getHostName())
-                .addListener(new FutureListener<List<InetAddress>>() {
-                    @Override
-                    public void operationComplete(Future<List<InetAddress>> future) throws Exception {
-                        if (future.isSuccess()) {
-                            List<InetAddress> inetAddresses = future.getNow();
-                            List<InetSocketAddress> socketAddresses =
-                                    new ArrayList<InetSocketAddress>(inetAddresses.size());
-                            for (InetAddress inetAddress : inetAddresses) {
-                                socketAddresses.add(new InetSocketAddress(inetAddress, unresolvedAddress.getPort()));
-                            }
-                            promise.setSuccess(socketAddresses);
-                        } else {
-                            promise.setFailure(future.cause());
-                        }
-                    }
-                });
+                .addListener(new SocketAddressesListener(unresolvedAddress.getPort(), promise));
+    }
+
+    /**
+     * Resolves the addresses of the specified address which have the specified {@link ResolvedAddressTypes}.
+     *
+     * @see InetNameResolver#resolveAll(String, ResolvedAddressTypes)
+     */
+    public Future<List<InetSocketAddress>> resolveAll(SocketAddress address, ResolvedAddressTypes addressTypes) {
+        if (!isSupported(address)) {
+            // Address type not supported by the resolver
+            return executor().newFailedFuture(new UnsupportedAddressTypeException());
+        }
+
+        checkNotNull(addressTypes, "addressTypes");
+        final InetSocketAddress inetAddress = (InetSocketAddress) address;
+        if (!inetAddress.isUnresolved()) {
+            List<InetAddress> filtered =
+                    InetNameResolver.filter(Collections.singletonList(inetAddress.getAddress()), addressTypes);
+            if (filtered.isEmpty()) {
+                return executor().newFailedFuture(new UnknownHostException(
+                        "no address of type " + addressTypes + " for " + inetAddress));
+            }
+            return executor().newSucceededFuture(Collections.singletonList(inetAddress));
+        }
+
+        final String hostname = inetAddress.getHostName();
+        final Future<List<InetAddress>> future;
+        if (nameResolver instanceof InetNameResolver) {
+            future = ((InetNameResolver) nameResolver).resolveAll(hostname, addressTypes);
+        } else {
+            // 无法分别解析时，解析所有地址后再过滤
+            future = InetNameResolver.resolveAllFiltered(
+                    nameResolver, hostname, addressTypes, executor().<List<InetAddress>>newPromise());
+        }
+        final Promise<List<InetSocketAddress>> promise = executor().newPromise();
+        future.addListener(new SocketAddressesListener(inetAddress.getPort(), promise));
+        return promise;
     }
 
     @Override
     public void close() {
         nameResolver.close();
     }
+
+    private static final class SocketAddressesListener implements FutureListener<List<InetAddress>> {
+        private final int port;
+        private final Promise<List<InetSocketAddress>> promise;
+
+        SocketAddressesListener(int port, Promise<List<InetSocketAddress>> promise) {
+            this.port = port;
+            this.promise = promise;
+        }
+
+        @Override
+        public void operationComplete(Future<List<InetAddress>> future) throws Exception {
+            if (future.isSuccess()) {
+                List<InetAddress> inetAddresses = future.getNow();
+                List<InetSocketAddress> socketAddresses = new ArrayList<InetSocketAddress>(inetAddresses.size());
+                for (InetAddress inetAddress : inetAddresses) {
+                    socketAddresses.add(new InetSocketAddress(inetAddress, port));
+                }
+                promise.setSuccess(socketAddresses);
+            } else {
+                promise.setFailure(future.cause());
+            }
+        }
+    }
 }
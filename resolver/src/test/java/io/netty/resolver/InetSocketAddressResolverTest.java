@@ -15,11 +15,18 @@
  */
 package io.netty.resolver;
 
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class InetSocketAddressResolverTest {
@@ -33,4 +40,29 @@ public class InetSocketAddressResolverTest {
         resolver.close();
         verify(nameResolver, times(1)).close();
     }
+
+    @Test
+    public void testResolveAllFiltersAddressTypes() throws Exception {
+        final InetAddress ipv4 = InetAddress.getByAddress("netty.io", new byte[] { 10, 0, 0, 1 });
+        final InetAddress ipv6 = InetAddress.getByAddress("netty.io", new byte[] {
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 });
+        @SuppressWarnings("unchecked")
+        NameResolver<InetAddress> nameResolver = mock(NameResolver.class);
+        when(nameResolver.resolveAll("netty.io")).thenReturn(ImmediateEventExecutor.INSTANCE
+                .<List<InetAddress>>newSucceededFuture(Arrays.asList(ipv4, ipv6)));
+        when(nameResolver.resolveAll("ipv6.netty.io")).thenReturn(ImmediateEventExecutor.INSTANCE
+                .<List<InetAddress>>newSucceededFuture(Collections.singletonList(ipv6)));
+        InetSocketAddressResolver resolver = new InetSocketAddressResolver(
+                ImmediateEventExecutor.INSTANCE, nameResolver);
+
+        assertEquals(Collections.singletonList(new InetSocketAddress(ipv6, 80)),
+                     resolver.resolveAll(InetSocketAddress.createUnresolved("netty.io", 80),
+                                         ResolvedAddressTypes.IPV6_ONLY).getNow());
+        assertEquals(Arrays.asList(new InetSocketAddress(ipv6, 80), new InetSocketAddress(ipv4, 80)),
+                     resolver.resolveAll(InetSocketAddress.createUnresolved("netty.io", 80),
+                                         ResolvedAddressTypes.IPV6_PREFERRED).getNow());
+        Future<List<InetSocketAddress>> future = resolver.resolveAll(
+                InetSocketAddress.createUnresolved("ipv6.netty.io", 80), ResolvedAddressTypes.IPV4_ONLY);
+        assertTrue(future.cause() instanceof UnknownHostException);
+    }
 }
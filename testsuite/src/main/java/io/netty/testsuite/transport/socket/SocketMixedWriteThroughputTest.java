@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.testsuite.transport.socket;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes a mix of small and large buffers through a small socket send buffer, so most gathering writes are only
+ * partially accepted. Verifies that the channel resumes writing after every partial write, so all data arrives
+ * intact and the outbound buffer is drained, and logs the throughput.
+ */
+public class SocketMixedWriteThroughputTest extends AbstractSocketTest {
+
+    @Rule
+    public final Timeout globalTimeout = new Timeout(120000);
+
+    private static final int SMALL_BUFFERS = 64;
+    private static final int SMALL_BUFFER_SIZE = 32;
+    private static final int LARGE_BUFFER_SIZE = 64 * 1024;
+    private static final int ROUNDS = 256;
+    private static final byte[] data = new byte[SMALL_BUFFERS * SMALL_BUFFER_SIZE + LARGE_BUFFER_SIZE];
+
+    static {
+        new Random().nextBytes(data);
+    }
+
+    @Test
+    public void testMixedWriteThroughput() throws Throwable {
+        run();
+    }
+
+    public void testMixedWriteThroughput(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        final long expectedBytes = (long) data.length * ROUNDS;
+        final Promise<Long> donePromise = ImmediateEventExecutor.INSTANCE.newPromise();
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            private long received;
+            private long mismatches;
+
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                for (int i = msg.readerIndex(); i < msg.writerIndex(); i++) {
+                    if (msg.getByte(i) != data[(int) (received++ % data.length)]) {
+                        mismatches++;
+                    }
+                }
+                if (received >= expectedBytes) {
+                    donePromise.trySuccess(mismatches);
+                }
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                donePromise.tryFailure(cause);
+            }
+        });
+        cb.option(ChannelOption.SO_SNDBUF, 32 * 1024);
+        cb.option(ChannelOption.TCP_NODELAY, true);
+        cb.handler(new ChannelInboundHandlerAdapter());
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect(sc.localAddress()).sync().channel();
+        try {
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < SMALL_BUFFERS; i++) {
+                    cc.write(wrappedBuffer(data, i * SMALL_BUFFER_SIZE, SMALL_BUFFER_SIZE));
+                }
+                cc.writeAndFlush(wrappedBuffer(data, SMALL_BUFFERS * SMALL_BUFFER_SIZE, LARGE_BUFFER_SIZE));
+            }
+            // Every received byte must match the written one.
+            assertEquals(0L, (long) donePromise.sync().getNow());
+            // All writes completed although most of them were partial.
+            assertEquals(0L, cc.unsafe().outboundBuffer().totalPendingWriteBytes());
+            assertTrue(cc.isWritable());
+            long elapsed = System.nanoTime() - start;
+            logger.info(String.format("Mixed writes of %d bytes took %d ms (%.1f MiB/s)", expectedBytes,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), expectedBytes * 1e9 / elapsed / (1024 * 1024)));
+        } finally {
+            cc.close().sync();
+            sc.close().sync();
+        }
+    }
+}
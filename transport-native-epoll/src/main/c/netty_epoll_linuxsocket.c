@@ -25,6 +25,7 @@
 #include <string.h>
 #include <errno.h>
 #include <netinet/in.h>
+#include <sys/ioctl.h>
 #include <sys/sendfile.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
 
@@ -294,6 +295,16 @@ static jint netty_epoll_linuxsocket_getTcpNotSentLowAt(JNIEnv* env, jclass clazz
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_getPendingBytes(JNIEnv* env, jclass clazz, jint fd) {
+    int pending;
+    // FIONREAD is the same as SIOCINQ for TCP sockets.
+    if (ioctl(fd, FIONREAD, &pending) == -1) {
+        netty_unix_errors_throwIOExceptionErrorNo(env, "ioctl() failed: ", errno);
+        return -1;
+    }
+    return pending;
+}
+
 static jobject netty_epoll_linuxsocket_getPeerCredentials(JNIEnv *env, jclass clazz, jint fd) {
      struct ucred credentials;
      if(netty_unix_socket_getOption(env,fd, SOL_SOCKET, SO_PEERCRED, &credentials, sizeof (credentials)) == -1) {
@@ -347,6 +358,7 @@ static const JNINativeMethod fixed_method_table[] = {
   { "isTcpCork", "(I)I", (void *) netty_epoll_linuxsocket_isTcpCork },
   { "getTcpDeferAccept", "(I)I", (void *) netty_epoll_linuxsocket_getTcpDeferAccept },
   { "getTcpNotSentLowAt", "(I)I", (void *) netty_epoll_linuxsocket_getTcpNotSentLowAt },
+  { "getPendingBytes", "(I)I", (void *) netty_epoll_linuxsocket_getPendingBytes },
   { "isTcpQuickAck", "(I)I", (void *) netty_epoll_linuxsocket_isTcpQuickAck },
   { "setTcpFastOpen", "(II)V", (void *) netty_epoll_linuxsocket_setTcpFastOpen },
   { "setTcpFastOpenConnect", "(II)V", (void *) netty_epoll_linuxsocket_setTcpFastOpenConnect },
@@ -130,6 +130,15 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
         return (flags & flag) != 0;
     }
 
+    /**
+     * Sets the flag and modifies the registration even if the flag was set already, so the edge-triggered event is
+     * reported again if the file descriptor is still ready.
+     */
+    void rearmFlag(int flag) throws IOException {
+        flags |= flag;
+        modifyEvents();
+    }
+
     @Override
     public final FileDescriptor fd() {
         return socket;
@@ -27,8 +27,10 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.internal.AdaptiveWriteSpinCount;
 import io.netty.channel.internal.ChannelUtils;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.unix.FileDescriptor;
@@ -85,6 +87,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private FileDescriptor pipeOut;
 
     private WritableByteChannel byteChannel;
+    private final AdaptiveWriteSpinCount adaptiveWriteSpinCount = new AdaptiveWriteSpinCount();
+    private EventLoopWriteScheduler.Handle writeHandle;
 
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
@@ -258,9 +262,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      * <ul>
      *     <li>0 - if no write was attempted. This is appropriate if an empty {@link ByteBuf} (or other empty content)
      *     is encountered</li>
-     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>1 - if a single call to write data was made to the OS and all data was accepted</li>
      *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
-     *     no data was accepted</li>
+     *     not all data was accepted</li>
      * </ul>
      */
     private int writeBytes(ChannelOutboundBuffer in, ByteBuf buf) throws Exception {
@@ -271,11 +275,53 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
 
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
-            return doWriteBytes(in, buf);
+            // Limit a single large buffer to the allowance of the EventLoopWriteScheduler so it can not
+            // monopolize the EventLoop.
+            int attemptedBytes = maxSingleWriteBytes(readableBytes);
+            int res = doWriteBytes(in, attemptedBytes == readableBytes ? buf :
+                    buf.slice(buf.readerIndex(), attemptedBytes));
+            if (res == 1) {
+                // The buffer was removed from the ChannelOutboundBuffer if it was written completely.
+                int writtenBytes = in.current() == buf ? readableBytes - buf.readableBytes() : readableBytes;
+                written(writtenBytes);
+                // The socket send buffer is full if not all data was accepted, so there is no need to try again.
+                if (adaptiveWriteSpinCount.isPartialWrite(attemptedBytes, writtenBytes)) {
+                    return WRITE_STATUS_SNDBUF_FULL;
+                }
+            }
+            return res;
         } else {
             ByteBuffer[] nioBuffers = buf.nioBuffers();
             return writeBytesMultiple(in, nioBuffers, nioBuffers.length, readableBytes,
-                    config().getMaxBytesPerGatheringWrite());
+                    maxBytesPerGatheringWrite());
+        }
+    }
+
+    /**
+     * Returns the maximum number of bytes of a single buffer write, which is limited by the allowance of the
+     * {@link EventLoopWriteScheduler} if there is one.
+     */
+    private int maxSingleWriteBytes(int readableBytes) {
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        return writeHandle == null ? readableBytes :
+                (int) Math.max(1, Math.min(readableBytes, writeHandle.allowance()));
+    }
+
+    /**
+     * Returns the maximum number of bytes of a gathering write, which is limited by the allowance of the
+     * {@link EventLoopWriteScheduler} if there is one.
+     */
+    private long maxBytesPerGatheringWrite() {
+        long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        return writeHandle == null ? maxBytesPerGatheringWrite :
+                Math.max(1, Math.min(maxBytesPerGatheringWrite, writeHandle.allowance()));
+    }
+
+    private void written(long bytes) {
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        if (writeHandle != null) {
+            writeHandle.written(bytes);
         }
     }
 
@@ -301,9 +347,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      * <ul>
      *     <li>0 - if no write was attempted. This is appropriate if an empty {@link ByteBuf} (or other empty content)
      *     is encountered</li>
-     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>1 - if a single call to write data was made to the OS and all data was accepted</li>
      *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
-     *     no data was accepted</li>
+     *     not all data was accepted</li>
      * </ul>
      * @throws IOException If an I/O exception occurs during write.
      */
@@ -315,9 +361,13 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
         final long localWrittenBytes = socket.writevAddresses(array.memoryAddress(0), cnt);
         if (localWrittenBytes > 0) {
-            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, array.maxBytes());
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes,
+                    config().getMaxBytesPerGatheringWrite());
             in.removeBytes(localWrittenBytes);
-            return 1;
+            written(localWrittenBytes);
+            // The socket send buffer is full if not all data was accepted, so there is no need to try again.
+            return adaptiveWriteSpinCount.isPartialWrite(expectedWrittenBytes, localWrittenBytes) ?
+                    WRITE_STATUS_SNDBUF_FULL : 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
     }
@@ -334,9 +384,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      * <ul>
      *     <li>0 - if no write was attempted. This is appropriate if an empty {@link ByteBuf} (or other empty content)
      *     is encountered</li>
-     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>1 - if a single call to write data was made to the OS and all data was accepted</li>
      *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
-     *     no data was accepted</li>
+     *     not all data was accepted</li>
      * </ul>
      * @throws IOException If an I/O exception occurs during write.
      */
@@ -350,9 +400,13 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
         final long localWrittenBytes = socket.writev(nioBuffers, 0, nioBufferCnt, expectedWrittenBytes);
         if (localWrittenBytes > 0) {
-            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes,
+                    config().getMaxBytesPerGatheringWrite());
             in.removeBytes(localWrittenBytes);
-            return 1;
+            written(localWrittenBytes);
+            // The socket send buffer is full if not all data was accepted, so there is no need to try again.
+            return adaptiveWriteSpinCount.isPartialWrite(expectedWrittenBytes, localWrittenBytes) ?
+                    WRITE_STATUS_SNDBUF_FULL : 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
     }
@@ -382,6 +436,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final long flushedAmount = socket.sendFile(region, region.position(), offset, regionCount - offset);
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
+            written(flushedAmount);
             if (region.transferred() >= regionCount) {
                 in.remove();
             }
@@ -416,6 +471,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final long flushedAmount = region.transferTo(byteChannel, region.transferred());
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
+            written(flushedAmount);
             if (region.transferred() >= region.count()) {
                 in.remove();
             }
@@ -424,10 +480,26 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return WRITE_STATUS_SNDBUF_FULL;
     }
 
+    /**
+     * Returns the number of writes the next flush may do, only visible for testing.
+     */
+    int nextWriteSpinCount() {
+        return adaptiveWriteSpinCount.nextWriteSpinCount();
+    }
+
     @Override
     protected void doWrite(ChannelOutboundBuffer in) throws Exception {
-        int writeSpinCount = config().getWriteSpinCount();
+        int writeSpinCount = adaptiveWriteSpinCount.writeSpinCount(config().getWriteSpinCount());
+        final EventLoopWriteScheduler.Handle writeHandle = this.writeHandle =
+                EventLoopWriteScheduler.handle(eventLoop(), this.writeHandle);
         do {
+            if (writeHandle != null && !in.isEmpty() && writeHandle.allowance() <= 0) {
+                // This channel used its share of the bytes written in this iteration of the EventLoop, so wait for
+                // EPOLLOUT to give the other channels a chance to write first. As EPOLLOUT is edge-triggered it must
+                // be re-armed, otherwise we would not be notified while the socket stays writable.
+                rearmFlag(Native.EPOLLOUT);
+                return;
+            }
             final int msgCount = in.size();
             // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
             if (msgCount > 1 && in.current() instanceof ByteBuf) {
@@ -435,6 +507,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             } else if (msgCount == 0) {
                 // Wrote all messages.
                 clearFlag(Native.EPOLLOUT);
+                if (writeHandle != null) {
+                    writeHandle.drained();
+                }
                 // Return here so we not set the EPOLLOUT flag.
                 return;
             } else {  // msgCount == 1
@@ -446,6 +521,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             // listeners.
         } while (writeSpinCount > 0);
 
+        adaptiveWriteSpinCount.incompleteWrite(writeSpinCount == 0);
         if (writeSpinCount == 0) {
             // It is possible that we have set EPOLLOUT, woken up by EPOLL because the socket is writable, and then use
             // our write quantum. In this case we no longer want to set the EPOLLOUT flag because the socket is still
@@ -512,7 +588,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      * @throws Exception If an I/O error occurs.
      */
     private int doWriteMultiple(ChannelOutboundBuffer in) throws Exception {
-        final long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
+        final long maxBytesPerGatheringWrite = maxBytesPerGatheringWrite();
         if (PlatformDependent.hasUnsafe()) {
             IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
             array.maxBytes(maxBytesPerGatheringWrite);
@@ -762,6 +838,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
             final EpollRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
             allocHandle.edgeTriggered(isFlagSet(Native.EPOLLET));
+            final RecvByteBufAllocator.ReadBufferHandle readBufferHandle = allocHandle.readBufferHandle();
 
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
@@ -790,7 +867,15 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
                     // we use a direct buffer here as the native implementations only be able
                     // to handle direct buffers.
-                    byteBuf = allocHandle.allocate(allocator);
+                    if (readBufferHandle != null) {
+                        if (readBufferHandle.pendingBytesNeeded()) {
+                            // The last read filled the buffer, so size the next one to what is queued in the socket.
+                            readBufferHandle.pendingBytes(socket.getPendingBytes());
+                        }
+                        byteBuf = readBufferHandle.allocateReadBuffer(allocator);
+                    } else {
+                        byteBuf = allocHandle.allocate(allocator);
+                    }
                     allocHandle.lastBytesRead(doReadBytes(byteBuf));
                     if (allocHandle.lastBytesRead() <= 0) {
                         // nothing was read, release the buffer.
@@ -803,6 +888,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                         }
                         break;
                     }
+                    if (readBufferHandle != null) {
+                        // finishRead(...) takes ownership of the buffer, even if it throws.
+                        ByteBuf readBuf = byteBuf;
+                        byteBuf = null;
+                        byteBuf = readBufferHandle.finishRead(allocator, readBuf);
+                    }
                     allocHandle.incMessagesRead(1);
                     readPending = false;
                     pipeline.fireChannelRead(byteBuf);
@@ -17,6 +17,8 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetrics;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.channel.epoll.AbstractEpollChannel.AbstractEpollUnsafe;
@@ -161,6 +163,7 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
             // write to the evfd which will then wake-up epoll_wait(...)
             Native.eventFdWrite(eventFd.intValue(), 1L);
+            recordWakeup();
         }
     }
 
@@ -205,6 +208,11 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                                                     : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
     }
 
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
+
     @Override
     public int pendingTasks() {
         // As we use a MpscQueue we need to ensure pendingTasks() is only executed from within the EventLoop as
@@ -262,7 +270,12 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     case SelectStrategy.CONTINUE:
                         continue;
                     case SelectStrategy.SELECT:
-                        strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        beforeIdle();
+                        try {
+                            strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        } finally {
+                            afterIdle();
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
@@ -299,13 +312,23 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     default:
                 }
 
+                final EventLoopWriteScheduler writeScheduler = writeScheduler();
+                if (writeScheduler != null) {
+                    writeScheduler.nextIteration();
+                }
+
                 final int ioRatio = this.ioRatio;
+                final EventLoopMetrics metrics = metrics();
                 if (ioRatio == 100) {
+                    final long ioStartTime = metrics != null ? System.nanoTime() : 0;
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
                         }
                     } finally {
+                        if (metrics != null) {
+                            recordSelect(Math.max(0, strategy), System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         runAllTasks();
                     }
@@ -319,6 +342,9 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            recordSelect(Math.max(0, strategy), ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
@@ -326,6 +352,7 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     //increase the size of the array as we needed the whole space for the events
                     events.increase();
                 }
+                afterLoopIteration();
             } catch (Throwable t) {
                 handleLoopException(t);
             }
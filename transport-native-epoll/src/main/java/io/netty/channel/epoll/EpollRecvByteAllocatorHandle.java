@@ -59,6 +59,15 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
                (!isEdgeTriggered && lastBytesRead() == attemptedBytesRead());
     }
 
+    /**
+     * Returns the {@link RecvByteBufAllocator.ReadBufferHandle} to which this handle delegates or {@code null} if the
+     * delegate does not support it.
+     */
+    final RecvByteBufAllocator.ReadBufferHandle readBufferHandle() {
+        return delegate instanceof RecvByteBufAllocator.ReadBufferHandle ?
+                (RecvByteBufAllocator.ReadBufferHandle) delegate : null;
+    }
+
     final void edgeTriggered(boolean edgeTriggered) {
         isEdgeTriggered = edgeTriggered;
     }
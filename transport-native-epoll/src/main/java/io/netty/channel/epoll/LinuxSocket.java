@@ -128,6 +128,10 @@ final class LinuxSocket extends Socket {
         return getTcpNotSentLowAt(intValue()) & MAX_UINT32_T;
     }
 
+    int getPendingBytes() throws IOException {
+        return getPendingBytes(intValue());
+    }
+
     int getTcpKeepIdle() throws IOException {
         return getTcpKeepIdle(intValue());
     }
@@ -191,6 +195,7 @@ final class LinuxSocket extends Socket {
     private static native int isTcpQuickAck(int fd) throws IOException;
     private static native int isTcpCork(int fd) throws IOException;
     private static native int getTcpNotSentLowAt(int fd) throws IOException;
+    private static native int getPendingBytes(int fd) throws IOException;
     private static native int getTcpKeepIdle(int fd) throws IOException;
     private static native int getTcpKeepIntvl(int fd) throws IOException;
     private static native int getTcpKeepCnt(int fd) throws IOException;
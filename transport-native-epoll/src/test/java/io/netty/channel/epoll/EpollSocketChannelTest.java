@@ -16,13 +16,22 @@
 package io.netty.channel.epoll;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.PredictiveRecvByteBufAllocator;
+import io.netty.util.NetUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 public class EpollSocketChannelTest {
 
@@ -117,4 +126,87 @@ public class EpollSocketChannelTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test(timeout = 10000)
+    public void testWriteSpinCountDropsAfterPartialWrite() throws Exception {
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            // The peer never reads, so the socket buffers fill up and the writes end up partial.
+            Channel sc = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .option(ChannelOption.SO_RCVBUF, 8 * 1024)
+                    .childOption(ChannelOption.AUTO_READ, false)
+                    .childHandler(new ChannelInboundHandlerAdapter())
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).sync().channel();
+            final EpollSocketChannel cc = (EpollSocketChannel) new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .option(ChannelOption.SO_SNDBUF, 8 * 1024)
+                    .option(ChannelOption.WRITE_SPIN_COUNT, 16)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).sync().channel();
+            try {
+                // A single large buffer uses the non-gathering write path.
+                cc.writeAndFlush(Unpooled.directBuffer(4 * 1024 * 1024).writeZero(4 * 1024 * 1024));
+                int writeSpinCount = cc.eventLoop().submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return cc.nextWriteSpinCount();
+                    }
+                }).get();
+                Assert.assertTrue("writeSpinCount: " + writeSpinCount, writeSpinCount > 0 && writeSpinCount < 16);
+            } finally {
+                cc.close().sync();
+                sc.close().sync();
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPredictiveRecvByteBufAllocator() throws Exception {
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        final int size = 256 * 1024;
+        final ByteBuf received = Unpooled.buffer(size);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            // Small predictions read into the shared buffer, full reads size the next buffer with FIONREAD.
+            Channel sc = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childOption(ChannelOption.RCVBUF_ALLOCATOR,
+                            new PredictiveRecvByteBufAllocator(64, 64, 4096).copyThreshold(256))
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            received.writeBytes(buf);
+                            buf.release();
+                            if (!received.isWritable()) {
+                                latch.countDown();
+                            }
+                        }
+                    })
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).sync().channel();
+            Channel cc = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).sync().channel();
+            ByteBuf data = Unpooled.directBuffer(size);
+            for (int i = 0; i < size; i++) {
+                data.writeByte(i);
+            }
+            try {
+                cc.writeAndFlush(data.retainedDuplicate()).sync();
+                latch.await();
+                Assert.assertEquals(data, received);
+            } finally {
+                data.release();
+                cc.close().sync();
+                sc.close().sync();
+            }
+        } finally {
+            group.shutdownGracefully();
+            received.release();
+        }
+    }
 }
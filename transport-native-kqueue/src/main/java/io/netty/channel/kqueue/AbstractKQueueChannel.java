@@ -364,6 +364,15 @@ abstract class AbstractKQueueChannel extends AbstractChannel implements UnixChan
         }
     }
 
+    /**
+     * Enables the write filter even if it was enabled already, so the edge-triggered event is reported again if the
+     * socket is still writable.
+     */
+    void rearmWriteFilter() {
+        writeFilterEnabled = true;
+        evSet(Native.EVFILT_WRITE, Native.EV_ADD_CLEAR_ENABLE);
+    }
+
     private void evSet(short filter, short flags) {
         if (isOpen() && isRegistered()) {
             evSet0(filter, flags);
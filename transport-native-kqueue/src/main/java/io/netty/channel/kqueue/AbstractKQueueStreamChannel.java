@@ -27,6 +27,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.FileRegion;
 import io.netty.channel.internal.ChannelUtils;
 import io.netty.channel.socket.DuplexChannel;
@@ -56,6 +57,7 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
             " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
                     StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
     private WritableByteChannel byteChannel;
+    private EventLoopWriteScheduler.Handle writeHandle;
     private final Runnable flushTask = new Runnable() {
         @Override
         public void run() {
@@ -109,11 +111,48 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
         }
 
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
-            return doWriteBytes(in, buf);
+            // Limit a single large buffer to the allowance of the EventLoopWriteScheduler so it can not
+            // monopolize the EventLoop.
+            int attemptedBytes = maxSingleWriteBytes(readableBytes);
+            int res = doWriteBytes(in, attemptedBytes == readableBytes ? buf :
+                    buf.slice(buf.readerIndex(), attemptedBytes));
+            if (res == 1) {
+                // The buffer was removed from the ChannelOutboundBuffer if it was written completely.
+                written(in.current() == buf ? readableBytes - buf.readableBytes() : readableBytes);
+            }
+            return res;
         } else {
             ByteBuffer[] nioBuffers = buf.nioBuffers();
             return writeBytesMultiple(in, nioBuffers, nioBuffers.length, readableBytes,
-                    config().getMaxBytesPerGatheringWrite());
+                    maxBytesPerGatheringWrite());
+        }
+    }
+
+    /**
+     * Returns the maximum number of bytes of a single buffer write, which is limited by the allowance of the
+     * {@link EventLoopWriteScheduler} if there is one.
+     */
+    private int maxSingleWriteBytes(int readableBytes) {
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        return writeHandle == null ? readableBytes :
+                (int) Math.max(1, Math.min(readableBytes, writeHandle.allowance()));
+    }
+
+    /**
+     * Returns the maximum number of bytes of a gathering write, which is limited by the allowance of the
+     * {@link EventLoopWriteScheduler} if there is one.
+     */
+    private long maxBytesPerGatheringWrite() {
+        long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        return writeHandle == null ? maxBytesPerGatheringWrite :
+                Math.max(1, Math.min(maxBytesPerGatheringWrite, writeHandle.allowance()));
+    }
+
+    private void written(long bytes) {
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        if (writeHandle != null) {
+            writeHandle.written(bytes);
         }
     }
 
@@ -153,8 +192,10 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
 
         final long localWrittenBytes = socket.writevAddresses(array.memoryAddress(0), cnt);
         if (localWrittenBytes > 0) {
-            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, array.maxBytes());
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes,
+                    config().getMaxBytesPerGatheringWrite());
             in.removeBytes(localWrittenBytes);
+            written(localWrittenBytes);
             return 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
@@ -188,8 +229,10 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
 
         final long localWrittenBytes = socket.writev(nioBuffers, 0, nioBufferCnt, expectedWrittenBytes);
         if (localWrittenBytes > 0) {
-            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes,
+                    config().getMaxBytesPerGatheringWrite());
             in.removeBytes(localWrittenBytes);
+            written(localWrittenBytes);
             return 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
@@ -220,6 +263,7 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
         final long flushedAmount = socket.sendFile(region, region.position(), offset, regionCount - offset);
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
+            written(flushedAmount);
             if (region.transferred() >= regionCount) {
                 in.remove();
             }
@@ -254,6 +298,7 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
         final long flushedAmount = region.transferTo(byteChannel, region.transferred());
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
+            written(flushedAmount);
             if (region.transferred() >= region.count()) {
                 in.remove();
             }
@@ -265,7 +310,17 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
     @Override
     protected void doWrite(ChannelOutboundBuffer in) throws Exception {
         int writeSpinCount = config().getWriteSpinCount();
+        final EventLoopWriteScheduler.Handle writeHandle = this.writeHandle =
+                EventLoopWriteScheduler.handle(eventLoop(), this.writeHandle);
         do {
+            if (writeHandle != null && !in.isEmpty() && writeHandle.allowance() <= 0) {
+                // This channel used its share of the bytes written in this iteration of the EventLoop, so wait for
+                // the write filter to give the other channels a chance to write first. As the filter is
+                // edge-triggered it must be re-armed, otherwise we would not be notified while the socket stays
+                // writable.
+                rearmWriteFilter();
+                return;
+            }
             final int msgCount = in.size();
             // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
             if (msgCount > 1 && in.current() instanceof ByteBuf) {
@@ -273,6 +328,9 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
             } else if (msgCount == 0) {
                 // Wrote all messages.
                 writeFilter(false);
+                if (writeHandle != null) {
+                    writeHandle.drained();
+                }
                 // Return here so we don't set the WRITE flag.
                 return;
             } else { // msgCount == 1
@@ -344,7 +402,7 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
      * @throws Exception If an I/O error occurs.
      */
     private int doWriteMultiple(ChannelOutboundBuffer in) throws Exception {
-        final long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
+        final long maxBytesPerGatheringWrite = maxBytesPerGatheringWrite();
         if (PlatformDependent.hasUnsafe()) {
             IovArray array = ((KQueueEventLoop) eventLoop()).cleanArray();
             array.maxBytes(maxBytesPerGatheringWrite);
@@ -17,6 +17,8 @@ package io.netty.channel.kqueue;
 
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetrics;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.channel.kqueue.AbstractKQueueChannel.AbstractKQueueUnsafe;
@@ -123,6 +125,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
             wakeup();
+            recordWakeup();
         }
     }
 
@@ -214,7 +217,12 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                     case SelectStrategy.CONTINUE:
                         continue;
                     case SelectStrategy.SELECT:
-                        strategy = kqueueWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        beforeIdle();
+                        try {
+                            strategy = kqueueWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        } finally {
+                            afterIdle();
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
@@ -251,13 +259,23 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                     default:
                 }
 
+                final EventLoopWriteScheduler writeScheduler = writeScheduler();
+                if (writeScheduler != null) {
+                    writeScheduler.nextIteration();
+                }
+
                 final int ioRatio = this.ioRatio;
+                final EventLoopMetrics metrics = metrics();
                 if (ioRatio == 100) {
+                    final long ioStartTime = metrics != null ? System.nanoTime() : 0;
                     try {
                         if (strategy > 0) {
                             processReady(strategy);
                         }
                     } finally {
+                        if (metrics != null) {
+                            recordSelect(Math.max(0, strategy), System.nanoTime() - ioStartTime);
+                        }
                         runAllTasks();
                     }
                 } else {
@@ -269,6 +287,9 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                         }
                     } finally {
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            recordSelect(Math.max(0, strategy), ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
@@ -276,6 +297,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                     //increase the size of the array as we needed the whole space for the events
                     eventList.realloc(false);
                 }
+                afterLoopIteration();
             } catch (Throwable t) {
                 handleLoopException(t);
             }
@@ -38,6 +38,9 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 /**
  * A {@link Bootstrap} that makes it easy to bootstrap a {@link Channel} to use
@@ -55,6 +58,15 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
      */
     private static final AddressResolverGroup<?> DEFAULT_RESOLVER = DefaultAddressResolverGroup.INSTANCE;
 
+    /**
+     * 默认的连接尝试间隔，见 RFC 8305 第 5 节
+     */
+    private static final long DEFAULT_CONNECTION_ATTEMPT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    /**
+     * 默认的解析延迟，见 RFC 8305 第 3 节
+     */
+    private static final long DEFAULT_RESOLUTION_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
     /**
      * 启动类配置对象
      */
@@ -68,6 +80,14 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
      * 连接地址
      */
     private volatile SocketAddress remoteAddress;
+    /**
+     * {@link #happyEyeballsConnect()} 的连接尝试间隔
+     */
+    private volatile long connectionAttemptDelayNanos = DEFAULT_CONNECTION_ATTEMPT_DELAY_NANOS;
+    /**
+     * {@link #happyEyeballsConnect()} 在 IPv4 地址先解析完成时等待 IPv6 地址的时间
+     */
+    private volatile long resolutionDelayNanos = DEFAULT_RESOLUTION_DELAY_NANOS;
 
     public Bootstrap() { }
 
@@ -75,6 +95,8 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         super(bootstrap);
         resolver = bootstrap.resolver;
         remoteAddress = bootstrap.remoteAddress;
+        connectionAttemptDelayNanos = bootstrap.connectionAttemptDelayNanos;
+        resolutionDelayNanos = bootstrap.resolutionDelayNanos;
     }
 
     /**
@@ -116,6 +138,26 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         return this;
     }
 
+    /**
+     * Sets how long {@link #happyEyeballsConnect()} waits for a connection attempt before it starts the next one in
+     * parallel. The default is 250 milliseconds, as recommended by
+     * <a href="https://tools.ietf.org/html/rfc8305#section-5">RFC 8305</a>.
+     */
+    public Bootstrap connectionAttemptDelay(long delay, TimeUnit unit) {
+        connectionAttemptDelayNanos = unit.toNanos(checkPositiveOrZero(delay, "delay"));
+        return this;
+    }
+
+    /**
+     * Sets how long {@link #happyEyeballsConnect()} waits for the IPv6 addresses of the remote peer when its IPv4
+     * addresses were resolved first. The default is 50 milliseconds, as recommended by
+     * <a href="https://tools.ietf.org/html/rfc8305#section-3">RFC 8305</a>.
+     */
+    public Bootstrap resolutionDelay(long delay, TimeUnit unit) {
+        resolutionDelayNanos = unit.toNanos(checkPositiveOrZero(delay, "delay"));
+        return this;
+    }
+
     /**
      * Connect a {@link Channel} to the remote peer.
      */
@@ -170,6 +212,53 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         return doResolveAndConnect(remoteAddress, localAddress);
     }
 
+    /**
+     * Connect a {@link Channel} to one of the resolved addresses of the remote peer, as described in
+     * <a href="https://tools.ietf.org/html/rfc8305">RFC 8305 (Happy Eyeballs)</a>. If the resolver resolves
+     * {@link InetSocketAddress}es, the IPv6 and the IPv4 addresses are resolved separately. The connection attempts
+     * start as soon as the IPv6 addresses are resolved, or when the IPv4 addresses are resolved and the IPv6 ones did
+     * not follow within the {@linkplain #resolutionDelay(long, TimeUnit) resolution delay}. Addresses which are
+     * resolved later are added to the remaining ones. The connection attempts are started one after another in
+     * alternating address families. A new attempt is
+     * started when the previous one failed or did not succeed within the
+     * {@linkplain #connectionAttemptDelay(long, TimeUnit) connection attempt delay}, so that multiple attempts may
+     * run in parallel. The first {@link Channel} which connects is returned, and all other {@link Channel}s are
+     * closed.
+     * <p>
+     * Each attempt uses a new {@link Channel}, which is why the returned {@link Future} does not belong to a
+     * {@link Channel} like the one of {@link #connect()}.
+     */
+    public Future<Channel> happyEyeballsConnect() {
+        validate();
+        SocketAddress remoteAddress = this.remoteAddress;
+        if (remoteAddress == null) {
+            throw new IllegalStateException("remoteAddress not set");
+        }
+        return happyEyeballsConnect(remoteAddress);
+    }
+
+    /**
+     * @see #happyEyeballsConnect()
+     */
+    public Future<Channel> happyEyeballsConnect(String inetHost, int inetPort) {
+        return happyEyeballsConnect(InetSocketAddress.createUnresolved(inetHost, inetPort));
+    }
+
+    /**
+     * @see #happyEyeballsConnect()
+     */
+    public Future<Channel> happyEyeballsConnect(SocketAddress remoteAddress) {
+        validate();
+        if (remoteAddress == null) {
+            throw new NullPointerException("remoteAddress");
+        }
+        HappyEyeballsConnector connector =
+                new HappyEyeballsConnector(this, config.localAddress(), connectionAttemptDelayNanos,
+                                           resolutionDelayNanos);
+        EventLoop eventLoop = connector.executor();
+        return connector.connect(remoteAddress, resolver.getResolver(eventLoop));
+    }
+
     /**
      * @see #connect()
      */
@@ -265,7 +354,8 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         return promise;
     }
 
-    private static void doConnect(final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise connectPromise) {
+    static void doConnect(final SocketAddress remoteAddress, final SocketAddress localAddress,
+                          final ChannelPromise connectPromise) {
 
         // This method is invoked before channelRegistered() is triggered.  Give user handlers a chance to set up
         // the pipeline in its channelRegistered() implementation.
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.InetSocketAddressResolver;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to one of the resolved addresses of a remote peer as described in
+ * <a href="https://tools.ietf.org/html/rfc8305">RFC 8305 (Happy Eyeballs)</a>. If the resolver is an
+ * {@link InetSocketAddressResolver}, the IPv6 and the IPv4 addresses are resolved separately and the connection
+ * attempts start as soon as the IPv6 addresses, or the IPv4 addresses followed by the resolution delay, are available.
+ * The addresses are sorted so that the address families alternate, and a new connection attempt is started whenever
+ * the previous one failed or did not complete within the connection attempt delay. The first {@link Channel} which
+ * connects wins and all other attempts are closed.
+ */
+final class HappyEyeballsConnector {
+
+    private final Bootstrap bootstrap;
+    private final SocketAddress localAddress;
+    private final long attemptDelayNanos;
+    private final long resolutionDelayNanos;
+    // 所有的状态只在 executor 中访问
+    private final EventLoop executor;
+    private final Promise<Channel> promise;
+    private final List<Channel> attempts = new ArrayList<Channel>();
+    private List<SocketAddress> addresses = Collections.emptyList();
+    private int nextAddress;
+    private Class<?> lastFamily;
+    private ScheduledFuture<?> attemptTimer;
+    // 还没有完成的解析
+    private int pendingResolutions;
+    // 在解析延迟内等待 IPv6 地址的 IPv4 地址
+    private List<SocketAddress> delayedAddresses;
+    private ScheduledFuture<?> resolutionTimer;
+
+    HappyEyeballsConnector(Bootstrap bootstrap, SocketAddress localAddress, long attemptDelayNanos,
+                           long resolutionDelayNanos) {
+        this.bootstrap = bootstrap;
+        this.localAddress = localAddress;
+        this.attemptDelayNanos = attemptDelayNanos;
+        this.resolutionDelayNanos = resolutionDelayNanos;
+        executor = bootstrap.config().group().next();
+        promise = executor.newPromise();
+    }
+
+    EventLoop executor() {
+        return executor;
+    }
+
+    Future<Channel> connect(final SocketAddress remoteAddress, final AddressResolver<SocketAddress> resolver) {
+        promise.addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(Future<Channel> future) {
+                // 已经有连接成功（或者被取消），关闭其余的连接尝试
+                if (attemptTimer != null) {
+                    attemptTimer.cancel(false);
+                    attemptTimer = null;
+                }
+                if (resolutionTimer != null) {
+                    resolutionTimer.cancel(false);
+                    resolutionTimer = null;
+                }
+                for (Channel channel : attempts) {
+                    channel.close();
+                }
+                attempts.clear();
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                resolve(remoteAddress, resolver);
+            }
+        });
+        return promise;
+    }
+
+    private void resolve(SocketAddress remoteAddress, AddressResolver<SocketAddress> resolver) {
+        if (!resolver.isSupported(remoteAddress) || resolver.isResolved(remoteAddress)) {
+            addAddresses(Collections.singletonList(remoteAddress));
+            return;
+        }
+
+        AddressResolver<?> inetResolver = resolver;
+        if (inetResolver instanceof InetSocketAddressResolver) {
+            // RFC 8305 第 3 节：分别解析 IPv6 和 IPv4 地址，先发送 AAAA 查询
+            pendingResolutions = 2;
+            resolveFamily((InetSocketAddressResolver) inetResolver, remoteAddress, true);
+            resolveFamily((InetSocketAddressResolver) inetResolver, remoteAddress, false);
+            return;
+        }
+
+        resolver.resolveAll(remoteAddress).addListener(new FutureListener<List<SocketAddress>>() {
+            @Override
+            public void operationComplete(final Future<List<SocketAddress>> future) {
+                if (executor.inEventLoop()) {
+                    resolved(future);
+                } else {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            resolved(future);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void resolved(Future<List<SocketAddress>> future) {
+        if (future.isSuccess()) {
+            addAddresses(future.getNow());
+        } else {
+            promise.tryFailure(future.cause());
+        }
+    }
+
+    private void resolveFamily(InetSocketAddressResolver resolver, SocketAddress remoteAddress, final boolean ipv6) {
+        resolver.resolveAll(remoteAddress, ipv6 ? ResolvedAddressTypes.IPV6_ONLY : ResolvedAddressTypes.IPV4_ONLY)
+                .addListener(new FutureListener<List<InetSocketAddress>>() {
+                    @Override
+                    public void operationComplete(final Future<List<InetSocketAddress>> future) {
+                        if (executor.inEventLoop()) {
+                            familyResolved(future, ipv6);
+                        } else {
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    familyResolved(future, ipv6);
+                                }
+                            });
+                        }
+                    }
+                });
+    }
+
+    private void familyResolved(Future<List<InetSocketAddress>> future, boolean ipv6) {
+        pendingResolutions--;
+        if (promise.isDone()) {
+            return;
+        }
+
+        if (!future.isSuccess()) {
+            if (resolutionTimer != null) {
+                // 没有 IPv6 地址，不需要再等待
+                startDelayedAddresses();
+            } else if (pendingResolutions == 0 && attempts.isEmpty() && nextAddress == addresses.size()) {
+                promise.tryFailure(future.cause());
+            }
+            return;
+        }
+
+        List<SocketAddress> resolved = new ArrayList<SocketAddress>(future.getNow());
+        if (ipv6) {
+            if (resolutionTimer != null) {
+                // IPv6 地址在解析延迟内到达，与 IPv4 地址一起交替连接
+                resolutionTimer.cancel(false);
+                resolutionTimer = null;
+                resolved.addAll(delayedAddresses);
+                delayedAddresses = null;
+            }
+            addAddresses(resolved);
+        } else if (pendingResolutions > 0) {
+            // IPv4 地址先到达，在解析延迟内等待 IPv6 地址
+            delayedAddresses = resolved;
+            resolutionTimer = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    startDelayedAddresses();
+                }
+            }, resolutionDelayNanos, TimeUnit.NANOSECONDS);
+        } else {
+            addAddresses(resolved);
+        }
+    }
+
+    private void startDelayedAddresses() {
+        if (resolutionTimer != null) {
+            resolutionTimer.cancel(false);
+            resolutionTimer = null;
+        }
+        List<SocketAddress> delayed = delayedAddresses;
+        delayedAddresses = null;
+        addAddresses(delayed);
+    }
+
+    /**
+     * Adds the resolved addresses to the addresses which were not tried yet, and starts a connection attempt unless
+     * one is already waiting for the connection attempt delay.
+     */
+    private void addAddresses(List<SocketAddress> resolved) {
+        List<SocketAddress> remaining =
+                new ArrayList<SocketAddress>(addresses.size() - nextAddress + resolved.size());
+        remaining.addAll(addresses.subList(nextAddress, addresses.size()));
+        remaining.addAll(resolved);
+        addresses = interleave(remaining, lastFamily);
+        nextAddress = 0;
+        if (attempts.isEmpty()) {
+            startNextAttempt();
+        } else if (attemptTimer == null) {
+            scheduleNextAttempt();
+        }
+    }
+
+    private void startNextAttempt() {
+        if (promise.isDone() || nextAddress == addresses.size()) {
+            return;
+        }
+
+        final SocketAddress remoteAddress = addresses.get(nextAddress++);
+        lastFamily = family(remoteAddress);
+        final ChannelFuture regFuture = bootstrap.initAndRegister();
+        final Channel channel = regFuture.channel();
+        attempts.add(channel);
+        scheduleNextAttempt();
+
+        regFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    attemptComplete(channel, future);
+                    return;
+                }
+                ChannelPromise connectPromise = channel.newPromise();
+                connectPromise.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        attemptComplete(channel, future);
+                    }
+                });
+                Bootstrap.doConnect(remoteAddress, localAddress, connectPromise);
+            }
+        });
+    }
+
+    private void scheduleNextAttempt() {
+        if (attemptTimer != null) {
+            attemptTimer.cancel(false);
+            attemptTimer = null;
+        }
+        if (nextAddress == addresses.size()) {
+            return;
+        }
+        attemptTimer = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                attemptTimer = null;
+                startNextAttempt();
+            }
+        }, attemptDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void attemptComplete(final Channel channel, final ChannelFuture future) {
+        if (!executor.inEventLoop()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    attemptComplete(channel, future);
+                }
+            });
+            return;
+        }
+
+        if (!attempts.remove(channel)) {
+            // 已经被关闭
+            return;
+        }
+        if (future.isSuccess()) {
+            if (!promise.trySuccess(channel)) {
+                channel.close();
+            }
+        } else if (nextAddress < addresses.size()) {
+            // 连接失败时不需要等待，立即尝试下一个地址
+            startNextAttempt();
+        } else if (attempts.isEmpty() && pendingResolutions == 0 && delayedAddresses == null) {
+            promise.tryFailure(future.cause());
+        }
+    }
+
+    /**
+     * Sorts the addresses so that the address families alternate, starting with the family of the first address.
+     * The relative order of the addresses of each family is preserved.
+     */
+    static List<SocketAddress> interleave(List<SocketAddress> addresses) {
+        return interleave(addresses, null);
+    }
+
+    /**
+     * Sorts the addresses so that the address families alternate, starting with a family other than the specified
+     * one if possible. The relative order of the addresses of each family is preserved.
+     */
+    private static List<SocketAddress> interleave(List<SocketAddress> addresses, Class<?> lastFamily) {
+        if (addresses.size() < 2) {
+            return addresses;
+        }
+        Class<?> firstFamily = family(addresses.get(0));
+        if (firstFamily == lastFamily) {
+            for (SocketAddress address : addresses) {
+                if (family(address) != lastFamily) {
+                    firstFamily = family(address);
+                    break;
+                }
+            }
+        }
+        List<SocketAddress> first = new ArrayList<SocketAddress>(addresses.size());
+        List<SocketAddress> other = new ArrayList<SocketAddress>(addresses.size());
+        for (SocketAddress address : addresses) {
+            if (family(address) == firstFamily) {
+                first.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+
+        List<SocketAddress> sorted = new ArrayList<SocketAddress>(addresses.size());
+        for (int i = 0; i < first.size() || i < other.size(); i++) {
+            if (i < first.size()) {
+                sorted.add(first.get(i));
+            }
+            if (i < other.size()) {
+                sorted.add(other.get(i));
+            }
+        }
+        return sorted;
+    }
+
+    private static Class<?> family(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inetAddress = (InetSocketAddress) address;
+            if (!inetAddress.isUnresolved()) {
+                return inetAddress.getAddress().getClass();
+            }
+        }
+        return address.getClass();
+    }
+}
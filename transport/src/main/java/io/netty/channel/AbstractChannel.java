@@ -36,6 +36,8 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NotYetConnectedException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A skeletal {@link Channel} implementation.
@@ -472,6 +474,20 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
          * true if the channel has never been registered, false otherwise
          */
         private boolean neverRegistered = true;
+        /**
+         * 是否有被 {@link AutoFlushConsolidation} 推迟的 flush ，以及最早被推迟的 flush 的时间
+         */
+        private boolean hasDeferredFlush;
+        private long deferredFlushNanos;
+        /**
+         * 执行被推迟的 flush 的任务是否已经提交到 EventLoop 中
+         */
+        private boolean deferredFlushScheduled;
+        private Runnable deferredFlushTask;
+        /**
+         * 最大推迟时间到达时执行被推迟的 flush 的定时任务
+         */
+        private ScheduledFuture<?> deferredFlushTimeout;
 
         private void assertEventLoop() {
             assert !registered || eventLoop.inEventLoop();
@@ -649,6 +665,8 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                 return;
             }
 
+            runDeferredFlush();
+
             boolean wasActive = isActive();
             try {
                 doDisconnect();
@@ -675,6 +693,8 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         public final void close(final ChannelPromise promise) {
             assertEventLoop();
 
+            // 写入被推迟 flush 的数据，避免关闭时被丢弃
+            runDeferredFlush();
             // 关闭
             close(promise, CLOSE_CLOSED_CHANNEL_EXCEPTION, CLOSE_CLOSED_CHANNEL_EXCEPTION, false);
         }
@@ -686,6 +706,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         @UnstableApi
         public final void shutdownOutput(final ChannelPromise promise) {
             assertEventLoop();
+            runDeferredFlush();
             shutdownOutput(promise, null);
         }
 
@@ -880,6 +901,10 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         public final void deregister(final ChannelPromise promise) {
             assertEventLoop();
 
+            // 写入被推迟 flush 的数据，并丢弃已提交到当前 EventLoop 的任务，避免重新注册后在其他线程中执行
+            runDeferredFlush();
+            deferredFlushScheduled = false;
+            deferredFlushTask = null;
             deregister(promise, false);
         }
 
@@ -1012,10 +1037,82 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
 
             // 标记内存队列开始 flush
             outboundBuffer.addFlush();
+            // 若开启了自动合并 flush ，推迟到 EventLoop 处理完当前这一批 I/O 事件和任务之后再执行
+            if (deferFlush(outboundBuffer)) {
+                return;
+            }
             // 执行 flush
             flush0();
         }
 
+        /**
+         * Returns {@code true} if the flush was deferred because of {@link ChannelOption#AUTO_FLUSH_CONSOLIDATION}.
+         */
+        private boolean deferFlush(ChannelOutboundBuffer outboundBuffer) {
+            ChannelConfig config = config();
+            AutoFlushConsolidation consolidation = config instanceof DefaultChannelConfig ?
+                    ((DefaultChannelConfig) config).getAutoFlushConsolidation() :
+                    config.getOption(ChannelOption.AUTO_FLUSH_CONSOLIDATION);
+            if (consolidation == null || !consolidation.isEnabled() || !registered || !isActive() ||
+                    !outboundBuffer.isWritable() ||
+                    outboundBuffer.totalPendingWriteBytes() >= consolidation.maxPendingBytes()) {
+                clearDeferredFlush();
+                return false;
+            }
+            long now = System.nanoTime();
+            if (!hasDeferredFlush) {
+                hasDeferredFlush = true;
+                deferredFlushNanos = now;
+                // 即使 EventLoop 迟迟没有执行到 deferredFlushTask ，也最多推迟 maxDelay
+                deferredFlushTimeout = eventLoop().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        deferredFlushTimeout = null;
+                        runDeferredFlush();
+                    }
+                }, consolidation.maxDelayNanos(), TimeUnit.NANOSECONDS);
+            } else if (now - deferredFlushNanos >= consolidation.maxDelayNanos()) {
+                clearDeferredFlush();
+                return false;
+            }
+            if (!deferredFlushScheduled) {
+                if (deferredFlushTask == null) {
+                    deferredFlushTask = new Runnable() {
+                        @Override
+                        public void run() {
+                            // 取消注册后提交的任务已被丢弃
+                            if (deferredFlushTask == this) {
+                                deferredFlushScheduled = false;
+                                runDeferredFlush();
+                            }
+                        }
+                    };
+                }
+                deferredFlushScheduled = true;
+                eventLoop().execute(deferredFlushTask);
+            }
+            return true;
+        }
+
+        /**
+         * Executes the flush which was deferred because of {@link ChannelOption#AUTO_FLUSH_CONSOLIDATION}, if any.
+         */
+        private void runDeferredFlush() {
+            if (hasDeferredFlush) {
+                clearDeferredFlush();
+                flush0();
+            }
+        }
+
+        private void clearDeferredFlush() {
+            hasDeferredFlush = false;
+            ScheduledFuture<?> timeout = deferredFlushTimeout;
+            if (timeout != null) {
+                deferredFlushTimeout = null;
+                timeout.cancel(false);
+            }
+        }
+
         @SuppressWarnings("deprecation")
         protected void flush0() {
             // 正在 flush 中，所以直接返回。
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AutoFlushConsolidation is used with {@link ChannelOption#AUTO_FLUSH_CONSOLIDATION} to let a {@link Channel}
+ * consolidate its flushes without adding a {@code FlushConsolidationHandler} to the {@link ChannelPipeline}.
+ * <p>
+ * If enabled, {@link Channel.Unsafe#flush()} marks the written messages as flushed but defers writing them to the
+ * transport until the {@link EventLoop} finished processing the current batch of I/O events and tasks, so all flushes
+ * done meanwhile, for example while handling the messages of one read, result in a single write.
+ * <p>
+ * The flush is done right away if
+ * <ul>
+ *     <li>the number of pending bytes reaches {@linkplain #maxPendingBytes() the maximum pending bytes},</li>
+ *     <li>the oldest deferred flush is pending for longer than {@linkplain #maxDelayNanos() the maximum delay},</li>
+ *     <li>the {@link Channel} is not {@linkplain Channel#isWritable() writable},</li>
+ *     <li>or the {@link Channel} is disconnected, closed or its output is shut down.</li>
+ * </ul>
+ */
+@UnstableApi
+public final class AutoFlushConsolidation {
+
+    /**
+     * Disables the consolidation, every flush is done right away.
+     */
+    public static final AutoFlushConsolidation DISABLED = new AutoFlushConsolidation();
+
+    /**
+     * Consolidates flushes until {@code 64 KiB} are pending or the oldest deferred flush is pending for
+     * {@code 1 ms}.
+     */
+    public static final AutoFlushConsolidation DEFAULT =
+            new AutoFlushConsolidation(64 * 1024, 1, TimeUnit.MILLISECONDS);
+
+    private final boolean enabled;
+    private final int maxPendingBytes;
+    private final long maxDelayNanos;
+
+    private AutoFlushConsolidation() {
+        enabled = false;
+        maxPendingBytes = 0;
+        maxDelayNanos = 0;
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxPendingBytes the number of pending bytes which forces a flush.
+     * @param maxDelay the maximum time a flush is deferred.
+     * @param unit the {@link TimeUnit} of {@code maxDelay}.
+     */
+    public AutoFlushConsolidation(int maxPendingBytes, long maxDelay, TimeUnit unit) {
+        this.maxPendingBytes = ObjectUtil.checkPositive(maxPendingBytes, "maxPendingBytes");
+        ObjectUtil.checkNotNull(unit, "unit");
+        maxDelayNanos = unit.toNanos(ObjectUtil.checkPositive(maxDelay, "maxDelay"));
+        enabled = true;
+    }
+
+    /**
+     * Returns {@code true} if flushes are consolidated.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of pending bytes which forces a flush.
+     */
+    public int maxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * Returns the maximum time in nanoseconds a flush is deferred.
+     */
+    public long maxDelayNanos() {
+        return maxDelayNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (!enabled) {
+            return "AutoFlushConsolidation(disabled)";
+        }
+        return "AutoFlushConsolidation(maxPendingBytes: " + maxPendingBytes + ", maxDelayNanos: " + maxDelayNanos + ')';
+    }
+}
@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 import java.net.SocketAddress;
 
 /**
@@ -32,6 +34,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) throws Exception {
         ctx.bind(localAddress, promise);
@@ -43,6 +46,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
         ctx.connect(remoteAddress, localAddress, promise);
@@ -54,6 +58,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.disconnect(promise);
@@ -65,6 +70,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.close(promise);
@@ -76,6 +82,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.deregister(promise);
@@ -87,6 +94,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void read(ChannelHandlerContext ctx) throws Exception {
         ctx.read();
@@ -98,6 +106,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         ctx.write(msg, promise);
@@ -109,6 +118,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void flush(ChannelHandlerContext ctx) throws Exception {
         ctx.flush();
@@ -128,6 +128,12 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<Boolean> SINGLE_EVENTEXECUTOR_PER_GROUP =
             valueOf("SINGLE_EVENTEXECUTOR_PER_GROUP");
 
+    /**
+     * @see AutoFlushConsolidation
+     */
+    public static final ChannelOption<AutoFlushConsolidation> AUTO_FLUSH_CONSOLIDATION =
+            valueOf("AUTO_FLUSH_CONSOLIDATION");
+
     /**
      * Creates a new {@link ChannelOption} with the specified unique {@code name}.
      */
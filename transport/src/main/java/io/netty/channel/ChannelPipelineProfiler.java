@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutorMetrics.Histogram;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Opt-in profiler which measures the time spent in the {@code channelRead}, {@code write} and {@code flush} methods
+ * of the {@link ChannelHandler}s of a sample of all {@link ChannelPipeline}s.
+ * <p>
+ * Whether a {@link ChannelPipeline} is profiled is decided once when it is created, based on the
+ * {@linkplain #sampleRate() sample rate} which defaults to the value of the
+ * {@code io.netty.channel.pipelineProfilerSampleRate} system property, or {@code 0} if not set. The measured times
+ * are the time spent in the handler itself, excluding the time spent in the profiled handlers it forwarded the event
+ * to, and are aggregated per {@link ChannelHandler} class.
+ */
+@UnstableApi
+public final class ChannelPipelineProfiler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelPipelineProfiler.class);
+
+    /**
+     * Weak keys so the profiler does not keep the {@link ClassLoader}s of the handlers alive. Only accessed when a
+     * {@link ChannelHandlerContext} of a profiled {@link ChannelPipeline} is created, so a lock is good enough.
+     */
+    private static final Map<Class<? extends ChannelHandler>, HandlerLatency> LATENCIES =
+            new WeakHashMap<Class<? extends ChannelHandler>, HandlerLatency>();
+
+    private static final FastThreadLocal<CallStack> CALL_STACK = new FastThreadLocal<CallStack>() {
+        @Override
+        protected CallStack initialValue() {
+            return new CallStack();
+        }
+    };
+
+    private static volatile double sampleRate;
+    private static volatile Ticker ticker = Ticker.SYSTEM;
+
+    static {
+        String value = SystemPropertyUtil.get("io.netty.channel.pipelineProfilerSampleRate");
+        if (value != null) {
+            try {
+                setSampleRate(Double.parseDouble(value.trim()));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unable to parse the sample rate of the pipeline profiler: {}; using 0", value, e);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.channel.pipelineProfilerSampleRate: {}", sampleRate);
+        }
+    }
+
+    /**
+     * Returns the fraction of the newly created {@link ChannelPipeline}s which are profiled.
+     */
+    public static double sampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction of the newly created {@link ChannelPipeline}s which are profiled, between {@code 0} (none)
+     * and {@code 1} (all). Existing {@link ChannelPipeline}s are not affected.
+     */
+    public static void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate: " + sampleRate + " (expected: 0.0-1.0)");
+        }
+        ChannelPipelineProfiler.sampleRate = sampleRate;
+    }
+
+    /**
+     * Returns the latencies of all {@link ChannelHandler} classes which were profiled so far.
+     */
+    public static Map<Class<? extends ChannelHandler>, HandlerLatency> handlerLatencies() {
+        synchronized (LATENCIES) {
+            return Collections.unmodifiableMap(
+                    new HashMap<Class<? extends ChannelHandler>, HandlerLatency>(LATENCIES));
+        }
+    }
+
+    /**
+     * Returns the latencies of the given {@link ChannelHandler} class or {@code null} if it was not profiled yet.
+     */
+    public static HandlerLatency handlerLatency(Class<? extends ChannelHandler> handlerClass) {
+        synchronized (LATENCIES) {
+            return LATENCIES.get(handlerClass);
+        }
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public static void reset() {
+        synchronized (LATENCIES) {
+            LATENCIES.clear();
+        }
+    }
+
+    /**
+     * Replaces the {@link Ticker} which is used to measure the time, for testing.
+     */
+    static void setTicker(Ticker ticker) {
+        ChannelPipelineProfiler.ticker = ticker == null ? Ticker.SYSTEM : ticker;
+    }
+
+    /**
+     * Returns {@code true} if a newly created {@link ChannelPipeline} should be profiled.
+     */
+    static boolean shouldProfile() {
+        double sampleRate = ChannelPipelineProfiler.sampleRate;
+        return sampleRate > 0 && (sampleRate >= 1 || PlatformDependent.threadLocalRandom().nextDouble() < sampleRate);
+    }
+
+    static HandlerLatency latency(Class<? extends ChannelHandler> handlerClass) {
+        synchronized (LATENCIES) {
+            HandlerLatency latency = LATENCIES.get(handlerClass);
+            if (latency == null) {
+                latency = new HandlerLatency();
+                LATENCIES.put(handlerClass, latency);
+            }
+            return latency;
+        }
+    }
+
+    /**
+     * Must be called right before a profiled handler method is invoked.
+     *
+     * @return the current {@link Ticker#nanoTime()} which must be passed to {@link #exit(Histogram, long)}.
+     */
+    static long enter() {
+        CALL_STACK.get().push();
+        return ticker.nanoTime();
+    }
+
+    /**
+     * Must be called right after the profiled handler method returned.
+     */
+    static void exit(Histogram histogram, long startTime) {
+        long elapsed = ticker.nanoTime() - startTime;
+        histogram.recordConcurrently(elapsed - CALL_STACK.get().pop(elapsed));
+    }
+
+    private ChannelPipelineProfiler() { }
+
+    /**
+     * The source of the time which is measured, {@link System#nanoTime()} unless replaced in tests.
+     */
+    interface Ticker {
+        Ticker SYSTEM = new Ticker() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+
+        long nanoTime();
+    }
+
+    /**
+     * The latencies of a {@link ChannelHandler} class in nanoseconds.
+     */
+    public static final class HandlerLatency {
+        private final Histogram channelRead = new Histogram();
+        private final Histogram write = new Histogram();
+        private final Histogram flush = new Histogram();
+
+        HandlerLatency() { }
+
+        /**
+         * Returns the time spent in {@link ChannelInboundHandler#channelRead(ChannelHandlerContext, Object)}.
+         */
+        public Histogram channelRead() {
+            return channelRead;
+        }
+
+        /**
+         * Returns the time spent in
+         * {@link ChannelOutboundHandler#write(ChannelHandlerContext, Object, ChannelPromise)}.
+         */
+        public Histogram write() {
+            return write;
+        }
+
+        /**
+         * Returns the time spent in {@link ChannelOutboundHandler#flush(ChannelHandlerContext)}.
+         */
+        public Histogram flush() {
+            return flush;
+        }
+    }
+
+    /**
+     * Tracks the time spent in nested profiled handler invocations of the current thread, so it can be subtracted
+     * from the time of the outer invocation.
+     */
+    private static final class CallStack {
+        private long[] nestedNanos = new long[16];
+        private int depth;
+
+        void push() {
+            if (depth == nestedNanos.length) {
+                nestedNanos = Arrays.copyOf(nestedNanos, depth << 1);
+            }
+            nestedNanos[depth++] = 0;
+        }
+
+        /**
+         * Pops the current invocation and returns the time spent in its nested invocations.
+         */
+        long pop(long elapsed) {
+            long nested = nestedNanos[--depth];
+            if (depth > 0) {
+                nestedNanos[depth - 1] += elapsed;
+            }
+            return nested;
+        }
+    }
+}
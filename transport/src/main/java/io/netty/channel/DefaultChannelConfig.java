@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static io.netty.channel.ChannelOption.ALLOCATOR;
 import static io.netty.channel.ChannelOption.AUTO_CLOSE;
+import static io.netty.channel.ChannelOption.AUTO_FLUSH_CONSOLIDATION;
 import static io.netty.channel.ChannelOption.AUTO_READ;
 import static io.netty.channel.ChannelOption.CONNECT_TIMEOUT_MILLIS;
 import static io.netty.channel.ChannelOption.MAX_MESSAGES_PER_READ;
@@ -76,6 +77,7 @@ public class DefaultChannelConfig implements ChannelConfig {
     private volatile boolean autoClose = true;
     private volatile WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
     private volatile boolean pinEventExecutor = true;
+    private volatile AutoFlushConsolidation autoFlushConsolidation = AutoFlushConsolidation.DISABLED;
 
     public DefaultChannelConfig(Channel channel) {
         this(channel, new AdaptiveRecvByteBufAllocator());
@@ -94,7 +96,7 @@ public class DefaultChannelConfig implements ChannelConfig {
                 CONNECT_TIMEOUT_MILLIS, MAX_MESSAGES_PER_READ, WRITE_SPIN_COUNT,
                 ALLOCATOR, AUTO_READ, AUTO_CLOSE, RCVBUF_ALLOCATOR, WRITE_BUFFER_HIGH_WATER_MARK,
                 WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_WATER_MARK, MESSAGE_SIZE_ESTIMATOR,
-                SINGLE_EVENTEXECUTOR_PER_GROUP);
+                SINGLE_EVENTEXECUTOR_PER_GROUP, AUTO_FLUSH_CONSOLIDATION);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -168,6 +170,9 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             return (T) Boolean.valueOf(getPinEventExecutorPerGroup());
         }
+        if (option == AUTO_FLUSH_CONSOLIDATION) {
+            return (T) getAutoFlushConsolidation();
+        }
         return null;
     }
 
@@ -200,6 +205,8 @@ public class DefaultChannelConfig implements ChannelConfig {
             setMessageSizeEstimator((MessageSizeEstimator) value);
         } else if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             setPinEventExecutorPerGroup((Boolean) value);
+        } else if (option == AUTO_FLUSH_CONSOLIDATION) {
+            setAutoFlushConsolidation((AutoFlushConsolidation) value);
         } else {
             return false;
         }
@@ -451,4 +458,17 @@ public class DefaultChannelConfig implements ChannelConfig {
         return pinEventExecutor;
     }
 
+    private ChannelConfig setAutoFlushConsolidation(AutoFlushConsolidation autoFlushConsolidation) {
+        this.autoFlushConsolidation = checkNotNull(autoFlushConsolidation, "autoFlushConsolidation");
+        return this;
+    }
+
+    /**
+     * Used by {@link AbstractChannel} on every flush, so it does not need to go through
+     * {@link #getOption(ChannelOption)}.
+     */
+    AutoFlushConsolidation getAutoFlushConsolidation() {
+        return autoFlushConsolidation;
+    }
+
 }
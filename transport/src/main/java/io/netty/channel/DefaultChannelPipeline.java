@@ -104,6 +104,10 @@ public class DefaultChannelPipeline implements ChannelPipeline {
      * TODO 1008 DefaultChannelPipeline 字段用途
      */
     private final boolean touch = ResourceLeakDetector.isEnabled();
+    /**
+     * 是否统计处理器的耗时，见 {@link ChannelPipelineProfiler}
+     */
+    final boolean profiled = ChannelPipelineProfiler.shouldProfile();
 
     /**
      * 子执行器集合。
@@ -1376,7 +1380,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     final class TailContext extends AbstractChannelHandlerContext implements ChannelInboundHandler {
 
         TailContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, TAIL_NAME, true, false);
+            super(pipeline, null, TAIL_NAME, TailContext.class);
             setAddComplete();
         }
 
@@ -1439,7 +1443,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         private final Unsafe unsafe;
 
         HeadContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, HEAD_NAME, false, true);
+            super(pipeline, null, HEAD_NAME, HeadContext.class);
             unsafe = pipeline.channel().unsafe();
             setAddComplete();
         }
@@ -49,11 +49,17 @@ public class DefaultEventLoop extends SingleThreadEventLoop {
     @Override
     protected void run() {
         for (;;) {
-            Runnable task = takeTask();
+            beforeIdle();
+            Runnable task;
+            try {
+                task = takeTask();
+            } finally {
+                afterIdle();
+            }
             if (task != null) {
-                task.run();
-                updateLastExecutionTime();
+                runTask(task);
             }
+            afterLoopIteration();
 
             if (confirmShutdown()) {
                 break;
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A snapshot of the load of an {@link EventLoop}.
+ *
+ * @see MultithreadEventLoopGroup#eventLoopLoads()
+ */
+@UnstableApi
+public final class EventLoopLoad {
+
+    private final EventLoop eventLoop;
+    private final int registeredChannels;
+    private final int pendingRegistrations;
+    private final int pendingTasks;
+    private final double busyRatio;
+
+    EventLoopLoad(EventLoop eventLoop, int registeredChannels, int pendingRegistrations, int pendingTasks,
+                  double busyRatio) {
+        this.eventLoop = ObjectUtil.checkNotNull(eventLoop, "eventLoop");
+        this.registeredChannels = registeredChannels;
+        this.pendingRegistrations = pendingRegistrations;
+        this.pendingTasks = pendingTasks;
+        this.busyRatio = busyRatio;
+    }
+
+    static EventLoopLoad of(EventLoop eventLoop) {
+        if (eventLoop instanceof SingleThreadEventLoop) {
+            SingleThreadEventLoop loop = (SingleThreadEventLoop) eventLoop;
+            return new EventLoopLoad(loop, loop.registeredChannels(), loop.pendingRegistrations(),
+                    loop.lastPendingTasks(), loop.busyRatio());
+        }
+        return new EventLoopLoad(eventLoop, -1, 0, -1, -1);
+    }
+
+    /**
+     * Returns the {@link EventLoop} this load belongs to.
+     */
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * Returns the number of registered {@link Channel}s or {@code -1} if unknown.
+     *
+     * @see SingleThreadEventLoop#registeredChannels()
+     */
+    public int registeredChannels() {
+        return registeredChannels;
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which were being registered.
+     *
+     * @see SingleThreadEventLoop#pendingRegistrations()
+     */
+    public int pendingRegistrations() {
+        return pendingRegistrations;
+    }
+
+    /**
+     * Returns the number of pending tasks or {@code -1} if unknown. Unless the snapshot was taken on the
+     * {@link EventLoop} thread, this is the value seen at the end of the last iteration of the loop.
+     */
+    public int pendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * Returns the recent busy ratio between {@code 0} and {@code 1} or {@code -1} if unknown.
+     *
+     * @see SingleThreadEventLoop#busyRatio()
+     */
+    public double busyRatio() {
+        return busyRatio;
+    }
+
+    /**
+     * Returns the load score which is used by {@link LoadAwareEventLoopChooserFactory} to compare
+     * {@link EventLoop}s. A higher value means a busier {@link EventLoop}.
+     */
+    public double load() {
+        return load(registeredChannels, pendingRegistrations, pendingTasks, busyRatio);
+    }
+
+    /**
+     * The number of {@link Channel}s and pending tasks weighted by how busy the {@link EventLoop} is, so a loop
+     * that serves a few heavy {@link Channel}s or has a task backlog is considered as loaded as one that serves
+     * many light ones.
+     */
+    static double load(int registeredChannels, int pendingRegistrations, int pendingTasks, double busyRatio) {
+        return (1 + Math.max(0, registeredChannels) + pendingRegistrations + Math.max(0, pendingTasks)) *
+                (1 + Math.max(0, busyRatio));
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(eventLoop: " + eventLoop +
+                ", registeredChannels: " + registeredChannels +
+                ", pendingRegistrations: " + pendingRegistrations +
+                ", pendingTasks: " + pendingTasks +
+                ", busyRatio: " + busyRatio + ')';
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutorMetrics;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link EventExecutorMetrics} of a {@link SingleThreadEventLoop} which in addition track the time spent processing
+ * I/O, the number of selects and the number of ready I/O events per select.
+ * <p>
+ * Like all values of {@link EventExecutorMetrics} these are only written by the {@link EventLoop} thread and can be
+ * read from any thread without locking.
+ */
+@UnstableApi
+public class EventLoopMetrics extends EventExecutorMetrics {
+
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> SELECTS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "selects");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> IO_NANOS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "ioNanos");
+
+    private volatile long selects;
+    private volatile long ioNanos;
+    private final Histogram readyEvents = new Histogram();
+
+    protected EventLoopMetrics() { }
+
+    /**
+     * Returns the number of times the {@link EventLoop} selected for ready I/O events.
+     */
+    public long selects() {
+        return selects;
+    }
+
+    /**
+     * Returns the total time in nanoseconds which was spent processing ready I/O events.
+     */
+    public long ioNanos() {
+        return ioNanos;
+    }
+
+    /**
+     * Returns the number of ready I/O events per select.
+     */
+    public Histogram readyEvents() {
+        return readyEvents;
+    }
+
+    /**
+     * Records a select which returned {@code readyEvents} ready I/O events that were processed in {@code ioNanos}
+     * nanoseconds. Must only be called by the {@link EventLoop} thread.
+     */
+    final void recordSelect(int readyEvents, long ioNanos) {
+        SELECTS_UPDATER.lazySet(this, selects + 1);
+        IO_NANOS_UPDATER.lazySet(this, this.ioNanos + ioNanos);
+        this.readyEvents.record(readyEvents);
+    }
+}
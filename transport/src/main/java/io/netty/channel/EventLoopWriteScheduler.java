@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Shares the bytes an {@link EventLoop} writes per iteration fairly between its {@link Channel}s, so one
+ * {@link Channel} with a lot of pending data can not delay the writes of all the other {@link Channel}s.
+ * <p>
+ * Every iteration of the {@link EventLoop} may write up to {@link #bytesPerIteration()} bytes. In addition, every
+ * {@link Channel} with pending writes gets a deficit of {@link #quantum()} bytes per iteration, following
+ * deficit round robin: unused deficit is carried over to the next iteration as long as the {@link Channel} has
+ * pending writes and is reset once all of them were written. A {@link Channel} which exceeded its deficit or the
+ * remaining bytes of the iteration stops writing and waits until the socket is reported writable again, which
+ * lets the other ready {@link Channel}s write first.
+ * <p>
+ * A {@link Channel} which still had deficit left but was held back because other {@link Channel}s used up the
+ * bytes of the iteration may write up to one {@link #quantum()} of its carried deficit ahead of the
+ * {@link #bytesPerIteration()} limit in the next iteration. So the {@link Channel}s which are processed last by the
+ * {@link EventLoop} are not starved when there are more than {@code bytesPerIteration / quantum} {@link Channel}s
+ * with pending writes, and one iteration writes at most {@link #bytesPerIteration()} plus one
+ * {@link #quantum()} per {@link Channel} which was held back in the previous iteration.
+ * <p>
+ * Enabled via the {@code io.netty.eventLoop.writeBytesPerIteration} and {@code io.netty.eventLoop.writeQuantum}
+ * system properties or by overriding {@link SingleThreadEventLoop#newWriteScheduler()}. All methods must only be
+ * called by the {@link EventLoop} thread.
+ */
+@UnstableApi
+public final class EventLoopWriteScheduler {
+
+    private final long bytesPerIteration;
+    private final int quantum;
+    private long iteration;
+    private long remaining;
+
+    /**
+     * Create a new instance.
+     *
+     * @param bytesPerIteration the maximum number of bytes written per iteration of the {@link EventLoop}.
+     * @param quantum the number of bytes each {@link Channel} with pending writes may write per iteration.
+     */
+    public EventLoopWriteScheduler(long bytesPerIteration, int quantum) {
+        this.bytesPerIteration = ObjectUtil.checkPositive(bytesPerIteration, "bytesPerIteration");
+        this.quantum = ObjectUtil.checkPositive(quantum, "quantum");
+        remaining = bytesPerIteration;
+    }
+
+    /**
+     * Returns the {@link Handle} of the {@link EventLoopWriteScheduler} of the given {@link EventLoop}, reusing
+     * {@code current} if it belongs to it, or {@code null} if the {@link EventLoop} does not use one.
+     */
+    public static Handle handle(EventLoop eventLoop, Handle current) {
+        if (!(eventLoop instanceof SingleThreadEventLoop)) {
+            return null;
+        }
+        EventLoopWriteScheduler scheduler = ((SingleThreadEventLoop) eventLoop).writeScheduler();
+        if (scheduler == null) {
+            return null;
+        }
+        return current != null && current.scheduler == scheduler ? current : new Handle(scheduler);
+    }
+
+    /**
+     * Returns the maximum number of bytes written per iteration of the {@link EventLoop}.
+     */
+    public long bytesPerIteration() {
+        return bytesPerIteration;
+    }
+
+    /**
+     * Returns the number of bytes each {@link Channel} with pending writes may write per iteration.
+     */
+    public int quantum() {
+        return quantum;
+    }
+
+    /**
+     * Must be called by the {@link EventLoop} at the beginning of each iteration.
+     */
+    public void nextIteration() {
+        iteration++;
+        remaining = bytesPerIteration;
+    }
+
+    /**
+     * The write state of a single {@link Channel}.
+     */
+    public static final class Handle {
+        private final EventLoopWriteScheduler scheduler;
+        private long iteration = -1;
+        private long deficit;
+        /**
+         * 上一次循环中被全局预算挡住而未能使用的额度，本次循环可以不受全局预算限制地写入
+         */
+        private long carried;
+        /**
+         * 本次循环中是否因为全局预算用完而被挡住
+         */
+        private boolean held;
+
+        Handle(EventLoopWriteScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * Returns the number of bytes the {@link Channel} may write now. If {@code 0} the {@link Channel} must stop
+         * writing and wait until the socket is writable again.
+         */
+        public long allowance() {
+            EventLoopWriteScheduler scheduler = this.scheduler;
+            if (iteration != scheduler.iteration) {
+                iteration = scheduler.iteration;
+                // A channel which was held back by the channels processed before it may write ahead of the
+                // iteration budget, otherwise it could be starved if the same channels always come first.
+                carried = held ? Math.min(deficit, scheduler.quantum) : 0;
+                held = false;
+                // The deficit of a channel which could not write because the iteration budget was used up by other
+                // channels is carried over, but never exceeds what may be written in one iteration.
+                deficit = Math.min(deficit + scheduler.quantum, scheduler.bytesPerIteration);
+            }
+            long allowance = Math.min(deficit, carried + Math.max(0, scheduler.remaining));
+            if (allowance < deficit) {
+                held = true;
+            }
+            return Math.max(0, allowance);
+        }
+
+        /**
+         * Must be called after the {@link Channel} wrote {@code bytes} bytes.
+         */
+        public void written(long bytes) {
+            deficit -= bytes;
+            // The carried deficit is used first and does not count against the iteration budget.
+            long fromCarried = Math.min(carried, bytes);
+            carried -= fromCarried;
+            scheduler.remaining -= bytes - fromCarried;
+        }
+
+        /**
+         * Must be called once the {@link Channel} has no pending writes anymore.
+         */
+        public void drained() {
+            deficit = 0;
+            carried = 0;
+            held = false;
+        }
+    }
+}
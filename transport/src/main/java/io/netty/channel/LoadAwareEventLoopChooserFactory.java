@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the {@link EventLoop} a new {@link Channel} is registered with
+ * based on the live load of the {@link EventLoop}s instead of round-robin. This helps when {@link Channel}s are
+ * long-lived and of very uneven weight.
+ * <p>
+ * The load is computed from the number of registered {@link Channel}s, the registrations which are still in
+ * progress, the number of pending tasks and the recent busy ratio of each {@link EventLoop} (see
+ * {@link EventLoopLoad#load()}). The number of pending tasks is the value the {@link EventLoop} recorded at the end
+ * of its last iteration, so choosing never waits for a busy {@link EventLoop}. If the {@link EventExecutor}s are not
+ * {@link SingleThreadEventLoop}s round-robin is used.
+ * <p>
+ * Use it by passing it to the constructor of the {@link MultithreadEventLoopGroup}, for example
+ * {@code new NioEventLoopGroup(nThreads, null, LoadAwareEventLoopChooserFactory.POWER_OF_TWO_CHOICES,
+ * SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE)}.
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    /**
+     * Always chooses the least loaded {@link EventLoop}, which needs to check all of them.
+     */
+    public static final LoadAwareEventLoopChooserFactory LEAST_LOADED = new LoadAwareEventLoopChooserFactory(false);
+
+    /**
+     * Chooses the less loaded {@link EventLoop} out of two random ones. This is cheaper than {@link #LEAST_LOADED}
+     * and avoids that concurrent registrations all pick the same {@link EventLoop}.
+     */
+    public static final LoadAwareEventLoopChooserFactory POWER_OF_TWO_CHOICES =
+            new LoadAwareEventLoopChooserFactory(true);
+
+    private final boolean powerOfTwoChoices;
+
+    private LoadAwareEventLoopChooserFactory(boolean powerOfTwoChoices) {
+        this.powerOfTwoChoices = powerOfTwoChoices;
+    }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        if (executors.length < 2) {
+            return DefaultEventExecutorChooserFactory.INSTANCE.newChooser(executors);
+        }
+        SingleThreadEventLoop[] eventLoops = new SingleThreadEventLoop[executors.length];
+        for (int i = 0; i < executors.length; i++) {
+            if (!(executors[i] instanceof SingleThreadEventLoop)) {
+                return DefaultEventExecutorChooserFactory.INSTANCE.newChooser(executors);
+            }
+            eventLoops[i] = (SingleThreadEventLoop) executors[i];
+        }
+        return powerOfTwoChoices ? new PowerOfTwoChoicesChooser(eventLoops) : new LeastLoadedChooser(eventLoops);
+    }
+
+    private static double load(SingleThreadEventLoop eventLoop) {
+        return EventLoopLoad.load(eventLoop.registeredChannels(), eventLoop.pendingRegistrations(),
+                eventLoop.lastPendingTasks(), eventLoop.busyRatio());
+    }
+
+    private static final class LeastLoadedChooser implements EventExecutorChooser {
+        private final SingleThreadEventLoop[] eventLoops;
+
+        LeastLoadedChooser(SingleThreadEventLoop[] eventLoops) {
+            this.eventLoops = eventLoops;
+        }
+
+        @Override
+        public EventExecutor next() {
+            // Start at a random index so ties are not always resolved to the first EventLoop.
+            int start = PlatformDependent.threadLocalRandom().nextInt(eventLoops.length);
+            SingleThreadEventLoop leastLoaded = eventLoops[start];
+            double leastLoad = load(leastLoaded);
+            for (int i = 1; i < eventLoops.length; i++) {
+                SingleThreadEventLoop eventLoop = eventLoops[(start + i) % eventLoops.length];
+                double load = load(eventLoop);
+                if (load < leastLoad) {
+                    leastLoaded = eventLoop;
+                    leastLoad = load;
+                }
+            }
+            return leastLoaded;
+        }
+    }
+
+    private static final class PowerOfTwoChoicesChooser implements EventExecutorChooser {
+        private final SingleThreadEventLoop[] eventLoops;
+
+        PowerOfTwoChoicesChooser(SingleThreadEventLoop[] eventLoops) {
+            this.eventLoops = eventLoops;
+        }
+
+        @Override
+        public EventExecutor next() {
+            int length = eventLoops.length;
+            int first = PlatformDependent.threadLocalRandom().nextInt(length);
+            // Pick a different second index by adding a random offset in [1, length).
+            int second = (first + 1 + PlatformDependent.threadLocalRandom().nextInt(length - 1)) % length;
+            SingleThreadEventLoop a = eventLoops[first];
+            SingleThreadEventLoop b = eventLoops[second];
+            return load(b) < load(a) ? b : a;
+        }
+    }
+}
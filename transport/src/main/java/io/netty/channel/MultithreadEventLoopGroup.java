@@ -17,12 +17,16 @@ package io.netty.channel;
 
 import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.MultithreadEventExecutorGroup;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -84,6 +88,19 @@ public abstract class MultithreadEventLoopGroup extends MultithreadEventExecutor
     @Override
     protected abstract EventLoop newChild(Executor executor, Object... args) throws Exception;
 
+    /**
+     * Returns a snapshot of the load of each {@link EventLoop} of this group, in the same order as
+     * {@link #iterator()}.
+     */
+    @UnstableApi
+    public List<EventLoopLoad> eventLoopLoads() {
+        List<EventLoopLoad> loads = new ArrayList<EventLoopLoad>(executorCount());
+        for (EventExecutor executor: this) {
+            loads.add(EventLoopLoad.of((EventLoop) executor));
+        }
+        return loads;
+    }
+
     @Override
     public ChannelFuture register(Channel channel) {
         return next().register(channel);
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.UnstableApi;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * The {@link RecvByteBufAllocator} which predicts the buffer size from an exponentially decayed average of the
+ * number of bytes read per read loop of each {@link Channel}.
+ * <p>
+ * Unlike {@link AdaptiveRecvByteBufAllocator}, which moves only one step per read loop, the prediction follows the
+ * traffic of the {@link Channel} at a configurable {@linkplain #decayWeight(double) rate}. If a read filled the whole
+ * buffer and the transport reports the number of bytes still queued in the socket (the epoll transport uses
+ * {@code FIONREAD} for this) the next buffer is sized to exactly fit them, bounded by the minimum and maximum.
+ * <p>
+ * Optionally {@link Channel}s which only receive small messages can read into a buffer that is shared by all
+ * {@link Channel}s of the same thread, from which only the bytes actually read are copied into a new buffer of the
+ * exact size. This keeps the memory held by handlers which accumulate partial messages, like
+ * {@code ByteToMessageDecoder}, as small as possible, which matters when a lot of mostly idle
+ * {@link Channel}s are open. See {@link #copyThreshold(int)}.
+ */
+@UnstableApi
+public class PredictiveRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    static final int DEFAULT_MINIMUM = 64;
+    static final int DEFAULT_INITIAL = 1024;
+    static final int DEFAULT_MAXIMUM = 65536;
+    static final double DEFAULT_DECAY_WEIGHT = 0.25;
+
+    /**
+     * The read buffer which is shared by all {@link Channel}s of the same thread.
+     */
+    private static final FastThreadLocal<ByteBuf> SHARED_READ_BUFFER = new FastThreadLocal<ByteBuf>() {
+        @Override
+        protected void onRemoval(ByteBuf value) {
+            if (value != null) {
+                value.release();
+            }
+        }
+    };
+
+    private final int minimum;
+    private final int initial;
+    private final int maximum;
+    private volatile double decayWeight = DEFAULT_DECAY_WEIGHT;
+    private volatile int copyThreshold;
+
+    /**
+     * Creates a new predictor with the default parameters.  With the default parameters, the expected buffer size
+     * starts from {@code 1024}, does not go down below {@code 64}, and does not go up above {@code 65536}.
+     */
+    public PredictiveRecvByteBufAllocator() {
+        this(DEFAULT_MINIMUM, DEFAULT_INITIAL, DEFAULT_MAXIMUM);
+    }
+
+    /**
+     * Creates a new predictor with the specified parameters.
+     *
+     * @param minimum  the inclusive lower bound of the expected buffer size
+     * @param initial  the initial buffer size when no feed back was received
+     * @param maximum  the inclusive upper bound of the expected buffer size
+     */
+    public PredictiveRecvByteBufAllocator(int minimum, int initial, int maximum) {
+        if (minimum <= 0) {
+            throw new IllegalArgumentException("minimum: " + minimum);
+        }
+        if (initial < minimum) {
+            throw new IllegalArgumentException("initial: " + initial);
+        }
+        if (maximum < initial) {
+            throw new IllegalArgumentException("maximum: " + maximum);
+        }
+        this.minimum = minimum;
+        this.initial = initial;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the weight of the last read loop in the decayed average.
+     */
+    public double decayWeight() {
+        return decayWeight;
+    }
+
+    /**
+     * Sets the weight of the last read loop in the decayed average, between {@code 0} (exclusive) and {@code 1}
+     * (inclusive). Higher values make the prediction follow changes faster. Only affects future instances of
+     * {@link #newHandle()}.
+     */
+    public PredictiveRecvByteBufAllocator decayWeight(double decayWeight) {
+        if (decayWeight <= 0 || decayWeight > 1) {
+            throw new IllegalArgumentException("decayWeight: " + decayWeight + " (expected: > 0.0 and <= 1.0)");
+        }
+        this.decayWeight = decayWeight;
+        return this;
+    }
+
+    /**
+     * Returns the predicted size up to which the shared read buffer is used, or {@code 0} if it is never used.
+     */
+    public int copyThreshold() {
+        return copyThreshold;
+    }
+
+    /**
+     * Sets the predicted size up to which data is read into the shared read buffer of the current thread and then
+     * copied into a new buffer of the exact size. {@code 0}, the default, disables the shared read buffer. Only
+     * affects future instances of {@link #newHandle()} and is ignored by transports which do not support
+     * {@link ReadBufferHandle}.
+     */
+    public PredictiveRecvByteBufAllocator copyThreshold(int copyThreshold) {
+        if (copyThreshold < 0) {
+            throw new IllegalArgumentException("copyThreshold: " + copyThreshold + " (expected: >= 0)");
+        }
+        this.copyThreshold = copyThreshold;
+        return this;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public Handle newHandle() {
+        return new HandleImpl();
+    }
+
+    @Override
+    public PredictiveRecvByteBufAllocator respectMaybeMoreData(boolean respectMaybeMoreData) {
+        super.respectMaybeMoreData(respectMaybeMoreData);
+        return this;
+    }
+
+    private int normalize(int size) {
+        return min(max(MathUtil.safeFindNextPositivePowerOfTwo(size), minimum), maximum);
+    }
+
+    private final class HandleImpl extends MaxMessageHandle implements ReadBufferHandle {
+        private final double decayWeight = PredictiveRecvByteBufAllocator.this.decayWeight;
+        private final int copyThreshold = PredictiveRecvByteBufAllocator.this.copyThreshold;
+        private double average = initial;
+        private int nextReceiveBufferSize = normalize(initial);
+        private int pendingBytes;
+        private boolean lastReadFilled;
+
+        @Override
+        public void reset(ChannelConfig config) {
+            lastReadFilled = false;
+            super.reset(config);
+        }
+
+        @Override
+        public void pendingBytes(int bytes) {
+            pendingBytes = bytes;
+        }
+
+        @Override
+        public boolean pendingBytesNeeded() {
+            // 只有上次读取填满了 Buffer ，Socket 中才可能还有数据，此时才需要知道具体的字节数
+            return lastReadFilled;
+        }
+
+        @Override
+        public int guess() {
+            if (pendingBytes > 0) {
+                return min(max(pendingBytes, minimum), maximum);
+            }
+            return nextReceiveBufferSize;
+        }
+
+        @Override
+        public ByteBuf allocateReadBuffer(ByteBufAllocator alloc) {
+            if (pendingBytes > 0 || nextReceiveBufferSize > copyThreshold) {
+                return allocate(alloc);
+            }
+            ByteBuf shared = SHARED_READ_BUFFER.get();
+            // 保留最大的共享 Buffer ，避免不同 maximum 的 Channel 来回替换
+            if (shared == null || shared.capacity() < maximum) {
+                if (shared != null) {
+                    if (shared.refCnt() != 1) {
+                        // 正在被使用，不替换
+                        return allocate(alloc);
+                    }
+                    shared.release();
+                }
+                shared = alloc.ioBuffer(maximum, maximum);
+                SHARED_READ_BUFFER.set(shared);
+            } else if (shared.refCnt() != 1) {
+                // 已经被其它读取使用，例如没有调用 finishRead(...)
+                return allocate(alloc);
+            }
+            shared.clear();
+            // 共享 Buffer 可能比 maximum 大，最多只读取 maximum 个字节
+            return shared.capacity() == maximum ? shared.retain() : shared.retainedSlice(0, maximum).clear();
+        }
+
+        @Override
+        public ByteBuf finishRead(ByteBufAllocator alloc, ByteBuf buf) {
+            ByteBuf shared = SHARED_READ_BUFFER.get();
+            if (shared == null || buf != shared && buf.unwrap() != shared) {
+                return buf;
+            }
+            try {
+                // 只复制真正读取到的字节
+                int readable = buf.readableBytes();
+                return alloc.ioBuffer(readable).writeBytes(buf);
+            } finally {
+                buf.clear();
+                buf.release();
+            }
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            lastReadFilled = bytes == attemptedBytesRead();
+            // If the buffer was filled completely there is likely more data, so ramp up before the read loop
+            // completes to save round trips to the selector.
+            if (pendingBytes <= 0 && lastReadFilled && nextReceiveBufferSize < maximum) {
+                nextReceiveBufferSize = normalize(nextReceiveBufferSize << 1);
+            }
+            pendingBytes = 0;
+            super.lastBytesRead(bytes);
+        }
+
+        @Override
+        public void readComplete() {
+            int totalBytesRead = totalBytesRead();
+            if (totalBytesRead > 0) {
+                average += decayWeight * (totalBytesRead - average);
+                nextReceiveBufferSize = normalize((int) Math.ceil(average));
+            }
+        }
+    }
+}
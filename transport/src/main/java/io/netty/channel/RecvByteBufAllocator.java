@@ -117,6 +117,44 @@ public interface RecvByteBufAllocator {
         boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier);
     }
 
+    /**
+     * An {@link ExtendedHandle} which can make use of the number of bytes which are queued in the socket and may read
+     * into a buffer that is shared by all {@link Channel}s of the same thread.
+     * <p>
+     * A transport which supports this must call {@link #allocateReadBuffer(ByteBufAllocator)} instead of
+     * {@link #allocate(ByteBufAllocator)} and pass every buffer which contains data to
+     * {@link #finishRead(ByteBufAllocator, ByteBuf)} before it is passed to the {@link ChannelPipeline}. Buffers which
+     * do not contain any data must be released.
+     */
+    @UnstableApi
+    interface ReadBufferHandle extends ExtendedHandle {
+        /**
+         * Set the number of bytes which are queued in the socket receive buffer, as reported by {@code FIONREAD},
+         * right before the next buffer is allocated. A value {@code <= 0} means unknown.
+         */
+        void pendingBytes(int bytes);
+
+        /**
+         * Returns {@code true} if the number of bytes which are queued in the socket should be passed to
+         * {@link #pendingBytes(int)} before the next buffer is allocated. Querying them costs a system call, so a
+         * transport should only do so if this method returns {@code true}.
+         */
+        boolean pendingBytesNeeded();
+
+        /**
+         * Same as {@link #allocate(ByteBufAllocator)} except that the returned buffer may be shared, so it must be
+         * passed to {@link #finishRead(ByteBufAllocator, ByteBuf)} once data was read into it.
+         */
+        ByteBuf allocateReadBuffer(ByteBufAllocator alloc);
+
+        /**
+         * Returns the buffer which should be passed to the {@link ChannelPipeline} after data was read into the given
+         * buffer, which was returned by {@link #allocateReadBuffer(ByteBufAllocator)}. The ownership of the given
+         * buffer is transferred to this method, even if it throws.
+         */
+        ByteBuf finishRead(ByteBufAllocator alloc, ByteBuf buf);
+    }
+
     /**
      * A {@link Handle} which delegates all call to some other {@link Handle}.
      */
@@ -25,6 +25,8 @@ import io.netty.util.internal.UnstableApi;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * 基于单线程的 EventLoop 抽象类，主要增加了 Channel 注册到 EventLoop 上。
@@ -52,6 +54,50 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
      */
     private final Queue<Runnable> tailTasks;
 
+    /**
+     * 写入公平调度器，未开启时为 null 。创建后只在 EventLoop 线程中使用
+     */
+    private final EventLoopWriteScheduler writeScheduler;
+
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventLoop> PENDING_REGISTRATIONS_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventLoop.class, "pendingRegistrations");
+
+    /**
+     * 注册中的 Channel 数量
+     */
+    private volatile int pendingRegistrations;
+    private final ChannelFutureListener registrationListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            PENDING_REGISTRATIONS_UPDATER.decrementAndGet(SingleThreadEventLoop.this);
+        }
+    };
+
+    /**
+     * 计算繁忙比例的时间窗口
+     */
+    private static final long BUSY_RATIO_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * 当前时间窗口的开始时间，只在 EventLoop 线程中访问
+     */
+    private long busyRatioWindowStart;
+    /**
+     * 当前时间窗口内的空闲时间，只在 EventLoop 线程中访问
+     */
+    private long idleNanos;
+    /**
+     * 开始空闲（阻塞等待 IO 或任务）的时间，不在空闲时为 0
+     */
+    private volatile long idleStart;
+    /**
+     * 繁忙比例，-1 表示未统计
+     */
+    private volatile double busyRatio = -1;
+    /**
+     * 上一次循环结束时的待执行任务数，-1 表示未统计。其他线程读取该值，避免阻塞在 EventLoop 上
+     */
+    private volatile int lastPendingTasks = -1;
+
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory, boolean addTaskWakesUp) {
         this(parent, threadFactory, addTaskWakesUp, DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
     }
@@ -65,6 +111,7 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
                                     RejectedExecutionHandler rejectedExecutionHandler) {
         super(parent, threadFactory, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
         tailTasks = newTaskQueue(maxPendingTasks);
+        writeScheduler = newWriteScheduler();
     }
 
     protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor,
@@ -72,6 +119,7 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
                                     RejectedExecutionHandler rejectedExecutionHandler) {
         super(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
         tailTasks = newTaskQueue(maxPendingTasks);
+        writeScheduler = newWriteScheduler();
     }
 
     @Override
@@ -93,7 +141,7 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     public ChannelFuture register(final ChannelPromise promise) {
         ObjectUtil.checkNotNull(promise, "promise");
         // 注册 Channel 到 EventLoop 上
-        promise.channel().unsafe().register(this, promise);
+        register0(promise.channel(), promise);
         // 返回 ChannelPromise 对象
         return promise;
     }
@@ -108,10 +156,21 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
             throw new NullPointerException("promise");
         }
 
-        channel.unsafe().register(this, promise);
+        register0(channel, promise);
         return promise;
     }
 
+    private void register0(Channel channel, ChannelPromise promise) {
+        if (promise.isVoid()) {
+            channel.unsafe().register(this, promise);
+            return;
+        }
+        // 记录注册中的 Channel 数量，在注册完成前也能反映在负载中
+        PENDING_REGISTRATIONS_UPDATER.incrementAndGet(this);
+        channel.unsafe().register(this, promise);
+        promise.addListener(registrationListener);
+    }
+
     /**
      * Adds a task to be run once at the end of next (or current) {@code eventloop} iteration.
      *
@@ -169,6 +228,155 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    @UnstableApi
+    @Override
+    protected EventLoopMetrics newMetrics() {
+        return isMetricsEnabled() ? new EventLoopMetrics() : null;
+    }
+
+    @UnstableApi
+    @Override
+    public EventLoopMetrics metrics() {
+        return (EventLoopMetrics) super.metrics();
+    }
+
+    /**
+     * Records a select which returned {@code readyEvents} ready I/O events that were processed in {@code ioNanos}
+     * nanoseconds, if metrics are enabled. Must only be called by the {@link EventLoop} thread.
+     */
+    @UnstableApi
+    protected final void recordSelect(int readyEvents, long ioNanos) {
+        EventLoopMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.recordSelect(readyEvents, ioNanos);
+        }
+    }
+
+    /**
+     * Creates the {@link EventLoopWriteScheduler} of this {@link EventLoop}, or returns {@code null} if the writes
+     * of its {@link Channel}s should not be limited. The default implementation creates one if the
+     * {@code io.netty.eventLoop.writeBytesPerIteration} system property is set to a positive value, the quantum
+     * is set via {@code io.netty.eventLoop.writeQuantum}. Called once from the constructor.
+     */
+    @UnstableApi
+    protected EventLoopWriteScheduler newWriteScheduler() {
+        // 每个 EventLoop 创建时读取一次，所以可以为不同的 EventLoopGroup 设置不同的值
+        // 每次 EventLoop 循环最多写入的字节数，小于等于 0 时不开启 EventLoopWriteScheduler
+        long bytesPerIteration = SystemPropertyUtil.getLong("io.netty.eventLoop.writeBytesPerIteration", 0);
+        if (bytesPerIteration <= 0) {
+            return null;
+        }
+        // 每个 Channel 每次 EventLoop 循环可写入的字节数
+        int quantum = SystemPropertyUtil.getInt("io.netty.eventLoop.writeQuantum", 64 * 1024);
+        return new EventLoopWriteScheduler(bytesPerIteration, Math.max(1, quantum));
+    }
+
+    /**
+     * Returns the {@link EventLoopWriteScheduler} of this {@link EventLoop} or {@code null} if it does not use one.
+     * The returned instance must only be used from the {@link EventLoop} thread.
+     */
+    @UnstableApi
+    public final EventLoopWriteScheduler writeScheduler() {
+        return writeScheduler;
+    }
+
+    /**
+     * Returns the number of {@link Channel}s registered with this {@link EventLoop} or {@code -1}
+     * if the operation is not supported. The returned value is not guaranteed to be exact accurate and
+     * should be viewed as a best effort.
+     */
+    @UnstableApi
+    public int registeredChannels() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which are currently being registered with this {@link EventLoop}.
+     */
+    @UnstableApi
+    public int pendingRegistrations() {
+        return pendingRegistrations;
+    }
+
+    /**
+     * Returns the fraction of the recent wall-clock time this {@link EventLoop} spent processing I/O and tasks
+     * instead of waiting for them, between {@code 0} and {@code 1}, or {@code -1} if the implementation does not
+     * track it. The value is a moving average which is updated about every {@code 100ms}.
+     */
+    @UnstableApi
+    public double busyRatio() {
+        long idleStart = this.idleStart;
+        if (idleStart != 0 && System.nanoTime() - idleStart >= BUSY_RATIO_WINDOW_NANOS) {
+            // Blocked for a whole window already, the last computed value is outdated.
+            return 0;
+        }
+        return busyRatio;
+    }
+
+    /**
+     * Returns the number of pending tasks without blocking: the exact value when called from the {@link EventLoop}
+     * thread, otherwise the value seen at the end of the last iteration of the loop, or {@code -1} if the
+     * implementation does not call {@link #afterLoopIteration()}.
+     */
+    int lastPendingTasks() {
+        return inEventLoop() ? pendingTasks() : lastPendingTasks;
+    }
+
+    /**
+     * Must be called by the {@link EventLoop} thread right before it blocks waiting for I/O or tasks, if the
+     * implementation wants to support {@link #busyRatio()}.
+     */
+    protected final void beforeIdle() {
+        long now = System.nanoTime();
+        if (busyRatioWindowStart == 0) {
+            busyRatioWindowStart = now;
+        }
+        // Use 1 if nanoTime() returned 0 as 0 is used to signal that we are not idle.
+        idleStart = now == 0 ? 1 : now;
+    }
+
+    /**
+     * Must be called by the {@link EventLoop} thread right after it woke up from waiting for I/O or tasks.
+     *
+     * @see #beforeIdle()
+     */
+    protected final void afterIdle() {
+        long idleStart = this.idleStart;
+        if (idleStart == 0) {
+            return;
+        }
+        this.idleStart = 0;
+        long now = System.nanoTime();
+        idleNanos += now - idleStart;
+        updateBusyRatio(now);
+    }
+
+    /**
+     * Must be called by the {@link EventLoop} thread at the end of every iteration of its loop, together with
+     * {@link #beforeIdle()} and {@link #afterIdle()}. It keeps {@link #busyRatio()} up to date when the loop has
+     * always work to do and so never waits, and records the number of pending tasks for other threads.
+     */
+    protected final void afterLoopIteration() {
+        lastPendingTasks = pendingTasks();
+        long now = System.nanoTime();
+        if (busyRatioWindowStart == 0) {
+            busyRatioWindowStart = now;
+        } else {
+            updateBusyRatio(now);
+        }
+    }
+
+    private void updateBusyRatio(long now) {
+        long elapsed = now - busyRatioWindowStart;
+        if (elapsed >= BUSY_RATIO_WINDOW_NANOS) {
+            double ratio = 1 - (double) Math.min(idleNanos, elapsed) / elapsed;
+            double lastRatio = busyRatio;
+            busyRatio = lastRatio < 0 ? ratio : (lastRatio + ratio) / 2;
+            busyRatioWindowStart = now;
+            idleNanos = 0;
+        }
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
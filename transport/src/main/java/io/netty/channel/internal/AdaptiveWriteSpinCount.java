@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.internal;
+
+import io.netty.channel.ChannelConfig;
+
+/**
+ * Adapts the number of writes a channel may do per flush, bounded by {@link ChannelConfig#getWriteSpinCount()},
+ * to the partial writes observed on it.
+ * <p>
+ * A partial write means the socket send buffer is full, so the next write would most likely not write anything.
+ * The channel should stop writing and wait until the socket becomes writable again, and as its peer is not keeping
+ * up the number of writes of the following flushes is halved so the channel yields to the other channels of the
+ * event loop sooner. Whenever a flush used all of its writes without observing a partial write the number is doubled
+ * again, up to {@link ChannelConfig#getWriteSpinCount()}.
+ * <p>
+ * Instances are not thread-safe and must only be used by the event loop of the channel.
+ */
+public final class AdaptiveWriteSpinCount {
+
+    private int maxWriteSpinCount;
+    private int writeSpinCount;
+    private boolean partialWrite;
+
+    /**
+     * Must be called at the beginning of a flush and returns the number of writes which may be done.
+     *
+     * @param maxWriteSpinCount the configured {@link ChannelConfig#getWriteSpinCount()}.
+     */
+    public int writeSpinCount(int maxWriteSpinCount) {
+        this.maxWriteSpinCount = maxWriteSpinCount;
+        partialWrite = false;
+        if (writeSpinCount <= 0 || writeSpinCount > maxWriteSpinCount) {
+            writeSpinCount = maxWriteSpinCount;
+        }
+        return writeSpinCount;
+    }
+
+    /**
+     * Returns the number of writes the next flush may do, bounded by the {@link ChannelConfig#getWriteSpinCount()}
+     * passed to {@link #writeSpinCount(int)}, or {@code 0} if there was no flush yet.
+     */
+    public int nextWriteSpinCount() {
+        return writeSpinCount;
+    }
+
+    /**
+     * Records the result of a write and returns {@code true} if it was partial, which means the caller should stop
+     * writing and wait for the socket to become writable again.
+     */
+    public boolean isPartialWrite(long attemptedBytes, long writtenBytes) {
+        if (writtenBytes < attemptedBytes) {
+            partialWrite = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Must be called when a flush could not write all data.
+     *
+     * @param writeSpinCountExhausted {@code true} if all writes returned by {@link #writeSpinCount(int)} were used.
+     */
+    public void incompleteWrite(boolean writeSpinCountExhausted) {
+        if (partialWrite) {
+            writeSpinCount = Math.max(1, writeSpinCount >>> 1);
+        } else if (writeSpinCountExhausted) {
+            writeSpinCount = (int) Math.min(maxWriteSpinCount, (long) writeSpinCount << 1);
+        }
+    }
+}
@@ -161,6 +161,10 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
             final ByteBufAllocator allocator = config.getAllocator();
             // 获得 RecvByteBufAllocator.Handle 对象
             final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            // 支持共享读缓冲区的 Handle
+            final RecvByteBufAllocator.ReadBufferHandle readBufferHandle =
+                    allocHandle instanceof RecvByteBufAllocator.ReadBufferHandle ?
+                            (RecvByteBufAllocator.ReadBufferHandle) allocHandle : null;
             // 重置 RecvByteBufAllocator.Handle 对象
             allocHandle.reset(config);
 
@@ -169,7 +173,8 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
             try {
                 do {
                     // 申请 ByteBuf 对象
-                    byteBuf = allocHandle.allocate(allocator);
+                    byteBuf = readBufferHandle != null ?
+                            readBufferHandle.allocateReadBuffer(allocator) : allocHandle.allocate(allocator);
                     // 读取数据
                     // 设置最后读取字节数
                     allocHandle.lastBytesRead(doReadBytes(byteBuf));
@@ -193,6 +198,12 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
 
                     // <2> 读取到数据
 
+                    if (readBufferHandle != null) {
+                        // 如果读取到共享读缓冲区，则复制出来。finishRead(...) 负责释放传入的 ByteBuf 对象
+                        ByteBuf readBuf = byteBuf;
+                        byteBuf = null;
+                        byteBuf = readBufferHandle.finishRead(allocator, readBuf);
+                    }
                     // 读取消息数量 + localRead
                     allocHandle.incMessagesRead(1);
                     // TODO 芋艿 readPending
@@ -19,6 +19,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopException;
+import io.netty.channel.EventLoopMetrics;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.util.IntSupplier;
@@ -333,6 +335,11 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                                                     : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
     }
 
+    @Override
+    public int registeredChannels() {
+        return selector.keys().size() - cancelledKeys;
+    }
+
     @Override
     public int pendingTasks() {
         // As we use a MpscQueue we need to ensure pendingTasks() is only executed from within the EventLoop as
@@ -494,7 +501,12 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                     case SelectStrategy.SELECT:
                         // 重置 wakenUp 标记为 false
                         // 选择( 查询 )任务
-                        select(wakenUp.getAndSet(false));
+                        beforeIdle();
+                        try {
+                            select(wakenUp.getAndSet(false));
+                        } finally {
+                            afterIdle();
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
@@ -536,12 +548,24 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
 
+                // 开始新的一次循环，重置写入公平调度器的字节预算
+                final EventLoopWriteScheduler writeScheduler = writeScheduler();
+                if (writeScheduler != null) {
+                    writeScheduler.nextIteration();
+                }
+
                 final int ioRatio = this.ioRatio;
+                final EventLoopMetrics metrics = metrics();
+                final int readyKeys = metrics != null ? readyKeys() : 0;
                 if (ioRatio == 100) {
+                    final long ioStartTime = metrics != null ? System.nanoTime() : 0;
                     try {
                         // 处理 Channel 感兴趣的就绪 IO 事件
                         processSelectedKeys();
                     } finally {
+                        if (metrics != null) {
+                            recordSelect(readyKeys, System.nanoTime() - ioStartTime);
+                        }
                         // 运行所有普通任务和定时任务，不限制时间
                         // Ensure we always run tasks.
                         runAllTasks();
@@ -555,9 +579,13 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         // 运行所有普通任务和定时任务，限制时间
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            recordSelect(readyKeys, ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
+                afterLoopIteration();
             } catch (Throwable t) {
                 handleLoopException(t);
             }
@@ -830,9 +858,17 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
             selector.wakeup();
+            recordWakeup();
         }
     }
 
+    /**
+     * 获得就绪的 SelectionKey 数量
+     */
+    private int readyKeys() {
+        return selectedKeys != null ? selectedKeys.size() : selector.selectedKeys().size();
+    }
+
     Selector unwrappedSelector() {
         return unwrappedSelector;
     }
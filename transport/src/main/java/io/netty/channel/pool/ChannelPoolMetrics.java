@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.EventExecutorMetrics.Histogram;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of a {@link ManagedChannelPool}. All values can be read from any thread without locking.
+ */
+@UnstableApi
+public final class ChannelPoolMetrics {
+
+    final AtomicInteger idleChannels = new AtomicInteger();
+    final AtomicInteger acquiredChannels = new AtomicInteger();
+    final AtomicInteger pendingAcquires = new AtomicInteger();
+    final LongCounter createdChannels = PlatformDependent.newLongCounter();
+    final LongCounter evictedChannels = PlatformDependent.newLongCounter();
+    final LongCounter failedHealthChecks = PlatformDependent.newLongCounter();
+    private final Histogram acquireLatency = new Histogram();
+
+    ChannelPoolMetrics() { }
+
+    /**
+     * Returns the number of {@link Channel}s which are idle in the pool.
+     */
+    public int idleChannels() {
+        return idleChannels.get();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which were acquired and not released yet.
+     */
+    public int acquiredChannels() {
+        return acquiredChannels.get();
+    }
+
+    /**
+     * Returns the number of acquire operations which did not complete yet.
+     */
+    public int pendingAcquires() {
+        return pendingAcquires.get();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which were created by the pool in the background to keep the minimum
+     * number of idle {@link Channel}s.
+     */
+    public long createdChannels() {
+        return createdChannels.value();
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s which were closed because they exceeded the maximum idle time or
+     * lifetime.
+     */
+    public long evictedChannels() {
+        return evictedChannels.value();
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s which were closed because the background health check failed.
+     */
+    public long failedHealthChecks() {
+        return failedHealthChecks.value();
+    }
+
+    /**
+     * Returns the time in nanoseconds the successful acquire operations took.
+     */
+    public Histogram acquireLatency() {
+        return acquireLatency;
+    }
+}
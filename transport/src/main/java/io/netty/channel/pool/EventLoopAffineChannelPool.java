@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SimpleChannelPool} which keeps a separate pool of idle {@link Channel}s for every {@link EventLoop} of the
+ * {@link Bootstrap}.
+ * <p>
+ * When {@link #acquire()} is called from an {@link EventLoop} it returns a {@link Channel} which is registered on
+ * that {@link EventLoop} if there is one, and only takes one from the pool of another {@link EventLoop} otherwise.
+ * New {@link Channel}s are registered on the {@link EventLoop} which acquires them. As {@link Channel}s are released
+ * to the pool of the {@link EventLoop} they are registered on, acquiring and releasing them from their own
+ * {@link EventLoop} neither hands off to another thread nor contends with the other {@link EventLoop}s.
+ * <p>
+ * When called from a thread which is not one of the {@link EventLoop}s, the pools are visited in round-robin order.
+ */
+@UnstableApi
+public class EventLoopAffineChannelPool extends SimpleChannelPool {
+
+    private final EventLoopPool[] pools;
+    private final Map<EventExecutor, EventLoopPool> poolsByLoop;
+    /**
+     * Holds the {@link Channel}s which are registered on an {@link EventLoop} which is not part of the
+     * {@link Bootstrap}, for example because {@link #connectChannel(Bootstrap)} was overridden.
+     */
+    private final Deque<Channel> otherChannels = PlatformDependent.newConcurrentDeque();
+    private final AtomicInteger nextPool = new AtomicInteger();
+    private final boolean lastRecentUsed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck       the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                          still healthy when obtain from the {@link ChannelPool}
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                      ChannelHealthChecker healthCheck) {
+        this(bootstrap, handler, healthCheck, true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap          the {@link Bootstrap} that is used for connections
+     * @param handler            the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck        the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                           still healthy when obtain from the {@link ChannelPool}
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to {@code true};
+     *                           otherwise, channel health is only checked at acquisition time
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                      ChannelHealthChecker healthCheck, boolean releaseHealthCheck) {
+        this(bootstrap, handler, healthCheck, releaseHealthCheck, true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap          the {@link Bootstrap} that is used for connections
+     * @param handler            the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck        the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                           still healthy when obtain from the {@link ChannelPool}
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to {@code true};
+     *                           otherwise, channel health is only checked at acquisition time
+     * @param lastRecentUsed    {@code true} {@link Channel} selection will be LIFO, if {@code false} FIFO.
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                      ChannelHealthChecker healthCheck, boolean releaseHealthCheck,
+                                      boolean lastRecentUsed) {
+        super(bootstrap, handler, healthCheck, releaseHealthCheck, lastRecentUsed);
+        this.lastRecentUsed = lastRecentUsed;
+
+        List<EventLoopPool> pools = new ArrayList<EventLoopPool>();
+        poolsByLoop = new IdentityHashMap<EventExecutor, EventLoopPool>();
+        for (EventExecutor executor : bootstrap().config().group()) {
+            if (executor instanceof EventLoop && !poolsByLoop.containsKey(executor)) {
+                EventLoopPool pool = new EventLoopPool((EventLoop) executor, pools.size());
+                pools.add(pool);
+                poolsByLoop.put(executor, pool);
+            }
+        }
+        this.pools = pools.toArray(new EventLoopPool[0]);
+    }
+
+    /**
+     * Returns the pool of the {@link EventLoop} the current thread belongs to, or {@code null} if it is not one of
+     * the {@link EventLoop}s of the {@link Bootstrap}.
+     */
+    private EventLoopPool currentPool() {
+        for (EventLoopPool pool : pools) {
+            if (pool.loop.inEventLoop()) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bootstraps the new {@link Channel} on the current {@link EventLoop}, if the current thread is one of the
+     * {@link EventLoop}s of the {@link Bootstrap}.
+     */
+    @Override
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        EventLoopPool pool = currentPool();
+        return pool == null ? bs.connect() : bs.clone(pool.loop).connect();
+    }
+
+    @Override
+    protected Channel pollChannel() {
+        EventLoopPool current = currentPool();
+        int start;
+        if (current != null) {
+            Channel channel = current.poll();
+            if (channel != null) {
+                return channel;
+            }
+            start = current.index + 1;
+        } else {
+            start = nextPool.getAndIncrement() & Integer.MAX_VALUE;
+        }
+        // 当前 EventLoop 没有空闲的 Channel ，从其它 EventLoop 窃取
+        for (int i = 0; i < pools.length; i++) {
+            EventLoopPool pool = pools[(start + i) % pools.length];
+            if (pool != current) {
+                Channel channel = pool.poll();
+                if (channel != null) {
+                    return channel;
+                }
+            }
+        }
+        return poll(otherChannels);
+    }
+
+    @Override
+    protected boolean offerChannel(Channel channel) {
+        EventLoopPool pool = poolsByLoop.get(channel.eventLoop());
+        return pool == null ? otherChannels.offer(channel) : pool.channels.offer(channel);
+    }
+
+    private Channel poll(Deque<Channel> channels) {
+        return lastRecentUsed ? channels.pollLast() : channels.pollFirst();
+    }
+
+    private final class EventLoopPool {
+        final EventLoop loop;
+        final int index;
+        final Deque<Channel> channels = PlatformDependent.newConcurrentDeque();
+
+        EventLoopPool(EventLoop loop, int index) {
+            this.loop = loop;
+            this.index = index;
+        }
+
+        Channel poll() {
+            return EventLoopAffineChannelPool.this.poll(channels);
+        }
+    }
+}
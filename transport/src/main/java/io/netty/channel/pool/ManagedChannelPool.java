@@ -0,0 +1,459 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * {@link SimpleChannelPool} which maintains its idle {@link Channel}s in the background, so the acquire path does
+ * neither have to connect nor to run expensive health checks:
+ * <ul>
+ *     <li>A minimum number of idle {@link Channel}s is created when the pool is started and whenever the number of
+ *     idle {@link Channel}s drops below it, e.g. because an idle {@link Channel} was closed by the remote peer.</li>
+ *     <li>Idle {@link Channel}s are closed once they were idle for longer than the maximum idle time, as long as
+ *     there are more than the minimum number of idle {@link Channel}s, or once they are older than the maximum
+ *     lifetime.</li>
+ *     <li>The given {@link ChannelHealthChecker} is run periodically on the idle {@link Channel}s. The acquire path
+ *     then only checks {@link ChannelHealthChecker#ACTIVE}.</li>
+ * </ul>
+ * The background maintenance starts with {@link #start()} or the first {@link #acquire()}.
+ * The {@link ChannelPoolMetrics} of the pool are available via {@link #metrics()}.
+ */
+@UnstableApi
+public class ManagedChannelPool extends SimpleChannelPool {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ManagedChannelPool.class);
+
+    private static final AttributeKey<Long> CREATION_TIME_KEY =
+            AttributeKey.newInstance("managedChannelPoolCreationTime");
+    private static final AttributeKey<Long> IDLE_SINCE_KEY = AttributeKey.newInstance("managedChannelPoolIdleSince");
+    private static final AttributeKey<ManagedChannelPool> ACQUIRED_KEY =
+            AttributeKey.newInstance("managedChannelPoolAcquired");
+    private static final AttributeKey<Boolean> IDLE_KEY = AttributeKey.newInstance("managedChannelPoolIdle");
+    private static final long MAX_MAINTENANCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Deque<Channel> idleChannels = PlatformDependent.newConcurrentDeque();
+    private final ChannelPoolMetrics metrics = new ChannelPoolMetrics();
+    private final AtomicInteger pendingConnects = new AtomicInteger();
+    // Channel 未被归还就关闭时，不再计入已获取的 Channel；空闲的 Channel 关闭时，从空闲队列移除并补充
+    private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            Channel channel = future.channel();
+            if (channel.attr(ACQUIRED_KEY).compareAndSet(ManagedChannelPool.this, null)) {
+                metrics.acquiredChannels.decrementAndGet();
+            } else if (claimIdle(channel)) {
+                idleChannels.remove(channel);
+                if (!closed && !executor.isShuttingDown()) {
+                    executor.execute(fillMinIdleTask);
+                }
+            }
+        }
+    };
+    private final Runnable fillMinIdleTask = new Runnable() {
+        @Override
+        public void run() {
+            fillMinIdle(null);
+        }
+    };
+    private final ChannelHealthChecker backgroundHealthCheck;
+    private final int minIdle;
+    private final long maxIdleTimeNanos;
+    private final long maxLifetimeNanos;
+    private final long healthCheckIntervalNanos;
+    private final long maintenanceIntervalNanos;
+    private final EventExecutor executor;
+    private final Promise<Void> warmupFuture;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile ScheduledFuture<?> maintenanceFuture;
+    // Only accessed by the executor.
+    private long lastHealthCheckNanos;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE} which keeps at least the given number of
+     * idle {@link Channel}s.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param minIdle           the minimum number of idle {@link Channel}s
+     */
+    public ManagedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int minIdle) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, minIdle, 0, 0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy. If {@code healthCheckInterval} is {@code 0} it is used when a
+     *                              {@link Channel} is obtained from the {@link ChannelPool}, otherwise periodically in
+     *                              the background.
+     * @param minIdle               the minimum number of idle {@link Channel}s
+     * @param maxIdleTime           the time after which an idle {@link Channel} is closed if there are more than
+     *                              {@code minIdle} idle {@link Channel}s, or {@code 0} to disable.
+     * @param maxLifetime           the time after which an idle {@link Channel} is closed, or {@code 0} to disable.
+     * @param healthCheckInterval   the interval at which the idle {@link Channel}s are checked by the
+     *                              {@code healthCheck}, or {@code 0} to check them when they are acquired.
+     * @param unit                  the {@link TimeUnit} of {@code maxIdleTime}, {@code maxLifetime} and
+     *                              {@code healthCheckInterval}.
+     */
+    public ManagedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                              int minIdle, long maxIdleTime, long maxLifetime, long healthCheckInterval,
+                              TimeUnit unit) {
+        super(bootstrap, handler, healthCheckInterval > 0 ? ChannelHealthChecker.ACTIVE : healthCheck);
+        checkNotNull(healthCheck, "healthCheck");
+        checkNotNull(unit, "unit");
+        this.minIdle = checkPositiveOrZero(minIdle, "minIdle");
+        maxIdleTimeNanos = unit.toNanos(checkPositiveOrZero(maxIdleTime, "maxIdleTime"));
+        maxLifetimeNanos = unit.toNanos(checkPositiveOrZero(maxLifetime, "maxLifetime"));
+        healthCheckIntervalNanos = unit.toNanos(checkPositiveOrZero(healthCheckInterval, "healthCheckInterval"));
+        backgroundHealthCheck = healthCheckInterval > 0 ? healthCheck : null;
+
+        long interval = 0;
+        if (minIdle > 0 || maxIdleTimeNanos > 0 || maxLifetimeNanos > 0 || healthCheckIntervalNanos > 0) {
+            interval = MAX_MAINTENANCE_INTERVAL_NANOS;
+            for (long nanos : new long[] { maxIdleTimeNanos, maxLifetimeNanos, healthCheckIntervalNanos }) {
+                if (nanos > 0) {
+                    interval = Math.min(interval, nanos);
+                }
+            }
+        }
+        maintenanceIntervalNanos = interval;
+
+        executor = bootstrap().config().group().next();
+        lastHealthCheckNanos = System.nanoTime();
+        warmupFuture = executor.newPromise();
+    }
+
+    /**
+     * Starts the background maintenance of this pool and connects the {@code minIdle} {@link Channel}s. This is
+     * done automatically by the first {@link #acquire()}, calling it more than once has no effect.
+     *
+     * @return the {@link #warmupFuture()}.
+     */
+    public Future<Void> start() {
+        if (!started.compareAndSet(false, true)) {
+            return warmupFuture;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                fillMinIdle(warmupFuture);
+            }
+        });
+        if (maintenanceIntervalNanos > 0 && !closed) {
+            ScheduledFuture<?> future = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    maintain();
+                }
+            }, maintenanceIntervalNanos, maintenanceIntervalNanos, TimeUnit.NANOSECONDS);
+            maintenanceFuture = future;
+            if (closed) {
+                // 与 close() 并发时，close() 可能没有看到该定时任务
+                future.cancel(false);
+            }
+        }
+        return warmupFuture;
+    }
+
+    /**
+     * Returns the {@link Future} which is notified once the {@code minIdle} {@link Channel}s which were created when
+     * this pool was started are connected. It fails if any of them could not be connected.
+     */
+    public Future<Void> warmupFuture() {
+        return warmupFuture;
+    }
+
+    /**
+     * Returns the {@link ChannelPoolMetrics} of this pool.
+     */
+    public ChannelPoolMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public Future<Channel> acquire(final Promise<Channel> promise) {
+        checkNotNull(promise, "promise");
+        start();
+        final long startNanos = System.nanoTime();
+        metrics.pendingAcquires.incrementAndGet();
+        // 先在内部 Promise 上更新统计，再通知调用者，保证调用者看到的统计是最新的
+        Promise<Channel> acquirePromise = ImmediateEventExecutor.INSTANCE.newPromise();
+        acquirePromise.addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(Future<Channel> future) {
+                metrics.pendingAcquires.decrementAndGet();
+                if (!future.isSuccess()) {
+                    promise.tryFailure(future.cause());
+                    return;
+                }
+                Channel channel = future.getNow();
+                metrics.acquireLatency().recordConcurrently(System.nanoTime() - startNanos);
+                channel.attr(CREATION_TIME_KEY).setIfAbsent(startNanos);
+                if (channel.attr(ACQUIRED_KEY).getAndSet(ManagedChannelPool.this) != ManagedChannelPool.this) {
+                    metrics.acquiredChannels.incrementAndGet();
+                }
+                if (!promise.trySuccess(channel)) {
+                    // 调用者已经取消，归还 Channel
+                    release(channel);
+                }
+            }
+        });
+        super.acquire(acquirePromise);
+        return promise;
+    }
+
+    @Override
+    public Future<Void> release(Channel channel, Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        if (channel.attr(ACQUIRED_KEY).compareAndSet(this, null)) {
+            metrics.acquiredChannels.decrementAndGet();
+        }
+        return super.release(channel, promise);
+    }
+
+    @Override
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        ChannelFuture future = super.connectChannel(bs);
+        future.channel().closeFuture().addListener(closeListener);
+        return future;
+    }
+
+    @Override
+    protected Channel pollChannel() {
+        long now = System.nanoTime();
+        for (;;) {
+            Channel channel = idleChannels.pollLast();
+            if (channel == null) {
+                return null;
+            }
+            if (!claimIdle(channel)) {
+                // 已经被后台维护任务认领
+                continue;
+            }
+            if (!isExpired(channel, now)) {
+                return channel;
+            }
+            evict(channel);
+        }
+    }
+
+    @Override
+    protected boolean offerChannel(Channel channel) {
+        long now = System.nanoTime();
+        channel.attr(CREATION_TIME_KEY).setIfAbsent(now);
+        channel.attr(IDLE_SINCE_KEY).set(now);
+        return offerIdle(channel);
+    }
+
+    private boolean offerIdle(Channel channel) {
+        metrics.idleChannels.incrementAndGet();
+        channel.attr(IDLE_KEY).set(Boolean.TRUE);
+        if (!idleChannels.offer(channel)) {
+            channel.attr(IDLE_KEY).set(null);
+            metrics.idleChannels.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Claims the given idle {@link Channel}, returns {@code false} if it was claimed by someone else in the meantime.
+     * The caller is responsible for removing it from the idle {@link Channel}s.
+     */
+    private boolean claimIdle(Channel channel) {
+        if (channel.attr(IDLE_KEY).compareAndSet(Boolean.TRUE, null)) {
+            metrics.idleChannels.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isExpired(Channel channel, long now) {
+        if (maxLifetimeNanos <= 0) {
+            return false;
+        }
+        Long creationTime = channel.attr(CREATION_TIME_KEY).get();
+        return creationTime != null && now - creationTime >= maxLifetimeNanos;
+    }
+
+    private boolean isIdleTooLong(Channel channel, long now) {
+        if (maxIdleTimeNanos <= 0 || metrics.idleChannels() <= minIdle) {
+            return false;
+        }
+        Long idleSince = channel.attr(IDLE_SINCE_KEY).get();
+        return idleSince != null && now - idleSince >= maxIdleTimeNanos;
+    }
+
+    private void evict(Channel channel) {
+        metrics.evictedChannels.increment();
+        channel.close();
+    }
+
+    private void maintain() {
+        assert executor.inEventLoop();
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean checkHealth = backgroundHealthCheck != null && now - lastHealthCheckNanos >= healthCheckIntervalNanos;
+        if (checkHealth) {
+            lastHealthCheckNanos = now;
+        }
+        // 迭代是弱一致的，每个 Channel 先被认领，再从空闲队列中移除并处理，避免与 acquire 竞争
+        for (Iterator<Channel> i = idleChannels.iterator(); i.hasNext();) {
+            Channel channel = i.next();
+            boolean evict = isExpired(channel, now) || isIdleTooLong(channel, now);
+            if (!evict && !checkHealth || !claimIdle(channel)) {
+                continue;
+            }
+            i.remove();
+            if (evict) {
+                evict(channel);
+            } else {
+                checkHealth(channel);
+            }
+        }
+        fillMinIdle(null);
+    }
+
+    private void checkHealth(final Channel channel) {
+        if (channel.eventLoop().inEventLoop()) {
+            checkHealth0(channel);
+        } else {
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    checkHealth0(channel);
+                }
+            });
+        }
+    }
+
+    private void checkHealth0(final Channel channel) {
+        final Future<Boolean> f;
+        try {
+            f = backgroundHealthCheck.isHealthy(channel);
+        } catch (Throwable cause) {
+            logger.warn("Health check of {} failed", channel, cause);
+            notifyHealthCheck(channel, false);
+            return;
+        }
+        if (f.isDone()) {
+            notifyHealthCheck(channel, f.isSuccess() && f.getNow());
+        } else {
+            f.addListener(new FutureListener<Boolean>() {
+                @Override
+                public void operationComplete(Future<Boolean> future) {
+                    notifyHealthCheck(channel, future.isSuccess() && future.getNow());
+                }
+            });
+        }
+    }
+
+    private void notifyHealthCheck(Channel channel, boolean healthy) {
+        if (!healthy) {
+            metrics.failedHealthChecks.increment();
+            channel.close();
+        } else if (closed || !offerIdle(channel)) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Connects new {@link Channel}s until there are {@code minIdle} idle {@link Channel}s.
+     */
+    private void fillMinIdle(final Promise<Void> promise) {
+        int missing = closed ? 0 : minIdle - metrics.idleChannels() - pendingConnects.get();
+        if (missing <= 0) {
+            if (promise != null) {
+                promise.trySuccess(null);
+            }
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(missing);
+        ChannelFutureListener listener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                pendingConnects.decrementAndGet();
+                Channel channel = future.channel();
+                if (future.isSuccess()) {
+                    metrics.createdChannels.increment();
+                    if (closed || !offerChannel(channel)) {
+                        channel.close();
+                    }
+                } else {
+                    logger.debug("Failed to connect a new idle channel", future.cause());
+                    if (promise != null) {
+                        promise.tryFailure(future.cause());
+                    }
+                }
+                if (remaining.decrementAndGet() == 0 && promise != null) {
+                    promise.trySuccess(null);
+                }
+            }
+        };
+        for (int i = 0; i < missing; i++) {
+            pendingConnects.incrementAndGet();
+            try {
+                connectChannel(bootstrap().clone()).addListener(listener);
+            } catch (Throwable cause) {
+                pendingConnects.decrementAndGet();
+                logger.debug("Failed to connect a new idle channel", cause);
+                if (promise != null) {
+                    promise.tryFailure(cause);
+                }
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledFuture<?> maintenanceFuture = this.maintenanceFuture;
+        if (maintenanceFuture != null) {
+            maintenanceFuture.cancel(false);
+        }
+        super.close();
+    }
+}
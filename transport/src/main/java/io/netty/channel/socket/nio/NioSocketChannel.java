@@ -23,8 +23,10 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopWriteScheduler;
 import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.internal.AdaptiveWriteSpinCount;
 import io.netty.channel.nio.AbstractNioByteChannel;
 import io.netty.channel.socket.DefaultSocketChannelConfig;
 import io.netty.channel.socket.ServerSocketChannel;
@@ -72,6 +74,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
     }
 
     private final SocketChannelConfig config;
+    private final AdaptiveWriteSpinCount adaptiveWriteSpinCount = new AdaptiveWriteSpinCount();
+    private EventLoopWriteScheduler.Handle writeHandle;
 
     /**
      * Create a new instance
@@ -365,13 +369,27 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
     @Override
     protected int doWriteBytes(ByteBuf buf) throws Exception {
         final int expectedWrittenBytes = buf.readableBytes();
-        return buf.readBytes(javaChannel(), expectedWrittenBytes);
+        final int writtenBytes = buf.readBytes(javaChannel(), expectedWrittenBytes);
+        written(writtenBytes);
+        return writtenBytes;
     }
 
     @Override
     protected long doWriteFileRegion(FileRegion region) throws Exception {
         final long position = region.transferred();
-        return region.transferTo(javaChannel(), position);
+        final long writtenBytes = region.transferTo(javaChannel(), position);
+        written(writtenBytes);
+        return writtenBytes;
+    }
+
+    /**
+     * 扣减写入公平调度器中，本次循环可写入的字节数
+     */
+    private void written(long bytes) {
+        EventLoopWriteScheduler.Handle writeHandle = this.writeHandle;
+        if (writeHandle != null && bytes > 0) {
+            writeHandle.written(bytes);
+        }
     }
 
     private void adjustMaxBytesPerGatheringWrite(int attempted, int written, int oldMaxBytesPerGatheringWrite) {
@@ -387,17 +405,30 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         }
     }
 
+    /**
+     * Returns the number of writes the next flush may do, only visible for testing.
+     */
+    int nextWriteSpinCount() {
+        return adaptiveWriteSpinCount.nextWriteSpinCount();
+    }
+
     @Override
     protected void doWrite(ChannelOutboundBuffer in) throws Exception {
         SocketChannel ch = javaChannel();
-        // 获得自旋写入次数
-        int writeSpinCount = config().getWriteSpinCount();
+        // 获得自旋写入次数，根据之前观察到的部分写入进行调整
+        int writeSpinCount = adaptiveWriteSpinCount.writeSpinCount(config().getWriteSpinCount());
+        // 获得 EventLoop 的写入公平调度器，未开启时为 null
+        final EventLoopWriteScheduler.Handle writeHandle = this.writeHandle =
+                EventLoopWriteScheduler.handle(eventLoop(), this.writeHandle);
         do {
             // 内存队列为空，结束循环，直接返回
             if (in.isEmpty()) {
                 // 取消对 SelectionKey.OP_WRITE 的感兴趣
                 // All written so clear OP_WRITE
                 clearOpWrite();
+                if (writeHandle != null) {
+                    writeHandle.drained();
+                }
                 // Directly return here so incompleteWrite(...) is not called.
                 return;
             }
@@ -405,8 +436,18 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
             // 获得每次写入的最大字节数
             // Ensure the pending writes are made of ByteBufs only.
             int maxBytesPerGatheringWrite = ((NioSocketChannelConfig) config).getMaxBytesPerGatheringWrite();
+            int maxBytes = maxBytesPerGatheringWrite;
+            if (writeHandle != null) {
+                long allowance = writeHandle.allowance();
+                // 超过了本次循环可写入的字节数，注册 SelectionKey.OP_WRITE ，让其它 Channel 先写入
+                if (allowance <= 0) {
+                    incompleteWrite(true);
+                    return;
+                }
+                maxBytes = (int) Math.min(maxBytes, allowance);
+            }
             // 从内存队列中，获得要写入的 ByteBuffer 数组
-            ByteBuffer[] nioBuffers = in.nioBuffers(1024, maxBytesPerGatheringWrite);
+            ByteBuffer[] nioBuffers = in.nioBuffers(1024, maxBytes);
             // 写入的 ByteBuffer 数组的个数
             int nioBufferCnt = in.nioBufferCount();
 
@@ -426,7 +467,21 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
                     ByteBuffer buffer = nioBuffers[0];
                     int attemptedBytes = buffer.remaining();
                     // 执行 NIO write 调用，写入单个 ByteBuffer 对象到对端
-                    final int localWrittenBytes = ch.write(buffer);
+                    final int localWrittenBytes;
+                    // 单个 ByteBuffer 不受 maxBytes 限制，开启公平调度时，按照本次循环可写入的字节数截断，避免大 Buffer 独占 EventLoop
+                    if (writeHandle != null && attemptedBytes > maxBytes) {
+                        // ChannelOutboundBuffer 缓存了该 ByteBuffer ，所以只能临时修改 limit ，而不能使用 duplicate()
+                        int limit = buffer.limit();
+                        buffer.limit(buffer.position() + maxBytes);
+                        attemptedBytes = maxBytes;
+                        try {
+                            localWrittenBytes = ch.write(buffer);
+                        } finally {
+                            buffer.limit(limit);
+                        }
+                    } else {
+                        localWrittenBytes = ch.write(buffer);
+                    }
                     // 写入字节小于等于 0 ，说明 NIO Channel 不可写，所以注册 SelectionKey.OP_WRITE ，等待 NIO Channel 可写，并返回以结束循环
                     if (localWrittenBytes <= 0) {
                         incompleteWrite(true);
@@ -436,8 +491,13 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
                     adjustMaxBytesPerGatheringWrite(attemptedBytes, localWrittenBytes, maxBytesPerGatheringWrite);
                     // 从内存队列中，移除已经写入的数据( 消息 )
                     in.removeBytes(localWrittenBytes);
+                    written(localWrittenBytes);
                     // 写入次数减一
                     --writeSpinCount;
+                    // 部分写入，说明 Socket 发送缓冲区已满，继续写入大概率写不进去，所以注册 SelectionKey.OP_WRITE
+                    if (adaptiveWriteSpinCount.isPartialWrite(attemptedBytes, localWrittenBytes)) {
+                        writeSpinCount = -1;
+                    }
                     break;
                 }
                 default: {
@@ -457,13 +517,19 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
                     adjustMaxBytesPerGatheringWrite((int) attemptedBytes, (int) localWrittenBytes, maxBytesPerGatheringWrite);
                     // 从内存队列中，移除已经写入的数据( 消息 )
                     in.removeBytes(localWrittenBytes);
+                    written(localWrittenBytes);
                     // 写入次数减一
                     --writeSpinCount;
+                    // 部分写入，说明 Socket 发送缓冲区已满，继续写入大概率写不进去，所以注册 SelectionKey.OP_WRITE
+                    if (adaptiveWriteSpinCount.isPartialWrite(attemptedBytes, localWrittenBytes)) {
+                        writeSpinCount = -1;
+                    }
                     break;
                 }
             }
         } while (writeSpinCount > 0); // 循环自旋写入
 
+        adaptiveWriteSpinCount.incompleteWrite(writeSpinCount == 0);
         // 内存队列中的数据未完全写入，说明 NIO Channel 不可写，所以注册 SelectionKey.OP_WRITE ，等待 NIO Channel 可写
         incompleteWrite(writeSpinCount < 0);
     }
@@ -21,8 +21,10 @@ import io.netty.channel.ChannelFactory;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultEventLoop;
 import io.netty.channel.DefaultEventLoopGroup;
@@ -34,21 +36,29 @@ import io.netty.channel.local.LocalServerChannel;
 import io.netty.resolver.AddressResolver;
 import io.netty.resolver.AddressResolverGroup;
 import io.netty.resolver.AbstractAddressResolver;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.NetUtil;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import io.netty.util.concurrent.Promise;
 import org.junit.AfterClass;
 import org.junit.Test;
 
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -58,6 +68,8 @@ public class BootstrapTest {
     private static final EventLoopGroup groupA = new DefaultEventLoopGroup(1);
     private static final EventLoopGroup groupB = new DefaultEventLoopGroup(1);
     private static final ChannelInboundHandler dummyHandler = new DummyHandler();
+    private static final InetAddress V4 = inetAddress("10.0.0.1");
+    private static final InetAddress V6 = inetAddress("2001:db8::1");
 
     @AfterClass
     public static void destroy() {
@@ -293,6 +305,246 @@ public class BootstrapTest {
         assertThat(connectFuture.channel(), is(not(nullValue())));
     }
 
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectTriesNextAddressOnFailure() throws Exception {
+        SocketAddress serverAddress = bindServer();
+        SocketAddress unboundAddress = new LocalAddress("testHappyEyeballsConnectTriesNextAddressOnFailure");
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(unboundAddress, serverAddress))
+                .handler(dummyHandler)
+                // Only the failure of the first attempt may start the second one.
+                .connectionAttemptDelay(1, TimeUnit.HOURS);
+
+        Channel channel = bootstrap.happyEyeballsConnect(LocalAddress.ANY).sync().getNow();
+        assertThat(channel.remoteAddress(), is(serverAddress));
+        channel.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectStartsNextAttemptAfterDelay() throws Exception {
+        SocketAddress serverAddress = bindServer();
+        SocketAddress stalledAddress = new LocalAddress("testHappyEyeballsConnectStartsNextAttemptAfterDelay");
+        StallingHandler handler = new StallingHandler(stalledAddress);
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(stalledAddress, serverAddress))
+                .handler(handler)
+                .connectionAttemptDelay(50, TimeUnit.MILLISECONDS);
+
+        Channel channel = bootstrap.happyEyeballsConnect(LocalAddress.ANY).sync().getNow();
+        assertThat(channel.remoteAddress(), is(serverAddress));
+        // The attempt which did not complete is closed once the other one won.
+        handler.stalledChannels.take().closeFuture().sync();
+        channel.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectFailsIfAllAttemptsFail() throws Exception {
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(new LocalAddress("unbound1"), new LocalAddress("unbound2")))
+                .handler(dummyHandler);
+
+        Future<Channel> future = bootstrap.happyEyeballsConnect(LocalAddress.ANY).await();
+        assertThat(future.cause(), is(instanceOf(ConnectException.class)));
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectDoesNotWaitForIpv4Resolution() throws Exception {
+        FamilyResolverGroup resolver = new FamilyResolverGroup();
+        RecordingHandler handler = new RecordingHandler();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(resolver)
+                .handler(handler);
+
+        Future<Channel> future = bootstrap.happyEyeballsConnect("netty.io", 80);
+        resolver.ipv6.setSuccess(Collections.singletonList(V6));
+        assertThat(handler.remoteAddresses.take(), is((SocketAddress) new InetSocketAddress(V6, 80)));
+        future.cancel(false);
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectWaitsResolutionDelayForIpv6() throws Exception {
+        FamilyResolverGroup resolver = new FamilyResolverGroup();
+        RecordingHandler handler = new RecordingHandler();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(resolver)
+                .handler(handler)
+                .connectionAttemptDelay(10, TimeUnit.MILLISECONDS)
+                .resolutionDelay(1, TimeUnit.HOURS);
+
+        Future<Channel> future = bootstrap.happyEyeballsConnect("netty.io", 80);
+        resolver.ipv4.setSuccess(Collections.singletonList(V4));
+        assertThat(handler.remoteAddresses.poll(100, TimeUnit.MILLISECONDS), is(nullValue()));
+        resolver.ipv6.setSuccess(Collections.singletonList(V6));
+        assertThat(handler.remoteAddresses.take(), is((SocketAddress) new InetSocketAddress(V6, 80)));
+        assertThat(handler.remoteAddresses.take(), is((SocketAddress) new InetSocketAddress(V4, 80)));
+        future.cancel(false);
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectAddsLateIpv6Addresses() throws Exception {
+        FamilyResolverGroup resolver = new FamilyResolverGroup();
+        RecordingHandler handler = new RecordingHandler();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(resolver)
+                .handler(handler)
+                .connectionAttemptDelay(10, TimeUnit.MILLISECONDS)
+                .resolutionDelay(10, TimeUnit.MILLISECONDS);
+
+        Future<Channel> future = bootstrap.happyEyeballsConnect("netty.io", 80);
+        resolver.ipv4.setSuccess(Collections.singletonList(V4));
+        assertThat(handler.remoteAddresses.take(), is((SocketAddress) new InetSocketAddress(V4, 80)));
+        resolver.ipv6.setSuccess(Collections.singletonList(V6));
+        assertThat(handler.remoteAddresses.take(), is((SocketAddress) new InetSocketAddress(V6, 80)));
+        future.cancel(false);
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsConnectFailsIfBothFamiliesFail() throws Exception {
+        FamilyResolverGroup resolver = new FamilyResolverGroup();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(resolver)
+                .handler(dummyHandler);
+
+        Future<Channel> future = bootstrap.happyEyeballsConnect("netty.io", 80);
+        resolver.ipv4.setFailure(new UnknownHostException("ipv4"));
+        assertThat(future.await(100), is(false));
+        resolver.ipv6.setFailure(new UnknownHostException("ipv6"));
+        assertThat(future.await().cause(), is(instanceOf(UnknownHostException.class)));
+    }
+
+    @Test
+    public void testHappyEyeballsInterleavesAddressFamilies() throws Exception {
+        SocketAddress v4a = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), 80);
+        SocketAddress v4b = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), 80);
+        SocketAddress v6a = new InetSocketAddress(InetAddress.getByAddress(new byte[] {
+                0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 }), 80);
+        SocketAddress v6b = new InetSocketAddress(InetAddress.getByAddress(new byte[] {
+                0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2 }), 80);
+        assertThat(HappyEyeballsConnector.interleave(Arrays.asList(v6a, v6b, v4a, v4b)),
+                   is(Arrays.asList(v6a, v4a, v6b, v4b)));
+        assertThat(HappyEyeballsConnector.interleave(Arrays.asList(v4a, v4b, v6a)),
+                   is(Arrays.asList(v4a, v6a, v4b)));
+    }
+
+    private static InetAddress inetAddress(String ip) {
+        try {
+            return InetAddress.getByAddress(NetUtil.createByteArrayFromIpAddressString(ip));
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(ip, e);
+        }
+    }
+
+    private static SocketAddress bindServer() throws InterruptedException {
+        return new ServerBootstrap()
+                .group(groupB)
+                .channel(LocalServerChannel.class)
+                .childHandler(dummyHandler)
+                .bind(LocalAddress.ANY).sync().channel().localAddress();
+    }
+
+    @Sharable
+    private static final class RecordingHandler extends ChannelOutboundHandlerAdapter {
+        final BlockingQueue<SocketAddress> remoteAddresses = new LinkedBlockingQueue<SocketAddress>();
+
+        @Override
+        public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
+                            ChannelPromise promise) {
+            // Never complete the connection attempt.
+            remoteAddresses.add(remoteAddress);
+        }
+    }
+
+    private static final class FamilyResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+        final Promise<List<InetAddress>> ipv4 = ImmediateEventExecutor.INSTANCE.newPromise();
+        final Promise<List<InetAddress>> ipv6 = ImmediateEventExecutor.INSTANCE.newPromise();
+
+        @Override
+        protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+            InetNameResolver nameResolver = new InetNameResolver(executor) {
+                @Override
+                protected void doResolve(String inetHost, Promise<InetAddress> promise) {
+                    promise.setFailure(new UnsupportedOperationException());
+                }
+
+                @Override
+                protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise) {
+                    promise.setFailure(new UnsupportedOperationException());
+                }
+
+                @Override
+                public Future<List<InetAddress>> resolveAll(String inetHost, ResolvedAddressTypes addressTypes) {
+                    return addressTypes == ResolvedAddressTypes.IPV4_ONLY ? ipv4 : ipv6;
+                }
+            };
+            return nameResolver.asAddressResolver();
+        }
+    }
+
+    @Sharable
+    private static final class StallingHandler extends ChannelOutboundHandlerAdapter {
+        final BlockingQueue<Channel> stalledChannels = new LinkedBlockingQueue<Channel>();
+        private final SocketAddress stalledAddress;
+
+        StallingHandler(SocketAddress stalledAddress) {
+            this.stalledAddress = stalledAddress;
+        }
+
+        @Override
+        public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
+                            ChannelPromise promise) throws Exception {
+            if (remoteAddress.equals(stalledAddress)) {
+                // Never complete the connection attempt.
+                stalledChannels.add(ctx.channel());
+            } else {
+                super.connect(ctx, remoteAddress, localAddress, promise);
+            }
+        }
+    }
+
+    private static final class MultiAddressResolverGroup extends AddressResolverGroup<SocketAddress> {
+
+        private final List<SocketAddress> addresses;
+
+        MultiAddressResolverGroup(SocketAddress... addresses) {
+            this.addresses = Arrays.asList(addresses);
+        }
+
+        @Override
+        protected AddressResolver<SocketAddress> newResolver(EventExecutor executor) throws Exception {
+            return new AbstractAddressResolver<SocketAddress>(executor) {
+
+                @Override
+                protected boolean doIsResolved(SocketAddress address) {
+                    return false;
+                }
+
+                @Override
+                protected void doResolve(SocketAddress unresolvedAddress, Promise<SocketAddress> promise) {
+                    promise.setSuccess(addresses.get(0));
+                }
+
+                @Override
+                protected void doResolveAll(SocketAddress unresolvedAddress, Promise<List<SocketAddress>> promise) {
+                    promise.setSuccess(addresses);
+                }
+            };
+        }
+    }
+
     private static final class DelayedEventLoopGroup extends DefaultEventLoop {
         @Override
         public ChannelFuture register(final Channel channel, final ChannelPromise promise) {
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AutoFlushConsolidationTest {
+
+    private TimerRecordingEventLoop loop;
+
+    @Before
+    public void setUp() {
+        loop = new TimerRecordingEventLoop();
+    }
+
+    @After
+    public void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        final TestChannel channel = newChannel(null);
+        assertSame(AutoFlushConsolidation.DISABLED, channel.config().getOption(ChannelOption.AUTO_FLUSH_CONSOLIDATION));
+        assertEquals(2, (int) loop.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                channel.writeAndFlush(1);
+                channel.writeAndFlush(2);
+                return channel.doWriteCalls;
+            }
+        }).get());
+    }
+
+    @Test
+    public void testFlushesAreDeferredUntilTheEndOfTheTaskBatch() throws Exception {
+        final TestChannel channel = newChannel(AutoFlushConsolidation.DEFAULT);
+        final ChannelFuture[] futures = new ChannelFuture[3];
+        assertEquals(0, (int) loop.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                futures[0] = channel.write(1);
+                futures[1] = channel.writeAndFlush(2);
+                futures[2] = channel.writeAndFlush(3);
+                assertFalse(futures[0].isDone());
+                return channel.doWriteCalls;
+            }
+        }).get());
+        for (ChannelFuture future : futures) {
+            assertTrue(future.sync().isSuccess());
+        }
+        assertEquals(1, channel.doWriteCalls);
+        assertEquals(3, channel.writtenMessages);
+    }
+
+    @Test
+    public void testMaxPendingBytesForcesFlush() throws Exception {
+        final TestChannel channel = newChannel(new AutoFlushConsolidation(1024, 1, TimeUnit.HOURS));
+        assertEquals(1, (int) loop.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[512]));
+                assertEquals(0, channel.doWriteCalls);
+                channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[512]));
+                return channel.doWriteCalls;
+            }
+        }).get());
+    }
+
+    @Test
+    public void testMaxDelayForcesFlush() throws Exception {
+        final TestChannel channel = newChannel(new AutoFlushConsolidation(1024, 1, TimeUnit.NANOSECONDS));
+        assertEquals(1, (int) loop.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                channel.writeAndFlush(1);
+                assertEquals(0, channel.doWriteCalls);
+                Thread.sleep(1);
+                channel.writeAndFlush(2);
+                return channel.doWriteCalls;
+            }
+        }).get());
+    }
+
+    @Test
+    public void testCloseFlushesDeferred() throws Exception {
+        final TestChannel channel = newChannel(AutoFlushConsolidation.DEFAULT);
+        ChannelFuture future = loop.submit(new Callable<ChannelFuture>() {
+            @Override
+            public ChannelFuture call() {
+                ChannelFuture future = channel.writeAndFlush(1);
+                channel.close();
+                return future;
+            }
+        }).get();
+        assertTrue(future.sync().isSuccess());
+        assertEquals(1, channel.writtenMessages);
+    }
+
+    @Test
+    public void testMaxDelayTimerScheduledWhenFlushIsDeferred() throws Exception {
+        final TestChannel channel = newChannel(new AutoFlushConsolidation(1024, 1, TimeUnit.HOURS));
+        ChannelFuture future = loop.submit(new Callable<ChannelFuture>() {
+            @Override
+            public ChannelFuture call() {
+                ChannelFuture future = channel.writeAndFlush(1);
+                assertEquals(TimeUnit.HOURS.toNanos(1), loop.lastDelayNanos);
+                assertFalse(loop.lastTimer.isDone());
+                return future;
+            }
+        }).get();
+        assertTrue(future.sync().isSuccess());
+        // The timer is not needed anymore once the deferred flush was executed.
+        assertTrue(loop.lastTimer.isCancelled());
+    }
+
+    @Test
+    public void testDeregisterFlushesDeferred() throws Exception {
+        final TestChannel channel = newChannel(AutoFlushConsolidation.DEFAULT);
+        ChannelFuture future = loop.submit(new Callable<ChannelFuture>() {
+            @Override
+            public ChannelFuture call() {
+                ChannelFuture future = channel.writeAndFlush(1);
+                assertEquals(0, channel.doWriteCalls);
+                channel.deregister();
+                assertEquals(1, channel.doWriteCalls);
+                return future;
+            }
+        }).get();
+        assertTrue(future.sync().isSuccess());
+        assertTrue(loop.lastTimer.isCancelled());
+        assertEquals(1, channel.writtenMessages);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullRejected() {
+        new TestChannel().config().setOption(ChannelOption.AUTO_FLUSH_CONSOLIDATION, null);
+    }
+
+    private TestChannel newChannel(AutoFlushConsolidation consolidation) throws Exception {
+        TestChannel channel = new TestChannel();
+        if (consolidation != null) {
+            assertTrue(channel.config().setOption(ChannelOption.AUTO_FLUSH_CONSOLIDATION, consolidation));
+            assertSame(consolidation, channel.config().getOption(ChannelOption.AUTO_FLUSH_CONSOLIDATION));
+        }
+        loop.register(channel).sync();
+        return channel;
+    }
+
+    private static final class TimerRecordingEventLoop extends DefaultEventLoop {
+        // Only accessed by the event loop or after a task of the event loop completed.
+        long lastDelayNanos;
+        Future<?> lastTimer;
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            ScheduledFuture<?> future = super.schedule(command, delay, unit);
+            lastDelayNanos = unit.toNanos(delay);
+            lastTimer = future;
+            return future;
+        }
+    }
+
+    private static final class TestChannel extends AbstractChannel {
+        private static final ChannelMetadata TEST_METADATA = new ChannelMetadata(false);
+
+        private final ChannelConfig config = new DefaultChannelConfig(this);
+        private volatile boolean open = true;
+        // Only accessed by the event loop or after a task of the event loop completed.
+        int doWriteCalls;
+        int writtenMessages;
+
+        TestChannel() {
+            super(null);
+        }
+
+        @Override
+        public ChannelConfig config() {
+            return config;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean isActive() {
+            return open;
+        }
+
+        @Override
+        public ChannelMetadata metadata() {
+            return TEST_METADATA;
+        }
+
+        @Override
+        protected AbstractUnsafe newUnsafe() {
+            return new AbstractUnsafe() {
+                @Override
+                public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+                    promise.setFailure(new UnsupportedOperationException());
+                }
+            };
+        }
+
+        @Override
+        protected boolean isCompatible(EventLoop loop) {
+            return true;
+        }
+
+        @Override
+        protected SocketAddress localAddress0() {
+            return null;
+        }
+
+        @Override
+        protected SocketAddress remoteAddress0() {
+            return null;
+        }
+
+        @Override
+        protected void doBind(SocketAddress localAddress) { }
+
+        @Override
+        protected void doDisconnect() { }
+
+        @Override
+        protected void doClose() {
+            open = false;
+        }
+
+        @Override
+        protected void doBeginRead() { }
+
+        @Override
+        protected void doWrite(ChannelOutboundBuffer in) {
+            doWriteCalls++;
+            while (in.current() != null) {
+                writtenMessages++;
+                in.remove();
+            }
+        }
+
+        @Override
+        protected Object filterOutboundMessage(Object msg) {
+            return msg;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.ChannelPipelineProfiler.HandlerLatency;
+import io.netty.channel.ChannelPipelineProfiler.Ticker;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelPipelineProfilerTest {
+
+    private static final long FAST_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Before
+    public void setUp() {
+        ChannelPipelineProfiler.setTicker(ticker);
+    }
+
+    @After
+    public void tearDown() {
+        ChannelPipelineProfiler.setSampleRate(0);
+        ChannelPipelineProfiler.setTicker(null);
+        ChannelPipelineProfiler.reset();
+    }
+
+    @Test
+    public void testMeasuresTimeSpentInHandlerOnly() {
+        ChannelPipelineProfiler.setSampleRate(1);
+        EmbeddedChannel channel = new EmbeddedChannel(new FastHandler(), new SlowHandler());
+        assertTrue(((DefaultChannelPipeline) channel.pipeline()).profiled);
+
+        assertTrue(channel.writeInbound("msg"));
+        assertTrue(channel.writeOutbound("msg"));
+        assertTrue(channel.finish());
+
+        HandlerLatency fast = ChannelPipelineProfiler.handlerLatency(FastHandler.class);
+        HandlerLatency slow = ChannelPipelineProfiler.handlerLatency(SlowHandler.class);
+        assertNotNull(fast);
+        assertNotNull(slow);
+        assertEquals(1, fast.channelRead().count());
+        assertEquals(1, slow.channelRead().count());
+        assertEquals(1, slow.write().count());
+        assertEquals(0, fast.write().count());
+
+        // The time spent in SlowHandler must not be accounted to FastHandler which forwarded the event.
+        assertBucket(FAST_NANOS, fast.channelRead().valueAtQuantile(1));
+        assertBucket(SLOW_NANOS, slow.channelRead().valueAtQuantile(1));
+        assertBucket(SLOW_NANOS, slow.write().valueAtQuantile(1));
+        assertTrue(ChannelPipelineProfiler.handlerLatencies().containsKey(SlowHandler.class));
+
+        channel.releaseInbound();
+        channel.releaseOutbound();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FastHandler());
+        assertFalse(((DefaultChannelPipeline) channel.pipeline()).profiled);
+        assertTrue(channel.writeInbound("msg"));
+        assertTrue(channel.finishAndReleaseAll());
+        assertNull(ChannelPipelineProfiler.handlerLatency(FastHandler.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() {
+        ChannelPipelineProfiler.setSampleRate(1.1);
+    }
+
+    /**
+     * The histogram only keeps power of two buckets, so check that {@code actual} is the upper bound of the bucket
+     * which contains {@code expected}.
+     */
+    private static void assertBucket(long expected, long actual) {
+        assertTrue("expected: " + expected + ", actual: " + actual, actual >= expected && actual < expected << 1);
+    }
+
+    private static final class ManualTicker implements Ticker {
+        private long nanoTime;
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+        void advance(long nanos) {
+            nanoTime += nanos;
+        }
+    }
+
+    private final class FastHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ticker.advance(FAST_NANOS);
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private final class SlowHandler extends ChannelDuplexHandler {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ticker.advance(SLOW_NANOS);
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ticker.advance(SLOW_NANOS);
+            ctx.write(msg, promise);
+        }
+    }
+}
@@ -1156,6 +1156,62 @@ public class DefaultChannelPipelineTest {
         }
     }
 
+    @Test
+    public void testExecutionMask() {
+        assertEquals(0, ChannelHandlerMask.mask(ChannelInboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelOutboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelDuplexHandler.class));
+
+        ChannelHandler handler = new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(ChannelHandlerContext ctx) {
+                ctx.fireChannelActive();
+            }
+        };
+        assertEquals(ChannelHandlerMask.MASK_CHANNEL_ACTIVE, ChannelHandlerMask.mask(handler.getClass()));
+    }
+
+    @Test
+    public void testSkipHandlerMethodsIfAnnotated() {
+        final Queue<String> invoked = new ArrayDeque<String>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelDuplexHandler() {
+            @ChannelHandlerMask.Skip
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                invoked.add("skippedChannelRead");
+                ctx.fireChannelRead(msg);
+            }
+
+            @ChannelHandlerMask.Skip
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                invoked.add("skippedWrite");
+                ctx.write(msg, promise);
+            }
+
+            @Override
+            public void flush(ChannelHandlerContext ctx) {
+                invoked.add("flush");
+                ctx.flush();
+            }
+        }, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                invoked.add("channelRead");
+                ctx.fireChannelRead(msg);
+            }
+        });
+
+        assertTrue(channel.writeInbound("inbound"));
+        assertTrue(channel.writeOutbound("outbound"));
+        assertEquals("channelRead", invoked.poll());
+        assertEquals("flush", invoked.poll());
+        assertNull(invoked.poll());
+        assertEquals("inbound", channel.readInbound());
+        assertEquals("outbound", channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
     @Test(timeout = 5000)
     public void handlerAddedStateUpdatedBeforeHandlerAddedDoneForceEventLoop() throws InterruptedException {
         handlerAddedStateUpdatedBeforeHandlerAddedDone(true);
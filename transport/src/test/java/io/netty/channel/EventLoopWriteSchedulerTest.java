@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopWriteSchedulerTest {
+
+    @Test
+    public void testQuantumPerIteration() {
+        EventLoopWriteScheduler scheduler = new EventLoopWriteScheduler(1024, 100);
+        EventLoopWriteScheduler.Handle handle = new EventLoopWriteScheduler.Handle(scheduler);
+        assertEquals(100, handle.allowance());
+        handle.written(60);
+        assertEquals(40, handle.allowance());
+        handle.written(40);
+        assertEquals(0, handle.allowance());
+
+        scheduler.nextIteration();
+        assertEquals(100, handle.allowance());
+    }
+
+    @Test
+    public void testDeficitIsCarriedOverWhileBacklogged() {
+        EventLoopWriteScheduler scheduler = new EventLoopWriteScheduler(1024, 100);
+        EventLoopWriteScheduler.Handle handle = new EventLoopWriteScheduler.Handle(scheduler);
+        assertEquals(100, handle.allowance());
+        handle.written(30);
+
+        scheduler.nextIteration();
+        assertEquals(170, handle.allowance());
+        // Writing more than the allowance, e.g. a single large buffer, must be paid back in the next iteration.
+        handle.written(270);
+        assertEquals(0, handle.allowance());
+
+        scheduler.nextIteration();
+        assertEquals(0, handle.allowance());
+        scheduler.nextIteration();
+        assertEquals(100, handle.allowance());
+    }
+
+    @Test
+    public void testDeficitIsResetOnceDrained() {
+        EventLoopWriteScheduler scheduler = new EventLoopWriteScheduler(1024, 100);
+        EventLoopWriteScheduler.Handle handle = new EventLoopWriteScheduler.Handle(scheduler);
+        assertEquals(100, handle.allowance());
+        handle.written(10);
+        handle.drained();
+
+        scheduler.nextIteration();
+        assertEquals(100, handle.allowance());
+    }
+
+    @Test
+    public void testBytesPerIterationAreShared() {
+        EventLoopWriteScheduler scheduler = new EventLoopWriteScheduler(150, 100);
+        EventLoopWriteScheduler.Handle first = new EventLoopWriteScheduler.Handle(scheduler);
+        EventLoopWriteScheduler.Handle second = new EventLoopWriteScheduler.Handle(scheduler);
+        assertEquals(100, first.allowance());
+        first.written(100);
+        assertEquals(50, second.allowance());
+        second.written(50);
+        assertEquals(0, first.allowance());
+        assertEquals(0, second.allowance());
+
+        scheduler.nextIteration();
+        // The deficit of the second channel is carried over, but limited to the bytes per iteration.
+        assertEquals(150, second.allowance());
+        assertEquals(100, first.allowance());
+    }
+
+    @Test
+    public void testChannelsProcessedLastAreNotStarved() {
+        EventLoopWriteScheduler scheduler = new EventLoopWriteScheduler(300, 100);
+        // More channels than the bytes per iteration can serve with one quantum each.
+        EventLoopWriteScheduler.Handle[] handles = new EventLoopWriteScheduler.Handle[10];
+        long[] written = new long[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = new EventLoopWriteScheduler.Handle(scheduler);
+        }
+        for (int iteration = 0; iteration < 3; iteration++) {
+            scheduler.nextIteration();
+            long writtenInIteration = 0;
+            // The channels are always processed in the same order and always have pending writes.
+            for (int i = 0; i < handles.length; i++) {
+                long allowance = handles[i].allowance();
+                handles[i].written(allowance);
+                written[i] += allowance;
+                writtenInIteration += allowance;
+            }
+            assertTrue("written: " + writtenInIteration,
+                    writtenInIteration <= scheduler.bytesPerIteration() + handles.length * scheduler.quantum());
+        }
+        for (int i = 0; i < handles.length; i++) {
+            assertTrue("channel " + i + " wrote " + written[i], written[i] >= scheduler.quantum());
+        }
+    }
+
+    @Test
+    public void testHandle() {
+        EventLoop loop = new DefaultEventLoop() {
+            @Override
+            protected EventLoopWriteScheduler newWriteScheduler() {
+                return new EventLoopWriteScheduler(1024, 100);
+            }
+        };
+        EventLoop disabledLoop = new DefaultEventLoop() {
+            @Override
+            protected EventLoopWriteScheduler newWriteScheduler() {
+                return null;
+            }
+        };
+        try {
+            assertNull(EventLoopWriteScheduler.handle(disabledLoop, null));
+            EventLoopWriteScheduler.Handle handle = EventLoopWriteScheduler.handle(loop, null);
+            assertEquals(100, handle.allowance());
+            assertSame(handle, EventLoopWriteScheduler.handle(loop, handle));
+        } finally {
+            loop.shutdownGracefully();
+            disabledLoop.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testHeavyWriterYieldsToLightWriter() throws Exception {
+        final int quantum = 16 * 1024;
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        EventLoopGroup clientGroup;
+        final AtomicLong received = new AtomicLong();
+        final AtomicBoolean corrupted = new AtomicBoolean();
+        System.setProperty("io.netty.eventLoop.writeBytesPerIteration", String.valueOf(4 * quantum));
+        System.setProperty("io.netty.eventLoop.writeQuantum", String.valueOf(quantum));
+        try {
+            clientGroup = new NioEventLoopGroup(1);
+        } finally {
+            System.clearProperty("io.netty.eventLoop.writeBytesPerIteration");
+            System.clearProperty("io.netty.eventLoop.writeQuantum");
+        }
+        try {
+            Channel sc = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new PatternVerifier(received, corrupted));
+                        }
+                    })
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).sync().channel();
+            Bootstrap cb = new Bootstrap().group(clientGroup)
+                    .channel(InterestOpsNioSocketChannel.class)
+                    .handler(new DiscardHandler());
+            final InterestOpsNioSocketChannel heavy =
+                    (InterestOpsNioSocketChannel) cb.connect(sc.localAddress()).sync().channel();
+            final Channel light = cb.connect(sc.localAddress()).sync().channel();
+            try {
+                final int heavyBytes = 8 * 1024 * 1024;
+                final ChannelFuture[] heavyFuture = new ChannelFuture[1];
+                long heavyWritten = clientGroup.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        ByteBuf data = newPatternBuffer(heavyBytes);
+                        heavyFuture[0] = heavy.writeAndFlush(data);
+                        // The pending bytes are only updated once a buffer was written completely.
+                        long written = data.readerIndex();
+
+                        // The heavy writer used its quantum and waits for OP_WRITE, so the light writer is not
+                        // delayed by it.
+                        assertTrue((heavy.interestOps() & SelectionKey.OP_WRITE) != 0);
+                        assertFalse(heavyFuture[0].isDone());
+                        ChannelFuture lightFuture = light.writeAndFlush(newPatternBuffer(1024));
+                        assertTrue(lightFuture.isSuccess());
+                        return written;
+                    }
+                }).get();
+                assertTrue("heavy writer wrote " + heavyWritten, heavyWritten > 0 && heavyWritten <= quantum);
+
+                // The heavy writer is resumed once the socket is reported writable again.
+                assertTrue(heavyFuture[0].sync().isSuccess());
+                // Every byte arrives exactly once and in order.
+                while (received.get() < heavyBytes + 1024) {
+                    Thread.sleep(10);
+                }
+                assertEquals(heavyBytes + 1024, received.get());
+                assertFalse(corrupted.get());
+            } finally {
+                heavy.close().sync();
+                light.close().sync();
+                sc.close().sync();
+            }
+        } finally {
+            clientGroup.shutdownGracefully();
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    private static ByteBuf newPatternBuffer(int size) {
+        ByteBuf buf = Unpooled.directBuffer(size);
+        // Use a prime period so bytes which are written twice or skipped can not match by accident.
+        for (int i = 0; i < size; i++) {
+            buf.writeByte(i % 251);
+        }
+        return buf;
+    }
+
+    private static final class PatternVerifier extends ChannelInboundHandlerAdapter {
+        private final AtomicLong received;
+        private final AtomicBoolean corrupted;
+        private int index;
+
+        PatternVerifier(AtomicLong received, AtomicBoolean corrupted) {
+            this.received = received;
+            this.corrupted = corrupted;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            try {
+                int readable = buf.readableBytes();
+                for (int i = 0; i < readable; i++) {
+                    if (buf.getByte(buf.readerIndex() + i) != (byte) (index++ % 251)) {
+                        corrupted.set(true);
+                    }
+                }
+                received.addAndGet(readable);
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class DiscardHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    public static final class InterestOpsNioSocketChannel extends NioSocketChannel {
+        int interestOps() {
+            return selectionKey().interestOps();
+        }
+    }
+}
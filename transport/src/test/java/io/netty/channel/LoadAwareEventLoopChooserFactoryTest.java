@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LoadAwareEventLoopChooserFactoryTest {
+
+    private static final class FixedLoadEventLoop extends DefaultEventLoop {
+        private final int registeredChannels;
+        private final int pendingTasks;
+
+        FixedLoadEventLoop(int registeredChannels) {
+            this(registeredChannels, 0);
+        }
+
+        FixedLoadEventLoop(int registeredChannels, int pendingTasks) {
+            this.registeredChannels = registeredChannels;
+            this.pendingTasks = pendingTasks;
+        }
+
+        @Override
+        public int registeredChannels() {
+            return registeredChannels;
+        }
+
+        @Override
+        int lastPendingTasks() {
+            return pendingTasks;
+        }
+    }
+
+    private static EventExecutor[] newEventLoops(int... registeredChannels) {
+        EventExecutor[] eventLoops = new EventExecutor[registeredChannels.length];
+        for (int i = 0; i < registeredChannels.length; i++) {
+            eventLoops[i] = new FixedLoadEventLoop(registeredChannels[i]);
+        }
+        return eventLoops;
+    }
+
+    private static void shutdown(EventExecutor[] eventLoops) {
+        for (EventExecutor eventLoop: eventLoops) {
+            eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testLeastLoaded() {
+        EventExecutor[] eventLoops = newEventLoops(10, 3, 7, 5);
+        try {
+            EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.LEAST_LOADED.newChooser(eventLoops);
+            for (int i = 0; i < 100; i++) {
+                assertSame(eventLoops[1], chooser.next());
+            }
+        } finally {
+            shutdown(eventLoops);
+        }
+    }
+
+    @Test
+    public void testLeastLoadedConsidersPendingTasks() {
+        EventExecutor[] eventLoops = {
+                new FixedLoadEventLoop(3, 100), new FixedLoadEventLoop(5, 0), new FixedLoadEventLoop(4, 50) };
+        try {
+            EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.LEAST_LOADED.newChooser(eventLoops);
+            for (int i = 0; i < 100; i++) {
+                assertSame(eventLoops[1], chooser.next());
+            }
+        } finally {
+            shutdown(eventLoops);
+        }
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesNeverChoosesMostLoaded() {
+        EventExecutor[] eventLoops = newEventLoops(1, 2, 100);
+        try {
+            EventExecutorChooser chooser =
+                    LoadAwareEventLoopChooserFactory.POWER_OF_TWO_CHOICES.newChooser(eventLoops);
+            for (int i = 0; i < 100; i++) {
+                assertNotSame(eventLoops[2], chooser.next());
+            }
+        } finally {
+            shutdown(eventLoops);
+        }
+    }
+
+    @Test
+    public void testEventLoopLoads() throws Exception {
+        final MultithreadEventLoopGroup group = new DefaultEventLoopGroup(2) {
+            @Override
+            protected EventLoop newChild(Executor executor, Object... args) {
+                return new FixedLoadEventLoop(3);
+            }
+        };
+        try {
+            Channel channel = new LocalChannel();
+            group.register(channel).syncUninterruptibly();
+            // The registration listeners are notified on the EventLoop, wait until they are done.
+            channel.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+
+            List<EventLoopLoad> loads = group.eventLoopLoads();
+            assertEquals(2, loads.size());
+            for (EventLoopLoad load: loads) {
+                assertEquals(3, load.registeredChannels());
+                // The registration is done so it must not be counted anymore.
+                assertEquals(0, load.pendingRegistrations());
+                assertTrue(load.load() >= 4);
+            }
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testEventLoopLoadsDoesNotBlockOnBusyEventLoop() throws Exception {
+        final NioEventLoopGroup group = new NioEventLoopGroup(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final EventLoop busy = group.next();
+            final EventLoop other = group.next();
+            assertNotSame(busy, other);
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            // Called from another EventLoop while the busy one does not run its tasks.
+            List<EventLoopLoad> loads = other.submit(new Callable<List<EventLoopLoad>>() {
+                @Override
+                public List<EventLoopLoad> call() {
+                    return group.eventLoopLoads();
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertEquals(2, loads.size());
+        } finally {
+            release.countDown();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBusyRatioOfSaturatedEventLoop() throws Exception {
+        final NioEventLoopGroup group = new NioEventLoopGroup(1);
+        final AtomicBoolean stop = new AtomicBoolean();
+        try {
+            final SingleThreadEventLoop loop = (SingleThreadEventLoop) group.next();
+            // Let the loop become idle first.
+            Thread.sleep(300);
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+                    while (System.nanoTime() - deadline < 0) {
+                        // Busy spin.
+                    }
+                    if (!stop.get()) {
+                        // Always keep a task pending, so the loop never waits.
+                        loop.execute(this);
+                    }
+                }
+            });
+            Thread.sleep(1000);
+            assertTrue("busyRatio: " + loop.busyRatio(), loop.busyRatio() > 0.5);
+        } finally {
+            stop.set(true);
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PredictiveRecvByteBufAllocatorTest {
+    private final ByteBufAllocator alloc = UnpooledByteBufAllocator.DEFAULT;
+    private ChannelConfig config;
+
+    @Before
+    public void setup() {
+        config = mock(ChannelConfig.class);
+        when(config.isAutoRead()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        // Release the shared read buffer so each test starts without one.
+        FastThreadLocal.removeAll();
+    }
+
+    private RecvByteBufAllocator.ReadBufferHandle newHandle(PredictiveRecvByteBufAllocator allocator) {
+        RecvByteBufAllocator.ReadBufferHandle handle = (RecvByteBufAllocator.ReadBufferHandle) allocator.newHandle();
+        handle.reset(config);
+        return handle;
+    }
+
+    @Test
+    public void testDecaysTowardsReadSize() {
+        RecvByteBufAllocator.ReadBufferHandle handle =
+                newHandle(new PredictiveRecvByteBufAllocator(64, 1024, 65536).decayWeight(0.5));
+        assertEquals(1024, handle.guess());
+
+        // 1024 -> 544 -> 304 -> 184 -> 124 -> 94
+        int[] expected = { 1024, 512, 256, 128 };
+        for (int size : expected) {
+            readCycle(handle, 64);
+            assertEquals(size, handle.guess());
+        }
+        readCycle(handle, 64);
+        assertEquals(128, handle.guess());
+
+        // A single large read cycle moves the prediction up right away.
+        readCycle(handle, 8192);
+        assertEquals(8192, handle.guess());
+    }
+
+    @Test
+    public void testRampUpWhenBufferFilled() {
+        RecvByteBufAllocator.ReadBufferHandle handle = newHandle(new PredictiveRecvByteBufAllocator());
+        allocRead(handle, 1024, 1024);
+        allocRead(handle, 2048, 2048);
+        allocRead(handle, 4096, 100);
+        handle.readComplete();
+    }
+
+    @Test
+    public void testPendingBytes() {
+        RecvByteBufAllocator.ReadBufferHandle handle = newHandle(new PredictiveRecvByteBufAllocator(64, 1024, 8192));
+        handle.pendingBytes(3000);
+        allocRead(handle, 3000, 3000);
+        // Filling a buffer sized by the pending bytes must not ramp up.
+        assertEquals(1024, handle.guess());
+
+        handle.pendingBytes(10);
+        allocRead(handle, 64, 10);
+        handle.pendingBytes(100000);
+        allocRead(handle, 8192, 8192);
+        handle.pendingBytes(0);
+        allocRead(handle, 1024, 0);
+    }
+
+    @Test
+    public void testPendingBytesOnlyNeededAfterFullRead() {
+        RecvByteBufAllocator.ReadBufferHandle handle = newHandle(new PredictiveRecvByteBufAllocator(64, 1024, 8192));
+        assertFalse(handle.pendingBytesNeeded());
+        allocRead(handle, 1024, 100);
+        assertFalse(handle.pendingBytesNeeded());
+        allocRead(handle, 1024, 1024);
+        assertTrue(handle.pendingBytesNeeded());
+
+        // A new read loop starts from the prediction again.
+        handle.reset(config);
+        assertFalse(handle.pendingBytesNeeded());
+    }
+
+    @Test
+    public void testSharedReadBuffer() {
+        PredictiveRecvByteBufAllocator allocator = new PredictiveRecvByteBufAllocator(64, 64, 4096).copyThreshold(256);
+        RecvByteBufAllocator.ReadBufferHandle handle = newHandle(allocator);
+        RecvByteBufAllocator.ReadBufferHandle handle2 = newHandle(allocator);
+
+        ByteBuf shared = handle.allocateReadBuffer(alloc);
+        assertEquals(4096, shared.capacity());
+        assertEquals(2, shared.refCnt());
+        shared.writeBytes("netty".getBytes(CharsetUtil.US_ASCII));
+        ByteBuf buf = handle.finishRead(alloc, shared);
+        assertNotSame(shared, buf);
+        assertEquals("netty", buf.toString(CharsetUtil.US_ASCII));
+        assertEquals(5, buf.capacity());
+        assertEquals(1, shared.refCnt());
+        assertEquals(0, shared.readableBytes());
+        buf.release();
+
+        // Other channels of the same thread share the buffer.
+        ByteBuf shared2 = handle2.allocateReadBuffer(alloc);
+        assertSame(shared, shared2);
+        // Nothing was read, so the buffer is just released.
+        shared2.release();
+        assertEquals(1, shared.refCnt());
+
+        // The buffer is in use, so a new one must be allocated.
+        shared = handle.allocateReadBuffer(alloc);
+        shared2 = handle2.allocateReadBuffer(alloc);
+        assertNotSame(shared, shared2);
+        assertSame(shared2, handle2.finishRead(alloc, shared2));
+        shared2.release();
+        shared.release();
+        assertEquals(1, shared.refCnt());
+    }
+
+    @Test
+    public void testLargestSharedReadBufferIsKept() {
+        RecvByteBufAllocator.ReadBufferHandle small =
+                newHandle(new PredictiveRecvByteBufAllocator(64, 64, 4096).copyThreshold(256));
+        RecvByteBufAllocator.ReadBufferHandle large =
+                newHandle(new PredictiveRecvByteBufAllocator(64, 64, 8192).copyThreshold(256));
+
+        ByteBuf shared = large.allocateReadBuffer(alloc);
+        assertEquals(8192, shared.capacity());
+        shared.release();
+
+        // The larger buffer is reused, but no more than the maximum is read into it.
+        ByteBuf buf = small.allocateReadBuffer(alloc);
+        assertSame(shared, buf.unwrap());
+        assertEquals(4096, buf.writableBytes());
+        buf.writeBytes("netty".getBytes(CharsetUtil.US_ASCII));
+        ByteBuf copy = small.finishRead(alloc, buf);
+        assertEquals("netty", copy.toString(CharsetUtil.US_ASCII));
+        copy.release();
+        assertEquals(1, shared.refCnt());
+
+        buf = large.allocateReadBuffer(alloc);
+        assertSame(shared, buf);
+        buf.release();
+    }
+
+    @Test
+    public void testSharedReadBufferNotUsedForLargeReads() {
+        PredictiveRecvByteBufAllocator allocator = new PredictiveRecvByteBufAllocator(64, 64, 4096).copyThreshold(256);
+        RecvByteBufAllocator.ReadBufferHandle handle = newHandle(allocator);
+        readCycle(handle, 4096);
+        ByteBuf buf = handle.allocateReadBuffer(alloc);
+        try {
+            assertEquals(1, buf.refCnt());
+            assertEquals(2048, buf.capacity());
+            assertSame(buf, handle.finishRead(alloc, buf));
+        } finally {
+            buf.release();
+        }
+
+        // Disabled by default.
+        handle = newHandle(new PredictiveRecvByteBufAllocator(64, 64, 4096));
+        buf = handle.allocateReadBuffer(alloc);
+        try {
+            assertEquals(1, buf.refCnt());
+            assertEquals(64, buf.capacity());
+        } finally {
+            buf.release();
+        }
+    }
+
+    private void readCycle(RecvByteBufAllocator.ReadBufferHandle handle, int bytes) {
+        handle.reset(config);
+        handle.attemptedBytesRead(Integer.MAX_VALUE);
+        handle.lastBytesRead(bytes);
+        handle.incMessagesRead(1);
+        handle.readComplete();
+    }
+
+    private void allocRead(RecvByteBufAllocator.ReadBufferHandle handle, int expectedBufferSize, int lastRead) {
+        ByteBuf buf = handle.allocate(alloc);
+        try {
+            assertEquals(expectedBufferSize, buf.capacity());
+            handle.attemptedBytesRead(buf.capacity());
+            handle.lastBytesRead(lastRead);
+            handle.incMessagesRead(1);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveWriteSpinCountTest {
+
+    @Test
+    public void testStartsWithMaxWriteSpinCount() {
+        AdaptiveWriteSpinCount spinCount = new AdaptiveWriteSpinCount();
+        assertEquals(16, spinCount.writeSpinCount(16));
+    }
+
+    @Test
+    public void testPartialWriteShrinks() {
+        AdaptiveWriteSpinCount spinCount = new AdaptiveWriteSpinCount();
+        int expected = 16;
+        while (expected > 1) {
+            assertEquals(expected, spinCount.writeSpinCount(16));
+            assertFalse(spinCount.isPartialWrite(1024, 1024));
+            assertTrue(spinCount.isPartialWrite(1024, 512));
+            spinCount.incompleteWrite(false);
+            expected >>>= 1;
+        }
+        assertEquals(1, spinCount.writeSpinCount(16));
+        assertTrue(spinCount.isPartialWrite(1024, 0));
+        spinCount.incompleteWrite(false);
+        assertEquals(1, spinCount.writeSpinCount(16));
+    }
+
+    @Test
+    public void testExhaustedWithoutPartialWriteGrows() {
+        AdaptiveWriteSpinCount spinCount = new AdaptiveWriteSpinCount();
+        spinCount.writeSpinCount(16);
+        spinCount.isPartialWrite(1024, 1);
+        spinCount.incompleteWrite(false);
+        assertEquals(8, spinCount.writeSpinCount(16));
+        spinCount.incompleteWrite(false);
+        // Neither a partial write nor exhausted, keep the current value.
+        assertEquals(8, spinCount.writeSpinCount(16));
+        spinCount.incompleteWrite(true);
+        assertEquals(16, spinCount.writeSpinCount(16));
+        spinCount.incompleteWrite(true);
+        assertEquals(16, spinCount.writeSpinCount(16));
+    }
+
+    @Test
+    public void testMaxWriteSpinCountChanged() {
+        AdaptiveWriteSpinCount spinCount = new AdaptiveWriteSpinCount();
+        assertEquals(16, spinCount.writeSpinCount(16));
+        assertEquals(4, spinCount.writeSpinCount(4));
+        spinCount.incompleteWrite(true);
+        assertEquals(4, spinCount.writeSpinCount(4));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class EventLoopAffineChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.affine.id";
+
+    private EventLoopGroup group;
+    private Channel sc;
+    private Bootstrap cb;
+    private EventLoop loop1;
+    private EventLoop loop2;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        loop1 = group.next();
+        loop2 = group.next();
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+        sc = sb.bind(addr).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sc.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testAcquireFromSameEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new EventLoopAffineChannelPool(cb, handler);
+
+        Channel channel1 = acquire(pool, loop1);
+        Channel channel2 = acquire(pool, loop2);
+        // New channels are registered on the event loop which acquired them.
+        assertSame(loop1, channel1.eventLoop());
+        assertSame(loop2, channel2.eventLoop());
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+
+        for (int i = 0; i < 3; i++) {
+            Channel channel = acquire(pool, loop2);
+            assertSame(channel2, channel);
+            pool.release(channel).sync();
+            channel = acquire(pool, loop1);
+            assertSame(channel1, channel);
+            pool.release(channel).sync();
+        }
+        assertEquals(2, handler.channelCount());
+        pool.close();
+    }
+
+    @Test
+    public void testStealFromOtherEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new EventLoopAffineChannelPool(cb, handler);
+
+        Channel channel1 = acquire(pool, loop1);
+        pool.release(channel1).sync();
+
+        // The pool of loop2 is empty, so the channel of loop1 is used.
+        Channel channel = acquire(pool, loop2);
+        assertSame(channel1, channel);
+
+        // Nothing left to steal, so a new channel is created.
+        Channel channel2 = acquire(pool, loop2);
+        assertNotSame(channel1, channel2);
+        assertSame(loop2, channel2.eventLoop());
+
+        pool.release(channel).sync();
+        pool.release(channel2).sync();
+        assertEquals(2, handler.channelCount());
+
+        // Acquiring from a thread outside of the group visits all pools.
+        Channel other1 = pool.acquire().sync().getNow();
+        Channel other2 = pool.acquire().sync().getNow();
+        assertNotSame(other1, other2);
+        assertEquals(2, handler.channelCount());
+        pool.release(other1).sync();
+        pool.release(other2).sync();
+
+        pool.close();
+        assertFalse(channel1.isOpen());
+        assertFalse(channel2.isOpen());
+    }
+
+    private static Channel acquire(final ChannelPool pool, final EventLoop loop) throws Exception {
+        return loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return pool.acquire(loop.<Channel>newPromise());
+            }
+        }).sync().getNow().sync().getNow();
+    }
+}
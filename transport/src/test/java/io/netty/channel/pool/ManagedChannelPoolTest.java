@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ManagedChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.managed.id";
+
+    private EventLoopGroup group;
+    private Channel sc;
+    private Bootstrap cb;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+        sc = sb.bind(addr).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sc.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testWarmupAndMinIdle() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ManagedChannelPool pool = new ManagedChannelPool(cb, handler, 3);
+        pool.start().sync();
+        ChannelPoolMetrics metrics = pool.metrics();
+        assertEquals(3, metrics.idleChannels());
+        assertEquals(3, metrics.createdChannels());
+        assertEquals(3, handler.channelCount());
+
+        Channel channel = pool.acquire().sync().getNow();
+        // The channel was created in the background.
+        assertEquals(3, handler.channelCount());
+        assertEquals(1, metrics.acquiredChannels());
+        assertEquals(0, metrics.pendingAcquires());
+        assertEquals(1, metrics.acquireLatency().count());
+
+        // The pool is refilled in the background.
+        waitUntilIdle(metrics, 3);
+        assertEquals(4, handler.channelCount());
+
+        pool.release(channel).sync();
+        assertEquals(0, metrics.acquiredChannels());
+        assertEquals(4, metrics.idleChannels());
+        pool.close();
+        assertEquals(0, metrics.idleChannels());
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        ManagedChannelPool pool = new ManagedChannelPool(cb, new CountingChannelPoolHandler(),
+                ChannelHealthChecker.ACTIVE, 1, 50, 0, 0, TimeUnit.MILLISECONDS);
+        pool.start().sync();
+        Channel channel1 = pool.acquire().sync().getNow();
+        Channel channel2 = pool.acquire().sync().getNow();
+        Channel channel3 = pool.acquire().sync().getNow();
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+        pool.release(channel3).sync();
+
+        // Only the channels above the minimum are evicted.
+        ChannelPoolMetrics metrics = pool.metrics();
+        waitUntilIdle(metrics, 1);
+        assertTrue(metrics.evictedChannels() >= 2);
+        pool.close();
+    }
+
+    @Test
+    public void testIdleEvictionOfManyChannels() throws Exception {
+        ManagedChannelPool pool = new ManagedChannelPool(cb, new CountingChannelPoolHandler(),
+                ChannelHealthChecker.ACTIVE, 0, 50, 0, 0, TimeUnit.MILLISECONDS);
+        List<Channel> channels = new ArrayList<Channel>();
+        for (int i = 0; i < 64; i++) {
+            channels.add(pool.acquire().sync().getNow());
+        }
+        for (Channel channel : channels) {
+            pool.release(channel).sync();
+        }
+
+        ChannelPoolMetrics metrics = pool.metrics();
+        waitUntilIdle(metrics, 0);
+        for (Channel channel : channels) {
+            channel.closeFuture().sync();
+        }
+        assertEquals(64, metrics.evictedChannels());
+        assertNull(pool.pollChannel());
+        pool.close();
+    }
+
+    @Test
+    public void testClosedIdleChannelIsReplaced() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ManagedChannelPool pool = new ManagedChannelPool(cb, handler, 2);
+        pool.start().sync();
+        ChannelPoolMetrics metrics = pool.metrics();
+        assertEquals(2, metrics.idleChannels());
+
+        // Closing an idle channel, e.g. by the remote peer, removes it from the pool and connects a new one.
+        Channel idle = pool.pollChannel();
+        assertEquals(1, metrics.idleChannels());
+        assertTrue(pool.offerChannel(idle));
+        idle.close().sync();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (metrics.createdChannels() < 3) {
+            assertTrue(System.nanoTime() - deadline < 0);
+            Thread.sleep(10);
+        }
+        waitUntilIdle(metrics, 2);
+        for (int i = 0; i < 2; i++) {
+            Channel channel = pool.pollChannel();
+            assertNotSame(idle, channel);
+            assertTrue(channel.isActive());
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testAcquiredChannelClosedWithoutRelease() throws Exception {
+        ManagedChannelPool pool = new ManagedChannelPool(cb, new CountingChannelPoolHandler(), 0);
+        Channel channel = pool.acquire().sync().getNow();
+        ChannelPoolMetrics metrics = pool.metrics();
+        assertEquals(1, metrics.acquiredChannels());
+
+        channel.close().sync();
+        assertEquals(0, metrics.acquiredChannels());
+
+        // Releasing it afterwards does not count it twice.
+        try {
+            pool.release(channel).sync();
+        } catch (Exception ignore) {
+            // The closed channel is not healthy anymore.
+        }
+        assertEquals(0, metrics.acquiredChannels());
+        assertEquals(0, metrics.idleChannels());
+        pool.close();
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        ManagedChannelPool pool = new ManagedChannelPool(cb, new CountingChannelPoolHandler(),
+                ChannelHealthChecker.ACTIVE, 0, 0, 50, 0, TimeUnit.MILLISECONDS);
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).sync();
+        Thread.sleep(100);
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel, channel2);
+        channel.closeFuture().sync();
+        assertEquals(1, pool.metrics().evictedChannels());
+        pool.release(channel2).sync();
+        pool.close();
+    }
+
+    @Test
+    public void testBackgroundHealthCheck() throws Exception {
+        final Set<Channel> unhealthy = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+        ChannelHealthChecker healthCheck = new ChannelHealthChecker() {
+            @Override
+            public Future<Boolean> isHealthy(Channel channel) {
+                return channel.eventLoop().newSucceededFuture(!unhealthy.contains(channel));
+            }
+        };
+        ManagedChannelPool pool = new ManagedChannelPool(cb, new CountingChannelPoolHandler(), healthCheck,
+                0, 0, 0, 20, TimeUnit.MILLISECONDS);
+        Channel channel1 = pool.acquire().sync().getNow();
+        Channel channel2 = pool.acquire().sync().getNow();
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+
+        unhealthy.add(channel1);
+        ChannelPoolMetrics metrics = pool.metrics();
+        waitUntilIdle(metrics, 1);
+        channel1.closeFuture().sync();
+        assertEquals(1, metrics.failedHealthChecks());
+        assertTrue(channel2.isActive());
+        pool.close();
+        assertFalse(channel2.isOpen());
+    }
+
+    private static void waitUntilIdle(ChannelPoolMetrics metrics, int idle) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (metrics.idleChannels() != idle) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("idle channels: " + metrics.idleChannels() + " (expected: " + idle + ')');
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertTrue;
+
+public class NioSocketChannelWriteSpinCountTest {
+
+    @Test(timeout = 10000)
+    public void testWriteSpinCountDropsAfterPartialWrite() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            // The peer never reads, so the socket buffers fill up and the writes end up partial.
+            Channel sc = new ServerBootstrap().group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .option(ChannelOption.SO_RCVBUF, 8 * 1024)
+                    .childOption(ChannelOption.AUTO_READ, false)
+                    .childHandler(new ChannelInboundHandlerAdapter())
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).sync().channel();
+            final NioSocketChannel cc = (NioSocketChannel) new Bootstrap().group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.SO_SNDBUF, 8 * 1024)
+                    .option(ChannelOption.WRITE_SPIN_COUNT, 16)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).sync().channel();
+            try {
+                for (int i = 0; i < 64; i++) {
+                    cc.write(Unpooled.wrappedBuffer(new byte[64 * 1024]));
+                }
+                cc.flush();
+                int writeSpinCount = cc.eventLoop().submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return cc.nextWriteSpinCount();
+                    }
+                }).get();
+                assertTrue("writeSpinCount: " + writeSpinCount, writeSpinCount > 0 && writeSpinCount < 16);
+                assertTrue(cc.unsafe().outboundBuffer().totalPendingWriteBytes() > 0);
+            } finally {
+                cc.close().sync();
+                sc.close().sync();
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}